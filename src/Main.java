@@ -1,4 +1,5 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -11,6 +12,8 @@ import java.io.IOException;
 
 public class Main extends Application {
 
+  private static final String TITLE = "Image Tagger";
+
   private ImageTaggingManager imageTaggingManager;
 
   /**
@@ -28,13 +31,22 @@ public class Main extends Application {
     controller.initialize(primaryStage, imageTaggingManager);
 
     // setup the stage
-    primaryStage.setTitle("Image Tagger");
+    primaryStage.setTitle(TITLE);
     Scene scene = new Scene(root);
     primaryStage.setScene(scene);
     primaryStage.setX(250);
     primaryStage.setY(25);
     primaryStage.setResizable(false);
     primaryStage.show();
+
+    // check that the tracked images still exist in the background, with the progress in the title
+    imageTaggingManager.validateImages(
+        Platform::runLater,
+        (checkedImages, totalImages) ->
+            primaryStage.setTitle(
+                checkedImages < totalImages
+                    ? TITLE + " - checking images (" + checkedImages + " of " + totalImages + ")"
+                    : TITLE));
   }
 
   /** Closes the program. */
@@ -0,0 +1,42 @@
+package model;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the model package. Accepts the usual JMH command line options, for example
+ * "FilterBenchmark -p fileCount=1000000" to run one benchmark at one size; by default it runs every
+ * benchmark at every size, and writes the results to benchmark-results.json.
+ */
+public class BenchmarkMain {
+
+  /** Store the name of the file that the results are written to, unless another is given. */
+  private static final String RESULT_FILE = "benchmark-results.json";
+
+  /**
+   * Run the benchmarks that are chosen by the JMH command line options, args.
+   *
+   * @param args JMH command line options.
+   * @throws RunnerException if a benchmark could not be run.
+   * @throws CommandLineOptionException if args are not valid options.
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+    if (commandLineOptions.getIncludes().isEmpty()) {
+      options.include("model\\..*Benchmark");
+    }
+    if (!commandLineOptions.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLineOptions.getResult().hasValue()) {
+      options.result(RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+}
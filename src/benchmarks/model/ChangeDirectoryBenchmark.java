@@ -0,0 +1,97 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of ImageTaggingManager.changeDirectory on a synthetic library of real, empty, image
+ * files, both with the scan cache filled by an earlier scan and with it emptied before every scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ChangeDirectoryBenchmark {
+
+  /* Creating a million files takes minutes, so the larger sizes must be asked for explicitly. */
+  @Param({"10000", "100000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  /** Store the directory that the library and the program's data files are created in. */
+  private Path directory;
+
+  /** Store the path, as a String, of the root of the library. */
+  private String root;
+
+  /** Store the scan cache of manager. */
+  private ScanCache scanCache;
+
+  /** Store the ImageTaggingManager that scans the library. */
+  private ImageTaggingManager manager;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    Path library = directory.resolve("library");
+    new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1).create(library);
+    root = library.toString();
+    scanCache = new ScanCache(new HashMap<>());
+    manager =
+        new ImageTaggingManager(
+            new ImageHistoryManager(new HashMap<>()),
+            new TagManager(new ArrayList<>()),
+            SyntheticLibrary.newLoggingManager(directory),
+            scanCache);
+    /* Fill the scan cache, and add every tag in the library to the master collection. */
+    manager.changeDirectory(root);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    manager.saveData();
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public List<String> warmCache() {
+    manager.changeDirectory(root);
+    return manager.getImagePaths();
+  }
+
+  @Benchmark
+  public List<String> coldCache() {
+    scanCache.retainVisited(directory, Collections.emptySet());
+    manager.changeDirectory(root);
+    return manager.getImagePaths();
+  }
+}
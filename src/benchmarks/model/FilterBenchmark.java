@@ -0,0 +1,111 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of adding and removing tag filters, and of applying tag queries, to a synthetic
+ * library that is held in memory. Each benchmark leaves the filters as it found them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  /** Store the directory that the program's data files are created in. */
+  private Path directory;
+
+  /** Store the library whose images are filtered. */
+  private SyntheticLibrary library;
+
+  /** Store the ImageTaggingManager whose images are filtered. */
+  private ImageTaggingManager manager;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    library = new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1);
+    String root = directory.resolve("library").toString();
+    manager =
+        new ImageTaggingManager(
+            new ImageHistoryManager(new HashMap<>()),
+            new TagManager(new ArrayList<>()),
+            SyntheticLibrary.newLoggingManager(directory),
+            new ScanCache(new HashMap<>()));
+    manager.changeDirectory(root, library.generatePaths(root));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    manager.saveData();
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public List<String> commonTag() {
+    manager.addTagFilter(library.getTag(0));
+    List<String> images = manager.getImagePaths();
+    manager.removeTagFilter(library.getTag(0));
+    return images;
+  }
+
+  @Benchmark
+  public List<String> rareTag() {
+    manager.addTagFilter(library.getTag(vocabularySize - 1));
+    List<String> images = manager.getImagePaths();
+    manager.removeTagFilter(library.getTag(vocabularySize - 1));
+    return images;
+  }
+
+  @Benchmark
+  public List<String> twoTags() {
+    manager.addTagFilter(library.getTag(0));
+    manager.addTagFilter(library.getTag(1));
+    List<String> images = manager.getImagePaths();
+    manager.removeTagFilter(library.getTag(1));
+    manager.removeTagFilter(library.getTag(0));
+    return images;
+  }
+
+  @Benchmark
+  public List<String> query() {
+    manager.setTagQuery(
+        "(" + library.getTag(0) + " OR " + library.getTag(1) + ") AND NOT " + library.getTag(2));
+    List<String> images = manager.getImagePaths();
+    manager.setTagQuery("");
+    return images;
+  }
+}
@@ -0,0 +1,133 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of writing image changes to the logs, one at a time and in a batch that is waited for
+ * once, as a bulk re-tag does, of writing a checkpoint, and of recovering the image histories and
+ * tags from the temporary logs that are left behind when the program does not close properly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class LoggingManagerBenchmark {
+
+  /** Store the number of image changes that are logged by writeImageUpdateBatch. */
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"10000", "100000", "1000000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  @Param({"NONE", "FLUSH", "FSYNC"})
+  private Durability durability;
+
+  /** Store the directory that the logs are created in. */
+  private Path directory;
+
+  /** Store the paths, as Strings, of the images whose changes are logged. */
+  private List<String> paths;
+
+  /** Store the index in paths of the next image whose change is logged. */
+  private int next;
+
+  /** Store the LoggingManager that writes and reads the logs. */
+  private LoggingManager loggingManager;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    SyntheticLibrary library =
+        new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1);
+    paths = library.generatePaths(directory.resolve("library").toString());
+    /* Leave behind the temporary logs of a session that renamed every image and added every tag. */
+    List<String> imageLines = new ArrayList<>(paths.size());
+    for (String path : paths) {
+      imageLines.add(LoggingManager.formatImageUpdate(path, PathFormatter.rename(path, "renamed")));
+    }
+    Files.write(directory.resolve("TempImagesLog.txt"), imageLines, StandardCharsets.UTF_8);
+    List<String> tagLines = new ArrayList<>(vocabularySize);
+    for (String tag : library.getVocabulary()) {
+      tagLines.add("a:" + tag);
+    }
+    Files.write(directory.resolve("TempTagsLog.txt"), tagLines, StandardCharsets.UTF_8);
+    loggingManager = SyntheticLibrary.newLoggingManager(directory);
+    loggingManager.setDurability(durability);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    loggingManager.endLogging(
+        new HashMap<>(), new HashMap<>(), new ArrayList<>(), new HashMap<>(), new HashMap<>());
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public void writeImageUpdate() {
+    String path = paths.get(next);
+    loggingManager.writeImageUpdateToLog(path, PathFormatter.rename(path, "renamed"));
+    next = (next + 1) % paths.size();
+  }
+
+  @Benchmark
+  public void writeImageUpdateBatch() {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      String path = paths.get(next);
+      loggingManager.writeImageUpdateToLog(path, PathFormatter.rename(path, "renamed"));
+      next = (next + 1) % paths.size();
+    }
+    loggingManager.flush().join();
+  }
+
+  @Benchmark
+  public void checkpoint() throws Exception {
+    Map<String, List<String>> imageHistories = new HashMap<>(paths.size() * 4 / 3 + 1);
+    for (String path : paths) {
+      imageHistories.put(path, new ArrayList<>());
+    }
+    loggingManager
+        .checkpoint(
+            imageHistories, new HashMap<>(), new ArrayList<>(), new HashMap<>(), new HashMap<>())
+        .get();
+  }
+
+  @Benchmark
+  public ImageHistoryManager recover() {
+    ImageHistoryManager imageHistoryManager = new ImageHistoryManager(new HashMap<>());
+    TagManager tagManager = new TagManager(new ArrayList<>());
+    ImageTaggingManagerFactory.recoverFromLogs(loggingManager, imageHistoryManager, tagManager);
+    return imageHistoryManager;
+  }
+}
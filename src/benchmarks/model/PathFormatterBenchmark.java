@@ -0,0 +1,99 @@
+package model;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the methods of PathFormatter that parse paths, each of which is run on every path
+ * of a synthetic library, so the times reported are per library rather than per path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PathFormatterBenchmark {
+
+  @Param({"10000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"0", "3", "10"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  /** Store the paths, as Strings, that are parsed. */
+  private List<String> paths;
+
+  /** Store a tag that some of the paths have. */
+  private String tag;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SyntheticLibrary library =
+        new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1);
+    paths = library.generatePaths(File.separator + "library");
+    tag = library.getTag(0);
+  }
+
+  @Benchmark
+  public void getTags(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.getTags(path));
+    }
+  }
+
+  @Benchmark
+  public void tagCount(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.tagCount(path));
+    }
+  }
+
+  @Benchmark
+  public void containsATag(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.containsATag(path));
+    }
+  }
+
+  @Benchmark
+  public void hasTag(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.hasTag(path, tag));
+    }
+  }
+
+  @Benchmark
+  public void getName(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.getName(path));
+    }
+  }
+
+  @Benchmark
+  public void isImage(Blackhole blackhole) {
+    for (String path : paths) {
+      blackhole.consume(PathFormatter.isImage(path));
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of finding the tags that are shared by, and all of the tags of, a selection of images
+ * in a synthetic library that is held in memory, as the main screen does whenever the selection
+ * changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SelectionBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  @Param({"5000"})
+  private int selectionSize;
+
+  /** Store the directory that the program's data files are created in. */
+  private Path directory;
+
+  /** Store the paths, as Strings, of the selected images. */
+  private List<String> selection;
+
+  /** Store the tags that the selected images are checked for. */
+  private List<String> tags;
+
+  /** Store the ImageTaggingManager whose images are selected. */
+  private ImageTaggingManager manager;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    SyntheticLibrary library =
+        new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1);
+    String root = directory.resolve("library").toString();
+    manager =
+        new ImageTaggingManager(
+            new ImageHistoryManager(new HashMap<>()),
+            new TagManager(new ArrayList<>()),
+            SyntheticLibrary.newLoggingManager(directory),
+            new ScanCache(new HashMap<>()));
+    manager.changeDirectory(root, library.generatePaths(root));
+    /* Select the images that have the most common tag, as a filtered selection would be. */
+    manager.addTagFilter(library.getTag(0));
+    List<String> images = manager.getImagePaths();
+    selection = new ArrayList<>(images.subList(0, Math.min(selectionSize, images.size())));
+    manager.removeTagFilter(library.getTag(0));
+    tags = library.getVocabulary();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    manager.saveData();
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public List<String> tagsAllImagesContain() {
+    return manager.getTagsAllImagesContain(tags, selection);
+  }
+
+  @Benchmark
+  public List<String> imagesTags() {
+    return manager.getImagesTags(selection);
+  }
+}
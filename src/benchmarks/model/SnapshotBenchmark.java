@@ -0,0 +1,132 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of saving and loading the data that persists between sessions, in a snapshot file,
+ * compared with loading the image histories from a file serialized by earlier versions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  /** Store the directory that the files are written to. */
+  private Path directory;
+
+  /** Store the map from every image path to its list of old names. */
+  private Map<String, List<String>> imageHistories;
+
+  /** Store the master list of tags. */
+  private List<String> tags;
+
+  /** Store the snapshot file that is loaded. */
+  private File snapshotFile;
+
+  /** Store the file that the image histories are serialized to. */
+  private File serializedFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    SyntheticLibrary library =
+        new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1);
+    imageHistories = new HashMap<>();
+    for (String path : library.generatePaths(directory.resolve("library").toString())) {
+      List<String> oldNames = new ArrayList<>();
+      oldNames.add(PathFormatter.getFullName(PathFormatter.rename(path, "old")));
+      imageHistories.put(path, oldNames);
+    }
+    tags = new ArrayList<>(library.getVocabulary());
+    snapshotFile = directory.resolve("Snapshot.dat").toFile();
+    SnapshotFile.write(
+        snapshotFile, imageHistories, null, tags, new HashMap<>(), new HashMap<>(), -1);
+    serializedFile = directory.resolve("ImageHistory.ser").toFile();
+    try (ObjectOutputStream output =
+        new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serializedFile)))) {
+      output.writeObject(imageHistories);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public void write() throws IOException {
+    SnapshotFile.write(
+        directory.resolve("Written.dat").toFile(),
+        imageHistories,
+        null,
+        tags,
+        new HashMap<>(),
+        new HashMap<>(),
+        -1);
+  }
+
+  @Benchmark
+  public Map<String, List<String>> loadImageHistories() throws IOException {
+    return SnapshotFile.open(snapshotFile).readImageHistories();
+  }
+
+  @Benchmark
+  public Map<String, Integer> loadImageHistoryIndex() throws IOException {
+    return SnapshotFile.open(snapshotFile).readImageHistoryIndex();
+  }
+
+  @Benchmark
+  public List<String> loadTags() throws IOException {
+    return SnapshotFile.open(snapshotFile).readTags();
+  }
+
+  @Benchmark
+  public Object loadSerializedImageHistories() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream input =
+        new ObjectInputStream(new BufferedInputStream(new FileInputStream(serializedFile)))) {
+      return input.readObject();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A generator of synthetic image libraries for the benchmarks. A library is a tree of directories,
+ * up to a given depth, that contains a given number of images, each of which has a given number of
+ * tags drawn from a vocabulary of a given size. Tags are drawn with a skew towards the start of the
+ * vocabulary so that, as in a real library, a few tags are on many images and most tags are on
+ * few. The same parameters and seed always generate the same library.
+ */
+public class SyntheticLibrary {
+
+  /** Store the number of subdirectories of each directory that is not at the greatest depth. */
+  private static final int SUBDIRECTORIES = 8;
+
+  /** Store the number of images in the library. */
+  private final int fileCount;
+
+  /** Store the greatest depth of a directory below the root of the library. */
+  private final int depth;
+
+  /** Store the number of tags that each image has. */
+  private final int tagsPerFile;
+
+  /** Store the number of distinct tags that the images' tags are drawn from. */
+  private final int vocabularySize;
+
+  /** Store the seed of the random numbers that the library is generated from. */
+  private final long seed;
+
+  /**
+   * Create a new SyntheticLibrary object, for a library with the given parameters.
+   *
+   * @param fileCount the number of images.
+   * @param depth the greatest depth of a directory below the root.
+   * @param tagsPerFile the number of tags that each image has.
+   * @param vocabularySize the number of distinct tags.
+   * @param seed the seed of the random numbers that the library is generated from.
+   */
+  public SyntheticLibrary(
+      int fileCount, int depth, int tagsPerFile, int vocabularySize, long seed) {
+    this.fileCount = fileCount;
+    this.depth = depth;
+    this.tagsPerFile = Math.min(tagsPerFile, vocabularySize);
+    this.vocabularySize = vocabularySize;
+    this.seed = seed;
+  }
+
+  /**
+   * Return the tag with the given rank in the vocabulary, where the tag with rank zero is the most
+   * common.
+   *
+   * @param rank a number between zero and the vocabulary size.
+   * @return a tag.
+   */
+  public String getTag(int rank) {
+    return "tag" + rank;
+  }
+
+  /**
+   * Return a list of all of the tags in the vocabulary, from the most to the least common.
+   *
+   * @return a list of tags.
+   */
+  public List<String> getVocabulary() {
+    List<String> vocabulary = new ArrayList<>(vocabularySize);
+    for (int rank = 0; rank < vocabularySize; rank++) {
+      vocabulary.add(getTag(rank));
+    }
+    return vocabulary;
+  }
+
+  /**
+   * Return the paths, as Strings, of the images of the library at root, without creating them.
+   *
+   * @param root a path to a directory, as a String.
+   * @return a list of paths, as Strings.
+   */
+  public List<String> generatePaths(String root) {
+    SplittableRandom random = new SplittableRandom(seed);
+    List<String> paths = new ArrayList<>(fileCount);
+    Set<Integer> tags = new LinkedHashSet<>();
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < fileCount; i++) {
+      path.setLength(0);
+      path.append(root);
+      int imageDepth = random.nextInt(depth + 1);
+      for (int level = 0; level < imageDepth; level++) {
+        path.append(File.separator).append("dir").append(random.nextInt(SUBDIRECTORIES));
+      }
+      path.append(File.separator).append("IMG_").append(i);
+      tags.clear();
+      while (tags.size() < tagsPerFile) {
+        double uniform = random.nextDouble();
+        tags.add((int) (uniform * uniform * uniform * vocabularySize));
+      }
+      for (int rank : tags) {
+        path.append(" @").append(getTag(rank));
+      }
+      path.append(".jpg");
+      paths.add(path.toString());
+    }
+    return paths;
+  }
+
+  /**
+   * Create the library, as empty image files, at and below the directory at root, and return the
+   * paths, as Strings, of its images.
+   *
+   * @param root a Path of a directory.
+   * @return a list of paths, as Strings.
+   * @throws IOException if a file or directory could not be created.
+   */
+  public List<String> create(Path root) throws IOException {
+    List<String> paths = generatePaths(root.toString());
+    Set<Path> directories = new HashSet<>();
+    for (String path : paths) {
+      Path file = Paths.get(path);
+      if (directories.add(file.getParent())) {
+        Files.createDirectories(file.getParent());
+      }
+      Files.createFile(file);
+    }
+    return paths;
+  }
+
+  /**
+   * Delete the directory at root, and everything below it.
+   *
+   * @param root a Path of a directory.
+   * @throws IOException if a file or directory could not be deleted.
+   */
+  public static void delete(Path root) throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  /**
+   * Return a new LoggingManager object that stores its logs and snapshot file in the directory
+   * at dataDirectory.
+   *
+   * @param dataDirectory a Path of a directory.
+   * @return a LoggingManager object.
+   */
+  static LoggingManager newLoggingManager(Path dataDirectory) {
+    return new LoggingManager(
+        dataDirectory.resolve("Log.txt").toString(),
+        dataDirectory.resolve("TempImagesLog.txt").toString(),
+        dataDirectory.resolve("TempTagsLog.txt").toString(),
+        dataDirectory.resolve("Snapshot.dat").toString());
+  }
+}
@@ -0,0 +1,64 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of listing the tags in the master collection, as the tag screens do every time the
+ * text that the tags must contain changes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TagManagerBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int vocabularySize;
+
+  /** Store the tags that are excluded from the lists, as the tags of an image would be. */
+  private List<String> exclude;
+
+  /** Store the TagManager whose tags are listed. */
+  private TagManager tagManager;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SyntheticLibrary library = new SyntheticLibrary(0, 0, 0, vocabularySize, 1);
+    tagManager = new TagManager(new ArrayList<>(library.getVocabulary()));
+    exclude = new ArrayList<>();
+    for (int rank = 0; rank < 5; rank++) {
+      exclude.add(library.getTag(rank));
+    }
+  }
+
+  @Benchmark
+  public List<String> allTags() {
+    return tagManager.getTags(exclude);
+  }
+
+  @Benchmark
+  public List<String> tagsContaining() {
+    return tagManager.getTags(exclude, "g12");
+  }
+
+  @Benchmark
+  public List<String> suggestionsForTypo() {
+    return tagManager.getSuggestions("tga123", exclude, 50, tag -> 0);
+  }
+}
@@ -0,0 +1,101 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of renaming, and adding tags to and removing tags from, the images of a synthetic
+ * library of real, empty, image files, which also update the in-memory index, the image histories
+ * and the logs. Each benchmark changes an image and changes it back, cycling through the images.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class UpdateImageBenchmark {
+
+  /* Creating a million files takes minutes, so the larger sizes must be asked for explicitly. */
+  @Param({"10000", "100000"})
+  private int fileCount;
+
+  @Param({"4"})
+  private int depth;
+
+  @Param({"3"})
+  private int tagsPerFile;
+
+  @Param({"1000"})
+  private int vocabularySize;
+
+  /** Store the directory that the library and the program's data files are created in. */
+  private Path directory;
+
+  /** Store the paths, as Strings, of the images that are changed, in the order they are changed. */
+  private List<String> images;
+
+  /** Store the index in images of the next image to change. */
+  private int next;
+
+  /** Store the ImageTaggingManager that changes the images. */
+  private ImageTaggingManager manager;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("benchmark");
+    Path library = directory.resolve("library");
+    new SyntheticLibrary(fileCount, depth, tagsPerFile, vocabularySize, 1).create(library);
+    manager =
+        new ImageTaggingManager(
+            new ImageHistoryManager(new HashMap<>()),
+            new TagManager(new ArrayList<>()),
+            SyntheticLibrary.newLoggingManager(directory),
+            new ScanCache(new HashMap<>()));
+    manager.changeDirectory(library.toString());
+    images = manager.getImagePaths();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    manager.saveData();
+    SyntheticLibrary.delete(directory);
+  }
+
+  @Benchmark
+  public String rename() {
+    String image = images.get(next);
+    String name = manager.getImagesName(image);
+    String renamed = manager.renameImage(image, "renamed");
+    manager.renameImage(renamed, name);
+    next = (next + 1) % images.size();
+    return renamed;
+  }
+
+  @Benchmark
+  public String addAndRemoveTag() {
+    String image = images.get(next);
+    String tagged = manager.addTagToImage(image, "benchmark");
+    manager.removeTagFromImage(tagged, "benchmark");
+    next = (next + 1) % images.size();
+    return tagged;
+  }
+}
@@ -35,10 +35,8 @@ public class IndividualImageEditingScreenController {
   /** Store the stage on which the scene that this class controls occurs. */
   private Stage stage;
 
-  /**
-   * Store all of the tags that the program is storing, and that the image does not currently have.
-   */
-  private List<String> allAvailableTags;
+  /** Store all of the tags that the image currently has. */
+  private List<String> imagesTags;
 
   /** Store an ImageTaggingManager object, which is responsible for all interactions the model. */
   private ImageTaggingManager imageTaggingManager;
@@ -134,44 +132,42 @@ public class IndividualImageEditingScreenController {
   }
 
   /**
-   * Get an updated list of the tags that the program is storing, and that the image does not
-   * currently have. Then, populate the available tags flow pane based on the contents of this list,
-   * displaying only those tags that contain the current value of the addTagTextField (ignoring
-   * case).
+   * Get an updated list of the tags that the image currently has. Then, populate the available tags
+   * flow pane with the tags that the program is storing that the image does not have, displaying
+   * only those tags that contain the current value of the addTagTextField (ignoring case).
    */
   @FXML
   private void populateAvailableTagsFlowPane() {
     /*
-     * Get all of the tags currently in use in the program, excluding those that the image already has.
+     * Get the tags that the image already has, which are excluded from the available tags.
      */
-    allAvailableTags = imageTaggingManager.getAllAvailableTagsForImage(imagePath);
+    imagesTags = imageTaggingManager.getImagesTags(imagePath);
     populateAvailableTagsFlowPaneBasedOnExistingListOfAvailableTags();
   }
 
   /**
    * Update the available tags flow pane so that it only displays those tags that contain the
    * current value of the addTagTextField (ignoring case). Note: unlike populateAvailableTags, this
-   * method does not get an updated list of the tags that the program is currently storing, and that
-   * the image does not currently have.
+   * method does not get an updated list of the tags that the image has.
    */
   @FXML
   private void populateAvailableTagsFlowPaneBasedOnExistingListOfAvailableTags() {
     availableTagsFlowPane.getChildren().clear();
-    for (String tag : allAvailableTags) {
+    /*
+     * Only add tags to the flow pane that contain the current value of the addTagTextField, ignoring case.
+     */
+    for (String tag :
+        imageTaggingManager.getAllTagsInMasterCollection(
+            imagesTags, addTagTextField.getText().trim())) {
+      /*
+       * Add tags that display a green '+' sign.
+       */
+      Tag newTag = new Tag(tag, true);
+      availableTagsFlowPane.getChildren().add(newTag);
       /*
-       * Only add tags to the flow pane that contain the current value of the addTagTextField, ignoring case.
+       * Set the tag so that when the user clicks anywhere inside of it, the tag will be added to the image.
        */
-      if (tag.toLowerCase().contains(addTagTextField.getText().toLowerCase().trim())) {
-        /*
-         * Add tags that display a green '+' sign.
-         */
-        Tag newTag = new Tag(tag, true);
-        availableTagsFlowPane.getChildren().add(newTag);
-        /*
-         * Set the tag so that when the user clicks anywhere inside of it, the tag will be added to the image.
-         */
-        newTag.setOnMouseClicked(event -> addTagFromExisting(newTag.getTag()));
-      }
+      newTag.setOnMouseClicked(event -> addTagFromExisting(newTag.getTag()));
     }
   }
 
@@ -1,7 +1,10 @@
 package controller;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
@@ -46,6 +49,9 @@ public class MainScreenController {
   /** Store the number of columns of pictures to display. */
   private static final int COLUMNS_OF_PICTURES = 3;
 
+  /** Store the greatest number of tags to suggest for the text in the add tag text field. */
+  private static final int TAG_SUGGESTION_LIMIT = 50;
+
   /** Store the GUI object that displays the images. */
   @FXML public GridPane grid;
 
@@ -94,6 +100,12 @@ public class MainScreenController {
    */
   @FXML public TextField textField;
 
+  /**
+   * Store the GUI object that, in view mode, allows the user to filter the images by a query, such
+   * as "(beach OR coast) AND 2019 AND NOT rejected" (not visible in edit mode).
+   */
+  @FXML public TextField queryField;
+
   /**
    * Store the button that, in edit mode, allows the user to add a new tag to the currently selected
    * images (not visible in view mode).
@@ -115,6 +127,21 @@ public class MainScreenController {
    */
   @FXML public Button deselect;
 
+  /** Store the GUI object that displays the number of images, or the progress of a scan. */
+  @FXML public Label imageCount;
+
+  /** Store the button that stops the scan of the directory, while a scan is in progress. */
+  @FXML public Button cancelScanButton;
+
+  /** Store the scan of the current directory, or null if no scan is in progress. */
+  private Task<List<String>> directoryScan;
+
+  /**
+   * Store the thumbnails that were displayed while the directory was being scanned, keyed by the
+   * paths of their images, so that they can be reused once the scan has finished.
+   */
+  private Map<String, Thumbnail> scannedThumbnails = new HashMap<>();
+
   /** Store a set of all thumbnails that have been selected in edit mode. */
   private Set<Thumbnail> selectedThumbnails = new HashSet<>();
 
@@ -148,17 +175,7 @@ public class MainScreenController {
      * Get the path to the current directory, as a String. This will have been set by the start screen controller
      * prior to this screen being initialized.
      */
-    String curDirPath = imageTaggingManager.getCurrentDirectoryPath();
-    directory.setText(curDirPath);
-    directory.setFont(Font.font(20));
-
-    /*
-     * If the user clicks on the directory path label, he or she will be able to view this full path, which is
-     * helpful in case the full path does not fit on the screen.
-     */
-    Tooltip.install(directory, new Tooltip(curDirPath));
-    topLabel.setFont(Font.font(18));
-    bottomLabel.setFont(Font.font(18));
+    renderDirectoryLabel(imageTaggingManager.getCurrentDirectoryPath());
 
     /*
      * Load all of the images at and below the current directory that have the current tag filters, or all
@@ -176,6 +193,185 @@ public class MainScreenController {
      * value of this text field (this is not case sensitive).
      */
     textField.textProperty().addListener(event -> updateBasedOnTextField());
+
+    /*
+     * Keep the screen up to date with changes that other programs make to the images.
+     */
+    imageTaggingManager.watchDirectory(Platform::runLater, this::handleExternalChanges);
+  }
+
+  /**
+   * Initialize the main screen with a given imageTaggingManager, and change its directory to the
+   * directory at directoryPath. The directory is scanned in the background, and its images are
+   * displayed as they are found. The screen starts off in view mode.
+   *
+   * @param stage a stage.
+   * @param imageTaggingManager imageTaggingManager to use.
+   * @param directoryPath a path to a directory, as a String.
+   */
+  void initialize(Stage stage, ImageTaggingManager imageTaggingManager, String directoryPath) {
+    this.stage = stage;
+    this.imageTaggingManager = imageTaggingManager;
+    renderDirectoryLabel(directoryPath);
+    setToViewMode();
+    textField.textProperty().addListener(event -> updateBasedOnTextField());
+    scanDirectory(directoryPath);
+  }
+
+  /**
+   * Display the path to the directory at or below which all of the displayed images are located.
+   *
+   * @param curDirPath a path to a directory, as a String.
+   */
+  private void renderDirectoryLabel(String curDirPath) {
+    directory.setText(curDirPath);
+    directory.setFont(Font.font(20));
+
+    /*
+     * If the user clicks on the directory path label, he or she will be able to view this full path, which is
+     * helpful in case the full path does not fit on the screen.
+     */
+    Tooltip.install(directory, new Tooltip(curDirPath));
+    topLabel.setFont(Font.font(18));
+    bottomLabel.setFont(Font.font(18));
+  }
+
+  /**
+   * Scan the directory at directoryPath on a background thread, adding a thumbnail to the images
+   * grid pane for each batch of images as it is found, and then change the image tagging manager's
+   * directory once the scan has finished or been cancelled. While the scan is in progress, the
+   * user may not switch modes, start a slideshow, or change the tag filters. If the scan fails, the
+   * user is told why, and may use the controls again.
+   *
+   * @param directoryPath a path to a directory, as a String.
+   */
+  private void scanDirectory(String directoryPath) {
+    setScanInProgress(true);
+    imageCount.setText("Scanning: 0 images found");
+    directoryScan =
+        new Task<List<String>>() {
+          @Override
+          protected List<String> call() {
+            return imageTaggingManager.findImages(
+                directoryPath, imagePaths -> Platform.runLater(() -> addScannedImages(imagePaths)));
+          }
+        };
+    directoryScan.setOnSucceeded(event -> finishScan(directoryPath, directoryScan.getValue()));
+    directoryScan.setOnFailed(event -> abandonScan(directoryScan.getException()));
+    directoryScan.setOnCancelled(event -> abandonScan(null));
+    Thread scanThread = new Thread(directoryScan);
+    scanThread.setDaemon(true);
+    scanThread.start();
+  }
+
+  /**
+   * Add a thumbnail to the end of the images grid pane for each of the images at imagePaths, which
+   * were found by the scan in progress, and update the number of images found.
+   *
+   * @param imagePaths a list of paths to images, as Strings.
+   */
+  private void addScannedImages(List<String> imagePaths) {
+    if (directoryScan == null) {
+      return;
+    }
+    for (String path : imagePaths) {
+      int imagesPlaced = grid.getChildren().size();
+      int row = imagesPlaced / COLUMNS_OF_PICTURES;
+      int col = imagesPlaced % COLUMNS_OF_PICTURES;
+      Thumbnail thisThumbnail =
+          new Thumbnail(path, imageTaggingManager.getImagesName(path), 200, 200, 220);
+      grid.add(thisThumbnail, col, row);
+      scannedThumbnails.put(path, thisThumbnail);
+    }
+    imageCount.setText("Scanning: " + scannedThumbnails.size() + " images found");
+  }
+
+  /**
+   * Change the image tagging manager's directory to the directory at directoryPath, whose images
+   * were found by the scan that has just finished, and then display those images in sorted order.
+   *
+   * @param directoryPath a path to a directory, as a String.
+   * @param imagePaths a list of paths to images, as Strings.
+   */
+  private void finishScan(String directoryPath, List<String> imagePaths) {
+    directoryScan = null;
+    imageTaggingManager.changeDirectory(directoryPath, imagePaths);
+    setScanInProgress(false);
+    /* The scan may have found tags that the program was not yet storing. */
+    populateUnfilteredTags();
+    loadImages();
+    scannedThumbnails.clear();
+    imageTaggingManager.watchDirectory(Platform::runLater, this::handleExternalChanges);
+  }
+
+  /**
+   * Stop waiting for the scan in progress, which has failed with error, error, or been cancelled,
+   * let the user use the controls that were disabled while it was in progress again, and tell the
+   * user why it failed, if it did. The images that have already been found remain on the screen.
+   *
+   * @param error the reason that the scan failed, or null if it was cancelled.
+   */
+  private void abandonScan(Throwable error) {
+    directoryScan = null;
+    setScanInProgress(false);
+    scannedThumbnails.clear();
+    if (error != null) {
+      error.printStackTrace();
+      imageCount.setText("Scan failed: " + grid.getChildren().size() + " images found");
+      new Alert(Alert.AlertType.ERROR, "The directory could not be scanned: " + error.getMessage())
+          .showAndWait();
+    } else {
+      imageCount.setText("Scan cancelled: " + grid.getChildren().size() + " images found");
+    }
+  }
+
+  /**
+   * Update the screen after changes that other programs made to the images at and below the
+   * current directory have been applied to the image tagging manager. In edit mode, the images
+   * that were selected, and still exist, remain selected.
+   */
+  private void handleExternalChanges() {
+    Set<String> selectedPaths = new HashSet<>();
+    for (Thumbnail thumb : selectedThumbnails) {
+      selectedPaths.add(thumb.getPath());
+    }
+    selectedThumbnails.clear();
+    loadImages();
+    if (editMode) {
+      for (Node thumb : grid.getChildren()) {
+        Thumbnail castedThumb = (Thumbnail) thumb;
+        if (selectedPaths.contains(castedThumb.getPath())) {
+          castedThumb.select();
+          selectedThumbnails.add(castedThumb);
+        }
+      }
+      updateTagsBasedOnSelection();
+    } else {
+      /* Images that were created may have tags that the program was not yet storing. */
+      populateUnfilteredTags();
+    }
+  }
+
+  /**
+   * Disable or enable the controls that may not be used while a scan is in progress.
+   *
+   * @param inProgress true if and only if a scan is in progress.
+   */
+  private void setScanInProgress(boolean inProgress) {
+    cancelScanButton.setVisible(inProgress);
+    enterModeButton.setDisable(inProgress);
+    selectSlideshow.setDisable(inProgress);
+    queryField.setDisable(inProgress);
+    topFlowPane.setDisable(inProgress);
+    bottomFlowPane.setDisable(inProgress);
+  }
+
+  /**
+   * Stop the scan in progress. The images that have already been found will remain on the screen.
+   */
+  @FXML
+  private void handleCancelScan() {
+    imageTaggingManager.cancelFindImages();
   }
 
   /**
@@ -190,13 +386,17 @@ public class MainScreenController {
       int row = imagesPlaced / COLUMNS_OF_PICTURES;
       int col = imagesPlaced % COLUMNS_OF_PICTURES;
 
-      Thumbnail thisThumbnail =
-          new Thumbnail(path, imageTaggingManager.getImagesName(path), 200, 200, 220);
+      /* Reuse the thumbnail that was displayed while the directory was being scanned, if there is one. */
+      Thumbnail thisThumbnail = scannedThumbnails.remove(path);
+      if (thisThumbnail == null) {
+        thisThumbnail = new Thumbnail(path, imageTaggingManager.getImagesName(path), 200, 200, 220);
+      }
 
       handleThumbnailPress(thisThumbnail);
       grid.add(thisThumbnail, col, row);
       imagesPlaced += 1;
     }
+    imageCount.setText(imagesPlaced + " images");
   }
 
   /**
@@ -243,9 +443,19 @@ public class MainScreenController {
         });
   }
 
-  /** Return to the start screen. Set the image tagging manager's directory to null. */
+  /**
+   * Return to the start screen. Stop the scan in progress, if any, and set the image tagging
+   * manager's directory to null.
+   */
   @FXML
   private void handleBackToStart() {
+    if (directoryScan != null) {
+      directoryScan.setOnSucceeded(null);
+      directoryScan.setOnFailed(null);
+      directoryScan.setOnCancelled(null);
+      directoryScan = null;
+      imageTaggingManager.cancelFindImages();
+    }
     try {
       FXMLLoader loader = new FXMLLoader(getClass().getResource("../view/StartScreen.fxml"));
       Scene startScreen = new Scene(loader.load());
@@ -268,6 +478,8 @@ public class MainScreenController {
     textField.clear();
     addButton.setVisible(false);
     deselect.setVisible(false);
+    queryField.setVisible(true);
+    queryField.setText(imageTaggingManager.getTagQuery());
     enterModeButton.setText("Enter Edit Mode");
     selectedThumbnails.clear();
     tagsToRemove.clear();
@@ -300,6 +512,7 @@ public class MainScreenController {
     textField.clear();
     addButton.setVisible(true);
     deselect.setVisible(true);
+    queryField.setVisible(false);
     enterModeButton.setText("Enter View Mode");
     populateAddTags();
   }
@@ -398,6 +611,23 @@ public class MainScreenController {
     }
   }
 
+  /**
+   * Return the tags that are stored by the program, that are not in tagsToExclude, and that match
+   * the current value of the add tag text field: all of them, alphabetically, if the text field is
+   * empty, and otherwise the most relevant of those that contain its text or are spelled like it,
+   * so that tags are still found when the text has a typo.
+   *
+   * @param tagsToExclude a collection of tags.
+   * @return a list of tags.
+   */
+  private List<String> getMatchingTags(Collection<String> tagsToExclude) {
+    String text = textField.getText().trim();
+    if (text.isEmpty()) {
+      return imageTaggingManager.getAllTagsInMasterCollection(tagsToExclude, text);
+    }
+    return imageTaggingManager.getTagSuggestions(text, tagsToExclude, TAG_SUGGESTION_LIMIT);
+  }
+
   /**
    * Update the tags-that-are-available-to-be-added flow pane so that it display the tags that are
    * stored by the program, such that at least one of the currently selected images does not have
@@ -406,9 +636,7 @@ public class MainScreenController {
   private void populateAddTags() {
     List<Node> flowPaneChildren = bottomFlowPane.getChildren();
     flowPaneChildren.clear();
-    for (String tag :
-        imageTaggingManager.getAllTagsInMasterCollection(
-            tagsAllSelectedHave, textField.getText())) {
+    for (String tag : getMatchingTags(tagsAllSelectedHave)) {
       Tag newTag = new Tag(tag, true);
       flowPaneChildren.add(newTag);
       newTag.setOnMouseClicked(
@@ -459,8 +687,36 @@ public class MainScreenController {
   }
 
   /**
-   * Populate the pane containing the tags that are currently being used as filters. Note: this is
-   * for use in view mode only.
+   * Filter the images by the query that the user has entered in the query field. If the query is
+   * not valid, tell the user why, and leave the filters as they were. Note: this is for use in view
+   * mode only.
+   */
+  @FXML
+  private void handleApplyQuery() {
+    try {
+      imageTaggingManager.setTagQuery(queryField.getText());
+    } catch (IllegalArgumentException e) {
+      new Alert(Alert.AlertType.ERROR, "Invalid query: " + e.getMessage()).showAndWait();
+      return;
+    }
+    updateFilters();
+  }
+
+  /**
+   * Update the images grid pane, the query field, and both tag panes after the tag filters have
+   * changed. Note: this is for use in view mode only.
+   */
+  private void updateFilters() {
+    loadImages();
+    queryField.setText(imageTaggingManager.getTagQuery());
+    populateFilteredTags();
+    populateUnfilteredTags();
+  }
+
+  /**
+   * Populate the pane containing the terms of the query that are currently being used as filters,
+   * each of which is usually a tag. Clicking a term removes it from the query. Note: this is for use
+   * in view mode only.
    */
   private void populateFilteredTags() {
     List<Node> flowPaneChildren = topFlowPane.getChildren();
@@ -471,33 +727,27 @@ public class MainScreenController {
       newTag.setOnMouseClicked(
           event -> {
             imageTaggingManager.removeTagFilter(tag);
-            loadImages();
-            populateFilteredTags();
-            populateUnfilteredTags();
+            updateFilters();
           });
     }
   }
 
   /**
-   * Populate the pane that contains the tags that can be added as filters with all tags being
-   * stored by the program that are not currently being used as filters, and that contain the
-   * current value of the add tag text field (ignoring case). Note: this is for use in view mode
-   * only.
+   * Populate the pane that contains the tags that can be added as filters with the tags being
+   * stored by the program that are not currently being used as filters, and that match the current
+   * value of the add tag text field, as described in getMatchingTags. Note: this is for use in view
+   * mode only.
    */
   private void populateUnfilteredTags() {
     List<Node> flowPaneChildren = bottomFlowPane.getChildren();
     flowPaneChildren.clear();
-    for (String tag :
-        imageTaggingManager.getAllTagsInMasterCollection(
-            imageTaggingManager.getFilteredTags(), textField.getText().trim())) {
+    for (String tag : getMatchingTags(imageTaggingManager.getFilteredTags())) {
       Tag newTag = new Tag(tag, true);
       flowPaneChildren.add(newTag);
       newTag.setOnMouseClicked(
           event -> {
             imageTaggingManager.addTagFilter(tag);
-            loadImages();
-            populateFilteredTags();
-            populateUnfilteredTags();
+            updateFilters();
           });
     }
   }
@@ -1,13 +1,17 @@
 package controller;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.text.Text;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import model.ImageTaggingManager;
+import model.LogReader;
+import view.LogLineList;
 
 import java.io.File;
 import java.io.IOException;
@@ -43,20 +47,97 @@ public class StartScreenController {
 
   /**
    * Render, on a new stage, a log that displays all changes made to images through the program,
-   * including a timestamp for each change.
+   * including a timestamp for each change, newest first. The log is opened in the background, and
+   * only the lines that are visible are read from it, so that a log of any length can be viewed.
+   * The lines logged while the stage is open are added whenever it is focused.
    */
   @FXML
-  private void handleViewLog() throws IOException {
-    ScrollPane root = new ScrollPane();
-    root.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-    Text text = new Text();
-    text.setText(imageTaggingManager.readLogFile());
-    text.setWrappingWidth(800);
-    root.setContent(text);
-    Scene scene = new Scene(root);
-    Stage stage = new Stage();
-    stage.setScene(scene);
-    stage.show();
+  private void handleViewLog() {
+    ListView<String> lines = new ListView<>();
+    lines.setPrefSize(800, 600);
+    /* Every line is the same height, so the list never has to measure the lines it skips over. */
+    lines.setFixedCellSize(24);
+    lines.setPlaceholder(new Label("Loading the log..."));
+    Stage logStage = new Stage();
+    logStage.setScene(new Scene(lines));
+    /* Store the reader once it has been opened, so that closing the stage closes it. */
+    LogReader[] openReader = new LogReader[1];
+    logStage.setOnHidden(
+        hidden -> {
+          if (openReader[0] != null) {
+            closeLogReader(openReader[0]);
+            openReader[0] = null;
+          }
+        });
+    logStage.show();
+
+    Task<LogReader> opening =
+        new Task<LogReader>() {
+          @Override
+          protected LogReader call() throws IOException {
+            return imageTaggingManager.openLogFile();
+          }
+        };
+    opening.setOnSucceeded(
+        event -> {
+          LogReader reader = opening.getValue();
+          /* The stage may have been closed while the log was being opened. */
+          if (!logStage.isShowing()) {
+            closeLogReader(reader);
+            return;
+          }
+          openReader[0] = reader;
+          LogLineList logLines = new LogLineList(reader);
+          lines.setItems(logLines);
+          lines.setPlaceholder(new Label("No changes have been logged."));
+          logStage
+              .focusedProperty()
+              .addListener(
+                  (observable, wasFocused, focused) -> {
+                    if (focused) {
+                      imageTaggingManager
+                          .flushLogs()
+                          .whenComplete(
+                              (result, error) ->
+                                  Platform.runLater(() -> refreshLog(logStage, logLines)));
+                    }
+                  });
+        });
+    opening.setOnFailed(event -> lines.setPlaceholder(new Label("The log could not be read.")));
+    Thread openingThread = new Thread(opening);
+    openingThread.setDaemon(true);
+    openingThread.start();
+  }
+
+  /**
+   * Close reader, a reader of the log that is no longer displayed.
+   *
+   * @param reader a LogReader.
+   */
+  private static void closeLogReader(LogReader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Add the lines that have been logged since the log was displayed, or last refreshed, to the
+   * top of the displayed log, unless its stage has been closed.
+   *
+   * @param logStage the stage that displays the log.
+   * @param logLines the lines of the displayed log.
+   */
+  private void refreshLog(Stage logStage, LogLineList logLines) {
+    if (!logStage.isShowing()) {
+      return;
+    }
+    try {
+      logLines.refresh();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
   }
 
   /**
@@ -77,8 +158,10 @@ public class StartScreenController {
 
         MainScreenController controller = loader.getController();
         stage.setScene(mainScreen);
-        imageTaggingManager.changeDirectory(selectedDirectory.toString());
-        controller.initialize(stage, imageTaggingManager);
+        /*
+         * The main screen scans the directory in the background, and displays the images as they are found.
+         */
+        controller.initialize(stage, imageTaggingManager, selectedDirectory.toString());
 
       } catch (IOException e) {
         e.printStackTrace();
@@ -1,9 +1,11 @@
 package controller;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.FlowPane;
@@ -12,7 +14,7 @@ import model.ImageTaggingManager;
 import view.Tag;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Collections;
 
 /**
  * A class that is responsible for allowing the user to manage a collection of tags, whose existence
@@ -24,14 +26,12 @@ import java.util.List;
  */
 public class TagManagementScreenController {
 
+  /** Store the text added to the stage's title while a tag is being removed from every image. */
+  private static final String REMOVING_TAG_TITLE = " - removing tag";
+
   /** Store the stage upon which this scene occurs. */
   private Stage stage;
 
-  /**
-   * Store a list of all of the tags that are stored by the program, sorted in alphabetical order.
-   */
-  private List<String> allTagsStoredByProgram;
-
   /**
    * Store an ImageTaggingManager object, which is responsible for all interactions with the model.
    */
@@ -50,6 +50,12 @@ public class TagManagementScreenController {
    */
   @FXML public FlowPane tagsFlowPane;
 
+  /**
+   * Store the GUI object that allows the user to stop removing a tag from every image, which is
+   * only enabled while a tag is being removed.
+   */
+  @FXML public Button cancelRemovalButton;
+
   /**
    * Initialize the tag management screen.
    *
@@ -59,6 +65,7 @@ public class TagManagementScreenController {
   void initialize(Stage stage, ImageTaggingManager imageTaggingManager) {
     this.stage = stage;
     this.imageTaggingManager = imageTaggingManager;
+    cancelRemovalButton.setDisable(!imageTaggingManager.isRemovingTag());
     populateTagsFlowPane();
     /*
      * Set the tags flow pane so that it updates based on the current value of the add tag text field.
@@ -69,33 +76,31 @@ public class TagManagementScreenController {
   }
 
   /**
-   * Get an updated list of the tags that the program is storing, and then populate the tags pane
-   * with those tags in the updated list that contain the current value of the add tag text entry
-   * (ignoring case).
+   * Populate the tags pane with those tags that the program is storing that contain the current
+   * value of the add tag text entry (ignoring case).
    */
   @FXML
   private void populateTagsFlowPane() {
-    allTagsStoredByProgram = imageTaggingManager.getAllTagsInMasterCollection();
     populateTagsFlowPaneBasedOnExistingListOfTags();
   }
 
   /**
    * Populate the tags pane with those tags that contain the current value of the add tag text entry
-   * (ignoring case). Note: unlike populateTagsFlowPane, this method does not first get an updated
-   * list of tags from the image tagging manager.
+   * (ignoring case). Note: the image tagging manager looks the tags up in an index, so this is fast
+   * enough to run every time the text entry changes.
    */
   @FXML
   private void populateTagsFlowPaneBasedOnExistingListOfTags() {
     tagsFlowPane.getChildren().clear();
-    for (String tag : allTagsStoredByProgram) {
-      if (tag.toLowerCase().contains(addTagTextField.getText().toLowerCase())) {
-        /*
-         * The tags will be displayed with a red 'x' sign.
-         */
-        Tag newTag = new Tag(tag, false);
-        tagsFlowPane.getChildren().add(newTag);
-        newTag.setOnMouseClicked(event -> removeTag(newTag.getTag()));
-      }
+    for (String tag :
+        imageTaggingManager.getAllTagsInMasterCollection(
+            Collections.emptyList(), addTagTextField.getText())) {
+      /*
+       * The tags will be displayed with the number of images that have them, and a red 'x' sign.
+       */
+      Tag newTag = new Tag(tag, imageTaggingManager.getTagUsageCount(tag), false);
+      tagsFlowPane.getChildren().add(newTag);
+      newTag.setOnMouseClicked(event -> removeTag(newTag.getTag()));
     }
   }
 
@@ -139,6 +144,13 @@ public class TagManagementScreenController {
    * @param tag a tag.
    */
   private void removeTag(String tag) {
+    /* Only one tag may be removed from every image at a time. */
+    if (imageTaggingManager.isRemovingTag()) {
+      String busyAlertText =
+          "A tag is still being removed from all images. Wait for it to finish, or cancel it.";
+      new Alert(Alert.AlertType.INFORMATION, busyAlertText, ButtonType.OK).showAndWait();
+      return;
+    }
     String removeAlertText =
         "Are you sure you want to remove tag '" + tag + "' from the program's master collection?";
     Alert confirmRemoveAlert =
@@ -159,7 +171,28 @@ public class TagManagementScreenController {
       imageRemovalAlert.showAndWait();
       /* Handle the case where the user clicked 'yes' to removing the tag from all images. */
       if (imageRemovalAlert.getResult() == ButtonType.YES) {
-        imageTaggingManager.removeTagFromMasterCollectionAndDeleteFromAllImages(tag);
+        /* Rename the images in the background, with the progress in the title. */
+        String title = getBaseTitle();
+        cancelRemovalButton.setDisable(false);
+        imageTaggingManager.removeTagFromAllImages(
+            tag,
+            Platform::runLater,
+            (processedImages, totalImages) -> {
+              if (processedImages < totalImages) {
+                stage.setTitle(
+                    title
+                        + REMOVING_TAG_TITLE
+                        + " ("
+                        + processedImages
+                        + " of "
+                        + totalImages
+                        + ")");
+              } else {
+                stage.setTitle(title);
+                cancelRemovalButton.setDisable(true);
+                populateTagsFlowPane();
+              }
+            });
       }
       /* Handle the case where the user did not click 'yes' to removing the tag from all images, by only deleting the
        * tag from the master collection.
@@ -170,4 +203,32 @@ public class TagManagementScreenController {
       populateTagsFlowPane();
     }
   }
+
+  /**
+   * Stop removing a tag from every image, keeping the renames that have been made, and, if some
+   * images were not renamed, tell the user that the tag has been kept, because they still have it.
+   */
+  @FXML
+  private void cancelTagRemoval() {
+    int remainingImages = imageTaggingManager.cancelTagRemoval();
+    stage.setTitle(getBaseTitle());
+    cancelRemovalButton.setDisable(true);
+    populateTagsFlowPane();
+    if (remainingImages > 0) {
+      String keptAlertText =
+          "The tag was kept, because " + remainingImages + " images still have it.";
+      new Alert(Alert.AlertType.INFORMATION, keptAlertText, ButtonType.OK).showAndWait();
+    }
+  }
+
+  /**
+   * Return the stage's title, without the progress of a tag removal that may be showing in it.
+   *
+   * @return a title.
+   */
+  private String getBaseTitle() {
+    String title = stage.getTitle();
+    int progress = title.indexOf(REMOVING_TAG_TITLE);
+    return progress < 0 ? title : title.substring(0, progress);
+  }
 }
@@ -0,0 +1,198 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class that is responsible for renaming a batch of image files in the computer's file system,
+ * in parallel, on a bounded pool of background threads. The images are grouped by directory, and
+ * the images in each directory are renamed one after another, by a single thread, so that two
+ * images that are renamed to the same name cannot both take it. Each rename is published as soon
+ * as the image has been moved, so that it can be logged before anything else happens to the image,
+ * the progress is published once each directory has been renamed, and the images that were
+ * renamed, and their new paths, are published once more, at the end, so that the program's data
+ * can be updated in a single batch.
+ */
+class BatchRenamer {
+
+  /** An object that is told the results of renaming a batch, on one of the pool's threads. */
+  interface Listener {
+
+    /**
+     * Receive the old and new paths of an image, as soon as it has been moved.
+     *
+     * @param oldPath the image's old path, as a String.
+     * @param newPath the image's new path, as a String.
+     */
+    void imageRenamed(String oldPath, String newPath);
+
+    /**
+     * Receive the number of images in a directory that have been renamed, or failed to be.
+     *
+     * @param processedImages a number of images.
+     */
+    void imagesRenamed(int processedImages);
+
+    /**
+     * Receive a map from the old paths of the images that were renamed to their new paths, once
+     * every directory has been renamed, or the renaming has been cancelled.
+     *
+     * @param renamed a map from old paths to new paths, as Strings.
+     */
+    void renamingFinished(Map<String, String> renamed);
+  }
+
+  /** Store the pool that the images are renamed on. */
+  private final ExecutorService pool;
+
+  /** Store a map from the old paths of the images renamed so far to their new paths. */
+  private final Map<String, String> renamed = new HashMap<>();
+
+  /** Store true if and only if the renaming has been cancelled. */
+  private volatile boolean cancelled;
+
+  /**
+   * Create a new BatchRenamer object that renames images in at most parallelism directories at
+   * once.
+   *
+   * @param parallelism the number of threads used to rename images.
+   */
+  BatchRenamer(int parallelism) {
+    pool =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              Thread thread = new Thread(runnable, "BatchRenamer");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Start renaming each image whose path is a key of renames to the path that it maps to, or to a
+   * free path like it, in the background, and tell listener the progress, and the results. This
+   * method may only be called once.
+   *
+   * @param renames a map from old paths to new paths, as Strings.
+   * @param listener the listener that is told the results.
+   */
+  void rename(Map<String, String> renames, Listener listener) {
+    Map<String, List<Map.Entry<String, String>>> renamesByDirectory = new HashMap<>();
+    for (Map.Entry<String, String> rename : renames.entrySet()) {
+      String directory = PathFormatter.getDirectory(rename.getKey());
+      renamesByDirectory.computeIfAbsent(directory, key -> new ArrayList<>()).add(rename);
+    }
+    AtomicInteger remainingDirectories = new AtomicInteger(renamesByDirectory.size());
+    if (renamesByDirectory.isEmpty()) {
+      pool.execute(() -> listener.renamingFinished(new HashMap<>()));
+    }
+    for (List<Map.Entry<String, String>> directoryRenames : renamesByDirectory.values()) {
+      pool.execute(
+          () -> {
+            renameImages(directoryRenames, listener);
+            /* The thread that renames the images in the last directory publishes the results. */
+            if (remainingDirectories.decrementAndGet() == 0) {
+              listener.renamingFinished(getRenamed());
+            }
+          });
+    }
+    /* The threads finish once every directory has been renamed. */
+    pool.shutdown();
+  }
+
+  /**
+   * Stop renaming images, once the images that are being renamed have been, and return a map from
+   * the old paths of the images that were renamed to their new paths. The listener is still told
+   * that the renaming has finished.
+   *
+   * @return a map from old paths to new paths, as Strings.
+   */
+  Map<String, String> cancel() {
+    cancelled = true;
+    pool.shutdown();
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return getRenamed();
+  }
+
+  /**
+   * Rename each of the images in directoryRenames, one after another, unless the renaming has been
+   * cancelled, and tell listener how many were processed.
+   *
+   * @param directoryRenames a list of entries from old paths to new paths, as Strings, in one
+   *     directory.
+   * @param listener the listener that is told the results.
+   */
+  private void renameImages(List<Map.Entry<String, String>> directoryRenames, Listener listener) {
+    int processed = 0;
+    for (Map.Entry<String, String> rename : directoryRenames) {
+      if (cancelled) {
+        return;
+      }
+      try {
+        String newPath = move(rename.getKey(), rename.getValue());
+        listener.imageRenamed(rename.getKey(), newPath);
+        synchronized (renamed) {
+          renamed.put(rename.getKey(), newPath);
+        }
+      } catch (IOException e) {
+        System.err.print("Image could not be moved");
+        e.printStackTrace();
+      }
+      processed++;
+    }
+    listener.imagesRenamed(processed);
+  }
+
+  /**
+   * Return a copy of the map from the old paths of the images renamed so far to their new paths.
+   *
+   * @return a map from old paths to new paths, as Strings.
+   */
+  private Map<String, String> getRenamed() {
+    synchronized (renamed) {
+      return new HashMap<>(renamed);
+    }
+  }
+
+  /**
+   * Move the image file at oldPath to newPath, or, if there is already a file at newPath, to the
+   * first path like it, with " copy " and a number added to the image's name, that is free, and
+   * return the path that the image was moved to. If the paths are the same, do nothing.
+   *
+   * @param oldPath a path to an image, as a String.
+   * @param newPath a new path for the image, as a String.
+   * @return the image's new path, as a String.
+   * @throws IOException if the image could not be moved.
+   */
+  static String move(String oldPath, String newPath) throws IOException {
+    if (oldPath.equals(newPath)) {
+      return newPath;
+    }
+    File destination = new File(newPath);
+    if (destination.exists()) {
+      String imageName = PathFormatter.getName(newPath);
+      int index = 1;
+      while (destination.exists()) {
+        newPath = PathFormatter.rename(newPath, imageName + " copy " + index);
+        destination = new File(newPath);
+        index++;
+      }
+    }
+    Files.move(Paths.get(oldPath), Paths.get(newPath));
+    return newPath;
+  }
+}
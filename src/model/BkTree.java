@@ -0,0 +1,250 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that is responsible for finding, among a set of Strings, those that are within a given
+ * Damerau-Levenshtein distance of a given String, ignoring case, without measuring the distance to
+ * every String. The Strings are stored in a BK-tree: each node stores a lower-cased String, and the
+ * child of a node along the edge labelled d stores Strings at distance d from it. Since the
+ * distance is a metric, the Strings within distance r of a String at distance d from a node can
+ * only be below the edges labelled d - r to d + r, so the other edges are never followed.
+ */
+class BkTree {
+
+  /** Store the root of the tree, or null if no String has been added. */
+  private Node root;
+
+  /** Store the nodes of the tree, by lower-cased String. */
+  private final Map<String, Node> nodes = new HashMap<>();
+
+  /** Store the number of nodes that no longer store any Strings. */
+  private int emptyNodes;
+
+  /** Store the table of distances between prefixes that distance fills in, to reuse it. */
+  private int[][] table = new int[1][1];
+
+  /**
+   * Store, for each character, the last row of the table in which distance saw it in its first
+   * String, or zero. This is all zeros between calls to distance.
+   */
+  private final int[] lastRow = new int[Character.MAX_VALUE + 1];
+
+  /**
+   * Add string, s, to this tree, if it is not already in it.
+   *
+   * @param s a String.
+   */
+  void add(String s) {
+    String key = s.toLowerCase();
+    Node node = nodes.get(key);
+    if (node == null) {
+      node = new Node(key);
+      nodes.put(key, node);
+      insert(node);
+    } else if (node.strings.contains(s)) {
+      return;
+    } else if (node.strings.isEmpty()) {
+      emptyNodes--;
+    }
+    node.strings.add(s);
+  }
+
+  /**
+   * Remove string, s, from this tree, if it is in it. Note: the node that stored s is left in the
+   * tree, since the nodes below it are placed by their distance to it, until more than half of the
+   * nodes are empty, when the tree is rebuilt.
+   *
+   * @param s a String.
+   */
+  void remove(String s) {
+    Node node = nodes.get(s.toLowerCase());
+    if (node == null || !node.strings.remove(s)) {
+      return;
+    }
+    if (node.strings.isEmpty() && ++emptyNodes > nodes.size() / 2) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Call consumer, for each String in this tree within distance maxDistance of s, with that String
+   * and its distance from s. At most maxVisits nodes are visited, which bounds the time taken on a
+   * large tree, at the cost of missing some of the Strings if there are more nodes to visit. Nodes
+   * nearer the root are visited first, and each visit measures one distance. Return the number of
+   * nodes that were visited.
+   *
+   * @param s a String.
+   * @param maxDistance the greatest distance of a String that is found.
+   * @param maxVisits the greatest number of nodes to visit.
+   * @param consumer a MatchConsumer.
+   * @return the number of nodes visited.
+   */
+  int find(String s, int maxDistance, int maxVisits, MatchConsumer consumer) {
+    if (root == null) {
+      return 0;
+    }
+    String key = s.toLowerCase();
+    Deque<Node> toVisit = new ArrayDeque<>();
+    toVisit.add(root);
+    int visits = 0;
+    while (visits < maxVisits && !toVisit.isEmpty()) {
+      visits++;
+      Node node = toVisit.remove();
+      int distance = distance(key, node.key);
+      if (distance <= maxDistance) {
+        for (String match : node.strings) {
+          consumer.accept(match, distance);
+        }
+      }
+      for (int edge = Math.max(distance - maxDistance, 1); edge <= distance + maxDistance; edge++) {
+        Node child = node.children.get(edge);
+        if (child != null) {
+          toVisit.add(child);
+        }
+      }
+    }
+    return visits;
+  }
+
+  /**
+   * Insert node, which has no children, into the tree.
+   *
+   * @param node a Node.
+   */
+  private void insert(Node node) {
+    if (root == null) {
+      root = node;
+      return;
+    }
+    Node parent = root;
+    while (true) {
+      int distance = distance(node.key, parent.key);
+      Node child = parent.children.get(distance);
+      if (child == null) {
+        parent.children.put(distance, node);
+        return;
+      }
+      parent = child;
+    }
+  }
+
+  /** Rebuild the tree from the nodes that still store Strings. */
+  private void rebuild() {
+    List<Node> kept = new ArrayList<>();
+    for (Node node : nodes.values()) {
+      if (!node.strings.isEmpty()) {
+        kept.add(new Node(node.key, node.strings));
+      }
+    }
+    root = null;
+    nodes.clear();
+    emptyNodes = 0;
+    for (Node node : kept) {
+      nodes.put(node.key, node);
+      insert(node);
+    }
+  }
+
+  /**
+   * Return the Damerau-Levenshtein distance between a and b: the least number of insertions,
+   * deletions and substitutions of characters, and transpositions of adjacent characters, that
+   * turn a into b. Unlike the more common restricted distance, which may not edit a substring
+   * twice, this distance is a metric, which the tree relies on.
+   *
+   * @param a a String.
+   * @param b a String.
+   * @return a distance.
+   */
+  int distance(String a, String b) {
+    int n = a.length();
+    int m = b.length();
+    int infinity = n + m;
+    /* Row and column zero hold infinity, so d[i + 1][j + 1] is the distance between prefixes. */
+    if (table.length < n + 2 || table[0].length < m + 2) {
+      table = new int[Math.max(table.length, n + 2)][Math.max(table[0].length, m + 2)];
+    }
+    int[][] d = table;
+    d[0][0] = infinity;
+    for (int i = 0; i <= n; i++) {
+      d[i + 1][0] = infinity;
+      d[i + 1][1] = i;
+    }
+    for (int j = 0; j <= m; j++) {
+      d[0][j + 1] = infinity;
+      d[1][j + 1] = j;
+    }
+    for (int i = 1; i <= n; i++) {
+      int lastMatchingColumn = 0;
+      for (int j = 1; j <= m; j++) {
+        int k = lastRow[b.charAt(j - 1)];
+        int l = lastMatchingColumn;
+        int cost = 1;
+        if (a.charAt(i - 1) == b.charAt(j - 1)) {
+          cost = 0;
+          lastMatchingColumn = j;
+        }
+        d[i + 1][j + 1] =
+            Math.min(
+                Math.min(d[i][j] + cost, d[i + 1][j] + 1),
+                Math.min(d[i][j + 1] + 1, d[k][l] + (i - k - 1) + 1 + (j - l - 1)));
+      }
+      lastRow[a.charAt(i - 1)] = i;
+    }
+    /* Clear lastRow for the next call, which is faster than allocating it again. */
+    for (int i = 0; i < n; i++) {
+      lastRow[a.charAt(i)] = 0;
+    }
+    return d[n + 1][m + 1];
+  }
+
+  /** An action to take on each String that is found. */
+  interface MatchConsumer {
+
+    /**
+     * Take the action on match, a String that was found at distance distance.
+     *
+     * @param match a String.
+     * @param distance its distance from the String that was searched for.
+     */
+    void accept(String match, int distance);
+  }
+
+  /** A node of the tree. */
+  private static class Node {
+
+    /** Store the lower-cased String at this node. */
+    private final String key;
+
+    /** Store the Strings whose lower-cased text is key, which may be none. */
+    private final List<String> strings;
+
+    /** Store the children of this node, by their distance from it. */
+    private final Map<Integer, Node> children = new HashMap<>();
+
+    /**
+     * Create a new Node object, for the Strings whose lower-cased text is key.
+     *
+     * @param key a lower-cased String.
+     */
+    Node(String key) {
+      this(key, new ArrayList<>(1));
+    }
+
+    /**
+     * Create a new Node object, for strings, whose lower-cased text is key.
+     *
+     * @param key a lower-cased String.
+     * @param strings the Strings whose lower-cased text is key.
+     */
+    Node(String key, List<String> strings) {
+      this.key = key;
+      this.strings = strings;
+    }
+  }
+}
@@ -0,0 +1,319 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class that is responsible for finding the paths of all of the image files at and below a
+ * directory. Every directory is listed by its own fork/join task, so sibling directories are
+ * listed in parallel, and the type of each entry is taken from the attributes that are read along
+ * with the directory listing, rather than from a separate call for every entry. A directory that
+ * has not been modified since it was last listed is not listed again; its listing is taken from a
+ * scan cache instead.
+ */
+class DirectoryCrawler {
+
+  /** Store the largest number of image paths that are held back before being published. */
+  private static final int BATCH_SIZE = 256;
+
+  /** Store the longest time, in milliseconds, that found image paths are held back. */
+  private static final long BATCH_INTERVAL = 100;
+
+  /** Store the pool that the directory listing tasks are run on. */
+  private final ForkJoinPool pool;
+
+  /** Store the listings of the directories that have previously been crawled. */
+  private final ScanCache scanCache;
+
+  /** Store the state of the crawl in progress, or null if no crawl is in progress. */
+  private volatile CrawlState currentCrawl;
+
+  /**
+   * Create a new DirectoryCrawler object that lists at most parallelism directories at once, and
+   * reuses the listings in scanCache for directories that have not been modified.
+   *
+   * @param parallelism the number of threads used to list directories.
+   * @param scanCache a ScanCache object.
+   */
+  DirectoryCrawler(int parallelism, ScanCache scanCache) {
+    pool = new ForkJoinPool(parallelism);
+    this.scanCache = scanCache;
+  }
+
+  /**
+   * Return the number of threads that this crawler uses to list directories.
+   *
+   * @return the parallelism level.
+   */
+  int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Return a list of the paths, as Strings, of all of the image files at and below the directory
+   * at root. The paths of the images in each directory come before the paths of the images in its
+   * subdirectories, and both are ordered by name, so the order of the list does not depend on the
+   * order in which the directories were listed.
+   *
+   * @param root a Path of a directory.
+   * @return a list of paths, as Strings.
+   * @throws IOException if root could not be listed.
+   */
+  List<String> crawl(Path root) throws IOException {
+    return crawl(root, null);
+  }
+
+  /**
+   * Return a list of the paths, as Strings, of all of the image files at and below the directory
+   * at root, in the same order as crawl(root). While the crawl is in progress, the paths that have
+   * been found are passed to listener in batches, in the order in which they were found. If the
+   * crawl is cancelled, return the paths of the images found so far.
+   *
+   * @param root a Path of a directory.
+   * @param listener an ImageBatchListener, or null.
+   * @return a list of paths, as Strings.
+   * @throws IOException if root could not be listed.
+   */
+  List<String> crawl(Path root, ImageBatchListener listener) throws IOException {
+    CrawlState state = new CrawlState(listener, scanCache);
+    currentCrawl = state;
+    try {
+      List<String> imagePaths = pool.invoke(new DirectoryTask(root, true, state));
+      state.flush();
+      /* Only a complete crawl shows which of the directories below root no longer exist. */
+      if (!state.cancelled) {
+        scanCache.retainVisited(root, state.visited);
+      }
+      return imagePaths;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      currentCrawl = null;
+    }
+  }
+
+  /**
+   * Stop the crawl in progress, if any. Directories that have not yet been listed are skipped, and
+   * the crawl returns the paths of the images that it has already found.
+   */
+  void cancel() {
+    CrawlState state = currentCrawl;
+    if (state != null) {
+      state.cancelled = true;
+    }
+  }
+
+  /** Stop the threads used by this crawler once the crawl in progress, if any, has finished. */
+  void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * The state shared by all of the tasks of a single crawl: whether it has been cancelled, the
+   * directories that have been visited, and the found image paths that have not yet been passed to
+   * the listener.
+   */
+  private static class CrawlState {
+
+    /** Store the listener that found image paths are passed to, or null. */
+    private final ImageBatchListener listener;
+
+    /** Store the listings of the directories that have previously been crawled. */
+    private final ScanCache scanCache;
+
+    /** Store the paths, as Strings, of the directories that have been visited by the crawl. */
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+    /** Store true if and only if the crawl has been cancelled. */
+    private volatile boolean cancelled;
+
+    /** Store the found image paths that have not yet been passed to the listener. */
+    private List<String> pending = new ArrayList<>();
+
+    /**
+     * Store the time, in milliseconds, at which a batch was last passed to the listener. It starts
+     * at zero so that the first images that are found are published immediately.
+     */
+    private long lastPublished;
+
+    /**
+     * Create a new CrawlState object, that passes found image paths to listener.
+     *
+     * @param listener an ImageBatchListener, or null.
+     * @param scanCache the listings of the directories that have previously been crawled.
+     */
+    CrawlState(ImageBatchListener listener, ScanCache scanCache) {
+      this.listener = listener;
+      this.scanCache = scanCache;
+    }
+
+    /**
+     * Hold back the paths in imagePaths, and pass all of the held back paths to the listener if
+     * there are enough of them, or if they have been held back for long enough.
+     *
+     * @param imagePaths a list of paths, as Strings.
+     */
+    void publish(List<String> imagePaths) {
+      if (listener == null || imagePaths.isEmpty()) {
+        return;
+      }
+      List<String> batch = null;
+      synchronized (this) {
+        pending.addAll(imagePaths);
+        long now = System.currentTimeMillis();
+        if (pending.size() >= BATCH_SIZE || now - lastPublished >= BATCH_INTERVAL) {
+          batch = pending;
+          pending = new ArrayList<>();
+          lastPublished = now;
+        }
+      }
+      /* Call the listener outside of the lock, so a slow listener does not hold up the crawl. */
+      if (batch != null) {
+        listener.imagesFound(batch);
+      }
+    }
+
+    /** Pass all of the held back paths to the listener. */
+    void flush() {
+      List<String> batch;
+      synchronized (this) {
+        batch = pending;
+        pending = new ArrayList<>();
+      }
+      if (listener != null && !batch.isEmpty()) {
+        listener.imagesFound(batch);
+      }
+    }
+  }
+
+  /** A task that lists a single directory, and forks a new task for each of its subdirectories. */
+  private static class DirectoryTask extends RecursiveTask<List<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Store the Path of the directory to list. */
+    private final Path directory;
+
+    /** Store true if and only if this task lists the directory at which the crawl started. */
+    private final boolean root;
+
+    /** Store the state of the crawl that this task is part of. */
+    private final CrawlState state;
+
+    /**
+     * Create a new task that lists the directory at directory.
+     *
+     * @param directory a Path of a directory.
+     * @param root true if and only if directory is the directory at which the crawl started.
+     * @param state the state of the crawl that this task is part of.
+     */
+    DirectoryTask(Path directory, boolean root, CrawlState state) {
+      this.directory = directory;
+      this.root = root;
+      this.state = state;
+    }
+
+    @Override
+    protected List<String> compute() {
+      if (state.cancelled) {
+        return new ArrayList<>();
+      }
+      state.visited.add(directory.toString());
+      ScanCache.DirectoryListing listing;
+      try {
+        /* A single call reads the last modified time, which decides whether a listing is needed. */
+        long lastModified = Files.getLastModifiedTime(directory).toMillis();
+        listing = state.scanCache.get(directory, lastModified);
+        if (listing == null) {
+          listing = list(lastModified);
+          state.scanCache.put(directory, listing);
+        }
+      } catch (IOException e) {
+        if (root) {
+          throw new UncheckedIOException(e);
+        }
+        /* A subdirectory that cannot be listed is skipped, rather than ending the whole crawl. */
+        System.err.println("Unable to list the directory " + directory);
+        return new ArrayList<>();
+      }
+
+      List<String> imagePaths = new ArrayList<>();
+      for (String imageName : listing.imageNames) {
+        imagePaths.add(directory.resolve(imageName).toString());
+      }
+      /* Publish this directory's images before listing its subdirectories. */
+      state.publish(imagePaths);
+
+      List<DirectoryTask> subtasks = new ArrayList<>();
+      for (String subdirectoryName : listing.subdirectoryNames) {
+        subtasks.add(new DirectoryTask(directory.resolve(subdirectoryName), false, state));
+      }
+      invokeAll(subtasks);
+      for (DirectoryTask subtask : subtasks) {
+        imagePaths.addAll(subtask.join());
+      }
+      return imagePaths;
+    }
+
+    /**
+     * Return a new listing of the names of the image files and subdirectories of this task's
+     * directory.
+     *
+     * @param lastModified the time, in milliseconds, at which the directory was last modified.
+     * @return a directory listing.
+     * @throws IOException if the directory could not be listed.
+     */
+    private ScanCache.DirectoryListing list(long lastModified) throws IOException {
+      List<String> imageNames = new ArrayList<>();
+      List<String> subdirectoryNames = new ArrayList<>();
+      /*
+       * Visit the entries of this directory only (a maximum depth of one), so that the directory
+       * stream is closed before any subdirectory is listed.  Entries are reported along with their
+       * attributes, which saves a separate call to check whether each entry is a directory.
+       */
+      Files.walkFileTree(
+          directory,
+          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+          1,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (attrs.isDirectory()) {
+                subdirectoryNames.add(file.getFileName().toString());
+              } else if (PathFormatter.isImage(file.toString())) {
+                imageNames.add(file.getFileName().toString());
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+              /*
+               * Only a failure to list the directory itself is an error.  An entry that cannot be
+               * read is skipped, in the same way as an entry that is not an image.
+               */
+              if (file.equals(directory)) {
+                throw e;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+      imageNames.sort(null);
+      subdirectoryNames.sort(null);
+      return new ScanCache.DirectoryListing(lastModified, imageNames, subdirectoryNames);
+    }
+  }
+}
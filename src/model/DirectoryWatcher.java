@@ -0,0 +1,295 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A class that is responsible for watching all of the directories at and below a directory for
+ * image files being created, deleted or renamed by other programs. The changes are gathered on a
+ * background thread, and are passed on in batches: a batch is passed on once no change has been
+ * seen for a short while, or once it has been gathering changes for long enough, so that a large
+ * copy results in a few large batches, rather than in one batch for each file.
+ */
+class DirectoryWatcher {
+
+  /** Store the time, in milliseconds, without any changes after which a batch is passed on. */
+  private static final long QUIET_PERIOD = 200;
+
+  /** Store the longest time, in milliseconds, that a batch gathers changes before it is passed on. */
+  private static final long MAXIMUM_DELAY = 1000;
+
+  /** Store the directory at and below which changes are watched for. */
+  private final Path root;
+
+  /** Store the executor that batches of changes are passed on with. */
+  private final Executor executor;
+
+  /** Store the consumer that batches of changes are passed to. */
+  private final Consumer<Changes> consumer;
+
+  /** Store the watch service that reports changes to the watched directories. */
+  private WatchService watchService;
+
+  /** Store a map from each watched directory to its watch key. */
+  private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+
+  /** Store the thread that gathers changes. */
+  private Thread thread;
+
+  /**
+   * Create a new DirectoryWatcher object, that watches the directories at and below root, and
+   * passes each batch of changes to consumer using executor.
+   *
+   * @param root a Path of a directory.
+   * @param executor the executor that batches are passed on with.
+   * @param consumer the consumer that batches are passed to.
+   */
+  DirectoryWatcher(Path root, Executor executor, Consumer<Changes> consumer) {
+    this.root = root;
+    this.executor = executor;
+    this.consumer = consumer;
+  }
+
+  /**
+   * Start watching for changes on a background thread.
+   *
+   * @throws IOException if a watch service could not be created.
+   */
+  void start() throws IOException {
+    watchService = FileSystems.getDefault().newWatchService();
+    thread = new Thread(this::run, "DirectoryWatcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Stop watching for changes. Changes that have not yet been passed on are discarded. */
+  void stop() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /** Register the directories, and then gather and pass on changes until stopped. */
+  private void run() {
+    register(root, null);
+    Changes changes = new Changes(root);
+    long batchStarted = 0;
+    try {
+      while (true) {
+        WatchKey key;
+        if (changes.isEmpty()) {
+          key = watchService.take();
+          batchStarted = System.currentTimeMillis();
+        } else {
+          long remaining = batchStarted + MAXIMUM_DELAY - System.currentTimeMillis();
+          long timeout = Math.max(0, Math.min(QUIET_PERIOD, remaining));
+          key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+        if (key != null) {
+          handleEvents(key, changes);
+        }
+        if (!changes.isEmpty()
+            && (key == null || System.currentTimeMillis() - batchStarted >= MAXIMUM_DELAY)) {
+          passOn(changes);
+          changes = new Changes(root);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      /* The watcher has been stopped. */
+    }
+  }
+
+  /**
+   * Add the changes reported by key to changes.
+   *
+   * @param key a watch key with pending events.
+   * @param changes the changes gathered so far.
+   */
+  private void handleEvents(WatchKey key, Changes changes) {
+    Path directory = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        /* Some events were lost, so the only way to be up to date is to list every directory. */
+        changes.rescan = true;
+        continue;
+      }
+      Path path = directory.resolve((Path) event.context());
+      String pathString = path.toString();
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+        if (Files.isDirectory(path)) {
+          /* A directory that was created, or moved in, may already contain images. */
+          register(path, changes);
+        } else if (PathFormatter.isImage(pathString)) {
+          changes.created.add(pathString);
+          changes.deleted.remove(pathString);
+        }
+      } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+        if (watchKeys.containsKey(path)) {
+          unregister(path);
+          changes.deletedDirectories.add(pathString);
+        } else if (PathFormatter.isImage(pathString)) {
+          changes.deleted.add(pathString);
+          changes.created.remove(pathString);
+        }
+      }
+    }
+    if (!key.reset()) {
+      watchKeys.remove(directory);
+    }
+  }
+
+  /**
+   * Watch the directories at and below directory. If changes is not null, add the images at and
+   * below directory to the images that have been created.
+   *
+   * @param directory a Path of a directory.
+   * @param changes the changes gathered so far, or null.
+   */
+  private void register(Path directory, Changes changes) {
+    try {
+      Files.walkFileTree(
+          directory,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              try {
+                watchKeys.put(
+                    dir,
+                    dir.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE));
+              } catch (IOException e) {
+                /* The directory's images are still found, but later changes to it will be missed. */
+                System.err.println("Unable to watch the directory " + dir);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (changes != null && PathFormatter.isImage(file.toString())) {
+                changes.created.add(file.toString());
+                changes.deleted.remove(file.toString());
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      System.err.println("Unable to list the directory " + directory);
+    }
+  }
+
+  /**
+   * Stop watching directory, and the directories below it.
+   *
+   * @param directory a Path of a directory.
+   */
+  private void unregister(Path directory) {
+    List<Path> toRemove = new ArrayList<>();
+    for (Path watched : watchKeys.keySet()) {
+      if (watched.startsWith(directory)) {
+        toRemove.add(watched);
+      }
+    }
+    for (Path watched : toRemove) {
+      watchKeys.remove(watched).cancel();
+    }
+  }
+
+  /**
+   * Pass changes on to the consumer. Before they are passed on, drop any change that is no longer
+   * true, since a file may have been created and then deleted again, or the other way around,
+   * within the same batch.
+   *
+   * @param changes a batch of changes.
+   */
+  private void passOn(Changes changes) {
+    changes.created.removeIf(path -> !Files.exists(Paths.get(path)));
+    changes.deleted.removeIf(path -> Files.exists(Paths.get(path)));
+    if (changes.rescan) {
+      changes.allImages = new ArrayList<>();
+      register(root, null);
+      try (Stream<Path> paths = Files.walk(root)) {
+        paths.map(Path::toString).filter(PathFormatter::isImage).forEach(changes.allImages::add);
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Unable to list the directory " + root);
+        changes.allImages = null;
+      }
+    }
+    executor.execute(() -> consumer.accept(changes));
+  }
+
+  /** A batch of changes to the image files at and below the watched directory. */
+  static class Changes {
+
+    /** Store the watched directory at and below which the changes were made. */
+    final Path root;
+
+    /** Store the paths, as Strings, of the images that have been created or moved in. */
+    final Set<String> created = new LinkedHashSet<>();
+
+    /** Store the paths, as Strings, of the images that have been deleted or moved out. */
+    final Set<String> deleted = new LinkedHashSet<>();
+
+    /** Store the paths, as Strings, of the directories that have been deleted or moved out. */
+    final Set<String> deletedDirectories = new LinkedHashSet<>();
+
+    /** Store true if and only if some changes may have been missed. */
+    boolean rescan;
+
+    /**
+     * Store the paths, as Strings, of all of the images at and below the watched directory, if
+     * some changes were missed and every directory has been listed again. Otherwise, store null.
+     */
+    List<String> allImages;
+
+    /**
+     * Create a new, empty, batch of changes to the image files at and below root.
+     *
+     * @param root a Path of the watched directory.
+     */
+    Changes(Path root) {
+      this.root = root;
+    }
+
+    /**
+     * Return true if and only if this batch contains no changes.
+     *
+     * @return a boolean value.
+     */
+    boolean isEmpty() {
+      return created.isEmpty() && deleted.isEmpty() && deletedDirectories.isEmpty() && !rescan;
+    }
+  }
+}
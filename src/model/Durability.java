@@ -0,0 +1,27 @@
+package model;
+
+/**
+ * How far the lines written to the program's logs are pushed towards the storage device before
+ * they count as written. Lines are written in groups, so each level applies once per group, rather
+ * than once per line.
+ */
+public enum Durability {
+
+  /**
+   * Leave the lines in the program's buffers, which are written out when they fill, or when the
+   * logs are closed. The lines are lost if the program crashes.
+   */
+  NONE,
+
+  /**
+   * Hand the lines to the operating system, so that they survive the program crashing, but not the
+   * computer crashing or losing power.
+   */
+  FLUSH,
+
+  /**
+   * Hand the lines to the operating system, and wait for it to write them to the storage device,
+   * so that they survive the computer crashing or losing power.
+   */
+  FSYNC
+}
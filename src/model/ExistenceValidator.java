@@ -0,0 +1,206 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class that is responsible for finding which of a collection of image paths no longer exist in
+ * the computer's file system, and where those that were renamed or moved by other programs went.
+ * The paths are grouped by directory, and each directory is listed once, rather than each path
+ * being checked on its own, and groups of directories are listed in parallel, on a pool of
+ * background threads. The progress is published in batches, one for each group of directories,
+ * as soon as the group has been listed, along with the identities of the files that were not
+ * known yet. Once every directory has been listed, the missing images are matched by identity, in
+ * a single pass, with the images in the listed directories that are not in the collection.
+ */
+class ExistenceValidator {
+
+  /** An object that is told the results of a validation, on one of the pool's threads. */
+  interface Listener {
+
+    /**
+     * Receive the number of paths checked in a group of directories, and the identities of the
+     * files at the paths in the group that did not have known identities.
+     *
+     * @param checkedImages the number of paths checked.
+     * @param foundIdentities a map from paths, as Strings, to identities.
+     */
+    void directoriesChecked(int checkedImages, Map<String, String> foundIdentities);
+
+    /**
+     * Receive the paths that are missing, once every directory has been listed, and a map from
+     * those of them whose files were found at other paths to those paths.
+     *
+     * @param missing a list of the missing paths, as Strings.
+     * @param moved a map from missing paths to new paths, as Strings.
+     */
+    void validationFinished(List<String> missing, Map<String, String> moved);
+  }
+
+  /** Store the number of directories that are listed by each task, and published as one batch. */
+  private static final int DIRECTORIES_PER_BATCH = 64;
+
+  /** Store the pool that the directories are listed on. */
+  private final ExecutorService pool;
+
+  /** Store true if and only if the validation has been cancelled. */
+  private volatile boolean cancelled;
+
+  /** Store the paths, as Strings, that have been found to be missing. */
+  private final List<String> missing = new ArrayList<>();
+
+  /** Store the paths, as Strings, of the images in the listed directories that are not checked. */
+  private final List<String> candidates = new ArrayList<>();
+
+  /**
+   * Create a new ExistenceValidator object that lists at most parallelism directories at once.
+   *
+   * @param parallelism the number of threads used to list directories.
+   */
+  ExistenceValidator(int parallelism) {
+    pool =
+        Executors.newFixedThreadPool(
+            parallelism,
+            runnable -> {
+              Thread thread = new Thread(runnable, "ExistenceValidator");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Start checking whether each of the paths in imagePaths exists, in the background, and where
+   * the files of those that do not, and whose identities are in identities, went. For each group
+   * of directories, listener is told the number of paths that were checked, and the identities of
+   * the files that are not in identities, and once every group has been listed, it is told which
+   * paths are missing, and where the files of some of them are now. The numbers of paths checked
+   * add up to the number of paths in imagePaths, unless the validation is cancelled. This method
+   * may only be called once.
+   *
+   * @param imagePaths a collection of paths to images, as Strings.
+   * @param identities a map from some of the paths, as Strings, to the identities of their files.
+   * @param listener the listener that is told the results.
+   */
+  void validate(
+      Collection<String> imagePaths, Map<String, String> identities, Listener listener) {
+    Map<File, List<String>> pathsByDirectory = new HashMap<>();
+    for (String imagePath : imagePaths) {
+      File directory = new File(imagePath).getAbsoluteFile().getParentFile();
+      pathsByDirectory.computeIfAbsent(directory, key -> new ArrayList<>()).add(imagePath);
+    }
+    List<Map.Entry<File, List<String>>> directories = new ArrayList<>(pathsByDirectory.entrySet());
+    int batchCount = (directories.size() + DIRECTORIES_PER_BATCH - 1) / DIRECTORIES_PER_BATCH;
+    AtomicInteger remainingBatches = new AtomicInteger(batchCount);
+    for (int start = 0; start < directories.size(); start += DIRECTORIES_PER_BATCH) {
+      List<Map.Entry<File, List<String>>> batch =
+          directories.subList(start, Math.min(directories.size(), start + DIRECTORIES_PER_BATCH));
+      pool.execute(
+          () -> {
+            try {
+              checkDirectories(batch, identities, listener);
+            } finally {
+              /*
+               * The thread that lists the last group of directories matches the missing images,
+               * even if listing a group failed, so that the validation always finishes.
+               */
+              if (remainingBatches.decrementAndGet() == 0 && !cancelled) {
+                finish(identities, listener);
+              }
+            }
+          });
+    }
+    /* The threads finish once every directory has been listed. */
+    pool.shutdown();
+  }
+
+  /** Stop checking paths. Batches that have already been published are not taken back. */
+  void cancel() {
+    cancelled = true;
+    pool.shutdownNow();
+  }
+
+  /**
+   * List each of the directories in batch, record the paths in them that are missing, and the
+   * images in them that are not being checked, and tell listener the number of paths checked,
+   * and the identities of the files at the paths that are not in identities, unless the
+   * validation has been cancelled.
+   *
+   * @param batch a list of entries from directories to the paths in them, as Strings.
+   * @param identities a map from some of the paths, as Strings, to the identities of their files.
+   * @param listener the listener that is told the results.
+   */
+  private void checkDirectories(
+      List<Map.Entry<File, List<String>>> batch,
+      Map<String, String> identities,
+      Listener listener) {
+    List<String> batchMissing = new ArrayList<>();
+    List<String> batchCandidates = new ArrayList<>();
+    Map<String, String> foundIdentities = new HashMap<>();
+    int checked = 0;
+    for (Map.Entry<File, List<String>> entry : batch) {
+      if (cancelled) {
+        return;
+      }
+      /* A directory that cannot be listed no longer exists, and neither do its images. */
+      String[] names = entry.getKey().list();
+      Set<String> present = names != null ? new HashSet<>(Arrays.asList(names)) : new HashSet<>();
+      for (String imagePath : entry.getValue()) {
+        String name = new File(imagePath).getName();
+        if (!present.remove(name)) {
+          batchMissing.add(imagePath);
+        } else if (!identities.containsKey(imagePath)) {
+          String identity = FileIdentity.of(imagePath);
+          if (identity != null) {
+            foundIdentities.put(imagePath, identity);
+          }
+        }
+      }
+      /* The images left are not being checked, so any of them may be a missing image, moved. */
+      for (String name : present) {
+        if (PathFormatter.isImage(name)) {
+          batchCandidates.add(new File(entry.getKey(), name).getPath());
+        }
+      }
+      checked += entry.getValue().size();
+    }
+    synchronized (this) {
+      missing.addAll(batchMissing);
+      candidates.addAll(batchCandidates);
+    }
+    if (!cancelled) {
+      listener.directoriesChecked(checked, foundIdentities);
+    }
+  }
+
+  /**
+   * Match the missing paths whose identities are in identities with the images in the listed
+   * directories that are not being checked, and tell listener the missing paths, and where the
+   * files of some of them are now.
+   *
+   * @param identities a map from some of the paths, as Strings, to the identities of their files.
+   * @param listener the listener that is told the results.
+   */
+  private synchronized void finish(Map<String, String> identities, Listener listener) {
+    Map<String, String> missingIdentities = new HashMap<>();
+    for (String imagePath : missing) {
+      String identity = identities.get(imagePath);
+      if (identity != null) {
+        missingIdentities.put(imagePath, identity);
+      }
+    }
+    Map<String, String> moved = FileIdentity.match(missingIdentities, candidates);
+    if (!cancelled) {
+      listener.validationFinished(new ArrayList<>(missing), moved);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A class responsible for identifying files independently of their paths, so that an image that
+ * has been renamed or moved by another program can be recognized at its new path. A file is
+ * identified by the key that the file system gives it, such as its device and inode number, where
+ * the file system gives one, and otherwise by a checksum of its first bytes, together, in both
+ * cases, with its size and its last modified time, all of which a rename keeps. The size and time
+ * keep a key that the file system has reused for a new file from matching the old one.
+ */
+final class FileIdentity {
+
+  /** Store the number of bytes at the start of a file that are included in its checksum. */
+  private static final int CHECKSUM_BYTES = 4096;
+
+  /**
+   * Store the prefix of an identity made from the key that the file system gives a file, and its
+   * size and time.
+   */
+  private static final String KEY_PREFIX = "k";
+
+  /** Store the prefix of an identity made from a file's size, time and checksum. */
+  private static final String CONTENT_PREFIX = "c";
+
+  /**
+   * Return the identity of the file at path, path, or null if it cannot be read.
+   *
+   * @param path a path to a file, as a String.
+   * @return an identity, or null.
+   */
+  static String of(String path) {
+    try {
+      Path file = Paths.get(path);
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      String keyIdentity = getKeyIdentity(attributes);
+      return keyIdentity != null ? keyIdentity : getContentPrefix(attributes) + checksum(file);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Return a map from the paths in identities, as Strings, whose files no longer exist, to the
+   * paths in candidates, as Strings, of the files that have the same identities, found in a single
+   * pass over the candidates. Only the files whose identities are shared by no other path in
+   * identities are matched, and each candidate is matched at most once. The checksum of a
+   * candidate is only read if its size and time match those of one of the identities.
+   *
+   * @param identities a map from the paths of missing files, as Strings, to their identities.
+   * @param candidates the paths, as Strings, of files that may be some of the missing files.
+   * @return a map from the paths of missing files to their new paths, as Strings.
+   */
+  static Map<String, String> match(Map<String, String> identities, Collection<String> candidates) {
+    Map<String, String> pathsByIdentity = new HashMap<>();
+    Set<String> ambiguous = new HashSet<>();
+    Set<String> contentPrefixes = new HashSet<>();
+    for (Map.Entry<String, String> entry : identities.entrySet()) {
+      String identity = entry.getValue();
+      if (pathsByIdentity.put(identity, entry.getKey()) != null) {
+        ambiguous.add(identity);
+      }
+      if (identity.startsWith(CONTENT_PREFIX)) {
+        contentPrefixes.add(identity.substring(0, identity.lastIndexOf(':') + 1));
+      }
+    }
+    pathsByIdentity.keySet().removeAll(ambiguous);
+    Map<String, String> moved = new HashMap<>();
+    if (pathsByIdentity.isEmpty()) {
+      return moved;
+    }
+    for (String candidate : candidates) {
+      String identity = null;
+      try {
+        Path file = Paths.get(candidate);
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        identity = getKeyIdentity(attributes);
+        if (identity == null) {
+          String contentPrefix = getContentPrefix(attributes);
+          if (contentPrefixes.contains(contentPrefix)) {
+            identity = contentPrefix + checksum(file);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        /* A candidate that cannot be read is not matched. */
+      }
+      String missingPath = identity != null ? pathsByIdentity.remove(identity) : null;
+      if (missingPath != null) {
+        moved.put(missingPath, candidate);
+        if (pathsByIdentity.isEmpty()) {
+          break;
+        }
+      }
+    }
+    return moved;
+  }
+
+  /**
+   * Return the identity made from the key that the file system gives the file with attributes,
+   * attributes, and its size and time, or null if the file system gives no key.
+   *
+   * @param attributes the attributes of a file.
+   * @return an identity, or null.
+   */
+  private static String getKeyIdentity(BasicFileAttributes attributes) {
+    Object key = attributes.fileKey();
+    if (key == null) {
+      return null;
+    }
+    long time = attributes.lastModifiedTime().toMillis();
+    return KEY_PREFIX + key + ":" + attributes.size() + ":" + time;
+  }
+
+  /**
+   * Return the start of the identity made from the size and time of the file with attributes,
+   * attributes, which its checksum completes.
+   *
+   * @param attributes the attributes of a file.
+   * @return the start of an identity.
+   */
+  private static String getContentPrefix(BasicFileAttributes attributes) {
+    long time = attributes.lastModifiedTime().toMillis();
+    return CONTENT_PREFIX + attributes.size() + ":" + time + ":";
+  }
+
+  /**
+   * Return the CRC-32 checksum of the first CHECKSUM_BYTES bytes of the file, file, in hex.
+   *
+   * @param file a path to a file.
+   * @return a checksum.
+   * @throws IOException if the file cannot be read.
+   */
+  private static String checksum(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buffer = new byte[CHECKSUM_BYTES];
+    try (InputStream input = Files.newInputStream(file)) {
+      int total = 0;
+      int read = 0;
+      while (total < buffer.length && read >= 0) {
+        read = input.read(buffer, total, buffer.length - total);
+        total += Math.max(0, read);
+      }
+      crc.update(buffer, 0, total);
+    }
+    return Long.toHexString(crc.getValue());
+  }
+}
@@ -0,0 +1,18 @@
+package model;
+
+import java.util.List;
+
+/**
+ * An object that is notified of the paths of image files as they are found during a scan of a
+ * directory, before the scan has finished.
+ */
+public interface ImageBatchListener {
+
+  /**
+   * Receive a batch of the paths, as Strings, of image files that have just been found. Note: this
+   * method is called on the threads that perform the scan, not on the thread that started it.
+   *
+   * @param imagePaths a list of paths to images, as Strings.
+   */
+  void imagesFound(List<String> imagePaths);
+}
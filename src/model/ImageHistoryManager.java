@@ -1,23 +1,106 @@
 package model;
 
+import java.io.IOException;
 import java.util.*;
 
-/** A class responsible for storing old names of images. */
+/**
+ * A class responsible for storing old names of images. The old names of the images that have not
+ * changed since the snapshot file was read can be left in the snapshot file, with only the offsets
+ * of their lists kept in memory, in which case each list is read from the file when it is first
+ * needed, and the most recently read lists are kept in a bounded cache.
+ */
 public class ImageHistoryManager {
 
+  /** Store the greatest number of lists read from the snapshot file that are kept in memory. */
+  private static final int CACHE_SIZE = 1024;
+
   /**
    * Store a map from a path, as a String, to a list of old names, where the lists do not contain
-   * duplicates.
+   * duplicates, for every image whose list is not left in the snapshot file.
    */
   private Map<String, List<String>> imagePathToOldNamesList;
 
+  /**
+   * Store a map from a path, as a String, to the offset of its list of old names in the snapshot
+   * file, for every image whose list is left in the snapshot file, which is never one of the keys
+   * of imagePathToOldNamesList.
+   */
+  private Map<String, Integer> savedOffsets = new HashMap<>();
+
+  /**
+   * Store a map from a path, as a String, to the identity of the file at that path, as given by
+   * FileIdentity, for the images that this image history manager has a list for, and whose
+   * identity is known, so that their lists can follow them when other programs move them.
+   */
+  private Map<String, String> imagePathToIdentity = new HashMap<>();
+
+  /**
+   * Store a map from each tag to the paths, as Strings, of the images that this image history
+   * manager has a list for, whose names contain that tag, or null if no image has been looked up by
+   * tag yet. The index is built the first time it is needed, and kept up to date from then on.
+   */
+  private Map<String, Set<String>> imagesByTag;
+
+  /** Store the reader of the lists left in the snapshot file, or null if there are none. */
+  private SnapshotFile.HistoryReader savedHistories;
+
+  /** Store the lists most recently read from the snapshot file, least recently used first. */
+  private final Map<String, List<String>> cache =
+      new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+
+  /**
+   * Store the tag manager that is told about the tags of each image that this image history manager
+   * starts or stops storing, so that it can count the images that have each tag, or null.
+   */
+  private TagManager tagManager;
+
   /**
    * Create a new ImageHistoryManager object.
    *
    * @param imagePathToOldNamesList a map from paths, as Strings, to lists of old names.
    */
   public ImageHistoryManager(Map<String, List<String>> imagePathToOldNamesList) {
+    this(imagePathToOldNamesList, null);
+  }
+
+  /**
+   * Create a new ImageHistoryManager object, which records the usage of the tags of every image it
+   * starts or stops storing with tagManager. Note: the usage of the tags of the images already in
+   * imagePathToOldNamesList is not recorded, so tagManager should have been given it already.
+   *
+   * @param imagePathToOldNamesList a map from paths, as Strings, to lists of old names.
+   * @param tagManager a TagManager object, or null.
+   */
+  public ImageHistoryManager(
+      Map<String, List<String>> imagePathToOldNamesList, TagManager tagManager) {
     this.imagePathToOldNamesList = imagePathToOldNamesList;
+    this.tagManager = tagManager;
+  }
+
+  /**
+   * Create a new ImageHistoryManager object, which leaves the lists of old names of the images in
+   * savedOffsets in the snapshot file, and reads them with savedHistories when they are needed.
+   * Note: the usage of the tags of the images already in imagePathToOldNamesList and savedOffsets
+   * is not recorded, so tagManager should have been given it already.
+   *
+   * @param imagePathToOldNamesList a map from paths, as Strings, to lists of old names.
+   * @param savedOffsets a map from paths, as Strings, to offsets of lists of old names.
+   * @param savedHistories the reader of the lists of old names in the snapshot file.
+   * @param tagManager a TagManager object, or null.
+   */
+  ImageHistoryManager(
+      Map<String, List<String>> imagePathToOldNamesList,
+      Map<String, Integer> savedOffsets,
+      SnapshotFile.HistoryReader savedHistories,
+      TagManager tagManager) {
+    this(imagePathToOldNamesList, tagManager);
+    this.savedOffsets = savedOffsets;
+    this.savedHistories = savedHistories;
   }
 
   /**
@@ -29,23 +112,35 @@ public class ImageHistoryManager {
    * @param newPath a path, as a String.
    */
   public void updateImage(String oldPath, String newPath) {
+    if (oldPath.equals(newPath)) {
+      return;
+    }
+    boolean hadOldPath = hasImage(oldPath);
+    boolean hadNewPath = hasImage(newPath);
     String oldName = PathFormatter.getFullName(oldPath);
     String newName = PathFormatter.getFullName(newPath);
     /*
      * Handle the case where an image's path has changed, and this image history manager has a List
      * of old names for this image.
      */
-    if (imagePathToOldNamesList.containsKey(oldPath)) {
+    if (hadOldPath) {
       /*
        * Change the key that points to this image's list of old names to the image's new path.
        */
-      imagePathToOldNamesList.put(newPath, imagePathToOldNamesList.remove(oldPath));
+      List<String> oldNames = takeOldNames(oldPath);
+      String identity = imagePathToIdentity.remove(oldPath);
+      imagePathToOldNamesList.remove(oldPath);
+      discard(newPath);
+      imagePathToOldNamesList.put(newPath, oldNames);
+      if (identity != null) {
+        imagePathToIdentity.put(newPath, identity);
+      }
       /*
        * Handle the case where the image's name has changed, and this image history manager's list of old names
        * for the image does not contain this name.
        */
-      if (!oldName.equals(newName) && !imagePathToOldNamesList.get(newPath).contains(oldName)) {
-        imagePathToOldNamesList.get(newPath).add(oldName);
+      if (!oldName.equals(newName) && !oldNames.contains(oldName)) {
+        oldNames.add(oldName);
       }
       /*
        * Handle the case where the program does not already have a list of old names for the image,
@@ -55,8 +150,19 @@ public class ImageHistoryManager {
     } else if (!oldName.equals(newName)) {
       List<String> thisImagesOldNames = new ArrayList<>();
       thisImagesOldNames.add(oldName);
+      discard(newPath);
       imagePathToOldNamesList.put(newPath, thisImagesOldNames);
     }
+    /* Only the tags of the paths that were stored before, and are stored now, change usage. */
+    if (hadOldPath) {
+      removeUsage(oldPath);
+    }
+    if (hadNewPath) {
+      removeUsage(newPath);
+    }
+    if (hasImage(newPath)) {
+      addUsage(newPath);
+    }
   }
 
   /**
@@ -65,11 +171,23 @@ public class ImageHistoryManager {
    * @param path a path, as a String
    */
   public void addImage(String path) {
-    if (!imagePathToOldNamesList.containsKey(path)) {
+    if (!hasImage(path)) {
       imagePathToOldNamesList.put(path, new ArrayList<>());
+      addUsage(path);
     }
   }
 
+  /**
+   * Return true if and only if this image history manager has an old names list for the image at
+   * path, path, even if it is empty.
+   *
+   * @param path a path, as a String.
+   * @return a boolean value.
+   */
+  public boolean hasImage(String path) {
+    return imagePathToOldNamesList.containsKey(path) || savedOffsets.containsKey(path);
+  }
+
   /**
    * Remove the entry in the path to old names list map at path, path. If the path to old names list
    * map does not contain path as a key, then do nothing.
@@ -77,7 +195,159 @@ public class ImageHistoryManager {
    * @param path a path, as a String.
    */
   public void removeImage(String path) {
-    imagePathToOldNamesList.remove(path);
+    if (discard(path)) {
+      removeUsage(path);
+    }
+  }
+
+  /**
+   * Return the identity of the file of the image at path, path, or null if it is not known, or this
+   * image history manager does not have a list for the image.
+   *
+   * @param path a path, as a String.
+   * @return an identity, or null.
+   */
+  String getIdentity(String path) {
+    return imagePathToIdentity.get(path);
+  }
+
+  /**
+   * Record that the file of the image at path, path, has the identity, identity, if this image
+   * history manager has a list for the image.
+   *
+   * @param path a path, as a String.
+   * @param identity an identity given by FileIdentity.
+   */
+  void setIdentity(String path, String identity) {
+    if (hasImage(path)) {
+      imagePathToIdentity.put(path, identity);
+    }
+  }
+
+  /**
+   * Record the identities in imagePathToIdentity, of the images that this image history manager
+   * has lists for.
+   *
+   * @param imagePathToIdentity a map from paths, as Strings, to identities given by FileIdentity.
+   */
+  void setIdentities(Map<String, String> imagePathToIdentity) {
+    for (Map.Entry<String, String> entry : imagePathToIdentity.entrySet()) {
+      setIdentity(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Return a copy of the map from paths of images, as Strings, to the identities of their files,
+   * which does not change when this image history manager does.
+   *
+   * @return a map from paths, as Strings, to identities.
+   */
+  Map<String, String> getIdentitiesCopy() {
+    return new HashMap<>(imagePathToIdentity);
+  }
+
+  /**
+   * Stop storing the list of old names of the image at path, path, whether or not it is left in
+   * the snapshot file, and return true if and only if there was one.
+   *
+   * @param path a path, as a String.
+   * @return a boolean value.
+   */
+  private boolean discard(String path) {
+    imagePathToIdentity.remove(path);
+    if (imagePathToOldNamesList.remove(path) != null) {
+      return true;
+    }
+    cache.remove(path);
+    return savedOffsets.remove(path) != null;
+  }
+
+  /**
+   * Return the list of old names of the image at path, path, which this image history manager has
+   * a list for, so that it can be changed, reading it from the snapshot file, and no longer
+   * leaving it there, if it has not been changed yet.
+   *
+   * @param path a path, as a String.
+   * @return a list of old names.
+   */
+  private List<String> takeOldNames(String path) {
+    List<String> oldNames = imagePathToOldNamesList.get(path);
+    if (oldNames == null) {
+      oldNames = new ArrayList<>(readOldNames(path));
+      cache.remove(path);
+      savedOffsets.remove(path);
+      imagePathToOldNamesList.put(path, oldNames);
+    }
+    return oldNames;
+  }
+
+  /**
+   * Return the list of old names of the image at path, path, which this image history manager has
+   * a list for, without changing it, reading it from the snapshot file if it is left there, and
+   * has not been read recently. If the list cannot be read, then it is taken to be empty.
+   *
+   * @param path a path, as a String.
+   * @return a list of old names, which must not be changed.
+   */
+  private List<String> readOldNames(String path) {
+    List<String> oldNames = imagePathToOldNamesList.get(path);
+    if (oldNames == null) {
+      oldNames = cache.get(path);
+    }
+    if (oldNames == null) {
+      try {
+        oldNames = savedHistories.read(savedOffsets.get(path));
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+        oldNames = new ArrayList<>();
+      }
+      cache.put(path, oldNames);
+    }
+    return oldNames;
+  }
+
+  /**
+   * Record with the tag manager, if there is one, that one more image has the tags of the image at
+   * path, path.
+   *
+   * @param path a path, as a String.
+   */
+  private void addUsage(String path) {
+    if (tagManager != null || imagesByTag != null) {
+      List<String> tags = PathFormatter.getTags(path);
+      if (tagManager != null) {
+        tagManager.addUsage(tags);
+      }
+      if (imagesByTag != null) {
+        for (String tag : tags) {
+          imagesByTag.computeIfAbsent(tag, key -> new HashSet<>()).add(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Record with the tag manager, if there is one, that one fewer image has the tags of the image at
+   * path, path.
+   *
+   * @param path a path, as a String.
+   */
+  private void removeUsage(String path) {
+    if (tagManager != null || imagesByTag != null) {
+      List<String> tags = PathFormatter.getTags(path);
+      if (tagManager != null) {
+        tagManager.removeUsage(tags);
+      }
+      if (imagesByTag != null) {
+        for (String tag : tags) {
+          Set<String> images = imagesByTag.get(tag);
+          if (images != null && images.remove(path) && images.isEmpty()) {
+            imagesByTag.remove(tag);
+          }
+        }
+      }
+    }
   }
 
   /**
@@ -88,11 +358,11 @@ public class ImageHistoryManager {
    * @return a list of names.
    */
   public List<String> getImagesOldNames(String path) {
-    if (imagePathToOldNamesList.containsKey(path)) {
+    if (hasImage(path)) {
       /*
        * Return a shallow copy of the list of old names stored by this ImageHistoryManager.
        */
-      return new ArrayList<>(imagePathToOldNamesList.get(path));
+      return new ArrayList<>(readOldNames(path));
     } else {
       return new ArrayList<>();
     }
@@ -108,15 +378,65 @@ public class ImageHistoryManager {
     /*
      * Return a shallow copy of the key set for imagePathToOldNames map.
      */
-    return new HashSet<>(imagePathToOldNamesList.keySet());
+    Set<String> images = new HashSet<>(imagePathToOldNamesList.keySet());
+    images.addAll(savedOffsets.keySet());
+    return images;
+  }
+
+  /**
+   * Return a set of the paths, as Strings, of the images that this image history manager has old
+   * names lists for, whose names contain the tag, tag. The first call builds an index from each tag
+   * to the images that have it, which is kept up to date as images are stored, renamed and
+   * removed, so that later calls only touch the images that have the tag.
+   *
+   * @param tag a tag.
+   * @return a Set of paths, as Strings.
+   */
+  public Set<String> getImagesWithTag(String tag) {
+    if (imagesByTag == null) {
+      imagesByTag = new HashMap<>();
+      for (Map<String, ?> images : Arrays.asList(imagePathToOldNamesList, savedOffsets)) {
+        for (String path : images.keySet()) {
+          PathFormatter.forEachTag(
+              path,
+              (imagePath, start, end) ->
+                  imagesByTag
+                      .computeIfAbsent(imagePath.substring(start, end), key -> new HashSet<>())
+                      .add(imagePath));
+        }
+      }
+    }
+    Set<String> images = imagesByTag.get(tag);
+    return images != null ? new HashSet<>(images) : new HashSet<>();
   }
 
   /**
-   * Return the map that maps paths of images, as Strings, to lists of old names.
+   * Return the map that maps paths of images, as Strings, to lists of old names. If some of the
+   * lists are left in the snapshot file, then the map is a copy, as returned by getMapCopy.
    *
    * @return a map from paths, as Strings, to lists of old names.
    */
   public Map<String, List<String>> getMap() {
-    return imagePathToOldNamesList;
+    return savedOffsets.isEmpty() ? imagePathToOldNamesList : getMapCopy();
+  }
+
+  /**
+   * Return a copy of the map that maps paths of images, as Strings, to lists of old names, which
+   * does not change when this image history manager does.
+   *
+   * @return a map from paths, as Strings, to lists of old names.
+   */
+  public Map<String, List<String>> getMapCopy() {
+    Map<String, List<String>> copy;
+    if (savedOffsets.isEmpty()) {
+      copy = new HashMap<>(imagePathToOldNamesList.size() * 4 / 3 + 1);
+    } else {
+      /* The lists left in the snapshot file are only read once the copy is used. */
+      copy = savedHistories.readLater(savedOffsets);
+    }
+    for (Map.Entry<String, List<String>> entry : imagePathToOldNamesList.entrySet()) {
+      copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+    return copy;
   }
 }
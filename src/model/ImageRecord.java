@@ -0,0 +1,200 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable record of the information held in the path of an image: its name and tags. The path
+ * is parsed once, when the image is found or renamed, so that sorting and filtering images does not
+ * parse their paths again. The tags are stored as ids from a TagDictionary: ids below 64, which are
+ * all of the ids in a small vocabulary, as the bits of a single long, and any others in a sorted
+ * array, so that checking whether an image has a tag is an integer operation. The record also
+ * stores a key that sorts images alphabetically by their full names, ignoring case. Images with the
+ * same full name, in different directories, are ordered by their paths, so that no two records of
+ * different images are level with each other.
+ */
+final class ImageRecord implements Comparable<ImageRecord> {
+
+  /** Store the tag ids of an image that has no tags with large ids. */
+  private static final int[] NO_TAGS = new int[0];
+
+  /** Store the number of tag ids that are stored as the bits of a long. */
+  private static final int SMALL_TAG_IDS = Long.SIZE;
+
+  /** Store the path to the image, as a String. */
+  private final String path;
+
+  /** Store the image's name, excluding any tags and the file extension. */
+  private final String name;
+
+  /** Store the ids of the image's tags that are below SMALL_TAG_IDS, as the bits of a long. */
+  private final long smallTagIds;
+
+  /** Store the ids of the image's tags that are not below SMALL_TAG_IDS, in increasing order. */
+  private final int[] largeTagIds;
+
+  /**
+   * Store the image's full name with every character folded in the same way as by
+   * String.compareToIgnoreCase, so that comparing the keys of two images compares their full names,
+   * ignoring case.
+   */
+  private final String sortKey;
+
+  /**
+   * Create a new ImageRecord object.
+   *
+   * @param path a path to an image, as a String.
+   * @param name the image's name.
+   * @param smallTagIds the ids of the image's tags that are below SMALL_TAG_IDS, as bits.
+   * @param largeTagIds the other ids of the image's tags, in increasing order.
+   * @param sortKey the image's sort key.
+   */
+  private ImageRecord(
+      String path, String name, long smallTagIds, int[] largeTagIds, String sortKey) {
+    this.path = path;
+    this.name = name;
+    this.smallTagIds = smallTagIds;
+    this.largeTagIds = largeTagIds;
+    this.sortKey = sortKey;
+  }
+
+  /**
+   * Return a new record of the image at imagePath, whose tags are given ids from tagDictionary.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @param tagDictionary the dictionary that assigns ids to tags.
+   * @return an ImageRecord.
+   */
+  static ImageRecord parse(String imagePath, TagDictionary tagDictionary) {
+    long smallTagIds = 0;
+    int[] largeTagIds = NO_TAGS;
+    int tagCount = PathFormatter.tagCount(imagePath);
+    if (tagCount > 0) {
+      /* Look the tags up by their characters in the path, without making Strings of them. */
+      int[] tagIds = new int[tagCount];
+      int[] next = new int[1];
+      PathFormatter.forEachTag(
+          imagePath,
+          (path, start, end) -> tagIds[next[0]++] = tagDictionary.intern(path, start, end));
+      Arrays.sort(tagIds);
+      int large = 0;
+      for (int i = 0; i < tagIds.length; i++) {
+        if (tagIds[i] < SMALL_TAG_IDS) {
+          smallTagIds |= 1L << tagIds[i];
+        } else if (large == 0 || tagIds[large - 1] != tagIds[i]) {
+          /* Move the large ids, without repeats, to the start of tagIds. */
+          tagIds[large++] = tagIds[i];
+        }
+      }
+      if (large > 0) {
+        largeTagIds = Arrays.copyOf(tagIds, large);
+      }
+    }
+
+    String fullName = PathFormatter.getFullName(imagePath);
+    char[] sortKey = fullName.toCharArray();
+    for (int i = 0; i < sortKey.length; i++) {
+      sortKey[i] = Character.toLowerCase(Character.toUpperCase(sortKey[i]));
+    }
+    return new ImageRecord(
+        imagePath, PathFormatter.getName(imagePath), smallTagIds, largeTagIds, new String(sortKey));
+  }
+
+  /**
+   * Return the path to the image, as a String.
+   *
+   * @return a path to an image, as a String.
+   */
+  String getPath() {
+    return path;
+  }
+
+  /**
+   * Return the image's name, excluding any tags and the file extension.
+   *
+   * @return a name.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Pass the id of each of the image's tags to consumer, in increasing order.
+   *
+   * @param consumer an IntConsumer.
+   */
+  void forEachTagId(IntConsumer consumer) {
+    for (long bits = smallTagIds; bits != 0; bits &= bits - 1) {
+      consumer.accept(Long.numberOfTrailingZeros(bits));
+    }
+    for (int id : largeTagIds) {
+      consumer.accept(id);
+    }
+  }
+
+  /**
+   * Return the number of distinct tags that the image has.
+   *
+   * @return a number of tags.
+   */
+  int getTagCount() {
+    return Long.bitCount(smallTagIds) + largeTagIds.length;
+  }
+
+  /**
+   * Return true if and only if the image has at least one tag.
+   *
+   * @return a boolean value.
+   */
+  boolean hasTags() {
+    return smallTagIds != 0 || largeTagIds.length > 0;
+  }
+
+  /**
+   * Return true if and only if the image has the tag with id, tagId.
+   *
+   * @param tagId the id of a tag.
+   * @return a boolean value.
+   */
+  boolean hasTag(int tagId) {
+    if (tagId < SMALL_TAG_IDS) {
+      return tagId >= 0 && (smallTagIds & (1L << tagId)) != 0;
+    }
+    return Arrays.binarySearch(largeTagIds, tagId) >= 0;
+  }
+
+  /**
+   * Return a list, sorted alphabetically, of the image's tags, whose ids were assigned by
+   * tagDictionary.
+   *
+   * @param tagDictionary the dictionary that assigned ids to the image's tags.
+   * @return a sorted list of tags.
+   */
+  List<String> getTags(TagDictionary tagDictionary) {
+    List<String> tags = new ArrayList<>(getTagCount());
+    forEachTagId(id -> tags.add(tagDictionary.getTag(id)));
+    tags.sort(String::compareToIgnoreCase);
+    return tags;
+  }
+
+  /**
+   * Compare this image with another alphabetically based on their full names, ignoring case, and
+   * then based on their paths.
+   *
+   * @param other an ImageRecord.
+   * @return a negative number, zero, or a positive number, as this image is before, level with, or
+   *     after other.
+   */
+  @Override
+  public int compareTo(ImageRecord other) {
+    int comparison = sortKey.compareTo(other.sortKey);
+    return comparison != 0 ? comparison : path.compareTo(other.path);
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+}
@@ -3,10 +3,10 @@ package model;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A class that enables the user to add tags to image files, store a collection of tags whose
@@ -30,22 +30,106 @@ public class ImageTaggingManager {
   private LoggingManager loggingManager;
 
   /**
-   * Store a sorted list of the paths, as Strings, of all of the image files at and below current
-   * directory.
+   * Store an instance of a class responsible for remembering the listings of the directories that
+   * have been crawled, so that unmodified directories need not be listed again.
    */
-  private List<String> allImagePaths = new ArrayList<>();
+  private ScanCache scanCache;
 
   /**
-   * Store a sorted list of the paths, as Strings, of all of the image files at and below the
-   * current directory that contain all tags in tagsToFilterBy.
+   * Store the crawler that is responsible for finding the paths of the image files at and below the
+   * current directory.
    */
-  private List<String> filteredImagePaths = new ArrayList<>();
+  private DirectoryCrawler directoryCrawler;
 
   /**
-   * Store a Collection of tags, such that each of the images whose paths are stored in
-   * filteredImagePaths have all of these tags.
+   * Store a sorted list of the records of all of the image files at and below current directory.
+   * The list is a tree, so an image whose name changes is moved to its new position in O(log n)
+   * time.
    */
-  private List<String> tagsToFilterBy = new ArrayList<>();
+  private OrderStatisticTree<ImageRecord> allImages = new OrderStatisticTree<>();
+
+  /**
+   * Store a sorted list of the records of all of the image files at and below the current
+   * directory that match tagQuery.
+   */
+  private OrderStatisticTree<ImageRecord> filteredImages = new OrderStatisticTree<>();
+
+  /**
+   * Store the record of the image with each id, where the ids are the indices of this list. The id
+   * of an image that is no longer at or below the current directory maps to null.
+   */
+  private List<ImageRecord> imagesById = new ArrayList<>();
+
+  /** Store a map from the paths, as Strings, of the images in allImages to their ids. */
+  private Map<String, Integer> idsByPath = new HashMap<>();
+
+  /** Store the ids of all of the images in allImages. */
+  private RoaringBitmap allIds = new RoaringBitmap();
+
+  /** Store the dictionary that assigns ids to the tags of the images in allImages. */
+  private TagDictionary tagDictionary = new TagDictionary();
+
+  /**
+   * Store true if and only if the ids of the images are in the same order as their names, so that
+   * listing a set of ids in increasing order lists the images in sorted order. Ids are assigned in
+   * this order when the directory is changed, and the order is lost when images are renamed or
+   * created out of order, until all of the images are next found to be listed in order again.
+   */
+  private boolean idsInNameOrder = true;
+
+  /** Store the ids that are no longer in use, to be given to the next images that are added. */
+  private final Deque<Integer> freeIds = new ArrayDeque<>();
+
+  /** Store an index from each tag to the ids of the images in allImages that have that tag. */
+  private TagIndex tagIndex = new TagIndex(tagDictionary);
+
+  /**
+   * Store the query that each of the images whose records are stored in filteredImages matches.
+   */
+  private TagQuery tagQuery = TagQuery.EMPTY;
+
+  /**
+   * Store the watcher that applies changes made by other programs to the images at and below the
+   * current directory, or null if the current directory is not being watched.
+   */
+  private DirectoryWatcher directoryWatcher;
+
+  /**
+   * Store the validator that is checking that the tracked images still exist, or null if no
+   * validation is in progress.
+   */
+  private ExistenceValidator existenceValidator;
+
+  /** Store the number of tracked images that the validation in progress has checked. */
+  private int validatedImages;
+
+  /**
+   * Store the renamer that is removing a tag from every tracked image, or null if no tag is being
+   * removed.
+   */
+  private BatchRenamer tagRemover;
+
+  /** Store the tag that tagRemover is removing, or null if no tag is being removed. */
+  private String tagBeingRemoved;
+
+  /** Store the paths, as Strings, of the images that tagRemover is renaming. */
+  private Set<String> imagesBeingRenamed = new HashSet<>();
+
+  /** Store the number of images that the tag removal in progress has processed. */
+  private int processedImages;
+
+  /**
+   * Store the batches of changes made by other programs that arrived while a tag was being
+   * removed, which are applied once the images have been renamed, since some of them are the
+   * renamer's own changes.
+   */
+  private List<DirectoryWatcher.Changes> deferredChanges = new ArrayList<>();
+
+  /**
+   * Store the action to take after changes made by other programs have been applied, or null if
+   * there is none.
+   */
+  private Runnable externalChangeListener;
 
   /**
    * Store the path to the directory, as a String, such that the images that the image tagging
@@ -60,14 +144,18 @@ public class ImageTaggingManager {
    * @param imageHistoryManager an ImageHistoryManager object.
    * @param tagManager a TagManager object.
    * @param loggingManager a LoggingManager object.
+   * @param scanCache a ScanCache object.
    */
   ImageTaggingManager(
       ImageHistoryManager imageHistoryManager,
       TagManager tagManager,
-      LoggingManager loggingManager) {
+      LoggingManager loggingManager,
+      ScanCache scanCache) {
     this.imageHistoryManager = imageHistoryManager;
     this.tagManager = tagManager;
     this.loggingManager = loggingManager;
+    this.scanCache = scanCache;
+    directoryCrawler = new DirectoryCrawler(Runtime.getRuntime().availableProcessors(), scanCache);
   }
 
   /**
@@ -78,71 +166,500 @@ public class ImageTaggingManager {
    * @param directoryPath a path to a directory, as a String.
    */
   public void changeDirectory(String directoryPath) {
-    allImagePaths.clear();
-    filteredImagePaths.clear();
-    tagsToFilterBy.clear();
+    List<String> imagePaths = new ArrayList<>();
+    if (directoryPath != null) {
+      imagePaths = findImages(directoryPath, null);
+    }
+    changeDirectory(directoryPath, imagePaths);
+  }
+
+  /**
+   * Change the directory, such that the images that this image tagging manager is currently
+   * interacting with are the images at imagePaths, which are at or below this directory. This
+   * completes a scan of the directory that was made by calling findImages. Note: when this method
+   * is called, any tag filters that were previously in effect are removed.
+   *
+   * @param directoryPath a path to a directory, as a String.
+   * @param imagePaths a collection of paths to images, as Strings.
+   */
+  public void changeDirectory(String directoryPath, Collection<String> imagePaths) {
+    stopWatching();
+    allImages.clear();
+    filteredImages.clear();
+    tagQuery = TagQuery.EMPTY;
+    tagIndex.clear();
+    imagesById.clear();
+    freeIds.clear();
+    idsByPath.clear();
+    allIds = new RoaringBitmap();
     currentDirectoryPath = directoryPath;
     if (directoryPath != null) {
-      try {
-        /* Add all of the paths of the image files at and below the current directory to allImagePaths. */
-        generateImagesHelper(Paths.get(currentDirectoryPath));
-      } catch (IOException e) {
-        System.err.println(
-            "ImageTaggingManager was unable to get the images at and below the supplied directory.");
+      /* Parse each path once; from now on the image's name and tags are read from its record. */
+      List<ImageRecord> images = new ArrayList<>(imagePaths.size());
+      RoaringBitmap foundTagIds = new RoaringBitmap();
+      for (String imagePath : imagePaths) {
+        ImageRecord image = parseImage(imagePath);
+        images.add(image);
+        trackImage(image, foundTagIds);
       }
+      storeFoundTags(foundTagIds);
+
+      /* Sort allImages alphabetically, based on the name of the image. */
+      allImages = new OrderStatisticTree<>(images);
 
-      /* Sort allImagePaths alphabetically, based on the name of the image. */
-      sortByName(allImagePaths);
+      /* Assign ids in sorted order, so that a set of ids lists its images in sorted order. */
+      for (ImageRecord image : allImages) {
+        tagIndex.addImage(addId(image), image);
+      }
+      tagIndex.optimize();
+      idsInNameOrder = true;
 
       /*
-       * Make filteredImagePaths equal to a shallow copy of allImagePaths, in accordance with their being
+       * Make filteredImages equal to a shallow copy of allImages, in accordance with their being
        * no filters in effect after the directory has been changed.
        */
-      filteredImagePaths = new ArrayList<>(allImagePaths);
+      filteredImages = OrderStatisticTree.ofSorted(new ArrayList<>(allImages));
+    }
+    checkpointIfDue();
+  }
+
+  /**
+   * Return a list of the paths, as Strings, of all of the image files at and below the directory at
+   * directoryPath, without changing the current directory. While the scan is in progress, the paths
+   * that have been found are passed to listener in batches, so that they can be displayed before
+   * the scan has finished. Note: this method does not modify this ImageTaggingManager, and may be
+   * called on a background thread; pass its result to changeDirectory once it has returned.
+   *
+   * @param directoryPath a path to a directory, as a String.
+   * @param listener an ImageBatchListener, or null.
+   * @return a list of paths, as Strings.
+   */
+  public List<String> findImages(String directoryPath, ImageBatchListener listener) {
+    try {
+      return directoryCrawler.crawl(Paths.get(directoryPath), listener);
+    } catch (IOException e) {
+      System.err.println(
+          "ImageTaggingManager was unable to get the images at and below the supplied directory.");
+      return new ArrayList<>();
     }
   }
 
   /**
-   * Sort a list of image paths, as Strings, in alphabetical order based on their file names,
-   * ignoring case.
+   * Stop the scan started by findImages, if one is in progress. The scan will return the paths of
+   * the images that it found before it was stopped.
+   */
+  public void cancelFindImages() {
+    directoryCrawler.cancel();
+  }
+
+  /**
+   * Start applying changes that other programs make to the images at and below the current
+   * directory, such as creating, deleting or renaming them. The changes are gathered in the
+   * background, and are applied in batches using executor, after which listener is run. Note: all
+   * of the other methods of this class must be called using the same thread as executor. If the
+   * current directory is already being watched, only the listener is replaced.
    *
-   * @param images a set of image paths, as Strings.
+   * @param executor an Executor, which runs the tasks it is given one at a time.
+   * @param listener an action to take after a batch of changes has been applied.
    */
-  private void sortByName(List<String> images) {
-    images.sort(
-        (a, b) -> PathFormatter.getFullName(a).compareToIgnoreCase(PathFormatter.getFullName(b)));
+  public void watchDirectory(Executor executor, Runnable listener) {
+    externalChangeListener = listener;
+    if (directoryWatcher == null && currentDirectoryPath != null) {
+      directoryWatcher =
+          new DirectoryWatcher(Paths.get(currentDirectoryPath), executor, this::applyChanges);
+      try {
+        directoryWatcher.start();
+      } catch (IOException e) {
+        System.err.println("ImageTaggingManager was unable to watch the current directory.");
+        directoryWatcher = null;
+      }
+    }
+  }
+
+  /** Stop applying changes that other programs make to the images at and below the directory. */
+  public void stopWatching() {
+    if (directoryWatcher != null) {
+      directoryWatcher.stop();
+      directoryWatcher = null;
+    }
+    externalChangeListener = null;
   }
 
   /**
-   * Add the paths of all of the images at and below dirPath, as Strings, to allImagePaths.
+   * Start checking, in the background, that the images whose histories the program is tracking
+   * still exist, and stop tracking those that do not, unless they were renamed or moved by other
+   * programs, in which case their histories follow them to their new paths. The images are checked
+   * a directory at a time, with each directory listed once, on a pool of background threads, and
+   * listener is told the progress, using executor, after each group of directories. The identities
+   * of the files that were not known yet are recorded as they are found. Once every directory has
+   * been listed, the missing images are matched by identity with the untracked images in the
+   * listed directories, in a single pass, and those that were not found are stopped being tracked.
+   * Note: all of the other methods of this class must be called using the same thread as executor.
+   * A validation that is already in progress is cancelled.
    *
-   * @param dirPath a Path of a directory.
-   * @throws IOException if the a Path does not correspond to a location in the computer's file
-   *     system.
+   * @param executor an Executor, which runs the tasks it is given one at a time.
+   * @param listener a ValidationListener, or null.
    */
-  private void generateImagesHelper(Path dirPath) throws IOException {
-    DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dirPath);
-    for (Path entryPath : directoryStream) {
-      if (Files.isDirectory(entryPath)) {
-        generateImagesHelper(entryPath);
-      } else if (entryPath.toString().toLowerCase().matches("(.)+\\.(png|jpg|jpeg)$")) {
-        String imagePath = entryPath.toString();
-        allImagePaths.add(imagePath);
-        /* If the image contains a tag, and the image history manager is not already storing data on it,
-         * add its path to the image path to list of old names map that the image history manager is storing,
-         * with an empty list.  If the user chooses to delete a tag from all images that the program
-         * has interacted with, the program will use the key set for this map to find all of the images to
-         * delete the tag from.  Therefore, the path to any image that contains a tag must be a key in the
-         * map, even if the program does not have a list of old names for that image.
-         */
-        if (PathFormatter.containsATag((imagePath))) {
-          imageHistoryManager.addImage(imagePath);
-          /* Ensure that any tags added outside of the program are added to the master collection. */
-          for (String tag : getImagesTags(imagePath)) {
-            addTagToMasterCollection(tag);
+  public void validateImages(Executor executor, ValidationListener listener) {
+    cancelValidation();
+    Set<String> images = imageHistoryManager.getAllImages();
+    int totalImages = images.size();
+    if (totalImages == 0) {
+      if (listener != null) {
+        executor.execute(() -> listener.imagesValidated(0, 0));
+      }
+      return;
+    }
+    ExistenceValidator validator = new ExistenceValidator(getCrawlerParallelism());
+    existenceValidator = validator;
+    validatedImages = 0;
+    validator.validate(
+        images,
+        imageHistoryManager.getIdentitiesCopy(),
+        new ExistenceValidator.Listener() {
+          @Override
+          public void directoriesChecked(int checkedImages, Map<String, String> foundIdentities) {
+            executor.execute(
+                () -> {
+                  /* Ignore a batch from a validation that has been cancelled. */
+                  if (existenceValidator != validator) {
+                    return;
+                  }
+                  for (Map.Entry<String, String> entry : foundIdentities.entrySet()) {
+                    imageHistoryManager.setIdentity(entry.getKey(), entry.getValue());
+                  }
+                  validatedImages += checkedImages;
+                  /* The validation only finishes once the missing images have been handled. */
+                  if (listener != null && validatedImages < totalImages) {
+                    listener.imagesValidated(validatedImages, totalImages);
+                  }
+                });
+          }
+
+          @Override
+          public void validationFinished(List<String> missing, Map<String, String> moved) {
+            executor.execute(
+                () -> {
+                  if (existenceValidator != validator) {
+                    return;
+                  }
+                  existenceValidator = null;
+                  relocateImages(moved);
+                  for (String path : missing) {
+                    /* The image may have been moved back since its directory was listed. */
+                    if (imageHistoryManager.hasImage(path)
+                        && !imagesBeingRenamed.contains(path)
+                        && !new File(path).exists()) {
+                      imageHistoryManager.removeImage(path);
+                    }
+                  }
+                  checkpointIfDue();
+                  if (listener != null) {
+                    listener.imagesValidated(totalImages, totalImages);
+                  }
+                });
           }
+        });
+  }
+
+  /**
+   * Move the history of each image whose path is a key of moved, which another program has moved
+   * to the path it maps to, to its new path, and log the move, as if the program had moved it,
+   * storing any new tags in the image's new name. An image is only moved if it is still missing
+   * from its old path, and is still at its new path, which is not being tracked already.
+   *
+   * @param moved a map from old paths to new paths, as Strings.
+   */
+  private void relocateImages(Map<String, String> moved) {
+    Set<String> newTags = new HashSet<>();
+    for (Map.Entry<String, String> entry : moved.entrySet()) {
+      String oldPath = entry.getKey();
+      String newPath = entry.getValue();
+      if (imageHistoryManager.hasImage(oldPath)
+          && !imagesBeingRenamed.contains(oldPath)
+          && !imageHistoryManager.hasImage(newPath)
+          && !new File(oldPath).exists()
+          && new File(newPath).exists()) {
+        loggingManager.writeImageUpdateToLog(oldPath, newPath);
+        imageHistoryManager.updateImage(oldPath, newPath);
+        newTags.addAll(PathFormatter.getTags(newPath));
+      }
+    }
+    storeNewTags(newTags);
+  }
+
+  /**
+   * Stop checking that the tracked images still exist, if a validation is in progress. The images
+   * that have not been checked yet are checked the next time validateImages is called.
+   */
+  public void cancelValidation() {
+    if (existenceValidator != null) {
+      existenceValidator.cancel();
+      existenceValidator = null;
+    }
+  }
+
+  /**
+   * Apply a batch of changes that other programs have made to the images at and below the current
+   * directory to the lists of image paths and to the image history manager, and then notify the
+   * listener. Changes that this ImageTaggingManager made itself, which have already been applied,
+   * are ignored.
+   *
+   * @param changes a batch of changes.
+   */
+  private void applyChanges(DirectoryWatcher.Changes changes) {
+    /* Ignore a batch that was gathered for a directory that is no longer the current one. */
+    if (directoryWatcher == null || !changes.root.toString().equals(currentDirectoryPath)) {
+      return;
+    }
+    if (tagRemover != null) {
+      deferredChanges.add(changes);
+      return;
+    }
+    Set<String> known = new HashSet<>(idsByPath.keySet());
+    Set<String> deleted = new HashSet<>(changes.deleted);
+    List<String> created = new ArrayList<>(changes.created);
+    if (changes.allImages != null) {
+      /* Every directory was listed again, so compare the full listing with the known images. */
+      Set<String> found = new HashSet<>(changes.allImages);
+      for (String path : known) {
+        if (!found.contains(path)) {
+          deleted.add(path);
+        }
+      }
+      created = changes.allImages;
+    }
+    Set<String> deletedHistories = new HashSet<>(deleted);
+    for (String directory : changes.deletedDirectories) {
+      String prefix = directory + File.separator;
+      for (String path : known) {
+        if (path.startsWith(prefix)) {
+          deleted.add(path);
+        }
+      }
+      for (String path : imageHistoryManager.getAllImages()) {
+        if (path.startsWith(prefix)) {
+          deletedHistories.add(path);
+        }
+      }
+    }
+    /* A deleted image with the same identity as a created one was renamed or moved, not deleted. */
+    Map<String, String> deletedIdentities = new HashMap<>();
+    for (String path : deletedHistories) {
+      String identity = imageHistoryManager.getIdentity(path);
+      if (identity != null) {
+        deletedIdentities.put(path, identity);
+      }
+    }
+    if (!deletedIdentities.isEmpty()) {
+      List<String> candidates = new ArrayList<>();
+      for (String path : created) {
+        if (!known.contains(path) && !imageHistoryManager.hasImage(path)) {
+          candidates.add(path);
         }
       }
+      relocateImages(FileIdentity.match(deletedIdentities, candidates));
+    }
+    for (String path : deletedHistories) {
+      imageHistoryManager.removeImage(path);
+    }
+
+    for (String path : deleted) {
+      if (known.contains(path)) {
+        ImageRecord image = imagesById.get(idsByPath.get(path));
+        tagIndex.removeImage(removeId(path), image);
+      }
+    }
+    allImages.removeIf(image -> deleted.contains(image.getPath()));
+    filteredImages.removeIf(image -> deleted.contains(image.getPath()));
+
+    RoaringBitmap foundTagIds = new RoaringBitmap();
+    for (String path : created) {
+      if (!known.contains(path) && !deleted.contains(path)) {
+        ImageRecord image = parseImage(path);
+        allImages.add(image);
+        trackImage(image, foundTagIds);
+        int id = addId(image);
+        tagIndex.addImage(id, image);
+        idsInNameOrder = idsInNameOrder && isInNameOrder(id);
+        if (tagQuery.matches(image, tagDictionary)) {
+          filteredImages.add(image);
+        }
+      }
+    }
+    storeFoundTags(foundTagIds);
+    checkpointIfDue();
+    if (externalChangeListener != null) {
+      externalChangeListener.run();
+    }
+  }
+
+  /**
+   * Return a new record of the image at imagePath.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @return an ImageRecord.
+   */
+  private ImageRecord parseImage(String imagePath) {
+    return ImageRecord.parse(imagePath, tagDictionary);
+  }
+
+  /**
+   * Assign an id to the image whose record is image, and return it. The id most recently freed is
+   * reused, if there is one, so that the ids stay dense however many images come and go.
+   *
+   * @param image an ImageRecord.
+   * @return the image's id.
+   */
+  private int addId(ImageRecord image) {
+    int id;
+    if (freeIds.isEmpty()) {
+      id = imagesById.size();
+      imagesById.add(image);
+    } else {
+      id = freeIds.pop();
+      imagesById.set(id, image);
+    }
+    idsByPath.put(image.getPath(), id);
+    allIds.add(id);
+    return id;
+  }
+
+  /**
+   * Stop assigning an id to the image at imagePath, free it for reuse, and return it.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @return the image's id.
+   */
+  private int removeId(String imagePath) {
+    int id = idsByPath.remove(imagePath);
+    imagesById.set(id, null);
+    allIds.remove(id);
+    freeIds.push(id);
+    return id;
+  }
+
+  /**
+   * Return true if and only if the image with id, id, is still in the same order as its name
+   * relative to the images with the nearest lower and higher ids.
+   *
+   * @param id the id of an image.
+   * @return a boolean value.
+   */
+  private boolean isInNameOrder(int id) {
+    ImageRecord image = imagesById.get(id);
+    for (int lower = id - 1; lower >= 0; lower--) {
+      if (imagesById.get(lower) != null) {
+        if (imagesById.get(lower).compareTo(image) > 0) {
+          return false;
+        }
+        break;
+      }
+    }
+    for (int higher = id + 1; higher < imagesById.size(); higher++) {
+      if (imagesById.get(higher) != null) {
+        return image.compareTo(imagesById.get(higher)) <= 0;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return a list of the records of the images whose ids are in ids, sorted alphabetically based
+   * on their names. When the ids are in name order, walking the set bits already gives this order,
+   * and no sorting is needed. Otherwise, the images are sorted only if they are out of order, and
+   * if they are all of the images, whether the ids are in name order is found again.
+   *
+   * @param ids a bitmap of image ids.
+   * @return a sorted list of image records.
+   */
+  private OrderStatisticTree<ImageRecord> getImagesOfIds(RoaringBitmap ids) {
+    List<ImageRecord> images = new ArrayList<>(ids.getCardinality());
+    ids.forEach(id -> images.add(imagesById.get(id)));
+    if (!idsInNameOrder) {
+      boolean sorted = true;
+      for (int i = 1; i < images.size() && sorted; i++) {
+        sorted = images.get(i - 1).compareTo(images.get(i)) <= 0;
+      }
+      if (!sorted) {
+        images.sort(null);
+      } else if (images.size() == allIds.getCardinality()) {
+        idsInNameOrder = true;
+      }
+    }
+    return OrderStatisticTree.ofSorted(images);
+  }
+
+  /**
+   * Set the number of directories that may be listed at once when the directory is changed.
+   *
+   * @param parallelism a positive number of threads.
+   */
+  public void setCrawlerParallelism(int parallelism) {
+    directoryCrawler.shutdown();
+    directoryCrawler = new DirectoryCrawler(parallelism, scanCache);
+  }
+
+  /**
+   * Return the number of directories that may be listed at once when the directory is changed.
+   *
+   * @return a number of threads.
+   */
+  public int getCrawlerParallelism() {
+    return directoryCrawler.getParallelism();
+  }
+
+  /**
+   * Record an image that was found at or below the current directory with the image history
+   * manager, and add the ids of its tags to foundTagIds, to be added to the master collection of
+   * tags by storeFoundTags once every image that was found has been recorded.
+   *
+   * @param image the record of an image.
+   * @param foundTagIds the ids of the tags found so far.
+   */
+  private void trackImage(ImageRecord image, RoaringBitmap foundTagIds) {
+    /* If the image contains a tag, and the image history manager is not already storing data on it,
+     * add its path to the image path to list of old names map that the image history manager is storing,
+     * with an empty list.  If the user chooses to delete a tag from all images that the program
+     * has interacted with, the program will use the key set for this map to find all of the images to
+     * delete the tag from.  Therefore, the path to any image that contains a tag must be a key in the
+     * map, even if the program does not have a list of old names for that image.
+     */
+    if (image.hasTags()) {
+      imageHistoryManager.addImage(image.getPath());
+      image.forEachTagId(foundTagIds::add);
+    }
+  }
+
+  /**
+   * Ensure that any tags added outside of the program, whose ids are in foundTagIds, are in the
+   * master collection, adding those that are new to it in a single batch, which is logged as a
+   * single record. Tags that are already in the master collection are not logged again.
+   *
+   * @param foundTagIds the ids of tags found on images.
+   */
+  private void storeFoundTags(RoaringBitmap foundTagIds) {
+    List<String> foundTags = new ArrayList<>();
+    foundTagIds.forEach(tagId -> foundTags.add(tagDictionary.getTag(tagId)));
+    storeNewTags(foundTags);
+  }
+
+  /**
+   * Ensure that the tags in foundTags are in the master collection, adding those that are new to
+   * it in a single batch, which is logged as a single record.
+   *
+   * @param foundTags a collection of tags.
+   */
+  private void storeNewTags(Collection<String> foundTags) {
+    List<String> newTags = new ArrayList<>();
+    for (String tag : foundTags) {
+      if (!tagManager.hasTag(tag)) {
+        newTags.add(tag);
+      }
+    }
+    if (!newTags.isEmpty()) {
+      tagManager.addTags(newTags);
+      loggingManager.writeTagsAddedToLog(newTags);
     }
   }
 
@@ -156,7 +673,11 @@ public class ImageTaggingManager {
    * @return a list of paths, as Strings.
    */
   public List<String> getImagePaths() {
-    return new ArrayList<>(filteredImagePaths);
+    List<String> imagePaths = new ArrayList<>(filteredImages.size());
+    for (ImageRecord image : filteredImages) {
+      imagePaths.add(image.getPath());
+    }
+    return imagePaths;
   }
 
   /**
@@ -171,44 +692,60 @@ public class ImageTaggingManager {
 
   /**
    * Add a tag filter. Now, when the user calls the method getImagePaths, all of the paths in the
-   * list that is returned will correspond to images that have this tag.
+   * list that is returned will correspond to images that have this tag, as well as matching the
+   * rest of the current query.
    *
    * @param tag a tag.
    */
   public void addTagFilter(String tag) {
-    if (!tagsToFilterBy.contains(tag)) tagsToFilterBy.add(tag);
-    tagsToFilterBy.sort(String::compareToIgnoreCase);
-    HashSet<String> pathsToRemove = new HashSet<>();
-    for (String path : filteredImagePaths) {
-      if (!PathFormatter.hasTags(path, tag)) {
-        pathsToRemove.add(path);
-      }
-    }
-    filteredImagePaths.removeAll(pathsToRemove);
+    tagQuery = tagQuery.and(tag);
+    filterImages();
   }
 
   /**
-   * Remove a tag filter. Now, when the user calls the method getImagePaths, the paths in the list
-   * that is returned will no longer necessarily correspond to images that have this tag.
+   * Remove a tag filter, or any other term of the current query, where term is one of the terms
+   * returned by getFilteredTags. Now, when the user calls the method getImagePaths, the paths in
+   * the list that is returned will no longer necessarily match this term.
    *
-   * @param tag a tag.
+   * @param term a tag, or the text of a term of the current query.
    */
-  public void removeTagFilter(String tag) {
-    tagsToFilterBy.remove(tag);
-    /* Handle the case where there are no longer any tags remaining to filter by. */
-    if (tagsToFilterBy.size() == 0) {
-      /* Set filteredImagePaths equal to a shallow copy of allImagePaths. */
-      filteredImagePaths = new ArrayList<>(allImagePaths);
-    }
-    /* Handle the case where there are still tags to filter by. */
-    else {
-      /* Clear filteredImagePaths, and then re-filter based on the remaining tags. */
-      filteredImagePaths.clear();
-      for (String path : allImagePaths) {
-        if (PathFormatter.hasTags(path, tagsToFilterBy)) {
-          filteredImagePaths.add(path);
-        }
-      }
+  public void removeTagFilter(String term) {
+    tagQuery = tagQuery.without(term);
+    filterImages();
+  }
+
+  /**
+   * Filter the images by the query written in text, query, such as "(beach OR coast) AND 2019 AND
+   * NOT rejected". Now, when the user calls the method getImagePaths, all of the paths in the list
+   * that is returned will correspond to images that match this query. An empty query removes all
+   * filters.
+   *
+   * @param query the text of a query.
+   * @throws IllegalArgumentException if query is not a valid query, in which case the filters are
+   *     not changed.
+   */
+  public void setTagQuery(String query) {
+    tagQuery = TagQuery.parse(query);
+    filterImages();
+  }
+
+  /**
+   * Return the text of the query that the images are currently filtered by, which is empty if
+   * there are no filters.
+   *
+   * @return the text of a query.
+   */
+  public String getTagQuery() {
+    return tagQuery.toString();
+  }
+
+  /** Make filteredImages the sorted records of the images that match the current query. */
+  private void filterImages() {
+    if (tagQuery.isEmpty()) {
+      /* Set filteredImages equal to a shallow copy of allImages. */
+      filteredImages = OrderStatisticTree.ofSorted(new ArrayList<>(allImages));
+    } else {
+      filteredImages = getImagesOfIds(tagQuery.evaluate(tagIndex, allIds));
     }
   }
 
@@ -290,50 +827,25 @@ public class ImageTaggingManager {
   /**
    * Change the image's path in the computer's file system from oldPath to newPath, log these
    * changes, update the image's history, and update the lists containing the all image paths at and
-   * below the current directory.
+   * below the current directory. An image that a tag removal is renaming is left as it is, and its
+   * old path is returned, so that the image is not moved by both at once.
    *
    * @param oldPath an old path to an image, as a String.
    * @param newPath a new path to an image, as a String.
    * @return an updated path to the image, as a String.
    */
   private String updateImage(String oldPath, String newPath) {
+    if (imagesBeingRenamed.contains(oldPath)) {
+      System.err.println("Image is being renamed by a tag removal: " + oldPath);
+      return oldPath;
+    }
     if (!oldPath.equals(newPath)) {
-      File destination = new File(newPath);
-      if (destination.exists()) {
-        String imageName = PathFormatter.getName(newPath);
-        int index = 1;
-        while (destination.exists()) {
-          newPath = PathFormatter.rename(newPath, imageName + " copy " + index);
-          destination = new File(newPath);
-          index++;
-        }
-      }
       try {
-        Files.move(Paths.get(oldPath), Paths.get(newPath));
+        newPath = BatchRenamer.move(oldPath, newPath);
         loggingManager.writeImageUpdateToLog(oldPath, newPath);
         imageHistoryManager.updateImage(oldPath, newPath);
-        /*
-         * Remove the old path from the lists of image paths.
-         */
-        if (currentDirectoryPath != null) {
-          allImagePaths.remove(oldPath);
-          filteredImagePaths.remove(oldPath);
-          /*
-           * Only add new path if the image is located at or below current directory.
-           */
-          if (PathFormatter.getDirectory(newPath).startsWith(currentDirectoryPath)) {
-            allImagePaths.add(newPath);
-            sortByName(allImagePaths);
-            /*
-             * Only add new path to list of paths of filtered images if the image has all of the
-             * tags that are being filtered for.
-             */
-            if (PathFormatter.hasTags(newPath, tagsToFilterBy)) {
-              filteredImagePaths.add(newPath);
-              sortByName(filteredImagePaths);
-            }
-          }
-        }
+        updateRecords(oldPath, newPath);
+        checkpointIfDue();
       } catch (IOException e) {
         System.err.print("Image could not be moved");
         e.printStackTrace();
@@ -342,6 +854,51 @@ public class ImageTaggingManager {
     return newPath;
   }
 
+  /**
+   * Update the lists containing the records of the images at and below the current directory for
+   * the image that was at oldPath having been moved to newPath.
+   *
+   * @param oldPath an old path to an image, as a String.
+   * @param newPath a new path to the image, as a String.
+   */
+  private void updateRecords(String oldPath, String newPath) {
+    if (currentDirectoryPath == null) {
+      return;
+    }
+    /*
+     * Remove the old record from the lists of image records. Its id is the next one to be reused,
+     * so the image keeps it if it stays at or below the current directory.
+     */
+    Integer id = idsByPath.get(oldPath);
+    if (id != null) {
+      ImageRecord oldImage = imagesById.get(id);
+      allImages.remove(oldImage);
+      filteredImages.remove(oldImage);
+      removeId(oldPath);
+      tagIndex.removeImage(id, oldImage);
+    }
+    /*
+     * Only add new record if the image is located at or below current directory, and has not been
+     * found there already.
+     */
+    if (PathFormatter.getDirectory(newPath).startsWith(currentDirectoryPath)
+        && !idsByPath.containsKey(newPath)) {
+      /* The new path is parsed once, here, rather than every time the image is sorted. */
+      ImageRecord image = parseImage(newPath);
+      allImages.add(image);
+      id = addId(image);
+      tagIndex.addImage(id, image);
+      idsInNameOrder = idsInNameOrder && isInNameOrder(id);
+      /*
+       * Only add new record to list of records of filtered images if the image matches the
+       * query that is being filtered for.
+       */
+      if (tagQuery.matches(image, tagDictionary)) {
+        filteredImages.add(image);
+      }
+    }
+  }
+
   /**
    * Return the path to the directory of the image at imagePath, as a String.
    *
@@ -359,7 +916,11 @@ public class ImageTaggingManager {
    * @return a sorted list of tags.
    */
   public List<String> getImagesTags(String imagePath) {
-    return PathFormatter.getTags(imagePath);
+    Integer id = idsByPath.get(imagePath);
+    if (id == null) {
+      return PathFormatter.getTags(imagePath);
+    }
+    return imagesById.get(id).getTags(tagDictionary);
   }
 
   /**
@@ -387,7 +948,11 @@ public class ImageTaggingManager {
    * @return a name.
    */
   public String getImagesName(String imagePath) {
-    return PathFormatter.getName(imagePath);
+    Integer id = idsByPath.get(imagePath);
+    if (id == null) {
+      return PathFormatter.getName(imagePath);
+    }
+    return imagesById.get(id).getName();
   }
 
   /**
@@ -411,19 +976,139 @@ public class ImageTaggingManager {
   public void addTagToMasterCollection(String tag) {
     tagManager.addTags(tag);
     loggingManager.writeTagAddedToLog(tag);
+    checkpointIfDue();
   }
 
   /**
-   * Stop storing tag, tag, and remove it from all images that the program has ever interacted with,
-   * and whose paths have not been changed outside of the program in the interim.
+   * Start removing tag, tag, from all images that the program has ever interacted with, and whose
+   * paths have not been changed outside of the program in the interim, and stop storing it in the
+   * master collection once every one of them has been renamed. Only the images that have the tag are found,
+   * from an index of the tracked images by tag, and they are renamed in the background, a
+   * directory at a time, on a bounded pool of threads, while listener is told the progress, using
+   * executor. Each rename is logged by the thread that made it, as soon as the image has been
+   * moved, and once every image has been renamed, the image histories and the lists of images are
+   * updated, in a single batch, using executor. Note: all of the other
+   * methods of this class must be called using the same thread as executor. A tag removal that is
+   * already in progress is cancelled.
    *
    * @param tag a tag.
+   * @param executor an Executor, which runs the tasks it is given one at a time.
+   * @param listener a TagRemovalListener, or null.
    */
-  public void removeTagFromMasterCollectionAndDeleteFromAllImages(String tag) {
-    for (String image : imageHistoryManager.getAllImages()) {
-      removeTagFromImage(image, tag);
+  public void removeTagFromAllImages(String tag, Executor executor, TagRemovalListener listener) {
+    cancelTagRemoval();
+    Map<String, String> renames = new HashMap<>();
+    for (String image : imageHistoryManager.getImagesWithTag(tag)) {
+      renames.put(image, PathFormatter.removeTag(image, tag));
     }
-    removeTagFromMasterCollection(tag);
+    int totalImages = renames.size();
+    if (totalImages == 0) {
+      removeTagFromMasterCollection(tag);
+      if (listener != null) {
+        executor.execute(() -> listener.imagesProcessed(0, 0));
+      }
+      return;
+    }
+    BatchRenamer renamer = new BatchRenamer(getCrawlerParallelism());
+    tagRemover = renamer;
+    tagBeingRemoved = tag;
+    imagesBeingRenamed = new HashSet<>(renames.keySet());
+    processedImages = 0;
+    renamer.rename(
+        renames,
+        new BatchRenamer.Listener() {
+          @Override
+          public void imageRenamed(String oldPath, String newPath) {
+            /* A rename is logged at once, so that it is recovered if the program crashes. */
+            loggingManager.writeImageUpdateToLog(oldPath, newPath);
+          }
+
+          @Override
+          public void imagesRenamed(int renamedImages) {
+            executor.execute(
+                () -> {
+                  /* Ignore the progress of a tag removal that has been cancelled. */
+                  if (tagRemover != renamer) {
+                    return;
+                  }
+                  processedImages += renamedImages;
+                  /* The removal only finishes once the program's data has been updated. */
+                  if (listener != null && processedImages < totalImages) {
+                    listener.imagesProcessed(processedImages, totalImages);
+                  }
+                });
+          }
+
+          @Override
+          public void renamingFinished(Map<String, String> renamed) {
+            executor.execute(
+                () -> {
+                  /* A tag removal that has been cancelled has been applied already. */
+                  if (tagRemover != renamer) {
+                    return;
+                  }
+                  finishTagRemoval(renamed);
+                  if (listener != null) {
+                    listener.imagesProcessed(totalImages, totalImages);
+                  }
+                });
+          }
+        });
+  }
+
+  /**
+   * Return true if and only if a tag is being removed from every image, by removeTagFromAllImages.
+   *
+   * @return a boolean value.
+   */
+  public boolean isRemovingTag() {
+    return tagRemover != null;
+  }
+
+  /**
+   * Stop removing a tag from every image, if a tag removal is in progress, once the images that
+   * are being renamed have been, apply the renames that have been made, and return the number of
+   * images that still have the tag. The images that have not been renamed yet keep the tag, so it
+   * is kept in the master collection, unless every image was renamed.
+   *
+   * @return the number of images that were not renamed, or 0 if no tag was being removed.
+   */
+  public int cancelTagRemoval() {
+    if (tagRemover == null) {
+      return 0;
+    }
+    return finishTagRemoval(tagRemover.cancel());
+  }
+
+  /**
+   * Update the image histories and the lists of images with the renames in renamed, which have
+   * been logged already, in a single batch, ending the tag removal in progress, and return the
+   * number of images that were not renamed. Only if every image was renamed does the master
+   * collection stop storing the tag being removed. Then apply the changes made by other programs
+   * in the meantime.
+   *
+   * @param renamed a map from old paths to new paths, as Strings.
+   * @return the number of images that still have the tag.
+   */
+  private int finishTagRemoval(Map<String, String> renamed) {
+    String tag = tagBeingRemoved;
+    int remainingImages = imagesBeingRenamed.size() - renamed.size();
+    tagRemover = null;
+    tagBeingRemoved = null;
+    imagesBeingRenamed = new HashSet<>();
+    for (Map.Entry<String, String> entry : renamed.entrySet()) {
+      imageHistoryManager.updateImage(entry.getKey(), entry.getValue());
+      updateRecords(entry.getKey(), entry.getValue());
+    }
+    if (remainingImages == 0) {
+      removeTagFromMasterCollection(tag);
+    }
+    List<DirectoryWatcher.Changes> changes = deferredChanges;
+    deferredChanges = new ArrayList<>();
+    for (DirectoryWatcher.Changes change : changes) {
+      applyChanges(change);
+    }
+    return remainingImages;
   }
 
   /**
@@ -436,6 +1121,7 @@ public class ImageTaggingManager {
   public void removeTagFromMasterCollection(String tag) {
     tagManager.removeTag(tag);
     loggingManager.writeTagRemovedToLog(tag);
+    checkpointIfDue();
   }
 
   /**
@@ -462,12 +1148,61 @@ public class ImageTaggingManager {
   }
 
   /**
-   * Return the list of the current tag filters.
+   * Return a list of at most limit of the tags the program is storing that contain text, or are
+   * spelled like it, such as "beach" for "beahc", excluding tags that are in tagsToExclude. The
+   * tags are ranked by relevance: first by the number of mistakes in text, then with tags that
+   * start with text first, then by the number of images that have them.
    *
-   * @return a list of tags.
+   * @param text the text that a user has typed.
+   * @param tagsToExclude Collection of tags to exclude
+   * @param limit the greatest number of tags to return
+   * @return a ranked list of tags.
+   */
+  public List<String> getTagSuggestions(String text, Collection<String> tagsToExclude, int limit) {
+    return tagManager.getSuggestions(text, tagsToExclude, limit, tagManager::getUsageCount);
+  }
+
+  /**
+   * Return the number of images that have tag, tag, among all of the images that the program has
+   * interacted with, and whose paths have not been changed outside of the program in the interim.
+   *
+   * @param tag a tag.
+   * @return a number of images.
+   */
+  public int getTagUsageCount(String tag) {
+    return tagManager.getUsageCount(tag);
+  }
+
+  /**
+   * Return a list of at most limit of the tags the program is storing that are used by at least one
+   * image, ordered by the number of images that have them, highest first, and then alphabetically.
+   *
+   * @param limit the greatest number of tags to return.
+   * @return a ranked list of tags.
+   */
+  public List<String> getMostUsedTags(int limit) {
+    return tagManager.getMostUsedTags(limit);
+  }
+
+  /**
+   * Return a list, sorted alphabetically, of the tags the program is storing that no image that the
+   * program has interacted with has.
+   *
+   * @return a sorted list of tags.
+   */
+  public List<String> getUnusedTags() {
+    return tagManager.getUnusedTags();
+  }
+
+  /**
+   * Return the list of the current tag filters, which are the terms that the current query
+   * requires. A term is a tag, unless the query was set using setTagQuery, in which case it may
+   * also be the text of a negation, or of a group of alternatives, such as "beach OR coast".
+   *
+   * @return a list of tags and texts of terms.
    */
   public List<String> getFilteredTags() {
-    return this.tagsToFilterBy;
+    return tagQuery.getTerms();
   }
 
   /**
@@ -478,7 +1213,7 @@ public class ImageTaggingManager {
    * @return a sorted list of tags.
    */
   public List<String> getAllAvailableTagsForImage(String imagePath) {
-    return tagManager.getTags(PathFormatter.getTags(imagePath));
+    return tagManager.getTags(getImagesTags(imagePath));
   }
 
   /**
@@ -490,12 +1225,24 @@ public class ImageTaggingManager {
    * @return a list of tags.
    */
   public List<String> getTagsAllImagesContain(List<String> tags, Collection<String> images) {
+    /* Look each image up once, rather than once for every tag. */
+    List<ImageRecord> records = new ArrayList<>(images.size());
+    for (String image : images) {
+      Integer id = idsByPath.get(image);
+      if (id == null) {
+        /* An image that is not being managed has none of the tags. */
+        return new ArrayList<>();
+      }
+      records.add(imagesById.get(id));
+    }
     List<String> tagsAllContain = new ArrayList<>();
     for (String tag : tags) {
+      int tagId = tagDictionary.getId(tag);
       boolean inAll = true;
-      for (String image : images) {
-        if (!PathFormatter.hasTags(image, tag)) {
+      for (ImageRecord record : records) {
+        if (!record.hasTag(tagId)) {
           inAll = false;
+          break;
         }
       }
       if (inAll) {
@@ -508,21 +1255,82 @@ public class ImageTaggingManager {
   /* File System Methods */
 
   /**
-   * Return a list of lines in the log file that records all of the changes made to images files
-   * through the program.
+   * Set how far the changes that are logged from now on are pushed towards the storage device
+   * before they count as logged. Changes are logged in groups, on a background thread, so this
+   * applies once per group, rather than once per change. The default is Durability.FLUSH.
+   *
+   * @param durability a Durability.
+   */
+  public void setLogDurability(Durability durability) {
+    loggingManager.setDurability(durability);
+  }
+
+  /**
+   * Return how far the changes that are logged are pushed towards the storage device before they
+   * count as logged.
+   *
+   * @return a Durability.
+   */
+  public Durability getLogDurability() {
+    return loggingManager.getDurability();
+  }
+
+  /**
+   * Return a future that completes once every change that has been made so far has been logged,
+   * which a caller that makes many changes can wait for once, after the last of them.
+   *
+   * @return a future.
+   */
+  public CompletableFuture<Void> flushLogs() {
+    return loggingManager.flush();
+  }
+
+  /**
+   * If enough changes have been logged since the last checkpoint, or it was long enough ago, copy
+   * the data that the program is storing, and write it to the snapshot file in the background, so
+   * that the changes that must be replayed if the program crashes stay few, however long it has
+   * been running. No checkpoint is taken while a tag is being removed, since the renames that have
+   * been logged are not in the image histories until the removal finishes.
+   */
+  private void checkpointIfDue() {
+    if (tagRemover == null && loggingManager.isCheckpointDue()) {
+      loggingManager.checkpoint(
+          imageHistoryManager.getMapCopy(),
+          imageHistoryManager.getIdentitiesCopy(),
+          tagManager.getTags(),
+          tagManager.getUsageCounts(),
+          scanCache.getMap());
+    }
+  }
+
+  /**
+   * Return a new reader of the log file that records all of the changes made to images files
+   * through the program, which reads its lines on demand, newest first, so that a log of any
+   * length can be displayed a page at a time. The caller must close the reader. Note: this method
+   * does not modify this ImageTaggingManager, and may be called on a background thread.
    *
-   * @return list of lines corresponding to changes made to images through the program.
+   * @return a LogReader object.
+   * @throws IOException if the log file could not be opened.
    */
-  public String readLogFile() {
-    return loggingManager.readLogFile();
+  public LogReader openLogFile() throws IOException {
+    return loggingManager.openLogFile();
   }
 
   /**
-   * Close the log files, and serialize the list of tags that the program is storing, and the map
-   * from image path to list of old names, so that they will be preserved for when the program is
-   * run again.
+   * Close the log files, and save a snapshot of the list of tags that the program is storing, the
+   * number of images that have each tag, the map from image path to list of old names, and the
+   * listings of the directories that have been crawled, so that they will be preserved for when the
+   * program is run again.
    */
   public void saveData() {
-    loggingManager.endLogging(imageHistoryManager.getMap(), tagManager.getTags());
+    stopWatching();
+    cancelValidation();
+    cancelTagRemoval();
+    loggingManager.endLogging(
+        imageHistoryManager.getMap(),
+        imageHistoryManager.getIdentitiesCopy(),
+        tagManager.getTags(),
+        tagManager.getUsageCounts(),
+        scanCache.getMap());
   }
 }
@@ -1,6 +1,9 @@
 package model;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A class that initializes an ImageTaggingManager and all of its sub-managers, LogManager,
@@ -24,40 +27,142 @@ public class ImageTaggingManagerFactory {
   private static final String LOG_FILE_LOCATION = "Log.txt";
 
   /**
-   * Store the location where the Serialized map from image paths, as Strings, to lists of old names
-   * is to be stored, as a String.
+   * Store the location where the snapshot of the image histories, tags, tag usage counts and
+   * directory listings is to be stored, as a String.
+   */
+  private static final String SNAPSHOT_FILE_LOCATION = "Snapshot.dat";
+
+  /**
+   * Store the location where earlier versions of the program stored the Serialized map from image
+   * paths, as Strings, to lists of old names, as a String.
    */
   private static final String IMAGES_SERIALIZED_FILE_LOCATION = "ImageHistory.ser";
 
-  /** Store the location where the Serialized tags list is to be stored, as a String. */
+  /**
+   * Store the location where earlier versions of the program stored the Serialized tags list, as a
+   * String.
+   */
   private static final String TAGS_SERIALIZED_FILE_LOCATION = "TagHistory.ser";
 
+  /**
+   * Store the location where earlier versions of the program stored the Serialized map from tags
+   * to the number of images that have them, as a String.
+   */
+  private static final String TAG_USAGE_SERIALIZED_FILE_LOCATION = "TagUsage.ser";
+
+  /**
+   * Store the location where earlier versions of the program stored the Serialized map from
+   * directory paths, as Strings, to directory listings, as a String.
+   */
+  private static final String SCAN_CACHE_SERIALIZED_FILE_LOCATION = "ScanCache.ser";
+
   /**
    * Returns a new ImageTaggingManager object with all sub manager's initialized.
    *
    * @return a new ImageTaggingManager object.
    */
   public static ImageTaggingManager getImageTaggingManager() {
+    return getImageTaggingManager(null);
+  }
+
+  /**
+   * Returns a new ImageTaggingManager object with all sub manager's initialized, which stores its
+   * logs and snapshot file in the directory at dataDirectory, rather than in the current
+   * directory.
+   *
+   * @param dataDirectory a path to a directory, as a String, or null for the current directory.
+   * @return a new ImageTaggingManager object.
+   */
+  public static ImageTaggingManager getImageTaggingManager(String dataDirectory) {
+    /* Move the data saved by earlier versions of the program into a snapshot file, once. */
+    SerializedFileMigrator.migrate(
+        getLocation(dataDirectory, SNAPSHOT_FILE_LOCATION),
+        getLocation(dataDirectory, IMAGES_SERIALIZED_FILE_LOCATION),
+        getLocation(dataDirectory, TAGS_SERIALIZED_FILE_LOCATION),
+        getLocation(dataDirectory, TAG_USAGE_SERIALIZED_FILE_LOCATION),
+        getLocation(dataDirectory, SCAN_CACHE_SERIALIZED_FILE_LOCATION));
     LoggingManager loggingManager =
         new LoggingManager(
-            LOG_FILE_LOCATION,
-            IMAGES_TEMP_FILE_LOCATION,
-            TAGS_TEMP_FILE_LOCATION,
-            IMAGES_SERIALIZED_FILE_LOCATION,
-            TAGS_SERIALIZED_FILE_LOCATION);
-    ImageHistoryManager imageHistoryManager =
-        new ImageHistoryManager(loggingManager.getSerializedImageHistories());
-    TagManager tagManager = new TagManager(loggingManager.getSerializedOldTags());
+            getLocation(dataDirectory, LOG_FILE_LOCATION),
+            getLocation(dataDirectory, IMAGES_TEMP_FILE_LOCATION),
+            getLocation(dataDirectory, TAGS_TEMP_FILE_LOCATION),
+            getLocation(dataDirectory, SNAPSHOT_FILE_LOCATION));
+    /*
+     * Only the paths of the images are read from the snapshot file, unless it cannot be read that
+     * way, and each image's old names are read once they are needed.
+     */
+    Map<String, Integer> savedOffsets = loggingManager.getSavedImageHistoryIndex();
+    Map<String, List<String>> imageHistories =
+        savedOffsets != null ? new HashMap<>() : loggingManager.getSavedImageHistories();
+    Map<String, Integer> tagUsage = loggingManager.getSavedTagUsage();
+    TagManager tagManager;
+    if (tagUsage != null) {
+      tagManager = new TagManager(loggingManager.getSavedTags(), tagUsage);
+    } else {
+      /* Count the tag usage, once, for data saved before the counts were saved with it. */
+      tagManager = new TagManager(loggingManager.getSavedTags());
+      for (String image : savedOffsets != null ? savedOffsets.keySet() : imageHistories.keySet()) {
+        tagManager.addUsage(PathFormatter.getTags(image));
+      }
+    }
+    /* From here on, the tag usage is updated with every image the history manager stores. */
+    ImageHistoryManager imageHistoryManager;
+    if (savedOffsets != null) {
+      imageHistoryManager =
+          new ImageHistoryManager(
+              imageHistories,
+              savedOffsets,
+              loggingManager.getSavedImageHistoryReader(),
+              tagManager);
+    } else {
+      imageHistoryManager = new ImageHistoryManager(imageHistories, tagManager);
+    }
+    imageHistoryManager.setIdentities(loggingManager.getSavedImageIdentities());
+    recoverFromLogs(loggingManager, imageHistoryManager, tagManager);
+    /*
+     * The images being tracked that no longer exist in the computer's file system are not removed
+     * here, which would keep the program from starting until every image had been checked; the
+     * caller checks them in the background, with ImageTaggingManager.validateImages.
+     */
+    ScanCache scanCache = new ScanCache(loggingManager.getSavedScanCache());
+    return new ImageTaggingManager(imageHistoryManager, tagManager, loggingManager, scanCache);
+  }
+
+  /**
+   * Return the location, as a String, of the file named fileName in the directory at
+   * dataDirectory, or fileName itself if dataDirectory is null.
+   *
+   * @param dataDirectory a path to a directory, as a String, or null.
+   * @param fileName the name of a file.
+   * @return the location of the file, as a String.
+   */
+  private static String getLocation(String dataDirectory, String fileName) {
+    return dataDirectory == null ? fileName : new File(dataDirectory, fileName).getPath();
+  }
+
+  /**
+   * Update the image histories in imageHistoryManager and the tags in tagManager with the changes
+   * recorded in the temporary logs of loggingManager, which are only left behind if the program did
+   * not close properly, and only cover the changes made since the last checkpoint.
+   *
+   * @param loggingManager a LoggingManager object.
+   * @param imageHistoryManager an ImageHistoryManager object.
+   * @param tagManager a TagManager object.
+   */
+  static void recoverFromLogs(
+      LoggingManager loggingManager,
+      ImageHistoryManager imageHistoryManager,
+      TagManager tagManager) {
     /*
      * If the temporary image history log file is not an empty file (in which case the program crashed the last
      * time(s) that it was run), update the programs image history data so that it reflects the changes that were made
      * during this session(s).
      */
     for (String line : loggingManager.readImagesTempFile()) {
-      if (line != null) {
-        /* The format of this temporary log file is an old path, followed by a comma, followed by the new path. */
-        String[] split = line.split(",");
-        imageHistoryManager.updateImage(split[0], split[1]);
+      /* Each line records an old path and a new path, in a format that allows commas in both. */
+      String[] paths = line != null ? LoggingManager.parseImageUpdate(line) : null;
+      if (paths != null) {
+        imageHistoryManager.updateImage(paths[0], paths[1]);
       }
     }
     /*
@@ -77,16 +182,5 @@ public class ImageTaggingManagerFactory {
         }
       }
     }
-
-    for (String image : imageHistoryManager.getAllImages()) {
-      /*
-       * Loop through all images being tracked and delete those that no longer exist in the computer's file
-       * system at the path that the program is storing.
-       */
-      if (!(new File(image)).exists()) {
-        imageHistoryManager.removeImage(image);
-      }
-    }
-    return new ImageTaggingManager(imageHistoryManager, tagManager, loggingManager);
   }
 }
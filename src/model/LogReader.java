@@ -0,0 +1,256 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that reads the lines of a log file on demand, newest first, without loading the file
+ * into memory. The file is memory-mapped, and the offset of every INDEX_INTERVAL-th line is
+ * recorded once, when the file is opened, so that any line can be found by scanning at most
+ * INDEX_INTERVAL lines of the file, and the index stays small however long the log grows. Lines
+ * that are appended to the file after it has been opened are read by calling refresh. Note: a
+ * LogReader must only be used by one thread at a time.
+ */
+public class LogReader implements Closeable {
+
+  /** Store the number of lines between each pair of lines whose offsets are recorded. */
+  private static final int INDEX_INTERVAL = 64;
+
+  /** Store the greatest number of bytes of the file that are mapped by a single buffer. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  /** Store the channel that the file is mapped through. */
+  private final FileChannel channel;
+
+  /** Store the charset that the log file was written in. */
+  private final Charset charset = Charset.defaultCharset();
+
+  /** Store the buffers that map the file, each of which maps SEGMENT_SIZE bytes but the last. */
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  /** Store the number of bytes of the file that are mapped. */
+  private long mappedSize;
+
+  /** Store the number of bytes of the file that are taken up by complete lines. */
+  private long indexedSize;
+
+  /** Store the offset of every INDEX_INTERVAL-th line, starting with the first. */
+  private long[] index = new long[16];
+
+  /** Store the number of complete lines in the file. */
+  private int lineCount;
+
+  /**
+   * Create a new LogReader object, which reads the file through channel, channel.
+   *
+   * @param channel a channel that reads a log file.
+   */
+  private LogReader(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Return a new LogReader object that reads the log file, file, after indexing its lines.
+   *
+   * @param file a log file.
+   * @return a LogReader object.
+   * @throws IOException if the file could not be opened, or mapped.
+   */
+  public static LogReader open(File file) throws IOException {
+    LogReader reader = new LogReader(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    try {
+      reader.refresh();
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+    return reader;
+  }
+
+  /**
+   * Return the number of complete lines in the log file, as of when it was opened, or last
+   * refreshed.
+   *
+   * @return a number of lines.
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Return the line of the log file at index, index, counting from the newest line, without its
+   * line separator.
+   *
+   * @param index an index from 0 to getLineCount() - 1.
+   * @return a line.
+   */
+  public String getLine(int index) {
+    if (index < 0 || index >= lineCount) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lineCount);
+    }
+    return readLine(lineCount - 1 - index);
+  }
+
+  /**
+   * Return a page of at most count lines of the log file, starting at index, from, counting from
+   * the newest line, without their line separators.
+   *
+   * @param from an index from 0 to getLineCount().
+   * @param count the greatest number of lines to return.
+   * @return a list of lines, newest first.
+   */
+  public List<String> getLines(int from, int count) {
+    if (from < 0 || from > lineCount || count < 0) {
+      throw new IndexOutOfBoundsException("From: " + from + ", Size: " + lineCount);
+    }
+    int to = (int) Math.min(lineCount, (long) from + count);
+    List<String> lines = new ArrayList<>(to - from);
+    if (from == to) {
+      return lines;
+    }
+    /* Read the page oldest first, scanning the file once, and then put the newest line first. */
+    long start = findLineStart(lineCount - to);
+    for (int line = lineCount - to; line < lineCount - from; line++) {
+      long end = findLineEnd(start);
+      lines.add(decode(start, end));
+      start = end + 1;
+    }
+    Collections.reverse(lines);
+    return lines;
+  }
+
+  /**
+   * Map and index the lines that have been appended to the log file since it was opened, or last
+   * refreshed, and return how many complete lines were added, which come before every other line.
+   *
+   * @return the number of lines added.
+   * @throws IOException if the file could not be mapped.
+   */
+  public int refresh() throws IOException {
+    long size = channel.size();
+    if (size > mappedSize) {
+      /* The last buffer may only map part of a segment, so map it again, up to the new size. */
+      if (!segments.isEmpty() && segments.get(segments.size() - 1).capacity() < SEGMENT_SIZE) {
+        segments.remove(segments.size() - 1);
+      }
+      for (long start = segments.size() * SEGMENT_SIZE; start < size; start += SEGMENT_SIZE) {
+        long length = Math.min(SEGMENT_SIZE, size - start);
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+      }
+      mappedSize = size;
+    }
+    int oldLineCount = lineCount;
+    indexLines();
+    return lineCount - oldLineCount;
+  }
+
+  /** Stop reading the log file. */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /** Record the offsets of the complete lines that are mapped, but have not been indexed yet. */
+  private void indexLines() {
+    long position = indexedSize;
+    while (position < mappedSize) {
+      int segmentIndex = (int) (position / SEGMENT_SIZE);
+      MappedByteBuffer segment = segments.get(segmentIndex);
+      long segmentStart = segmentIndex * SEGMENT_SIZE;
+      int limit = segment.limit();
+      for (int i = (int) (position - segmentStart); i < limit; i++) {
+        if (segment.get(i) == '\n') {
+          long nextLineStart = segmentStart + i + 1;
+          lineCount++;
+          if (lineCount % INDEX_INTERVAL == 0) {
+            int entry = lineCount / INDEX_INTERVAL;
+            if (entry == index.length) {
+              index = Arrays.copyOf(index, index.length * 2);
+            }
+            index[entry] = nextLineStart;
+          }
+          indexedSize = nextLineStart;
+        }
+      }
+      position = segmentStart + limit;
+    }
+  }
+
+  /**
+   * Return the line at index, line, counting from the oldest line.
+   *
+   * @param line an index from 0 to lineCount - 1.
+   * @return a line.
+   */
+  private String readLine(int line) {
+    long start = findLineStart(line);
+    return decode(start, findLineEnd(start));
+  }
+
+  /**
+   * Return the offset of the start of the line at index, line, counting from the oldest line,
+   * scanning forward from the nearest line whose offset has been recorded.
+   *
+   * @param line an index from 0 to lineCount - 1.
+   * @return an offset in the file.
+   */
+  private long findLineStart(int line) {
+    long start = index[line / INDEX_INTERVAL];
+    for (int skipped = 0; skipped < line % INDEX_INTERVAL; skipped++) {
+      start = findLineEnd(start) + 1;
+    }
+    return start;
+  }
+
+  /**
+   * Return the offset of the line separator of the complete line that starts at offset, start.
+   *
+   * @param start the offset of the start of a complete line.
+   * @return the offset of its '\n'.
+   */
+  private long findLineEnd(long start) {
+    long position = start;
+    while (getByte(position) != '\n') {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Return the text of the file from offset, start, up to offset, end, leaving out a '\r' that
+   * ends it.
+   *
+   * @param start the offset of the start of the text.
+   * @param end the offset of the end of the text, exclusive.
+   * @return a String.
+   */
+  private String decode(long start, long end) {
+    if (end > start && getByte(end - 1) == '\r') {
+      end--;
+    }
+    byte[] bytes = new byte[(int) (end - start)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = getByte(start + i);
+    }
+    return new String(bytes, charset);
+  }
+
+  /**
+   * Return the byte of the file at offset, position.
+   *
+   * @param position an offset in the mapped part of the file.
+   * @return a byte.
+   */
+  private byte getByte(long position) {
+    return segments.get((int) (position / SEGMENT_SIZE)).get((int) (position % SEGMENT_SIZE));
+  }
+}
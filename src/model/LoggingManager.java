@@ -3,6 +3,12 @@ package model;
 import java.io.*;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A class that is responsible for updating a user-facing log of all changes made to images through
@@ -10,56 +16,111 @@ import java.util.*;
  * tags, and to image files. If the program crashes, these later two logs can be used to ensure that
  * the master collection of tags and the image path to old image names map are updated to reflect
  * the changes made prior to the program crashing (this includes if the program crashed for multiple
- * consecutive sessions). In addition, this class is responsible for reading and writing the files
- * containing the serialized master list of tags stored by the program, and the serialized image
- * path to list of old names map, which allow for this data to persist between the closing and
- * re-opening of the program.
+ * consecutive sessions). In addition, this class is responsible for reading and writing the
+ * snapshot file containing the master list of tags stored by the program, the map from each tag to
+ * the number of images that have it, the image path to list of old names map, and the directory
+ * listings, which allow for this data to persist between the closing and re-opening of the
+ * program.
+ *
+ * <p>The temporary logs are written in generations. At a checkpoint, both logs move on to a new
+ * generation at the same moment as the program's data is copied, and the copy is written to the
+ * snapshot file in the background, along with the first generation whose changes it does not
+ * contain. Only once the snapshot has been written are the logs of earlier generations deleted, so
+ * a crash at any point leaves either the old snapshot and every log it needs, or the new snapshot,
+ * which says which logs to skip. Checkpoints are taken often enough that the changes replayed when
+ * the program is started again are bounded, however long the session that crashed was.
  */
 class LoggingManager {
 
+  /** Store the number of changes logged since the last checkpoint that makes a checkpoint due. */
+  static final int CHECKPOINT_RECORDS = 10000;
+
+  /**
+   * Store the number of milliseconds since the last checkpoint after which any change that has been
+   * logged makes a checkpoint due.
+   */
+  static final long CHECKPOINT_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
   /** Store the location of the user-facing log file, as a String. */
   private String logFileLocation;
 
   /**
-   * Store the location, as a String, of the temporary log file that is responsible for recording
-   * changes made to images through the program.
+   * Store the image history temporary log file that earlier versions of the program wrote, which
+   * the files of each generation are named after.
    */
-  private String imagesTempFileLocation;
+  private File imagesTempFile;
 
   /**
-   * Store the location, as a String, of the temporary log file that is responsible for recording
-   * changes made to the program's master collection of tags.
+   * Store the master tag list history temporary log file that earlier versions of the program
+   * wrote, which the files of each generation are named after.
    */
-  private String tagTempFileLocation;
+  private File tagTempFile;
+
+  /** Store the generation of the temporary logs that changes are written to. */
+  private long logGeneration;
 
   /**
-   * Store the location, as a String, of the serialized image path to list of old names map file.
+   * Store the image history temporary log files, in the order they were written, whose changes are
+   * not in the snapshot file, and must be recovered.
    */
-  private String serializedImageHistoryLocation;
+  private List<File> imagesRecoveryFiles = new ArrayList<>();
 
-  /** Store the location, as a String, of serialized tags list file. */
-  private String serializedTagsLocation;
+  /**
+   * Store the master tag list history temporary log files, in the order they were written, whose
+   * changes are not in the snapshot file, and must be recovered.
+   */
+  private List<File> tagRecoveryFiles = new ArrayList<>();
 
-  /** Store the image history temporary log file. */
-  private File imagesTempFile;
+  /** Store the number of changes written to the temporary logs since the last checkpoint. */
+  private final AtomicInteger recordsSinceCheckpoint = new AtomicInteger();
 
-  /** Store the master tag list history temporary log file. */
-  private File tagTempFile;
+  /** Store the time, in milliseconds, of the last checkpoint, or of the start of logging. */
+  private long lastCheckpointTime = System.currentTimeMillis();
 
-  /** Store the serialize image path to list of old names map file. */
-  private File serializedImagesHistoryFile;
+  /** Store the thread that writes the snapshot file at each checkpoint. */
+  private ExecutorService checkpointExecutor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "Checkpoint");
+            thread.setDaemon(true);
+            return thread;
+          });
 
-  /** Store the serialized master list of tags file. */
-  private File serializedTagsFile;
+  /** Store the checkpoint that is being written, or null if none has been started. */
+  private Future<?> checkpoint;
 
-  /** Store the BufferedWriter that writes to the user-facing log file. */
-  private BufferedWriter logFileWriter;
+  /** Store the snapshot file. */
+  private File snapshotFile;
 
-  /** Store the BufferedWriter that writes to the image history temporary log file. */
-  private BufferedWriter imagesTempWriter;
+  /**
+   * Store the reader of the snapshot file, which is opened when it is first read from, or null if
+   * it has not been opened yet, or could not be.
+   */
+  private SnapshotFile snapshot;
 
-  /** Store the BufferedWriter that writes to the master tag collection temporary log file. */
-  private BufferedWriter tagTempWriter;
+  /** Store true if and only if the snapshot file has been opened, or could not be. */
+  private boolean snapshotOpened;
+
+  /**
+   * Store the reader of the lists of old names left in the snapshot file that was read when the
+   * program started, or null if none has been opened.
+   */
+  private SnapshotFile.HistoryReader historyReader;
+
+  /**
+   * Store the write-ahead log that appends lines to all of the log files, in groups, on a
+   * background thread.
+   */
+  private WriteAheadLog writeAheadLog = new WriteAheadLog(Durability.FLUSH);
+
+  /** Store the stream that appends to the user-facing log file. */
+  private WriteAheadLog.Stream logFileStream;
+
+  /** Store the stream that appends to the image history temporary log file. */
+  private WriteAheadLog.Stream imagesTempStream;
+
+  /** Store the stream that appends to the master tag collection temporary log file. */
+  private WriteAheadLog.Stream tagTempStream;
 
   /**
    * Create a new LoggingManager object, given locations to store and read the necessary files
@@ -67,30 +128,21 @@ class LoggingManager {
    * @param logFileLocation location of user-facing log file, as a String.
    * @param imagesTempFileLocation location of temporary image history log file, as a String.
    * @param tagTempFileLocation location of temporary tags log file, as a String.
-   * @param serializedImageHistoryLocation location of serialized image history file, as a String.
-   * @param serializedTagsLocation location of serialized tags list file, as a String.
+   * @param snapshotLocation location of snapshot file, as a String.
    */
   LoggingManager(
       String logFileLocation,
       String imagesTempFileLocation,
       String tagTempFileLocation,
-      String serializedImageHistoryLocation,
-      String serializedTagsLocation) {
+      String snapshotLocation) {
     /* Initialize all locations and files. */
     this.logFileLocation = logFileLocation;
-    this.imagesTempFileLocation = imagesTempFileLocation;
-    this.tagTempFileLocation = tagTempFileLocation;
-    this.serializedImageHistoryLocation = serializedImageHistoryLocation;
-    this.serializedTagsLocation = serializedTagsLocation;
     File logFile = new File(logFileLocation);
     imagesTempFile = new File(imagesTempFileLocation);
     tagTempFile = new File(tagTempFileLocation);
-    serializedImagesHistoryFile = new File(serializedImageHistoryLocation);
-    serializedTagsFile = new File(serializedTagsLocation);
+    snapshotFile = new File(snapshotLocation);
 
-    /* If log files do not exist, attempt to create them.  Note: the log files are only deleted when the
-     * program is successfully closed.  Therefore, if the program crashes multiple times in a row, the data from
-     * the sessions prior to the most recent one will also be retained.  */
+    /* If the log file does not exist, attempt to create it. */
     if (!logFile.exists()) {
       try {
         logFile.createNewFile();
@@ -98,49 +150,120 @@ class LoggingManager {
         e.printStackTrace();
       }
     }
-    if (!imagesTempFile.exists()) {
-      try {
-        imagesTempFile.createNewFile();
-      } catch (IOException e) {
-        e.printStackTrace();
+
+    /*
+     * Find the temporary logs whose changes are not in the snapshot file, which are only left
+     * behind if the program did not close properly, and delete those whose changes are, which are
+     * left behind if the program crashed between writing a checkpoint and deleting them. The logs
+     * that earlier versions of the program wrote have no generation, and come before the others.
+     */
+    long snapshotGeneration = readSnapshotLogGeneration();
+    SortedSet<Long> generations = new TreeSet<>();
+    generations.addAll(findGenerations(imagesTempFile));
+    generations.addAll(findGenerations(tagTempFile));
+    if (snapshotGeneration < 0) {
+      addIfExists(imagesRecoveryFiles, imagesTempFile);
+      addIfExists(tagRecoveryFiles, tagTempFile);
+    } else {
+      imagesTempFile.delete();
+      tagTempFile.delete();
+    }
+    for (long generation : generations) {
+      if (generation >= snapshotGeneration) {
+        addIfExists(imagesRecoveryFiles, getGenerationFile(imagesTempFile, generation));
+        addIfExists(tagRecoveryFiles, getGenerationFile(tagTempFile, generation));
+      } else {
+        getGenerationFile(imagesTempFile, generation).delete();
+        getGenerationFile(tagTempFile, generation).delete();
       }
     }
-    if (!tagTempFile.exists()) {
-      try {
-        tagTempFile.createNewFile();
-      } catch (IOException e) {
-        e.printStackTrace();
+    /* Write this session's changes to a generation of their own. */
+    logGeneration = Math.max(0, snapshotGeneration);
+    if (!generations.isEmpty()) {
+      logGeneration = Math.max(logGeneration, generations.last() + 1);
+    }
+
+    /* Create streams for all log files. */
+    logFileStream = writeAheadLog.open(logFile);
+    imagesTempStream = writeAheadLog.open(getGenerationFile(imagesTempFile, logGeneration));
+    tagTempStream = writeAheadLog.open(getGenerationFile(tagTempFile, logGeneration));
+  }
+
+  /**
+   * Return the line that records, in the temporary image history log, that the image at oldPath
+   * was moved to newPath. The line starts with a '#', which no absolute path starts with, and the
+   * length of oldPath, so that it can be split correctly even if the paths contain commas.
+   *
+   * @param oldPath a path to an image, as a String.
+   * @param newPath a new path to that image, as a String.
+   * @return a line, without a line separator.
+   */
+  static String formatImageUpdate(String oldPath, String newPath) {
+    return "#" + oldPath.length() + ":" + oldPath + "," + newPath;
+  }
+
+  /**
+   * Return the old path and the new path, in that order, recorded by a line of the temporary image
+   * history log, or null if the line is malformed. Lines written by earlier versions of the
+   * program, which are just the old path, a comma and the new path, are split at the first comma
+   * that is followed by the start of the line up to its first name separator, which is right
+   * unless a name in the old path starts with that text.
+   *
+   * @param line a line of the temporary image history log.
+   * @return an array of two paths, as Strings, or null.
+   */
+  static String[] parseImageUpdate(String line) {
+    if (line.startsWith("#")) {
+      int colon = line.indexOf(':');
+      if (colon > 1) {
+        try {
+          int length = Integer.parseInt(line.substring(1, colon));
+          int end = colon + 1 + length;
+          if (length >= 0 && length <= line.length() - colon - 2 && line.charAt(end) == ',') {
+            return new String[] {line.substring(colon + 1, end), line.substring(end + 1)};
+          }
+        } catch (NumberFormatException e) {
+          /* The line is malformed. */
+        }
       }
+      return null;
     }
-    /* Create writers for all log files. */
-    try {
-      logFileWriter = new BufferedWriter(new FileWriter(logFile, true));
-    } catch (IOException e) {
-      e.printStackTrace();
+    int separator = 0;
+    while (separator < line.length()
+        && line.charAt(separator) != '/'
+        && line.charAt(separator) != '\\') {
+      separator++;
     }
-    try {
-      imagesTempWriter = new BufferedWriter(new FileWriter(imagesTempFile, true));
-    } catch (IOException e) {
-      e.printStackTrace();
+    String root = line.substring(0, Math.min(separator + 1, line.length()));
+    int comma = line.indexOf(',');
+    if (comma < 0) {
+      return null;
     }
-    try {
-      tagTempWriter = new BufferedWriter(new FileWriter(tagTempFile, true));
-    } catch (IOException e) {
-      e.printStackTrace();
+    for (int i = comma; i >= 0; i = line.indexOf(',', i + 1)) {
+      if (line.startsWith(root, i + 1)) {
+        comma = i;
+        break;
+      }
     }
+    return new String[] {line.substring(0, comma), line.substring(comma + 1)};
   }
 
   /**
-   * Log a change to an image, in both the user-facing log and the temporary image history log. If
-   * no change occurred, write nothing.
+   * Log a change to an image, in both the user-facing log and the temporary image history log, and
+   * return a future that completes once the change has been written to the temporary image history
+   * log. If no change occurred, write nothing, and return a future that has already completed.
+   * Note: this method may be called on any thread.
    *
    * @param oldPath a path to an image, as a String.
    * @param newPath a new path to that image, as a String.
+   * @return a future.
    */
-  void writeImageUpdateToLog(String oldPath, String newPath) {
+  CompletableFuture<Void> writeImageUpdateToLog(String oldPath, String newPath) {
+    CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
     if (!oldPath.equals(newPath)) {
       /* Write changes to temporary image history log. */
-      writeToLog(imagesTempWriter, oldPath + "," + newPath);
+      written = writeAheadLog.append(imagesTempStream, formatImageUpdate(oldPath, newPath));
+      recordsSinceCheckpoint.incrementAndGet();
       /* Write changes to the user-facing log file. */
       String toWrite;
       if (!PathFormatter.getDirectory(oldPath).equals(PathFormatter.getDirectory(newPath))) {
@@ -155,222 +278,548 @@ class LoggingManager {
                 + PathFormatter.getFullName(newPath)
                 + "\"";
       }
-      writeToLog(logFileWriter, (new Timestamp((new Date()).getTime())).toString() + " " + toWrite);
+      writeAheadLog.append(
+          logFileStream, (new Timestamp((new Date()).getTime())).toString() + " " + toWrite);
     }
+    return written;
   }
 
   /**
    * Write to the temporary master tag collection history log that a new tag, tag, has been added to
-   * the master collection of tags.
+   * the master collection of tags, and return a future that completes once it has been written.
    *
    * @param tag a tag.
+   * @return a future.
+   */
+  CompletableFuture<Void> writeTagAddedToLog(String tag) {
+    recordsSinceCheckpoint.incrementAndGet();
+    return writeAheadLog.append(tagTempStream, "a:" + tag);
+  }
+
+  /**
+   * Write to the temporary master tag collection history log that the new tags, tags, have been
+   * added to the master collection of tags, as a single record, and return a future that completes
+   * once it has been written.
+   *
+   * @param tags a collection of tags.
+   * @return a future.
    */
-  void writeTagAddedToLog(String tag) {
-    writeToLog(tagTempWriter, "a:" + tag);
+  CompletableFuture<Void> writeTagsAddedToLog(Collection<String> tags) {
+    List<String> lines = new ArrayList<>(tags.size());
+    for (String tag : tags) {
+      lines.add("a:" + tag);
+    }
+    recordsSinceCheckpoint.addAndGet(lines.size());
+    return writeAheadLog.append(tagTempStream, lines);
   }
 
   /**
    * Write to the temporary master tag collection history log that a tag, tag, was removed from the
-   * master collection of tags.
+   * master collection of tags, and return a future that completes once it has been written.
    *
    * @param tag a tag.
+   * @return a future.
    */
-  void writeTagRemovedToLog(String tag) {
-    writeToLog(tagTempWriter, "r:" + tag);
+  CompletableFuture<Void> writeTagRemovedToLog(String tag) {
+    recordsSinceCheckpoint.incrementAndGet();
+    return writeAheadLog.append(tagTempStream, "r:" + tag);
   }
 
   /**
-   * Write to a log, given a writer and a string line of what to write.
+   * Return true if and only if a checkpoint is due: CHECKPOINT_RECORDS changes have been logged
+   * since the last checkpoint, or any change has been logged and CHECKPOINT_INTERVAL milliseconds
+   * have passed, and the last checkpoint has finished being written.
    *
-   * @param writer a writer used to write to the log.
-   * @param line a string to write to the log as a new line.
+   * @return true if and only if a checkpoint is due.
    */
-  private void writeToLog(BufferedWriter writer, String line) {
-    try {
-      writer.write(line);
-      writer.newLine();
-      writer.flush();
-    } catch (IOException e) {
-      e.printStackTrace();
+  boolean isCheckpointDue() {
+    if (recordsSinceCheckpoint.get() == 0 || (checkpoint != null && !checkpoint.isDone())) {
+      return false;
     }
+    return recordsSinceCheckpoint.get() >= CHECKPOINT_RECORDS
+        || System.currentTimeMillis() - lastCheckpointTime >= CHECKPOINT_INTERVAL;
   }
 
   /**
-   * Return the Map that was serialized in the serialized image histories file, or an empty map if
-   * this object does not exist.
+   * Start a checkpoint of the program's data, which must not change after it has been passed to
+   * this method: move the temporary logs on to a new generation, and then, in the background, write
+   * the data to the snapshot file, and delete the logs of earlier generations, whose changes the
+   * snapshot contains. If the snapshot file cannot be written, the logs are kept, so that the
+   * changes they record are recovered the next time the program is run. The returned future
+   * completes once the checkpoint has been written.
+   *
+   * @param imageHistories a copy of the map of image histories.
+   * @param imageIdentities a copy of the map of image identities.
+   * @param tags a copy of the list of tags.
+   * @param tagUsage a copy of the map of tag usage counts.
+   * @param scanCache a copy of the map of directory listings.
+   * @return a future.
+   */
+  Future<?> checkpoint(
+      Map<String, List<String>> imageHistories,
+      Map<String, String> imageIdentities,
+      List<String> tags,
+      Map<String, Integer> tagUsage,
+      Map<String, ScanCache.DirectoryListing> scanCache) {
+    long generation = ++logGeneration;
+    CompletableFuture<Void> rotated =
+        CompletableFuture.allOf(
+            writeAheadLog.rotate(imagesTempStream, getGenerationFile(imagesTempFile, generation)),
+            writeAheadLog.rotate(tagTempStream, getGenerationFile(tagTempFile, generation)));
+    recordsSinceCheckpoint.set(0);
+    lastCheckpointTime = System.currentTimeMillis();
+    /* The snapshot that was read is about to be out of date. */
+    snapshot = null;
+    snapshotOpened = false;
+    checkpoint =
+        checkpointExecutor.submit(
+            () -> {
+              if (writeSnapshot(
+                  imageHistories, imageIdentities, tags, tagUsage, scanCache, generation)) {
+                /* Wait for the earlier logs to be closed before deleting them. */
+                rotated.exceptionally(e -> null).join();
+                deleteTempFiles(generation);
+              }
+            });
+    return checkpoint;
+  }
+
+  /**
+   * Return a future that completes once every line that has been logged so far has been handed to
+   * the operating system, and made as durable as the current durability requires.
+   *
+   * @return a future.
+   */
+  CompletableFuture<Void> flush() {
+    return writeAheadLog.flush();
+  }
+
+  /**
+   * Set how far the lines that are logged from now on are pushed towards the storage device before
+   * their futures complete.
+   *
+   * @param durability a Durability.
+   */
+  void setDurability(Durability durability) {
+    writeAheadLog.setDurability(durability);
+  }
+
+  /**
+   * Return how far the lines that are logged are pushed towards the storage device before their
+   * futures complete.
+   *
+   * @return a Durability.
+   */
+  Durability getDurability() {
+    return writeAheadLog.getDurability();
+  }
+
+  /**
+   * Return the map from image paths, as Strings, to lists of old names in the snapshot file, or an
+   * empty map if the snapshot file does not contain it.
    *
    * @return a map from image paths, as Strings, to lists of old names.
    */
-  @SuppressWarnings("unchecked")
-  Map<String, List<String>> getSerializedImageHistories() {
-    Object serializedImages =
-        readSerializedFile(serializedImageHistoryLocation, serializedImagesHistoryFile);
-    if (serializedImages != null) {
-      return (Map<String, List<String>>) serializedImages;
-    } else {
-      return new HashMap<>();
+  Map<String, List<String>> getSavedImageHistories() {
+    Map<String, List<String>> imageHistories = null;
+    if (getSnapshot() != null) {
+      try {
+        imageHistories = snapshot.readImageHistories();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
     }
+    return imageHistories != null ? imageHistories : new HashMap<>();
   }
 
   /**
-   * Return the list of tags that is serialized in the serialized tags list file, or an empty list
-   * if this object does not exist.
+   * Return a map from the image paths, as Strings, in the snapshot file to the offsets of their
+   * lists of old names, which can be read by the reader returned by getSavedImageHistoryReader, or
+   * null if the snapshot file does not contain them, or cannot be read that way, in which case the
+   * lists should be read by getSavedImageHistories instead.
+   *
+   * @return a map from image paths, as Strings, to offsets, or null.
+   */
+  Map<String, Integer> getSavedImageHistoryIndex() {
+    if (getSnapshot() != null && historyReader == null) {
+      try {
+        Map<String, Integer> offsets = snapshot.readImageHistoryIndex();
+        if (offsets != null) {
+          historyReader = snapshot.openHistoryReader(snapshotFile);
+          if (historyReader != null) {
+            return offsets;
+          }
+        }
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return the reader of the lists of old names in the snapshot file that was opened by
+   * getSavedImageHistoryIndex, or null if none was. The reader stays open until logging ends.
+   *
+   * @return a HistoryReader object, or null.
+   */
+  SnapshotFile.HistoryReader getSavedImageHistoryReader() {
+    return historyReader;
+  }
+
+  /**
+   * Return the map from image paths, as Strings, to the identities of their files in the snapshot
+   * file, or an empty map if the snapshot file does not contain it.
+   *
+   * @return a map from image paths, as Strings, to identities.
+   */
+  Map<String, String> getSavedImageIdentities() {
+    Map<String, String> imageIdentities = null;
+    if (getSnapshot() != null) {
+      try {
+        imageIdentities = snapshot.readImageIdentities();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
+    }
+    return imageIdentities != null ? imageIdentities : new HashMap<>();
+  }
+
+  /**
+   * Return the list of tags in the snapshot file, or an empty list if the snapshot file does not
+   * contain it.
    *
    * @return a list of tags.
    */
-  @SuppressWarnings("unchecked")
-  List<String> getSerializedOldTags() {
-    Object serializedTags = readSerializedFile(serializedTagsLocation, serializedTagsFile);
-    if (serializedTags != null) {
-      return (List<String>) serializedTags;
-    } else {
-      return new ArrayList<>();
+  List<String> getSavedTags() {
+    List<String> tags = null;
+    if (getSnapshot() != null) {
+      try {
+        tags = snapshot.readTags();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
     }
+    return tags != null ? tags : new ArrayList<>();
   }
 
   /**
-   * Return the object that is serialized in the file serializedFile, at location, location.
+   * Return the map from tags to the number of images that have them in the snapshot file, or null
+   * if the snapshot file does not contain it, as it does not for the data saved by earlier versions
+   * of the program.
    *
-   * @param location a location of a file with a serialized object, as a String.
-   * @param serializedFile the File.
-   * @return the Object serialized at the file.
+   * @return a map from tags to numbers of images, or null.
    */
-  private Object readSerializedFile(String location, File serializedFile) {
-    Object serializedObject = null;
-    if (serializedFile.exists()) {
+  Map<String, Integer> getSavedTagUsage() {
+    if (getSnapshot() != null) {
       try {
-        InputStream file = new FileInputStream(location);
-        InputStream buffer = new BufferedInputStream(file);
-        ObjectInput input = new ObjectInputStream(buffer);
-        serializedObject = input.readObject();
-        input.close();
-      } catch (ClassNotFoundException | IOException e) {
-        System.err.println("Error reading serialized File");
+        return snapshot.readTagUsage();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
         e.printStackTrace();
       }
     }
-    return serializedObject;
+    return null;
   }
 
   /**
-   * Return a list of all lines in the temporary master tag collection history log file.
+   * Return the map from directory paths, as Strings, to directory listings in the snapshot file, or
+   * an empty map if the snapshot file does not contain it.
    *
-   * @return a list of lines, corresponding to changes to the master tag collection.
+   * @return a map from directory paths, as Strings, to directory listings.
    */
-  List<String> readTagTempFile() {
-    return readFileAsList(tagTempFileLocation);
+  Map<String, ScanCache.DirectoryListing> getSavedScanCache() {
+    Map<String, ScanCache.DirectoryListing> listings = null;
+    if (getSnapshot() != null) {
+      try {
+        listings = snapshot.readScanCache();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
+    }
+    return listings != null ? listings : new HashMap<>();
   }
 
   /**
-   * Return a list of all lines in temporary image history log file.
+   * Return the reader of the snapshot file, opening it if it has not been opened yet, or null if
+   * there is no snapshot file, or it could not be opened.
    *
-   * @return a list of lines, corresponding to changes to images.
+   * @return a SnapshotFile object, or null.
    */
-  List<String> readImagesTempFile() {
-    return readFileAsList(imagesTempFileLocation);
+  private SnapshotFile getSnapshot() {
+    if (!snapshotOpened) {
+      snapshotOpened = true;
+      if (snapshotFile.exists()) {
+        try {
+          snapshot = SnapshotFile.open(snapshotFile);
+        } catch (IOException e) {
+          System.err.println("Error reading snapshot File");
+          e.printStackTrace();
+        }
+      }
+    }
+    return snapshot;
   }
 
-  String readLogFile() {
-    return readFileAsString(logFileLocation);
+  /**
+   * Return the first generation of the temporary logs whose changes are not in the snapshot file,
+   * or -1 if there is no snapshot file, or it does not say, in which case none of them are.
+   *
+   * @return a log generation, or -1.
+   */
+  private long readSnapshotLogGeneration() {
+    if (getSnapshot() != null) {
+      try {
+        return snapshot.readLogGeneration();
+      } catch (IOException e) {
+        System.err.println("Error reading snapshot File");
+        e.printStackTrace();
+      }
+    }
+    return -1;
   }
 
   /**
-   * Return a list of lines in a file at a given location.
+   * Return the file of the temporary log, tempFile, that has the generation, generation, which is
+   * named after tempFile, with the generation before its extension.
    *
-   * @param location a location of a text file, as a String.
-   * @return a list of the lines that the file contains.
+   * @param tempFile a temporary log file.
+   * @param generation a log generation.
+   * @return a File.
    */
-  private List<String> readFileAsList(String location) {
-    List<String> lines = new ArrayList<>();
-    try {
-      String line;
-      FileReader fileReader = new FileReader(location);
-      BufferedReader bufferedReader = new BufferedReader(fileReader);
-      while ((line = bufferedReader.readLine()) != null) {
-        lines.add(line);
+  private static File getGenerationFile(File tempFile, long generation) {
+    String name = tempFile.getName();
+    int dot = name.lastIndexOf('.');
+    String generationName =
+        dot < 0
+            ? name + "." + generation
+            : name.substring(0, dot) + "." + generation + name.substring(dot);
+    return new File(tempFile.getParentFile(), generationName);
+  }
+
+  /**
+   * Return the generations of the temporary log, tempFile, that have a file.
+   *
+   * @param tempFile a temporary log file.
+   * @return a list of log generations.
+   */
+  private static List<Long> findGenerations(File tempFile) {
+    String name = tempFile.getName();
+    int dot = name.lastIndexOf('.');
+    String prefix = (dot < 0 ? name : name.substring(0, dot)) + ".";
+    String suffix = dot < 0 ? "" : name.substring(dot);
+    File directory = tempFile.getAbsoluteFile().getParentFile();
+    String[] names = directory != null ? directory.list() : null;
+    List<Long> generations = new ArrayList<>();
+    if (names != null) {
+      for (String fileName : names) {
+        if (fileName.startsWith(prefix)
+            && fileName.endsWith(suffix)
+            && fileName.length() > prefix.length() + suffix.length()) {
+          String generation =
+              fileName.substring(prefix.length(), fileName.length() - suffix.length());
+          if (generation.chars().allMatch(Character::isDigit)) {
+            try {
+              generations.add(Long.parseLong(generation));
+            } catch (NumberFormatException e) {
+              /* Not a file of this log. */
+            }
+          }
+        }
       }
-    } catch (IOException e) {
-      e.printStackTrace();
     }
-    return lines;
+    return generations;
   }
 
   /**
-   * Return the contents of a text file as a string, with new line characters at the location of
-   * every new line in the file.
+   * Add file, file, to files, if it exists.
    *
-   * @param location a location of a text file, as a String.
-   * @return a String with the contents of this file.
+   * @param files a list of Files.
+   * @param file a File.
    */
-  private String readFileAsString(String location) {
-    StringBuilder content = new StringBuilder();
-    try {
-      String line;
-      FileReader fileReader = new FileReader(location);
-      BufferedReader bufferedReader = new BufferedReader(fileReader);
-      while ((line = bufferedReader.readLine()) != null) {
-        content.append(line);
-        content.append(System.getProperty("line.separator"));
+  private static void addIfExists(List<File> files, File file) {
+    if (file.exists()) {
+      files.add(file);
+    }
+  }
+
+  /**
+   * Delete the temporary log files of every generation before generation, along with those written
+   * by earlier versions of the program.
+   *
+   * @param generation a log generation.
+   */
+  private void deleteTempFiles(long generation) {
+    imagesTempFile.delete();
+    tagTempFile.delete();
+    for (File tempFile : new File[] {imagesTempFile, tagTempFile}) {
+      for (long oldGeneration : findGenerations(tempFile)) {
+        if (oldGeneration < generation) {
+          getGenerationFile(tempFile, oldGeneration).delete();
+        }
       }
-    } catch (IOException e) {
-      e.printStackTrace();
     }
-    return content.toString();
   }
 
   /**
-   * End all logging. Serialize the map from images paths, as Strings, to list of old names, and the
-   * master list of tags being stored by the program. Delete all temporary logs. Note: this method
-   * is called when the program is being closed successfully.
+   * Write the data to the snapshot file, along with the first generation of the temporary logs
+   * whose changes it does not contain, and return true if and only if it was written.
    *
-   * @param imageHistories Map of image histories to be serialized
-   * @param tags List of tags to be serialized
+   * @param imageHistories Map of image histories to be saved
+   * @param imageIdentities Map of image identities to be saved
+   * @param tags List of tags to be saved
+   * @param tagUsage Map of tag usage counts to be saved
+   * @param scanCache Map of directory listings to be saved
+   * @param generation a log generation.
+   * @return true if and only if the snapshot file was written.
    */
-  void endLogging(Map<String, List<String>> imageHistories, List<String> tags) {
-    /* Serialize objects. */
-    writeSerializedFile(
-        imageHistories, serializedImagesHistoryFile, serializedImageHistoryLocation);
-    writeSerializedFile(tags, serializedTagsFile, serializedTagsLocation);
-    /* Close all writers. */
+  private boolean writeSnapshot(
+      Map<String, List<String>> imageHistories,
+      Map<String, String> imageIdentities,
+      List<String> tags,
+      Map<String, Integer> tagUsage,
+      Map<String, ScanCache.DirectoryListing> scanCache,
+      long generation) {
     try {
-      logFileWriter.close();
-    } catch (IOException e) {
+      SnapshotFile.write(
+          snapshotFile, imageHistories, imageIdentities, tags, tagUsage, scanCache, generation);
+      return true;
+    } catch (IOException | UncheckedIOException e) {
+      /* The lists of old names left in the previous snapshot file may fail to be read. */
+      System.err.println("Error writing snapshot File");
       e.printStackTrace();
+      return false;
     }
-    try {
-      imagesTempWriter.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+  }
+
+  /**
+   * Count the recovered lines, lines, towards the next checkpoint, and make it due at once, since
+   * the changes they record are not in the snapshot file either, and would otherwise be replayed
+   * again if the program crashed before the next checkpoint.
+   *
+   * @param lines a list of recovered lines.
+   */
+  private void countRecoveredLines(List<String> lines) {
+    if (!lines.isEmpty()) {
+      recordsSinceCheckpoint.addAndGet(lines.size());
+      lastCheckpointTime = 0;
     }
-    try {
-      tagTempWriter.close();
-    } catch (IOException e) {
-      e.printStackTrace();
+  }
+
+  /**
+   * Return a list of all lines in the temporary master tag collection history log files whose
+   * changes are not in the snapshot file, in the order they were written.
+   *
+   * @return a list of lines, corresponding to changes to the master tag collection.
+   */
+  List<String> readTagTempFile() {
+    List<String> lines = new ArrayList<>();
+    for (File file : tagRecoveryFiles) {
+      lines.addAll(readFileAsList(file.getPath()));
     }
-    /* Delete temporary log files. */
-    imagesTempFile.delete();
-    tagTempFile.delete();
+    countRecoveredLines(lines);
+    return lines;
   }
 
   /**
-   * Replace serialized file at a location, location, with a new file containing o, serialized.
+   * Return a list of all lines in the temporary image history log files whose changes are not in
+   * the snapshot file, in the order they were written.
    *
-   * @param o an object to serialize.
-   * @param serializedFile a file to serialize to.
-   * @param location the location of the file, as a String.
+   * @return a list of lines, corresponding to changes to images.
    */
-  private void writeSerializedFile(Object o, File serializedFile, String location) {
-    if (serializedFile.exists()) {
-      serializedFile.delete();
+  List<String> readImagesTempFile() {
+    List<String> lines = new ArrayList<>();
+    for (File file : imagesRecoveryFiles) {
+      lines.addAll(readFileAsList(file.getPath()));
     }
-    try {
-      OutputStream file = new FileOutputStream(location);
-      OutputStream buffer = new BufferedOutputStream(file);
-      ObjectOutput output = new ObjectOutputStream(buffer);
-      output.writeObject(o);
-      output.close();
+    countRecoveredLines(lines);
+    return lines;
+  }
+
+  /**
+   * Return a new reader of the user-facing log file, which reads its lines on demand, newest
+   * first, including every change that has been logged so far.
+   *
+   * @return a LogReader object.
+   * @throws IOException if the log file could not be opened.
+   */
+  LogReader openLogFile() throws IOException {
+    /* Wait for the lines that are still on their way to the file. */
+    flush().exceptionally(e -> null).join();
+    return LogReader.open(new File(logFileLocation));
+  }
+
+  /**
+   * Return a list of lines in a file at a given location.
+   *
+   * @param location a location of a text file, as a String.
+   * @return a list of the lines that the file contains.
+   */
+  private List<String> readFileAsList(String location) {
+    List<String> lines = new ArrayList<>();
+    /* Close the file, so that it can be deleted once its changes are in a snapshot. */
+    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(location))) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        lines.add(line);
+      }
     } catch (IOException e) {
       e.printStackTrace();
     }
+    return lines;
+  }
+
+  /**
+   * End all logging. Write the map from images paths, as Strings, to list of old names, the map
+   * from image paths, as Strings, to the identities of their files, the master list of tags being
+   * stored by the program, the map from tags to the number of images that have them, and the map
+   * from directory paths, as Strings, to directory listings to the snapshot file.
+   * Delete all temporary logs, unless the snapshot file could not be written, in which case they
+   * are kept, so that the changes they record are recovered the next time the program is run.
+   * Note: this method is called when the program is being closed successfully.
+   *
+   * @param imageHistories Map of image histories to be saved
+   * @param imageIdentities Map of image identities to be saved
+   * @param tags List of tags to be saved
+   * @param tagUsage Map of tag usage counts to be saved
+   * @param scanCache Map of directory listings to be saved
+   */
+  void endLogging(
+      Map<String, List<String>> imageHistories,
+      Map<String, String> imageIdentities,
+      List<String> tags,
+      Map<String, Integer> tagUsage,
+      Map<String, ScanCache.DirectoryListing> scanCache) {
+    /* Write the lines that are still waiting, and close all log files. */
+    writeAheadLog.close();
+    /* Let the checkpoint being written finish, so that it cannot replace this snapshot. */
+    checkpointExecutor.shutdown();
+    try {
+      checkpointExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    /* The snapshot that was read is out of date now. */
+    snapshot = null;
+    snapshotOpened = false;
+    /* Delete temporary log files, every change in which is in the snapshot. */
+    if (writeSnapshot(
+        imageHistories, imageIdentities, tags, tagUsage, scanCache, logGeneration + 1)) {
+      deleteTempFiles(logGeneration + 1);
+    }
+    /* The lists of old names left in the previous snapshot file have all been written again. */
+    if (historyReader != null) {
+      try {
+        historyReader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      historyReader = null;
+    }
   }
 }
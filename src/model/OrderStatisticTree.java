@@ -0,0 +1,416 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * A sorted list of distinct elements, stored in a balanced (AVL) binary search tree in which every
+ * node also stores the size of its subtree. This allows an element to be added or removed, the
+ * element at an index to be found, and the index of an element to be found, in O(log n) time, so
+ * that keeping the list sorted as its elements change does not require sorting it again.
+ *
+ * <p>Elements are always kept in their natural order, so add(E) inserts an element at its sorted
+ * position, rather than at the end of the list, and does nothing if an equal element is already in
+ * the list. Elements may not be added at, or set at, a given index.
+ *
+ * @param <E> the type of the elements.
+ */
+public class OrderStatisticTree<E extends Comparable<? super E>> extends AbstractList<E> {
+
+  /** Store the root of the tree, or null if the list is empty. */
+  private Node<E> root;
+
+  /** Create a new, empty, OrderStatisticTree object. */
+  public OrderStatisticTree() {}
+
+  /**
+   * Create a new OrderStatisticTree object that contains the distinct elements of elements.
+   *
+   * @param elements a collection of elements.
+   */
+  public OrderStatisticTree(Collection<? extends E> elements) {
+    List<E> sorted = new ArrayList<>(elements);
+    sorted.sort(null);
+    /* Drop equal elements, which are next to each other once sorted. */
+    int distinct = 0;
+    for (E element : sorted) {
+      if (distinct == 0 || sorted.get(distinct - 1).compareTo(element) != 0) {
+        sorted.set(distinct++, element);
+      }
+    }
+    root = build(sorted, 0, distinct);
+  }
+
+  /**
+   * Return a new OrderStatisticTree object that contains the elements of sorted, which must already
+   * be sorted and distinct. This takes O(n) time, rather than the O(n log n) time taken to sort.
+   *
+   * @param sorted a sorted list of distinct elements.
+   * @param <E> the type of the elements.
+   * @return an OrderStatisticTree.
+   */
+  public static <E extends Comparable<? super E>> OrderStatisticTree<E> ofSorted(List<E> sorted) {
+    OrderStatisticTree<E> tree = new OrderStatisticTree<>();
+    tree.root = build(sorted, 0, sorted.size());
+    return tree;
+  }
+
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+  @Override
+  public E get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    Node<E> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node.element;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   * Add element at its sorted position, if no equal element is already in this list.
+   *
+   * @param element an element.
+   * @return true if and only if element was added.
+   */
+  @Override
+  public boolean add(E element) {
+    int oldSize = size();
+    root = insert(root, element);
+    if (size() == oldSize) {
+      return false;
+    }
+    modCount++;
+    return true;
+  }
+
+  /**
+   * Remove the element that is equal to o, if there is one.
+   *
+   * @param o an element.
+   * @return true if and only if an element was removed.
+   */
+  @Override
+  public boolean remove(Object o) {
+    if (indexOf(o) < 0) {
+      return false;
+    }
+    @SuppressWarnings("unchecked")
+    E element = (E) o;
+    root = delete(root, element);
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    /* Removing many elements one at a time is slower than rebuilding the tree from those left. */
+    List<E> kept = new ArrayList<>();
+    for (E element : this) {
+      if (!filter.test(element)) {
+        kept.add(element);
+      }
+    }
+    if (kept.size() == size()) {
+      return false;
+    }
+    root = build(kept, 0, kept.size());
+    modCount++;
+    return true;
+  }
+
+  /**
+   * Return the index of the element that is equal to o, or -1 if there is none.
+   *
+   * @param o an element.
+   * @return an index, or -1.
+   */
+  @Override
+  public int indexOf(Object o) {
+    if (o == null) {
+      return -1;
+    }
+    @SuppressWarnings("unchecked")
+    E element = (E) o;
+    int index = 0;
+    Node<E> node = root;
+    while (node != null) {
+      int comparison = element.compareTo(node.element);
+      if (comparison < 0) {
+        node = node.left;
+      } else if (comparison > 0) {
+        index += size(node.left) + 1;
+        node = node.right;
+      } else {
+        return index + size(node.left);
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    return indexOf(o);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public void clear() {
+    root = null;
+    modCount++;
+  }
+
+  /**
+   * Return an iterator over the elements of this list, in order, which visits every element in
+   * O(1) amortized time, rather than the O(log n) time taken by get.
+   *
+   * @return an Iterator.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private final Deque<Node<E>> path = new ArrayDeque<>();
+      private final int expectedModCount = modCount;
+
+      {
+        pushLeft(root);
+      }
+
+      private void pushLeft(Node<E> node) {
+        for (; node != null; node = node.left) {
+          path.push(node);
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        return !path.isEmpty();
+      }
+
+      @Override
+      public E next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (path.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<E> node = path.pop();
+        pushLeft(node.right);
+        return node.element;
+      }
+    };
+  }
+
+  /**
+   * Return the root of a balanced tree of the elements of sorted from index from, inclusive, to
+   * index to, exclusive.
+   *
+   * @param sorted a sorted list of distinct elements.
+   * @param from the index of the first element.
+   * @param to the index after the last element.
+   * @param <E> the type of the elements.
+   * @return a Node, or null if there are no elements.
+   */
+  private static <E> Node<E> build(List<E> sorted, int from, int to) {
+    if (from >= to) {
+      return null;
+    }
+    int middle = (from + to) >>> 1;
+    Node<E> node = new Node<>(sorted.get(middle));
+    node.left = build(sorted, from, middle);
+    node.right = build(sorted, middle + 1, to);
+    update(node);
+    return node;
+  }
+
+  /**
+   * Insert element into the subtree rooted at node, unless an equal element is already there, and
+   * return the root of the rebalanced subtree.
+   *
+   * @param node the root of a subtree, or null.
+   * @param element an element.
+   * @return the root of the subtree.
+   */
+  private Node<E> insert(Node<E> node, E element) {
+    if (node == null) {
+      return new Node<>(element);
+    }
+    int comparison = element.compareTo(node.element);
+    if (comparison < 0) {
+      node.left = insert(node.left, element);
+    } else if (comparison > 0) {
+      node.right = insert(node.right, element);
+    } else {
+      return node;
+    }
+    return rebalance(node);
+  }
+
+  /**
+   * Delete the element equal to element from the subtree rooted at node, and return the root of the
+   * rebalanced subtree.
+   *
+   * @param node the root of a subtree that contains an element equal to element.
+   * @param element an element.
+   * @return the root of the subtree, or null if it is now empty.
+   */
+  private Node<E> delete(Node<E> node, E element) {
+    int comparison = element.compareTo(node.element);
+    if (comparison < 0) {
+      node.left = delete(node.left, element);
+    } else if (comparison > 0) {
+      node.right = delete(node.right, element);
+    } else if (node.left == null) {
+      return node.right;
+    } else if (node.right == null) {
+      return node.left;
+    } else {
+      /* Replace the element with the smallest element of the right subtree. */
+      Node<E> successor = node.right;
+      while (successor.left != null) {
+        successor = successor.left;
+      }
+      node.element = successor.element;
+      node.right = delete(node.right, successor.element);
+    }
+    return rebalance(node);
+  }
+
+  /**
+   * Restore the balance of the subtree rooted at node, whose subtrees are balanced and differ in
+   * height by at most two, and return its new root.
+   *
+   * @param node the root of a subtree.
+   * @return the root of the subtree.
+   */
+  private static <E> Node<E> rebalance(Node<E> node) {
+    update(node);
+    int balance = height(node.left) - height(node.right);
+    if (balance > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (balance < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+
+  /**
+   * Rotate the subtree rooted at node to the right, and return its new root.
+   *
+   * @param node the root of a subtree with a left child.
+   * @return the root of the subtree.
+   */
+  private static <E> Node<E> rotateRight(Node<E> node) {
+    Node<E> left = node.left;
+    node.left = left.right;
+    left.right = node;
+    update(node);
+    update(left);
+    return left;
+  }
+
+  /**
+   * Rotate the subtree rooted at node to the left, and return its new root.
+   *
+   * @param node the root of a subtree with a right child.
+   * @return the root of the subtree.
+   */
+  private static <E> Node<E> rotateLeft(Node<E> node) {
+    Node<E> right = node.right;
+    node.right = right.left;
+    right.left = node;
+    update(node);
+    update(right);
+    return right;
+  }
+
+  /**
+   * Recompute the height and size of node from those of its children.
+   *
+   * @param node a Node.
+   */
+  private static void update(Node<?> node) {
+    node.height = Math.max(height(node.left), height(node.right)) + 1;
+    node.size = size(node.left) + size(node.right) + 1;
+  }
+
+  /**
+   * Return the height of the subtree rooted at node.
+   *
+   * @param node a Node, or null.
+   * @return a height.
+   */
+  private static int height(Node<?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  /**
+   * Return the number of elements in the subtree rooted at node.
+   *
+   * @param node a Node, or null.
+   * @return a number of elements.
+   */
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  /** A node of the tree. */
+  private static class Node<E> {
+
+    /** Store the element at this node. */
+    private E element;
+
+    /** Store the root of the subtree of smaller elements, or null. */
+    private Node<E> left;
+
+    /** Store the root of the subtree of larger elements, or null. */
+    private Node<E> right;
+
+    /** Store the height of the subtree rooted at this node. */
+    private int height = 1;
+
+    /** Store the number of elements in the subtree rooted at this node. */
+    private int size = 1;
+
+    /**
+     * Create a new leaf Node that stores element.
+     *
+     * @param element an element.
+     */
+    Node(E element) {
+      this.element = element;
+    }
+  }
+}
@@ -1,14 +1,18 @@
 package model;
 
 import java.io.File;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * A class responsible for generating properly formatted paths, and extracting information from
  * paths (e.g. what tags an image has, etc.).
+ *
+ * <p>The tags in a path are found by a single pass over the characters of the file name, which
+ * looks for the tag symbol, rather than by regular expressions. Methods such as hasTag, tagCount
+ * and forEachTag do not create any objects, since they are called for every image whenever images
+ * are found, filtered or selected.
  */
 public class PathFormatter {
 
@@ -18,8 +22,25 @@ public class PathFormatter {
   /** Store the symbol used before the extension of an image. */
   private static final String EXTENSION_SYMBOL = ".";
 
-  /** Store the extension symbol as a regular expression. */
-  private static final String EXTENSION_SYMBOL_REGEX = "\\.";
+  /** Store the extensions, in lower case, of the files that are images. */
+  private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+  /**
+   * A consumer of the tags in a path, to which each tag is passed as the range of characters that
+   * it occupies in the path, rather than as a new String.
+   */
+  public interface TagConsumer {
+
+    /**
+     * Accept the tag that occupies the characters of path from index start, inclusive, to index
+     * end, exclusive.
+     *
+     * @param path a path to an image, as a String.
+     * @param start the index of the first character of the tag.
+     * @param end the index after the last character of the tag.
+     */
+    void accept(String path, int start, int end);
+  }
 
   /**
    * Return an updated path, as a String, with the tag, tag, added. If the image already has the
@@ -53,12 +74,12 @@ public class PathFormatter {
    * @return the image's updated path, as a String.
    */
   public static String removeTag(String imagePath, String tag) {
+    int locationOfTagSymbol = findTag(imagePath, tag);
     /* Handle the case where the image has the tag. */
-    if (hasTags(imagePath, tag)) {
-      int locationOfTag = imagePath.lastIndexOf(tag);
+    if (locationOfTagSymbol >= 0) {
       /* Return path without the tag and TAG_SYMBOL before. */
-      return imagePath.substring(0, locationOfTag - TAG_SYMBOL.length())
-          + imagePath.substring(locationOfTag + tag.length());
+      return imagePath.substring(0, locationOfTagSymbol)
+          + imagePath.substring(locationOfTagSymbol + TAG_SYMBOL.length() + tag.length());
       /* Handle the case where the image does not have the tag. */
     } else {
       return imagePath;
@@ -133,20 +154,32 @@ public class PathFormatter {
    * @return the full name of the image including any tags and its file extension.
    */
   public static List<String> getTags(String imagePath) {
-    String fullName = getFullName(imagePath);
-    if (containsATag(imagePath)) {
-      /* Image has tags, split around tag symbol excluding the file extension. */
-      String[] split =
-          fullName.substring(0, fullName.lastIndexOf(EXTENSION_SYMBOL)).split(TAG_SYMBOL);
-      /* Tags as a list. First element is name so begin at second.*/
-      List<String> tags = Arrays.asList(split).subList(1, split.length);
-      /* Sort the tags */
-      tags.sort(String::compareToIgnoreCase);
-      return tags;
-    } else {
-      /* Image has no tags */
-      return Collections.emptyList();
-    }
+    List<String> tags = new ArrayList<>();
+    forEachTag(imagePath, (path, start, end) -> tags.add(path.substring(start, end)));
+    /* Sort the tags */
+    tags.sort(String::compareToIgnoreCase);
+    return tags;
+  }
+
+  /**
+   * Pass each of the tags of the image at imagePath to consumer, in the order in which they appear
+   * in its name. These are the same tags as are returned by getTags.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @param consumer a TagConsumer.
+   */
+  public static void forEachTag(String imagePath, TagConsumer consumer) {
+    scanTags(imagePath, consumer);
+  }
+
+  /**
+   * Return the number of tags that the image at imagePath has.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @return a number of tags.
+   */
+  public static int tagCount(String imagePath) {
+    return scanTags(imagePath, null);
   }
 
   /**
@@ -173,13 +206,14 @@ public class PathFormatter {
    * @return the image's name without any tags or a file extension.
    */
   public static String getName(String imagePath) {
-    String fullName = getFullName(imagePath);
+    int nameStart = getNameStart(imagePath);
     if (containsATag(imagePath)) {
       /* Image has tags */
-      return fullName.substring(0, fullName.indexOf(TAG_SYMBOL));
+      return imagePath.substring(
+          nameStart, findTagSymbol(imagePath, nameStart, imagePath.length()));
     } else {
       /* Image does not have tags */
-      return fullName.substring(0, fullName.lastIndexOf(EXTENSION_SYMBOL));
+      return imagePath.substring(nameStart, imagePath.lastIndexOf(EXTENSION_SYMBOL));
     }
   }
 
@@ -191,17 +225,20 @@ public class PathFormatter {
    * @return a boolean value corresponding to whether image has tag, tag.
    */
   public static Boolean hasTags(String path, String tag) {
-    return getFullName(path)
-        .matches(
-            "(.)+"
-                + TAG_SYMBOL
-                + tag
-                + "("
-                + TAG_SYMBOL
-                + "|"
-                + EXTENSION_SYMBOL_REGEX
-                + ")"
-                + "(.)+");
+    return hasTag(path, tag);
+  }
+
+  /**
+   * Return true if and only if the image at path has tag, tag, that is, if its name contains the
+   * tag symbol followed by tag, which is followed by either another tag symbol or the extension
+   * symbol. Every character of tag is matched literally.
+   *
+   * @param path a path of an image, as a String.
+   * @param tag a tag to check.
+   * @return a boolean value corresponding to whether image has tag, tag.
+   */
+  public static boolean hasTag(String path, String tag) {
+    return findTag(path, tag) >= 0;
   }
 
   /**
@@ -220,6 +257,28 @@ public class PathFormatter {
     return true;
   }
 
+  /**
+   * Return true if and only if path is the path to an image file, that is, a file with a png, jpg
+   * or jpeg extension (ignoring case).
+   *
+   * @param path a path to a file, as a String.
+   * @return a boolean value.
+   */
+  public static Boolean isImage(String path) {
+    if (containsLineTerminator(path, 0, path.length())) {
+      return false;
+    }
+    for (String extension : IMAGE_EXTENSIONS) {
+      int extensionStart = path.length() - extension.length();
+      /* At least one character must come before the extension. */
+      if (extensionStart > 0
+          && path.regionMatches(true, extensionStart, extension, 0, extension.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Return true if and only if the image contains a tag, where a tag is defined as a string with a
    * space, followed by '@', followed by at least one alphanumeric character.
@@ -228,6 +287,181 @@ public class PathFormatter {
    * @return a boolean value.
    */
   public static Boolean containsATag(String path) {
-    return getFullName(path).matches("(.)+" + TAG_SYMBOL + "[a-zA-Z0-9]" + "(.)+");
+    int nameStart = getNameStart(path);
+    int end = path.length();
+    if (containsLineTerminator(path, nameStart, end)) {
+      return false;
+    }
+    /* The name must have at least one character before the tag symbol, and one after the tag. */
+    for (int i = findTagSymbol(path, nameStart + 1, end);
+        i >= 0;
+        i = findTagSymbol(path, i + 1, end)) {
+      int tagStart = i + TAG_SYMBOL.length();
+      if (tagStart + 1 < end && isAsciiLetterOrDigit(path.charAt(tagStart))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the index in path of the tag symbol before the last occurrence of tag, tag, as described
+   * by hasTag, or -1 if the image at path does not have the tag.
+   *
+   * @param path a path of an image, as a String.
+   * @param tag a tag.
+   * @return an index, or -1.
+   */
+  private static int findTag(String path, String tag) {
+    int nameStart = getNameStart(path);
+    int end = path.length();
+    /*
+     * The characters of the name other than the tag itself may not be line terminators, so find the
+     * first and last line terminators in the name, which must both lie within the tag.
+     */
+    int firstLineTerminator = -1;
+    int lastLineTerminator = -1;
+    for (int i = nameStart; i < end; i++) {
+      if (isLineTerminator(path.charAt(i))) {
+        if (firstLineTerminator < 0) {
+          firstLineTerminator = i;
+        }
+        lastLineTerminator = i;
+      }
+    }
+    int found = -1;
+    for (int i = findTagSymbol(path, nameStart + 1, end);
+        i >= 0;
+        i = findTagSymbol(path, i + 1, end)) {
+      int tagStart = i + TAG_SYMBOL.length();
+      int tagEnd = tagStart + tag.length();
+      if (!path.startsWith(tag, tagStart)) {
+        continue;
+      }
+      boolean followedBySymbol =
+          (path.startsWith(TAG_SYMBOL, tagEnd) && tagEnd + TAG_SYMBOL.length() < end)
+              || (path.startsWith(EXTENSION_SYMBOL, tagEnd)
+                  && tagEnd + EXTENSION_SYMBOL.length() < end);
+      boolean lineTerminatorsInTag =
+          firstLineTerminator < 0
+              || (firstLineTerminator >= tagStart && lastLineTerminator < tagEnd);
+      if (followedBySymbol && lineTerminatorsInTag) {
+        found = i;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Pass each of the tags of the image at imagePath to consumer, if consumer is not null, and
+   * return the number of tags. The tags are the parts of the image's name, excluding its
+   * extension, that follow each tag symbol, except that empty tags at the end of the name are
+   * ignored. An image that does not contain a tag, as described by containsATag, has no tags.
+   *
+   * @param imagePath a path to an image, as a String.
+   * @param consumer a TagConsumer, or null.
+   * @return the number of tags.
+   */
+  private static int scanTags(String imagePath, TagConsumer consumer) {
+    if (!containsATag(imagePath)) {
+      return 0;
+    }
+    int nameStart = getNameStart(imagePath);
+    int end = imagePath.lastIndexOf(EXTENSION_SYMBOL);
+    if (end < nameStart) {
+      end = imagePath.length();
+    }
+    int tagSymbol = findTagSymbol(imagePath, nameStart, end);
+    int count = 0;
+    /* Empty tags are held back until a non-empty tag follows them. */
+    int emptyTags = 0;
+    while (tagSymbol >= 0) {
+      int tagStart = tagSymbol + TAG_SYMBOL.length();
+      tagSymbol = findTagSymbol(imagePath, tagStart, end);
+      int tagEnd = tagSymbol < 0 ? end : tagSymbol;
+      if (tagStart == tagEnd) {
+        emptyTags++;
+        continue;
+      }
+      for (; emptyTags > 0; emptyTags--, count++) {
+        if (consumer != null) {
+          consumer.accept(imagePath, tagStart, tagStart);
+        }
+      }
+      if (consumer != null) {
+        consumer.accept(imagePath, tagStart, tagEnd);
+      }
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Return the index in path of the start of the file name, that is, the index after the last file
+   * separator.
+   *
+   * @param path a path, as a String.
+   * @return an index.
+   */
+  private static int getNameStart(String path) {
+    int separator = path.lastIndexOf(File.separator);
+    return separator < 0 ? 0 : separator + File.separator.length();
+  }
+
+  /**
+   * Return the index of the first tag symbol that lies wholly between index from, inclusive, and
+   * index to, exclusive, in path, or -1 if there is none.
+   *
+   * @param path a path, as a String.
+   * @param from the index at which to start looking.
+   * @param to the index at which to stop looking.
+   * @return an index, or -1.
+   */
+  private static int findTagSymbol(String path, int from, int to) {
+    for (int i = from; i + 1 < to; i++) {
+      if (path.charAt(i) == ' ' && path.charAt(i + 1) == '@') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return true if and only if there is a line terminator between index from, inclusive, and index
+   * to, exclusive, in path. Names that contain line terminators are treated as having no tags, and
+   * are not treated as images.
+   *
+   * @param path a path, as a String.
+   * @param from the index at which to start looking.
+   * @param to the index at which to stop looking.
+   * @return a boolean value.
+   */
+  private static boolean containsLineTerminator(String path, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (isLineTerminator(path.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return true if and only if c is a line terminator.
+   *
+   * @param c a character.
+   * @return a boolean value.
+   */
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Return true if and only if c is an ASCII letter or digit.
+   *
+   * @param c a character.
+   * @return a boolean value.
+   */
+  private static boolean isAsciiLetterOrDigit(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
   }
 }
@@ -0,0 +1,825 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints. The set is split into chunks of 65536 consecutive values,
+ * and each chunk that contains at least one value is stored in the smallest of three kinds of
+ * container: a sorted array of values, for sparse chunks; a bitmap with one bit per value, for
+ * dense chunks; or a sorted array of runs of consecutive values, for chunks made up of a few long
+ * runs. Intersections, unions and differences are computed one chunk at a time, so chunks that are
+ * only in one of the two sets are either skipped or copied without being examined.
+ */
+public class RoaringBitmap {
+
+  /** Store the largest number of values that an array container holds. */
+  private static final int MAXIMUM_ARRAY_SIZE = 4096;
+
+  /** Store the number of longs in the bitmap of a bitmap container. */
+  private static final int BITMAP_WORDS = 1024;
+
+  /** Store the high 16 bits of the values in each container, in increasing order. */
+  private char[] keys = new char[4];
+
+  /** Store the containers, in the same order as their keys. */
+  private Container[] containers = new Container[4];
+
+  /** Store the number of containers. */
+  private int size;
+
+  /**
+   * Add value to this set.
+   *
+   * @param value a non-negative int.
+   */
+  public void add(int value) {
+    char key = (char) (value >>> 16);
+    int index = indexOf(key);
+    if (index < 0) {
+      index = -index - 1;
+      insertAt(index, key, new ArrayContainer());
+    }
+    containers[index] = containers[index].add((char) value);
+  }
+
+  /**
+   * Remove value from this set, if it is in this set.
+   *
+   * @param value a non-negative int.
+   */
+  public void remove(int value) {
+    int index = indexOf((char) (value >>> 16));
+    if (index >= 0) {
+      containers[index] = containers[index].remove((char) value);
+      if (containers[index].cardinality() == 0) {
+        removeAt(index);
+      }
+    }
+  }
+
+  /**
+   * Return true if and only if value is in this set.
+   *
+   * @param value a non-negative int.
+   * @return a boolean value.
+   */
+  public boolean contains(int value) {
+    int index = indexOf((char) (value >>> 16));
+    return index >= 0 && containers[index].contains((char) value);
+  }
+
+  /**
+   * Return the number of values in this set.
+   *
+   * @return a number of values.
+   */
+  public int getCardinality() {
+    int cardinality = 0;
+    for (int i = 0; i < size; i++) {
+      cardinality += containers[i].cardinality();
+    }
+    return cardinality;
+  }
+
+  /**
+   * Return true if and only if this set contains no values.
+   *
+   * @return a boolean value.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Return a new set of the values that are in both this set and other.
+   *
+   * @param other a RoaringBitmap.
+   * @return a new RoaringBitmap.
+   */
+  public RoaringBitmap and(RoaringBitmap other) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      if (keys[i] < other.keys[j]) {
+        i++;
+      } else if (keys[i] > other.keys[j]) {
+        j++;
+      } else {
+        Container container = containers[i].and(other.containers[j]);
+        if (container.cardinality() > 0) {
+          result.append(keys[i], container);
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return a new set of the values that are in this set, other, or both.
+   *
+   * @param other a RoaringBitmap.
+   * @return a new RoaringBitmap.
+   */
+  public RoaringBitmap or(RoaringBitmap other) {
+    RoaringBitmap result = new RoaringBitmap();
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+        result.append(keys[i], containers[i].copy());
+        i++;
+      } else if (i == size || keys[i] > other.keys[j]) {
+        result.append(other.keys[j], other.containers[j].copy());
+        j++;
+      } else {
+        result.append(keys[i], containers[i].or(other.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Return a new set of the values that are in this set, but not in other.
+   *
+   * @param other a RoaringBitmap.
+   * @return a new RoaringBitmap.
+   */
+  public RoaringBitmap andNot(RoaringBitmap other) {
+    RoaringBitmap result = new RoaringBitmap();
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      while (j < other.size && other.keys[j] < keys[i]) {
+        j++;
+      }
+      if (j < other.size && other.keys[j] == keys[i]) {
+        Container container = containers[i].andNot(other.containers[j]);
+        if (container.cardinality() > 0) {
+          result.append(keys[i], container);
+        }
+      } else {
+        result.append(keys[i], containers[i].copy());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Pass each of the values in this set to consumer, in increasing order.
+   *
+   * @param consumer an IntConsumer.
+   */
+  public void forEach(IntConsumer consumer) {
+    for (int i = 0; i < size; i++) {
+      containers[i].forEach(keys[i] << 16, consumer);
+    }
+  }
+
+  /**
+   * Return a new set with the same values as this set.
+   *
+   * @return a new RoaringBitmap.
+   */
+  public RoaringBitmap copy() {
+    RoaringBitmap result = new RoaringBitmap();
+    for (int i = 0; i < size; i++) {
+      result.append(keys[i], containers[i].copy());
+    }
+    return result;
+  }
+
+  /**
+   * Store each chunk of this set in the kind of container that uses the least memory, including
+   * containers of runs, which are not otherwise used. This is worth calling on a set that will not
+   * change for a while, such as one that has just been built.
+   */
+  public void runOptimize() {
+    for (int i = 0; i < size; i++) {
+      containers[i] = containers[i].optimize();
+    }
+  }
+
+  /**
+   * Return an array of the values in this set, in increasing order.
+   *
+   * @return an array of ints.
+   */
+  public int[] toArray() {
+    int[] values = new int[getCardinality()];
+    int[] count = new int[1];
+    forEach(value -> values[count[0]++] = value);
+    return values;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof RoaringBitmap && Arrays.equals(toArray(), ((RoaringBitmap) o).toArray());
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(toArray());
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+  /**
+   * Return the index of the container with key, key, or, if there is no such container, minus one
+   * minus the index at which it would be inserted.
+   *
+   * @param key the high 16 bits of a value.
+   * @return an index.
+   */
+  private int indexOf(char key) {
+    /* Values are usually added in increasing order, so check the last container first. */
+    if (size > 0 && keys[size - 1] == key) {
+      return size - 1;
+    }
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  /**
+   * Insert a container at index.
+   *
+   * @param index an index.
+   * @param key the high 16 bits of the values in the container.
+   * @param container a Container.
+   */
+  private void insertAt(int index, char key, Container container) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      containers = Arrays.copyOf(containers, size * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(containers, index, containers, index + 1, size - index);
+    keys[index] = key;
+    containers[index] = container;
+    size++;
+  }
+
+  /**
+   * Add a container after all of the other containers.
+   *
+   * @param key the high 16 bits of the values in the container, which is greater than every key.
+   * @param container a Container.
+   */
+  private void append(char key, Container container) {
+    insertAt(size, key, container);
+  }
+
+  /**
+   * Remove the container at index.
+   *
+   * @param index an index.
+   */
+  private void removeAt(int index) {
+    System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+    System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+    size--;
+    containers[size] = null;
+  }
+
+  /**
+   * Return the smallest container for the values whose bits are set in words.
+   *
+   * @param words a bitmap of BITMAP_WORDS longs.
+   * @return a Container.
+   */
+  private static Container fromWords(long[] words) {
+    int cardinality = 0;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+    }
+    if (cardinality > MAXIMUM_ARRAY_SIZE) {
+      return new BitmapContainer(words, cardinality);
+    }
+    char[] values = new char[cardinality];
+    int count = 0;
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      long word = words[i];
+      while (word != 0) {
+        values[count++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+        word &= word - 1;
+      }
+    }
+    return new ArrayContainer(values, cardinality);
+  }
+
+  /** The values of a set whose high 16 bits are the same, stored by their low 16 bits. */
+  private abstract static class Container {
+
+    /**
+     * Add value to this container, and return the container that now holds this container's
+     * values, which may be this container.
+     *
+     * @param value the low 16 bits of a value.
+     * @return a Container.
+     */
+    abstract Container add(char value);
+
+    /**
+     * Remove value from this container, and return the container that now holds this container's
+     * values, which may be this container.
+     *
+     * @param value the low 16 bits of a value.
+     * @return a Container.
+     */
+    abstract Container remove(char value);
+
+    /**
+     * Return true if and only if value is in this container.
+     *
+     * @param value the low 16 bits of a value.
+     * @return a boolean value.
+     */
+    abstract boolean contains(char value);
+
+    /**
+     * Return the number of values in this container.
+     *
+     * @return a number of values.
+     */
+    abstract int cardinality();
+
+    /**
+     * Pass each of the values in this container, combined with high, to consumer, in increasing
+     * order.
+     *
+     * @param high the high 16 bits of the values, shifted into place.
+     * @param consumer an IntConsumer.
+     */
+    abstract void forEach(int high, IntConsumer consumer);
+
+    /**
+     * Set the bits of the values in this container in words.
+     *
+     * @param words a bitmap of BITMAP_WORDS longs.
+     */
+    abstract void setBits(long[] words);
+
+    /**
+     * Clear the bits of the values in this container in words.
+     *
+     * @param words a bitmap of BITMAP_WORDS longs.
+     */
+    abstract void clearBits(long[] words);
+
+    /**
+     * Return a new container with the same values as this container.
+     *
+     * @return a new Container.
+     */
+    abstract Container copy();
+
+    /**
+     * Return a new container of the values that are in both this container and other.
+     *
+     * @param other a Container.
+     * @return a new Container.
+     */
+    Container and(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.and(this);
+      }
+      long[] words = new long[BITMAP_WORDS];
+      setBits(words);
+      long[] otherWords = new long[BITMAP_WORDS];
+      other.setBits(otherWords);
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        words[i] &= otherWords[i];
+      }
+      return fromWords(words);
+    }
+
+    /**
+     * Return a new container of the values that are in this container, other, or both.
+     *
+     * @param other a Container.
+     * @return a new Container.
+     */
+    Container or(Container other) {
+      long[] words = new long[BITMAP_WORDS];
+      setBits(words);
+      other.setBits(words);
+      return fromWords(words);
+    }
+
+    /**
+     * Return a new container of the values that are in this container, but not in other.
+     *
+     * @param other a Container.
+     * @return a new Container.
+     */
+    Container andNot(Container other) {
+      long[] words = new long[BITMAP_WORDS];
+      setBits(words);
+      other.clearBits(words);
+      return fromWords(words);
+    }
+
+    /**
+     * Return the container that holds this container's values in the least memory.
+     *
+     * @return a Container.
+     */
+    Container optimize() {
+      RunContainer runs = RunContainer.of(this);
+      int runBytes = 4 * runs.runCount;
+      int arrayBytes = 2 * cardinality();
+      int bitmapBytes = 8 * BITMAP_WORDS;
+      if (runBytes < Math.min(arrayBytes, bitmapBytes)) {
+        return runs;
+      }
+      long[] words = new long[BITMAP_WORDS];
+      setBits(words);
+      return fromWords(words);
+    }
+  }
+
+  /** A container that stores its values in a sorted array. */
+  private static class ArrayContainer extends Container {
+
+    /** Store the values of this container, in increasing order, followed by unused space. */
+    private char[] values;
+
+    /** Store the number of values in this container. */
+    private int cardinality;
+
+    /** Create a new, empty, ArrayContainer. */
+    ArrayContainer() {
+      this(new char[4], 0);
+    }
+
+    /**
+     * Create a new ArrayContainer holding the first cardinality values of values.
+     *
+     * @param values an array of values, in increasing order.
+     * @param cardinality the number of values in use.
+     */
+    ArrayContainer(char[] values, int cardinality) {
+      this.values = values;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index >= 0) {
+        return this;
+      }
+      if (cardinality == MAXIMUM_ARRAY_SIZE) {
+        long[] words = new long[BITMAP_WORDS];
+        setBits(words);
+        return new BitmapContainer(words, cardinality).add(value);
+      }
+      index = -index - 1;
+      if (cardinality == values.length) {
+        values = Arrays.copyOf(values, Math.min(values.length * 2, MAXIMUM_ARRAY_SIZE));
+      }
+      System.arraycopy(values, index, values, index + 1, cardinality - index);
+      values[index] = value;
+      cardinality++;
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      int index = Arrays.binarySearch(values, 0, cardinality, value);
+      if (index >= 0) {
+        System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+        cardinality--;
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int i = 0; i < cardinality; i++) {
+        consumer.accept(high | values[i]);
+      }
+    }
+
+    @Override
+    void setBits(long[] words) {
+      for (int i = 0; i < cardinality; i++) {
+        words[values[i] >>> 6] |= 1L << values[i];
+      }
+    }
+
+    @Override
+    void clearBits(long[] words) {
+      for (int i = 0; i < cardinality; i++) {
+        words[values[i] >>> 6] &= ~(1L << values[i]);
+      }
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+    }
+
+    @Override
+    Container and(Container other) {
+      /* Probe the other container for each of this container's few values. */
+      char[] result = new char[cardinality];
+      int count = 0;
+      for (int i = 0; i < cardinality; i++) {
+        if (other.contains(values[i])) {
+          result[count++] = values[i];
+        }
+      }
+      return new ArrayContainer(result, count);
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof ArrayContainer
+          && cardinality + other.cardinality() <= MAXIMUM_ARRAY_SIZE) {
+        /* Merge the two sorted arrays. */
+        ArrayContainer otherArray = (ArrayContainer) other;
+        char[] result = new char[cardinality + otherArray.cardinality];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < cardinality || j < otherArray.cardinality) {
+          if (j == otherArray.cardinality
+              || (i < cardinality && values[i] < otherArray.values[j])) {
+            result[count++] = values[i++];
+          } else if (i == cardinality || values[i] > otherArray.values[j]) {
+            result[count++] = otherArray.values[j++];
+          } else {
+            result[count++] = values[i++];
+            j++;
+          }
+        }
+        return new ArrayContainer(result, count);
+      }
+      return super.or(other);
+    }
+
+    @Override
+    Container andNot(Container other) {
+      char[] result = new char[cardinality];
+      int count = 0;
+      for (int i = 0; i < cardinality; i++) {
+        if (!other.contains(values[i])) {
+          result[count++] = values[i];
+        }
+      }
+      return new ArrayContainer(result, count);
+    }
+  }
+
+  /** A container that stores its values as the set bits of a bitmap. */
+  private static class BitmapContainer extends Container {
+
+    /** Store the bitmap, in which bit i is set if and only if i is a value of this container. */
+    private final long[] words;
+
+    /** Store the number of values in this container. */
+    private int cardinality;
+
+    /**
+     * Create a new BitmapContainer holding the values whose bits are set in words.
+     *
+     * @param words a bitmap of BITMAP_WORDS longs.
+     * @param cardinality the number of set bits in words.
+     */
+    BitmapContainer(long[] words, int cardinality) {
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(char value) {
+      long before = words[value >>> 6];
+      words[value >>> 6] = before | (1L << value);
+      if (before != words[value >>> 6]) {
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(char value) {
+      if (contains(value)) {
+        words[value >>> 6] &= ~(1L << value);
+        cardinality--;
+        if (cardinality <= MAXIMUM_ARRAY_SIZE) {
+          return fromWords(words);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          consumer.accept(high | (i * 64 + Long.numberOfTrailingZeros(word)));
+          word &= word - 1;
+        }
+      }
+    }
+
+    @Override
+    void setBits(long[] target) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        target[i] |= words[i];
+      }
+    }
+
+    @Override
+    void clearBits(long[] target) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        target[i] &= ~words[i];
+      }
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(words.clone(), cardinality);
+    }
+  }
+
+  /**
+   * A container that stores its values as runs of consecutive values. It is only created by
+   * optimize, and is converted to one of the other kinds of container when it is modified.
+   */
+  private static class RunContainer extends Container {
+
+    /** Store the first value of each run, and the number of values in it minus one, in turn. */
+    private final char[] runs;
+
+    /** Store the number of runs. */
+    private final int runCount;
+
+    /** Store the number of values in this container. */
+    private final int cardinality;
+
+    /**
+     * Create a new RunContainer.
+     *
+     * @param runs the start and length minus one of each run, in turn, in increasing order.
+     * @param runCount the number of runs.
+     * @param cardinality the number of values in the runs.
+     */
+    RunContainer(char[] runs, int runCount, int cardinality) {
+      this.runs = runs;
+      this.runCount = runCount;
+      this.cardinality = cardinality;
+    }
+
+    /**
+     * Return a new RunContainer with the same values as container.
+     *
+     * @param container a Container.
+     * @return a new RunContainer.
+     */
+    static RunContainer of(Container container) {
+      if (container instanceof RunContainer) {
+        return (RunContainer) container;
+      }
+      long[] words = new long[BITMAP_WORDS];
+      container.setBits(words);
+      char[] runs = new char[8];
+      int runCount = 0;
+      int last = -2;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = words[i];
+        while (word != 0) {
+          int value = i * 64 + Long.numberOfTrailingZeros(word);
+          if (value == last + 1) {
+            /* Extend the current run. */
+            runs[2 * runCount - 1]++;
+          } else {
+            if (2 * runCount + 2 > runs.length) {
+              runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[2 * runCount] = (char) value;
+            runs[2 * runCount + 1] = 0;
+            runCount++;
+          }
+          last = value;
+          word &= word - 1;
+        }
+      }
+      return new RunContainer(Arrays.copyOf(runs, 2 * runCount), runCount, container.cardinality());
+    }
+
+    @Override
+    Container add(char value) {
+      if (contains(value)) {
+        return this;
+      }
+      return toArrayOrBitmap().add(value);
+    }
+
+    @Override
+    Container remove(char value) {
+      if (!contains(value)) {
+        return this;
+      }
+      return toArrayOrBitmap().remove(value);
+    }
+
+    @Override
+    boolean contains(char value) {
+      /* Find the last run that starts at or before value. */
+      int low = 0;
+      int high = runCount - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (runs[2 * middle] <= value) {
+          low = middle + 1;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return high >= 0 && value - runs[2 * high] <= runs[2 * high + 1];
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    void forEach(int high, IntConsumer consumer) {
+      for (int i = 0; i < runCount; i++) {
+        int start = runs[2 * i];
+        int end = start + runs[2 * i + 1];
+        for (int value = start; value <= end; value++) {
+          consumer.accept(high | value);
+        }
+      }
+    }
+
+    @Override
+    void setBits(long[] words) {
+      for (int i = 0; i < runCount; i++) {
+        int start = runs[2 * i];
+        int end = start + runs[2 * i + 1];
+        for (int value = start; value <= end; value++) {
+          words[value >>> 6] |= 1L << value;
+        }
+      }
+    }
+
+    @Override
+    void clearBits(long[] words) {
+      for (int i = 0; i < runCount; i++) {
+        int start = runs[2 * i];
+        int end = start + runs[2 * i + 1];
+        for (int value = start; value <= end; value++) {
+          words[value >>> 6] &= ~(1L << value);
+        }
+      }
+    }
+
+    @Override
+    Container copy() {
+      return this;
+    }
+
+    /**
+     * Return a new container, other than a RunContainer, with the same values as this container.
+     *
+     * @return a new Container.
+     */
+    private Container toArrayOrBitmap() {
+      long[] words = new long[BITMAP_WORDS];
+      setBits(words);
+      return fromWords(words);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package model;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that is responsible for remembering, for each directory that has been crawled, the names
+ * of the image files and subdirectories that it contained, along with the time at which the
+ * directory was last modified. Adding, removing or renaming an entry of a directory changes the
+ * directory's last modified time, so a directory whose last modified time has not changed since it
+ * was listed does not need to be listed again.
+ */
+class ScanCache {
+
+  /**
+   * Store the number of milliseconds that must have passed since a directory was last modified
+   * before its listing is stored. A directory that was modified more recently than this could be
+   * modified again without its last modified time changing, since file systems only record these
+   * times to a limited precision.
+   */
+  private static final long MODIFICATION_TIME_PRECISION = 2000;
+
+  /** Store a map from the paths of directories, as Strings, to their listings. */
+  private final Map<String, DirectoryListing> listings;
+
+  /**
+   * Create a new ScanCache object, given a map from the paths of directories, as Strings, to their
+   * listings.
+   *
+   * @param listings a map from paths, as Strings, to directory listings.
+   */
+  ScanCache(Map<String, DirectoryListing> listings) {
+    this.listings = new ConcurrentHashMap<>(listings);
+  }
+
+  /**
+   * Return the stored listing for the directory at directory, if it was stored when the directory
+   * had the last modified time lastModified. Otherwise, return null.
+   *
+   * @param directory a Path of a directory.
+   * @param lastModified the directory's current last modified time, in milliseconds.
+   * @return a directory listing, or null.
+   */
+  DirectoryListing get(Path directory, long lastModified) {
+    DirectoryListing listing = listings.get(directory.toString());
+    if (listing != null && listing.lastModified == lastModified) {
+      return listing;
+    }
+    return null;
+  }
+
+  /**
+   * Store the listing for the directory at directory, unless the directory was modified too
+   * recently for its last modified time to be relied upon.
+   *
+   * @param directory a Path of a directory.
+   * @param listing the directory's listing.
+   */
+  void put(Path directory, DirectoryListing listing) {
+    if (System.currentTimeMillis() - listing.lastModified >= MODIFICATION_TIME_PRECISION) {
+      listings.put(directory.toString(), listing);
+    } else {
+      listings.remove(directory.toString());
+    }
+  }
+
+  /**
+   * Stop storing the listings of the directories at and below root whose paths are not in visited.
+   * This removes the listings of directories that have been deleted since they were stored.
+   *
+   * @param root a Path of a directory.
+   * @param visited a set of paths of directories, as Strings.
+   */
+  void retainVisited(Path root, Set<String> visited) {
+    String rootPath = root.toString();
+    /* Find the prefix of the paths below root, which ends with a separator, even if root is "/". */
+    String rootPrefix = root.resolve("_").toString();
+    rootPrefix = rootPrefix.substring(0, rootPrefix.length() - 1);
+    for (String directory : listings.keySet()) {
+      if ((directory.equals(rootPath) || directory.startsWith(rootPrefix))
+          && !visited.contains(directory)) {
+        listings.remove(directory);
+      }
+    }
+  }
+
+  /**
+   * Return a map from the paths of directories, as Strings, to their listings.
+   *
+   * @return a map from paths, as Strings, to directory listings.
+   */
+  Map<String, DirectoryListing> getMap() {
+    return new HashMap<>(listings);
+  }
+
+  /** The names of the image files and subdirectories of a directory, at a certain time. */
+  static class DirectoryListing implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Store the time, in milliseconds, at which the directory was last modified. */
+    final long lastModified;
+
+    /** Store the names of the image files in the directory, sorted. */
+    final List<String> imageNames;
+
+    /** Store the names of the subdirectories of the directory, sorted. */
+    final List<String> subdirectoryNames;
+
+    /**
+     * Create a new DirectoryListing object.
+     *
+     * @param lastModified the time, in milliseconds, at which the directory was last modified.
+     * @param imageNames the sorted names of the image files in the directory.
+     * @param subdirectoryNames the sorted names of the subdirectories of the directory.
+     */
+    DirectoryListing(long lastModified, List<String> imageNames, List<String> subdirectoryNames) {
+      this.lastModified = lastModified;
+      this.imageNames = imageNames;
+      this.subdirectoryNames = subdirectoryNames;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that is responsible for moving the data saved by earlier versions of the program, which
+ * serialized each of the image histories, the master list of tags, the tag usage counts and the
+ * directory listings to a file of its own, into a snapshot file. This is done once: the serialized
+ * files that were read are deleted once the snapshot file has been written, and they are not read
+ * again if there is already a snapshot file. A serialized file that cannot be read is renamed,
+ * rather than deleted, so that the data in it is not lost.
+ */
+class SerializedFileMigrator {
+
+  /** Store the suffix added to the name of a serialized file that could not be read. */
+  static final String BAD_SUFFIX = ".bad";
+
+  /**
+   * If there is no snapshot file at snapshotLocation, but there are serialized files at any of the
+   * other locations, write the objects in the serialized files to a new snapshot file at
+   * snapshotLocation, and delete the serialized files that were read. A serialized file that does
+   * not exist, or cannot be read, is left out of the snapshot, and one that cannot be read is
+   * renamed, with BAD_SUFFIX added to its name.
+   *
+   * @param snapshotLocation the location of the snapshot file, as a String.
+   * @param imageHistoryLocation the location of the serialized image histories, as a String.
+   * @param tagsLocation the location of the serialized master list of tags, as a String.
+   * @param tagUsageLocation the location of the serialized tag usage counts, as a String.
+   * @param scanCacheLocation the location of the serialized directory listings, as a String.
+   * @return true if and only if a snapshot file was written.
+   */
+  @SuppressWarnings("unchecked")
+  static boolean migrate(
+      String snapshotLocation,
+      String imageHistoryLocation,
+      String tagsLocation,
+      String tagUsageLocation,
+      String scanCacheLocation) {
+    File snapshotFile = new File(snapshotLocation);
+    File[] serializedFiles = {
+      new File(imageHistoryLocation),
+      new File(tagsLocation),
+      new File(tagUsageLocation),
+      new File(scanCacheLocation)
+    };
+    boolean anySerializedFile = false;
+    for (File serializedFile : serializedFiles) {
+      anySerializedFile = anySerializedFile || serializedFile.exists();
+    }
+    if (snapshotFile.exists() || !anySerializedFile) {
+      return false;
+    }
+    Object[] objects = new Object[serializedFiles.length];
+    Class<?>[] types = {Map.class, List.class, Map.class, Map.class};
+    for (int i = 0; i < serializedFiles.length; i++) {
+      objects[i] = readSerializedFile(serializedFiles[i]);
+      if (objects[i] != null && !types[i].isInstance(objects[i])) {
+        System.err.println("Serialized File has the wrong type: " + serializedFiles[i]);
+        objects[i] = null;
+      }
+    }
+    try {
+      SnapshotFile.write(
+          snapshotFile,
+          (Map<String, List<String>>) objects[0],
+          null,
+          (List<String>) objects[1],
+          (Map<String, Integer>) objects[2],
+          (Map<String, ScanCache.DirectoryListing>) objects[3],
+          -1);
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error writing snapshot File");
+      e.printStackTrace();
+      return false;
+    }
+    for (int i = 0; i < serializedFiles.length; i++) {
+      File serializedFile = serializedFiles[i];
+      if (objects[i] != null) {
+        serializedFile.delete();
+      } else if (serializedFile.exists()) {
+        /* Keep the data that could not be read, out of the way of the next migration. */
+        File badFile = new File(serializedFile.getPath() + BAD_SUFFIX);
+        if (!serializedFile.renameTo(badFile)) {
+          System.err.println("Could not rename unreadable serialized File: " + serializedFile);
+        } else {
+          System.err.println("Kept unreadable serialized File as " + badFile);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return the object that is serialized in the file, serializedFile, or null if the file does not
+   * exist, or cannot be read.
+   *
+   * @param serializedFile the File.
+   * @return the Object serialized at the file, or null.
+   */
+  private static Object readSerializedFile(File serializedFile) {
+    Object serializedObject = null;
+    if (serializedFile.exists()) {
+      try (InputStream file = new FileInputStream(serializedFile);
+          InputStream buffer = new BufferedInputStream(file);
+          ObjectInput input = new ObjectInputStream(buffer)) {
+        serializedObject = input.readObject();
+      } catch (ClassNotFoundException | IOException e) {
+        System.err.println("Error reading serialized File");
+        e.printStackTrace();
+      }
+    }
+    return serializedObject;
+  }
+}
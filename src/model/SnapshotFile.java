@@ -0,0 +1,1084 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A class that is responsible for reading and writing a snapshot of the data that persists between
+ * sessions of the program: the image histories, the master list of tags, the tag usage counts and
+ * the directory listings, in a compact, versioned, binary format.
+ *
+ * <p>The file starts with a header: a magic number, the version of the format, and a directory of
+ * sections, giving the kind, offset, length and CRC-32 checksum of each, followed by a checksum of
+ * the header itself. A section is only read into memory, and its checksum verified, when it is
+ * first needed, so that reading one section does not wait for the others. The file is neither
+ * mapped nor kept open between reads, so that a newer snapshot can replace it while it is read.
+ * Every String is stored once, in a table of UTF-8 encodings that the other sections refer to by
+ * index, and is only decoded when it is first used. Records whose size varies are prefixed
+ * by their length in bytes, so that a reader can skip over them. Sections of kinds that a reader
+ * does not know are ignored, so the version only changes when an existing section changes.
+ */
+final class SnapshotFile {
+
+  /** Store the number that every snapshot file starts with: "ITSS", in ASCII. */
+  private static final int MAGIC = 0x49545353;
+
+  /** Store the version of the format that is written, and the only version that can be read. */
+  private static final int VERSION = 1;
+
+  /** Store the number of bytes in the header before the directory of sections. */
+  private static final int HEADER_SIZE = 12;
+
+  /** Store the number of bytes in each entry of the directory of sections. */
+  private static final int DIRECTORY_ENTRY_SIZE = 24;
+
+  /** Store the kind of the section that holds the table of Strings. */
+  private static final int STRINGS = 1;
+
+  /** Store the kind of the section that holds the master list of tags. */
+  private static final int TAGS = 2;
+
+  /** Store the kind of the section that holds the number of images that have each tag. */
+  private static final int TAG_USAGE = 3;
+
+  /** Store the kind of the section that holds the old names of each image. */
+  private static final int IMAGE_HISTORIES = 4;
+
+  /** Store the kind of the section that holds the listing of each directory. */
+  private static final int SCAN_CACHE = 5;
+
+  /**
+   * Store the kind of the section that holds the generation of the first temporary logs whose
+   * changes are not in the snapshot.
+   */
+  private static final int LOG_GENERATION = 6;
+
+  /** Store the kind of the section that holds the identity of the file of each image. */
+  private static final int IMAGE_IDENTITIES = 7;
+
+  /** Store the header of the file, up to and including the checksum of the header. */
+  private final ByteBuffer header;
+
+  /** Store the number of bytes in the file. */
+  private final long size;
+
+  /** Store the file that the sections are read from, or null if contents holds the whole file. */
+  private final File source;
+
+  /** Store the whole file, or null if the sections are read from source when they are needed. */
+  private final ByteBuffer contents;
+
+  /** Store the sections of the file, by kind. */
+  private final Map<Integer, Section> sections = new HashMap<>();
+
+  /** Store the section that holds the table of Strings, or null if it has not been read yet. */
+  private ByteBuffer stringTable;
+
+  /** Store the Strings of the table that have been decoded, by index, or null. */
+  private String[] strings;
+
+  /**
+   * Create a new SnapshotFile object that reads the snapshot whose header is header, and check the
+   * header.
+   *
+   * @param header a buffer holding the start of a snapshot file, at least up to the end of its
+   *     header, if it has one.
+   * @param size the number of bytes in the file.
+   * @param source the file that the sections are read from, or null if contents is given.
+   * @param contents a buffer holding the whole file, or null if source is given.
+   * @throws IOException if the file does not hold a snapshot of a version that can be read, or its
+   *     header is corrupt.
+   */
+  private SnapshotFile(ByteBuffer header, long size, File source, ByteBuffer contents)
+      throws IOException {
+    this.header = header;
+    this.size = size;
+    this.source = source;
+    this.contents = contents;
+    if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+      throw new IOException("The file is not a snapshot file.");
+    }
+    int version = header.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("The snapshot file has unsupported version " + version + ".");
+    }
+    int sectionCount = header.getInt(8);
+    long directoryEnd = HEADER_SIZE + (long) sectionCount * DIRECTORY_ENTRY_SIZE;
+    if (sectionCount < 0 || directoryEnd + 4 > header.limit()) {
+      throw new IOException("The snapshot file's header is corrupt.");
+    }
+    ByteBuffer directory = header.duplicate();
+    directory.position(0);
+    directory.limit((int) directoryEnd);
+    if (checksum(directory) != header.getInt((int) directoryEnd)) {
+      throw new IOException("The snapshot file's header is corrupt.");
+    }
+    for (int i = 0; i < sectionCount; i++) {
+      int entry = HEADER_SIZE + i * DIRECTORY_ENTRY_SIZE;
+      long offset = header.getLong(entry + 4);
+      long length = header.getLong(entry + 12);
+      if (offset < 0 || length < 0 || offset + length > Math.min(size, Integer.MAX_VALUE)) {
+        throw new IOException("The snapshot file's header is corrupt.");
+      }
+      sections.put(
+          header.getInt(entry), new Section((int) offset, (int) length, header.getInt(entry + 20)));
+    }
+  }
+
+  /**
+   * Return a new SnapshotFile object that reads the snapshot in the file, file. Only the header is
+   * read by this method, and the file is closed again, rather than mapped, so that it can be
+   * replaced while the SnapshotFile object is in use. Each section is read from the file when it
+   * is first needed.
+   *
+   * @param file a snapshot file.
+   * @return a SnapshotFile object.
+   * @throws IOException if the file cannot be read, or does not hold a readable snapshot.
+   */
+  static SnapshotFile open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer start = ByteBuffer.allocate((int) Math.min(size, HEADER_SIZE));
+      HistoryReader.readFully(channel, start, 0);
+      ByteBuffer header = start;
+      if (start.limit() == HEADER_SIZE) {
+        /* The rest of the header is only read if the count of sections fits in the file. */
+        long headerEnd = HEADER_SIZE + (long) start.getInt(8) * DIRECTORY_ENTRY_SIZE + 4;
+        if (headerEnd > HEADER_SIZE && headerEnd <= size) {
+          header = ByteBuffer.allocate((int) headerEnd);
+          HistoryReader.readFully(channel, header, 0);
+        }
+      }
+      return new SnapshotFile(header, size, file, null);
+    }
+  }
+
+  /**
+   * Return the master list of tags in this snapshot, or null if it has none.
+   *
+   * @return a list of tags, or null.
+   * @throws IOException if the section that holds the tags is corrupt.
+   */
+  List<String> readTags() throws IOException {
+    ByteBuffer section = getSection(TAGS);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 4);
+      List<String> tags = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        tags.add(getString(section.getInt()));
+      }
+      return tags;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's tags are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return the map from tags to the number of images that have them in this snapshot, or null if
+   * it has none.
+   *
+   * @return a map from tags to numbers of images, or null.
+   * @throws IOException if the section that holds the counts is corrupt.
+   */
+  Map<String, Integer> readTagUsage() throws IOException {
+    ByteBuffer section = getSection(TAG_USAGE);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 8);
+      Map<String, Integer> tagUsage = new HashMap<>(capacityFor(count));
+      for (int i = 0; i < count; i++) {
+        tagUsage.put(getString(section.getInt()), section.getInt());
+      }
+      return tagUsage;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's tag usage counts are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return the map from image paths, as Strings, to lists of old names in this snapshot, or null
+   * if it has none.
+   *
+   * @return a map from paths, as Strings, to lists of old names, or null.
+   * @throws IOException if the section that holds the image histories is corrupt.
+   */
+  Map<String, List<String>> readImageHistories() throws IOException {
+    ByteBuffer section = getSection(IMAGE_HISTORIES);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 12);
+      Map<String, List<String>> imageHistories = new HashMap<>(capacityFor(count));
+      for (int i = 0; i < count; i++) {
+        int recordEnd = section.getInt();
+        recordEnd += section.position();
+        String path = getString(section.getInt());
+        imageHistories.put(path, readStrings(section));
+        section.position(recordEnd);
+      }
+      return imageHistories;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's image histories are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return a map from the image paths, as Strings, in this snapshot's image histories to the
+   * offsets of their lists of old names, which can be read by readImageHistory, or by a
+   * HistoryReader, or null if this snapshot has no image histories. Only the paths are decoded.
+   *
+   * @return a map from paths, as Strings, to offsets, or null.
+   * @throws IOException if the section that holds the image histories is corrupt.
+   */
+  Map<String, Integer> readImageHistoryIndex() throws IOException {
+    ByteBuffer section = getSection(IMAGE_HISTORIES);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 12);
+      Map<String, Integer> offsets = new HashMap<>(capacityFor(count));
+      for (int i = 0; i < count; i++) {
+        int recordEnd = section.getInt();
+        recordEnd += section.position();
+        String path = getString(section.getInt());
+        offsets.put(path, section.position());
+        section.position(recordEnd);
+      }
+      return offsets;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's image histories are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return the list of old names at offset, offset, in this snapshot's image histories.
+   *
+   * @param offset an offset returned by readImageHistoryIndex.
+   * @return a list of old names.
+   * @throws IOException if this snapshot has no image histories, or they are corrupt.
+   */
+  List<String> readImageHistory(int offset) throws IOException {
+    ByteBuffer section = getSection(IMAGE_HISTORIES);
+    if (section == null) {
+      throw new IOException("The snapshot file has no image histories.");
+    }
+    try {
+      section.position(offset);
+      return readStrings(section);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's image histories are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return a new reader of the lists of old names in this snapshot's image histories, which reads
+   * them from the file, snapshotFile, that this snapshot was opened from, or null if this snapshot
+   * has no image histories. The reader keeps the file open, rather than mapped, so that the file
+   * can be replaced by a newer snapshot while the reader is still reading the older one.
+   *
+   * @param snapshotFile the file that this snapshot was opened from.
+   * @return a HistoryReader object, or null.
+   * @throws IOException if the file cannot be opened, or no longer holds this snapshot, or the
+   *     table of Strings is missing or corrupt.
+   */
+  HistoryReader openHistoryReader(File snapshotFile) throws IOException {
+    Section histories = sections.get(IMAGE_HISTORIES);
+    if (histories == null) {
+      return null;
+    }
+    ByteBuffer table = getSection(STRINGS);
+    if (table == null || table.limit() < 4) {
+      throw new IOException("The snapshot file has no table of Strings.");
+    }
+    int stringCount = table.getInt(0);
+    if (stringCount < 0 || stringCount > (table.limit() - 8) / 4) {
+      throw new IOException("The snapshot file's table of Strings is corrupt.");
+    }
+    FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ);
+    try {
+      checkUnchanged(channel);
+      Section strings = sections.get(STRINGS);
+      return new HistoryReader(
+          channel, histories.offset, histories.length, strings.offset, strings.length, stringCount);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Return the map from directory paths, as Strings, to directory listings in this snapshot, or
+   * null if it has none.
+   *
+   * @return a map from paths, as Strings, to directory listings, or null.
+   * @throws IOException if the section that holds the directory listings is corrupt.
+   */
+  Map<String, ScanCache.DirectoryListing> readScanCache() throws IOException {
+    ByteBuffer section = getSection(SCAN_CACHE);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 24);
+      Map<String, ScanCache.DirectoryListing> listings = new HashMap<>(capacityFor(count));
+      for (int i = 0; i < count; i++) {
+        int recordEnd = section.getInt();
+        recordEnd += section.position();
+        String directory = getString(section.getInt());
+        long lastModified = section.getLong();
+        List<String> imageNames = readStrings(section);
+        List<String> subdirectoryNames = readStrings(section);
+        listings.put(
+            directory, new ScanCache.DirectoryListing(lastModified, imageNames, subdirectoryNames));
+        section.position(recordEnd);
+      }
+      return listings;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's directory listings are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return the map from image paths, as Strings, to the identities of their files in this
+   * snapshot, or null if it has none.
+   *
+   * @return a map from paths, as Strings, to identities, or null.
+   * @throws IOException if the section that holds the identities is corrupt.
+   */
+  Map<String, String> readImageIdentities() throws IOException {
+    ByteBuffer section = getSection(IMAGE_IDENTITIES);
+    if (section == null) {
+      return null;
+    }
+    try {
+      int count = readCount(section, 8);
+      Map<String, String> imageIdentities = new HashMap<>(capacityFor(count));
+      for (int i = 0; i < count; i++) {
+        imageIdentities.put(getString(section.getInt()), getString(section.getInt()));
+      }
+      return imageIdentities;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("The snapshot file's image identities are corrupt.", e);
+    }
+  }
+
+  /**
+   * Return the generation of the first temporary logs whose changes are not in this snapshot, or
+   * -1 if this snapshot does not say, in which case none of the temporary logs' changes are in it.
+   *
+   * @return a log generation, or -1.
+   * @throws IOException if the section that holds the generation is corrupt.
+   */
+  long readLogGeneration() throws IOException {
+    ByteBuffer section = getSection(LOG_GENERATION);
+    if (section == null) {
+      return -1;
+    }
+    try {
+      return section.getLong();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("The snapshot file's log generation is corrupt.", e);
+    }
+  }
+
+  /**
+   * Read, from section, a count followed by that many indices of Strings, and return the Strings.
+   *
+   * @param section a buffer positioned at a count of Strings.
+   * @return a list of Strings.
+   * @throws IOException if the table of Strings is corrupt.
+   */
+  private List<String> readStrings(ByteBuffer section) throws IOException {
+    int count = readCount(section, 4);
+    List<String> list = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      list.add(getString(section.getInt()));
+    }
+    return list;
+  }
+
+  /**
+   * Return the String with index, index, in the table of Strings, decoding it if it has not been
+   * decoded yet. The table starts with the number of Strings, followed by the offset at which the
+   * encoding of each String starts, and the offset at which the last one ends, followed by the
+   * encodings.
+   *
+   * @param index the index of a String.
+   * @return a String.
+   * @throws IOException if the table of Strings is missing or corrupt.
+   */
+  private String getString(int index) throws IOException {
+    if (stringTable == null) {
+      stringTable = getSection(STRINGS);
+      if (stringTable == null || stringTable.limit() < 4) {
+        throw new IOException("The snapshot file has no table of Strings.");
+      }
+      int count = stringTable.getInt(0);
+      if (count < 0 || count > (stringTable.limit() - 8) / 4) {
+        throw new IOException("The snapshot file's table of Strings is corrupt.");
+      }
+      strings = new String[count];
+    }
+    if (index < 0 || index >= strings.length) {
+      throw new IllegalArgumentException("String index out of range: " + index);
+    }
+    String string = strings[index];
+    if (string == null) {
+      int encodingsStart = 4 * (strings.length + 2);
+      int start = encodingsStart + stringTable.getInt(4 * (index + 1));
+      int end = encodingsStart + stringTable.getInt(4 * (index + 2));
+      if (start < encodingsStart || end < start || end > stringTable.limit()) {
+        throw new IllegalArgumentException("String offsets out of range: " + start + ", " + end);
+      }
+      byte[] encoding = new byte[end - start];
+      ByteBuffer source = stringTable.duplicate();
+      source.position(start);
+      source.get(encoding);
+      string = new String(encoding, StandardCharsets.UTF_8);
+      strings[index] = string;
+    }
+    return string;
+  }
+
+  /**
+   * Return the section of kind, kind, as a buffer positioned at its start, verifying its checksum
+   * the first time it is returned, or null if this snapshot has no such section.
+   *
+   * @param kind the kind of a section.
+   * @return a buffer, or null.
+   * @throws IOException if the section's checksum does not match its contents.
+   */
+  private ByteBuffer getSection(int kind) throws IOException {
+    Section section = sections.get(kind);
+    if (section == null) {
+      return null;
+    }
+    ByteBuffer buffer = readSection(section);
+    if (!section.verified) {
+      if (checksum(buffer.duplicate()) != section.checksum) {
+        throw new IOException("Section " + kind + " of the snapshot file is corrupt.");
+      }
+      section.verified = true;
+    }
+    return buffer;
+  }
+
+  /**
+   * Return a buffer holding the bytes of section, section, which shares them with contents, if it
+   * holds the whole file, and otherwise holds a copy read from the file.
+   *
+   * @param section a section of this snapshot.
+   * @return a buffer.
+   * @throws IOException if the file cannot be read, or has been replaced.
+   */
+  private ByteBuffer readSection(Section section) throws IOException {
+    if (contents != null) {
+      ByteBuffer buffer = contents.duplicate();
+      buffer.position(section.offset);
+      buffer.limit(section.offset + section.length);
+      return buffer.slice();
+    }
+    try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+      checkUnchanged(channel);
+      ByteBuffer buffer = ByteBuffer.allocate(section.length);
+      HistoryReader.readFully(channel, buffer, section.offset);
+      buffer.clear();
+      return buffer;
+    }
+  }
+
+  /**
+   * Check that the file that channel reads still holds this snapshot, rather than a newer one.
+   *
+   * @param channel a channel that reads the file that this snapshot was opened from.
+   * @throws IOException if the file cannot be read, or holds another snapshot.
+   */
+  private void checkUnchanged(FileChannel channel) throws IOException {
+    /* The header ends with its own checksum, which tells this snapshot from any other. */
+    int headerEnd = HEADER_SIZE + header.getInt(8) * DIRECTORY_ENTRY_SIZE;
+    ByteBuffer headerChecksum = ByteBuffer.allocate(4);
+    if (channel.size() == size) {
+      HistoryReader.readFully(channel, headerChecksum, headerEnd);
+    }
+    if (channel.size() != size || headerChecksum.getInt(0) != header.getInt(headerEnd)) {
+      throw new IOException("The snapshot file has been replaced.");
+    }
+  }
+
+  /**
+   * Return the CRC-32 checksum of the remaining bytes of buffer, as an int.
+   *
+   * @param buffer a buffer.
+   * @return a checksum.
+   */
+  private static int checksum(ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Read a count of entries from section, and return it, checking that there is room left in the
+   * section for that many entries of at least entrySize bytes each.
+   *
+   * @param section a buffer positioned at a count.
+   * @param entrySize the least number of bytes in an entry.
+   * @return a count.
+   * @throws IllegalArgumentException if the count is out of range.
+   */
+  private static int readCount(ByteBuffer section, int entrySize) {
+    int count = section.getInt();
+    if (count < 0 || count > section.remaining() / entrySize) {
+      throw new IllegalArgumentException("Count out of range: " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Return the initial capacity of a HashMap that holds count entries without being resized.
+   *
+   * @param count a number of entries.
+   * @return a capacity.
+   */
+  private static int capacityFor(int count) {
+    return count * 4 / 3 + 1;
+  }
+
+  /**
+   * Write a snapshot of the given data to the file, file, replacing it. The snapshot is written to
+   * a temporary file next to it first, which then replaces it, so that a failure while writing
+   * leaves the previous snapshot in place. A null map or list, or a negative log generation, is
+   * left out of the snapshot.
+   *
+   * @param file the file to write.
+   * @param imageHistories a map from image paths, as Strings, to lists of old names, or null.
+   * @param imageIdentities a map from image paths, as Strings, to identities, or null.
+   * @param tags a list of tags, or null.
+   * @param tagUsage a map from tags to the number of images that have them, or null.
+   * @param scanCache a map from directory paths, as Strings, to directory listings, or null.
+   * @param logGeneration the generation of the first temporary logs whose changes are not in the
+   *     snapshot, or -1.
+   * @throws IOException if the snapshot could not be written.
+   */
+  static void write(
+      File file,
+      Map<String, List<String>> imageHistories,
+      Map<String, String> imageIdentities,
+      List<String> tags,
+      Map<String, Integer> tagUsage,
+      Map<String, ScanCache.DirectoryListing> scanCache,
+      long logGeneration)
+      throws IOException {
+    File temporaryFile = new File(file.getPath() + ".tmp");
+    Writer writer = new Writer();
+    int sectionCount =
+        1
+            + (tags != null ? 1 : 0)
+            + (tagUsage != null ? 1 : 0)
+            + (imageHistories != null ? 1 : 0)
+            + (imageIdentities != null ? 1 : 0)
+            + (scanCache != null ? 1 : 0)
+            + (logGeneration >= 0 ? 1 : 0);
+    try (FileOutputStream stream = new FileOutputStream(temporaryFile)) {
+      writer.open(stream, HEADER_SIZE + sectionCount * DIRECTORY_ENTRY_SIZE + 4);
+      if (tags != null) {
+        writer.startSection(TAGS);
+        writer.out.writeInt(tags.size());
+        for (String tag : tags) {
+          writer.out.writeInt(writer.indexOf(tag));
+        }
+      }
+      if (tagUsage != null) {
+        writer.startSection(TAG_USAGE);
+        writer.out.writeInt(tagUsage.size());
+        for (Map.Entry<String, Integer> entry : tagUsage.entrySet()) {
+          writer.out.writeInt(writer.indexOf(entry.getKey()));
+          writer.out.writeInt(entry.getValue());
+        }
+      }
+      if (imageHistories != null) {
+        writer.startSection(IMAGE_HISTORIES);
+        writer.out.writeInt(imageHistories.size());
+        for (Map.Entry<String, List<String>> entry : imageHistories.entrySet()) {
+          List<String> oldNames = entry.getValue();
+          writer.out.writeInt(4 * (2 + oldNames.size()));
+          writer.out.writeInt(writer.indexOf(entry.getKey()));
+          writer.writeStrings(oldNames);
+        }
+      }
+      if (imageIdentities != null) {
+        writer.startSection(IMAGE_IDENTITIES);
+        writer.out.writeInt(imageIdentities.size());
+        for (Map.Entry<String, String> entry : imageIdentities.entrySet()) {
+          writer.out.writeInt(writer.indexOf(entry.getKey()));
+          writer.out.writeInt(writer.indexOf(entry.getValue()));
+        }
+      }
+      if (scanCache != null) {
+        writer.startSection(SCAN_CACHE);
+        writer.out.writeInt(scanCache.size());
+        for (Map.Entry<String, ScanCache.DirectoryListing> entry : scanCache.entrySet()) {
+          ScanCache.DirectoryListing listing = entry.getValue();
+          writer.out.writeInt(
+              4 + 8 + 4 * (2 + listing.imageNames.size() + listing.subdirectoryNames.size()));
+          writer.out.writeInt(writer.indexOf(entry.getKey()));
+          writer.out.writeLong(listing.lastModified);
+          writer.writeStrings(listing.imageNames);
+          writer.writeStrings(listing.subdirectoryNames);
+        }
+      }
+      if (logGeneration >= 0) {
+        writer.startSection(LOG_GENERATION);
+        writer.out.writeLong(logGeneration);
+      }
+      /* The table of Strings is written last, once every String has been given an index. */
+      writer.writeStringTable();
+      writer.finish(stream.getChannel());
+    }
+    try {
+      Files.move(
+          temporaryFile.toPath(),
+          file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** A section of a snapshot file that is being read. */
+  private static class Section {
+
+    /** Store the offset of the section in the file. */
+    private final int offset;
+
+    /** Store the number of bytes in the section. */
+    private final int length;
+
+    /** Store the CRC-32 checksum that the section's bytes should have. */
+    private final int checksum;
+
+    /** Store true if and only if the section's checksum has been verified. */
+    private boolean verified;
+
+    /**
+     * Create a new Section object.
+     *
+     * @param offset the offset of the section in the file.
+     * @param length the number of bytes in the section.
+     * @param checksum the checksum that the section's bytes should have.
+     */
+    Section(int offset, int length, int checksum) {
+      this.offset = offset;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+  /**
+   * A reader of the lists of old names in the image histories of a snapshot file, which reads each
+   * list from the file when it is asked for, with a few small reads, rather than keeping the file
+   * in memory. The reader keeps reading the snapshot it was opened on even once the file has been
+   * replaced by a newer one. Note: a HistoryReader can be used by several threads at once.
+   */
+  static class HistoryReader implements Closeable {
+
+    /** Store the channel that the file is read through. */
+    private final FileChannel channel;
+
+    /** Store the offset of the section that holds the image histories in the file. */
+    private final int historiesOffset;
+
+    /** Store the number of bytes in the section that holds the image histories. */
+    private final int historiesLength;
+
+    /** Store the offset of the section that holds the table of Strings in the file. */
+    private final int stringsOffset;
+
+    /** Store the number of bytes in the section that holds the table of Strings. */
+    private final int stringsLength;
+
+    /** Store the number of Strings in the table of Strings. */
+    private final int stringCount;
+
+    /**
+     * Create a new HistoryReader object that reads the snapshot file through channel, channel.
+     *
+     * @param channel a channel that reads a snapshot file.
+     * @param historiesOffset the offset of the section that holds the image histories.
+     * @param historiesLength the number of bytes in the section that holds the image histories.
+     * @param stringsOffset the offset of the section that holds the table of Strings.
+     * @param stringsLength the number of bytes in the section that holds the table of Strings.
+     * @param stringCount the number of Strings in the table of Strings.
+     */
+    private HistoryReader(
+        FileChannel channel,
+        int historiesOffset,
+        int historiesLength,
+        int stringsOffset,
+        int stringsLength,
+        int stringCount) {
+      this.channel = channel;
+      this.historiesOffset = historiesOffset;
+      this.historiesLength = historiesLength;
+      this.stringsOffset = stringsOffset;
+      this.stringsLength = stringsLength;
+      this.stringCount = stringCount;
+    }
+
+    /**
+     * Return the list of old names at offset, offset, in the snapshot's image histories, read from
+     * the file.
+     *
+     * @param offset an offset returned by readImageHistoryIndex.
+     * @return a list of old names.
+     * @throws IOException if the file cannot be read, or the list is corrupt.
+     */
+    List<String> read(int offset) throws IOException {
+      if (offset < 0 || offset > historiesLength - 4) {
+        throw new IOException("The snapshot file's image histories are corrupt.");
+      }
+      ByteBuffer count = ByteBuffer.allocate(4);
+      readFully(channel, count, historiesOffset + offset);
+      int size = count.getInt(0);
+      if (size < 0 || size > (historiesLength - offset - 4) / 4) {
+        throw new IOException("The snapshot file's image histories are corrupt.");
+      }
+      ByteBuffer indices = ByteBuffer.allocate(4 * size);
+      readFully(channel, indices, historiesOffset + offset + 4);
+      List<String> oldNames = new ArrayList<>(size);
+      ByteBuffer bounds = ByteBuffer.allocate(8);
+      int encodingsStart = 4 * (stringCount + 2);
+      for (int i = 0; i < size; i++) {
+        int index = indices.getInt(4 * i);
+        if (index < 0 || index >= stringCount) {
+          throw new IOException("The snapshot file's image histories are corrupt.");
+        }
+        /* The offsets at which the String's encoding starts and ends are next to each other. */
+        bounds.clear();
+        readFully(channel, bounds, stringsOffset + 4 * (index + 1));
+        int start = encodingsStart + bounds.getInt(0);
+        int end = encodingsStart + bounds.getInt(4);
+        if (start < encodingsStart || end < start || end > stringsLength) {
+          throw new IOException("The snapshot file's table of Strings is corrupt.");
+        }
+        ByteBuffer encoding = ByteBuffer.allocate(end - start);
+        readFully(channel, encoding, stringsOffset + start);
+        oldNames.add(new String(encoding.array(), StandardCharsets.UTF_8));
+      }
+      return oldNames;
+    }
+
+    /**
+     * Return a map from each of the paths, as Strings, in offsets to its list of old names, which
+     * is only read from the file, with the rest of the snapshot, once one of the lists is used,
+     * rather than by this method. The lists cannot be changed. Note: the map must only be used by
+     * one thread at a time.
+     *
+     * @param offsets a map from paths, as Strings, to offsets returned by readImageHistoryIndex.
+     * @return a map from paths, as Strings, to lists of old names.
+     */
+    Map<String, List<String>> readLater(Map<String, Integer> offsets) {
+      Map<String, List<String>> imageHistories = new HashMap<>(capacityFor(offsets.size()));
+      SnapshotFile[] snapshot = new SnapshotFile[1];
+      for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+        int offset = entry.getValue();
+        imageHistories.put(
+            entry.getKey(),
+            new SavedOldNames(
+                () -> {
+                  /* The whole snapshot is read at most once, for all of the lists. */
+                  if (snapshot[0] == null) {
+                    snapshot[0] = readAll();
+                  }
+                  return snapshot[0].readImageHistory(offset);
+                }));
+      }
+      return imageHistories;
+    }
+
+    /** Stop reading the snapshot file. */
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    /**
+     * Return a new SnapshotFile object that reads a copy of the whole snapshot, held in memory.
+     *
+     * @return a SnapshotFile object.
+     * @throws IOException if the file cannot be read.
+     */
+    private SnapshotFile readAll() throws IOException {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("The snapshot file is too large to be read.");
+      }
+      ByteBuffer contents = ByteBuffer.allocate((int) size);
+      readFully(channel, contents, 0);
+      contents.clear();
+      return new SnapshotFile(contents, size, null, contents);
+    }
+
+    /**
+     * Read bytes from channel, starting at offset, position, until buffer is full.
+     *
+     * @param channel a channel that reads a file.
+     * @param buffer a buffer to fill.
+     * @param position the offset in the file of the first byte to read.
+     * @throws IOException if the file cannot be read, or ends before buffer is full.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("The snapshot file ended unexpectedly.");
+        }
+      }
+    }
+  }
+
+  /** A source of a list of old names, which may fail to read it. */
+  private interface OldNamesSource {
+
+    /**
+     * Return the list of old names.
+     *
+     * @return a list of old names.
+     * @throws IOException if the list could not be read.
+     */
+    List<String> read() throws IOException;
+  }
+
+  /**
+   * A list of old names that cannot be changed, and is only read, once, when it is first used.
+   */
+  private static class SavedOldNames extends AbstractList<String> {
+
+    /** Store the source that the list is read from, or null once it has been read. */
+    private OldNamesSource source;
+
+    /** Store the list of old names, or null if it has not been read yet. */
+    private List<String> oldNames;
+
+    /**
+     * Create a new SavedOldNames object, which reads its list from source.
+     *
+     * @param source the source of the list of old names.
+     */
+    SavedOldNames(OldNamesSource source) {
+      this.source = source;
+    }
+
+    @Override
+    public String get(int index) {
+      return getOldNames().get(index);
+    }
+
+    @Override
+    public int size() {
+      return getOldNames().size();
+    }
+
+    /**
+     * Return the list of old names, reading it if it has not been read yet.
+     *
+     * @return a list of old names.
+     * @throws UncheckedIOException if the list could not be read.
+     */
+    private List<String> getOldNames() {
+      if (oldNames == null) {
+        try {
+          oldNames = source.read();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        source = null;
+      }
+      return oldNames;
+    }
+  }
+
+  /**
+   * The state of a snapshot file that is being written: the sections written so far, and the
+   * Strings that they refer to. The sections are written one after another, after space for the
+   * header, which is written last, once the offsets, lengths and checksums of the sections are
+   * known.
+   */
+  private static class Writer {
+
+    /** Store the index of each String that a section refers to. */
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    /** Store the Strings that sections refer to, by index. */
+    private final List<String> strings = new ArrayList<>();
+
+    /** Store the directory of sections, which is written as part of the header. */
+    private final ByteBuffer directory = ByteBuffer.allocate(64 * DIRECTORY_ENTRY_SIZE);
+
+    /** Store the checksum of the section that is being written. */
+    private final CRC32 crc = new CRC32();
+
+    /** Store the stream that writes the sections, and updates the checksum. */
+    private DataOutputStream out;
+
+    /** Store the offset of the start of the section that is being written, or -1 if none is. */
+    private long sectionStart = -1;
+
+    /** Store the offset of the end of the bytes that have been written to out. */
+    private long position;
+
+    /** Store the number of bytes that out had written when position was last updated. */
+    private int written;
+
+    /**
+     * Start writing sections to stream, after headerSize bytes left for the header.
+     *
+     * @param stream the stream that writes the file.
+     * @param headerSize the number of bytes in the header.
+     * @throws IOException if the stream cannot be written to.
+     */
+    void open(FileOutputStream stream, int headerSize) throws IOException {
+      stream.getChannel().position(headerSize);
+      position = headerSize;
+      out =
+          new DataOutputStream(
+              new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), crc));
+    }
+
+    /**
+     * Finish the section that is being written, if there is one, and start a section of kind,
+     * kind.
+     *
+     * @param kind the kind of the section.
+     */
+    void startSection(int kind) {
+      endSection();
+      directory.putInt(kind);
+      sectionStart = position;
+      crc.reset();
+    }
+
+    /** Add the section that is being written, if there is one, to the directory of sections. */
+    private void endSection() {
+      /* DataOutputStream counts in an int, so its count is added to position as it goes. */
+      position += out.size() - written;
+      written = out.size();
+      if (sectionStart >= 0) {
+        directory.putLong(sectionStart);
+        directory.putLong(position - sectionStart);
+        directory.putInt((int) crc.getValue());
+        sectionStart = -1;
+      }
+    }
+
+    /**
+     * Return the index of String, s, giving it the next index if it does not have one yet.
+     *
+     * @param s a String.
+     * @return the index of s.
+     */
+    int indexOf(String s) {
+      Integer index = indices.get(s);
+      if (index == null) {
+        index = strings.size();
+        indices.put(s, index);
+        strings.add(s);
+      }
+      return index;
+    }
+
+    /**
+     * Write the number of Strings in list, followed by their indices.
+     *
+     * @param list a list of Strings.
+     * @throws IOException if the stream cannot be written to.
+     */
+    void writeStrings(List<String> list) throws IOException {
+      out.writeInt(list.size());
+      for (String s : list) {
+        out.writeInt(indexOf(s));
+      }
+    }
+
+    /**
+     * Write the section that holds the table of Strings: the number of Strings, followed by the
+     * offset at which the UTF-8 encoding of each String starts, and the offset at which the last
+     * one ends, followed by the encodings.
+     *
+     * @throws IOException if the stream cannot be written to.
+     */
+    void writeStringTable() throws IOException {
+      startSection(STRINGS);
+      byte[][] encodings = new byte[strings.size()][];
+      out.writeInt(encodings.length);
+      int offset = 0;
+      out.writeInt(offset);
+      for (int i = 0; i < encodings.length; i++) {
+        encodings[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        offset += encodings[i].length;
+        out.writeInt(offset);
+      }
+      for (byte[] encoding : encodings) {
+        out.write(encoding);
+      }
+    }
+
+    /**
+     * Finish the last section, and write the header at the start of the file through channel, and
+     * force the file's contents to the storage device.
+     *
+     * @param channel the channel of the stream that writes the file.
+     * @throws IOException if the file cannot be written to, or is too large to be read.
+     */
+    void finish(FileChannel channel) throws IOException {
+      out.flush();
+      endSection();
+      if (position > Integer.MAX_VALUE) {
+        throw new IOException("The snapshot is too large to be written.");
+      }
+      int sectionCount = directory.position() / DIRECTORY_ENTRY_SIZE;
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + directory.position() + 4);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(sectionCount);
+      directory.flip();
+      header.put(directory);
+      CRC32 headerCrc = new CRC32();
+      headerCrc.update(header.array(), 0, header.position());
+      header.putInt((int) headerCrc.getValue());
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(true);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class that is responsible for finding, among a set of Strings, those that contain a given
+ * substring, ignoring case, without examining every String. Each String is given an id, and the ids
+ * of the Strings that contain each sequence of one, two or three characters (an n-gram) of their
+ * lower-cased text are stored in a compressed bitmap. The Strings that may contain a substring are
+ * those in the intersection of the bitmaps of the substring's n-grams; only those are examined.
+ */
+class SubstringIndex {
+
+  /** Store the greatest number of characters in an n-gram. */
+  private static final int MAX_GRAM_LENGTH = 3;
+
+  /**
+   * Store the fraction of all of the Strings above which candidates are listed by going through
+   * every String in order, rather than by sorting the matches.
+   */
+  private static final int SORT_THRESHOLD_DIVISOR = 16;
+
+  /** Store the order that the Strings are listed in. */
+  private final Comparator<String> order;
+
+  /** Store the ids of the Strings. */
+  private final Map<String, Integer> ids = new HashMap<>();
+
+  /** Store the String with each id, where the ids are the indices of this list, or null. */
+  private final List<String> strings = new ArrayList<>();
+
+  /** Store the lower-cased String with each id, where the ids are the indices of this list. */
+  private final List<String> lowerCaseStrings = new ArrayList<>();
+
+  /** Store the ids that are no longer in use, to be given to the next Strings that are added. */
+  private final Deque<Integer> freeIds = new ArrayDeque<>();
+
+  /** Store the ids of the Strings that contain each n-gram, as encoded by encodeGram. */
+  private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+
+  /** Store the ids of all of the Strings. */
+  private final RoaringBitmap allIds = new RoaringBitmap();
+
+  /** Store the ids of all of the Strings, in order, or null if Strings have since changed. */
+  private int[] idsInOrder;
+
+  /**
+   * Create a new, empty, SubstringIndex object, that lists the Strings it finds in order, order.
+   *
+   * @param order the order of the Strings that are returned by find.
+   */
+  SubstringIndex(Comparator<String> order) {
+    this.order = order;
+  }
+
+  /**
+   * Add string, s, to this index, if it is not already in it.
+   *
+   * @param s a String.
+   */
+  void add(String s) {
+    if (ids.containsKey(s)) {
+      return;
+    }
+    String lowerCase = s.toLowerCase();
+    int id;
+    if (freeIds.isEmpty()) {
+      id = strings.size();
+      strings.add(s);
+      lowerCaseStrings.add(lowerCase);
+    } else {
+      id = freeIds.pop();
+      strings.set(id, s);
+      lowerCaseStrings.set(id, lowerCase);
+    }
+    ids.put(s, id);
+    allIds.add(id);
+    for (long gram : getGrams(lowerCase)) {
+      postings.computeIfAbsent(gram, key -> new RoaringBitmap()).add(id);
+    }
+    idsInOrder = null;
+  }
+
+  /**
+   * Remove string, s, from this index, if it is in it.
+   *
+   * @param s a String.
+   */
+  void remove(String s) {
+    Integer id = ids.remove(s);
+    if (id == null) {
+      return;
+    }
+    for (long gram : getGrams(lowerCaseStrings.get(id))) {
+      RoaringBitmap posting = postings.get(gram);
+      posting.remove(id);
+      if (posting.isEmpty()) {
+        postings.remove(gram);
+      }
+    }
+    allIds.remove(id);
+    strings.set(id, null);
+    lowerCaseStrings.set(id, null);
+    freeIds.push(id);
+    idsInOrder = null;
+  }
+
+  /**
+   * Return a list, in this index's order, of the Strings in this index that contain substring,
+   * ignoring case, and are not in toExclude.
+   *
+   * @param substring a String.
+   * @param toExclude a set of Strings to leave out of the list.
+   * @return a list of Strings.
+   */
+  List<String> find(String substring, Set<String> toExclude) {
+    String lowerCase = substring.toLowerCase();
+    RoaringBitmap candidates = getCandidates(lowerCase);
+    /*
+     * A substring that is no longer than an n-gram is its own only n-gram, so every candidate
+     * contains it; otherwise, the n-grams only narrow down the candidates, and each is checked.
+     */
+    boolean exact = lowerCase.length() <= MAX_GRAM_LENGTH;
+    List<String> found = new ArrayList<>();
+    if (candidates.getCardinality() > ids.size() / SORT_THRESHOLD_DIVISOR) {
+      for (int id : getIdsInOrder()) {
+        if (candidates.contains(id) && matches(id, lowerCase, exact, toExclude)) {
+          found.add(strings.get(id));
+        }
+      }
+    } else {
+      candidates.forEach(
+          id -> {
+            if (matches(id, lowerCase, exact, toExclude)) {
+              found.add(strings.get(id));
+            }
+          });
+      found.sort(order);
+    }
+    return found;
+  }
+
+  /**
+   * Return whether the String with id, id, which is a candidate for containing lowerCase, does
+   * contain it, and is not in toExclude.
+   *
+   * @param id the id of a String.
+   * @param lowerCase a lower-cased String.
+   * @param exact whether every candidate is known to contain lowerCase.
+   * @param toExclude a set of Strings to leave out.
+   * @return true if and only if the String should be found.
+   */
+  private boolean matches(int id, String lowerCase, boolean exact, Set<String> toExclude) {
+    return (exact || lowerCaseStrings.get(id).contains(lowerCase))
+        && !toExclude.contains(strings.get(id));
+  }
+
+  /**
+   * Return the ids of the Strings whose lower-cased text contains every n-gram of lowerCase, which
+   * include the ids of all of the Strings whose lower-cased text contains lowerCase.
+   *
+   * @param lowerCase a lower-cased String.
+   * @return a RoaringBitmap, which must not be modified.
+   */
+  private RoaringBitmap getCandidates(String lowerCase) {
+    if (lowerCase.isEmpty()) {
+      return allIds;
+    }
+    /* Intersect the smallest bitmaps first, so that the intersection shrinks as fast as it can. */
+    List<RoaringBitmap> bitmaps = new ArrayList<>();
+    for (long gram : getLongestGrams(lowerCase)) {
+      RoaringBitmap posting = postings.get(gram);
+      if (posting == null) {
+        return new RoaringBitmap();
+      }
+      bitmaps.add(posting);
+    }
+    bitmaps.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+    RoaringBitmap candidates = bitmaps.get(0);
+    for (int i = 1; i < bitmaps.size() && !candidates.isEmpty(); i++) {
+      candidates = candidates.and(bitmaps.get(i));
+    }
+    return candidates;
+  }
+
+  /**
+   * Return the ids of all of the Strings in this index, in this index's order.
+   *
+   * @return an array of ids.
+   */
+  private int[] getIdsInOrder() {
+    if (idsInOrder == null) {
+      Integer[] sorted = ids.values().toArray(new Integer[0]);
+      Arrays.sort(sorted, (a, b) -> order.compare(strings.get(a), strings.get(b)));
+      idsInOrder = new int[sorted.length];
+      for (int i = 0; i < sorted.length; i++) {
+        idsInOrder[i] = sorted[i];
+      }
+    }
+    return idsInOrder;
+  }
+
+  /**
+   * Return the distinct n-grams, of every length up to MAX_GRAM_LENGTH, of lowerCase.
+   *
+   * @param lowerCase a lower-cased String.
+   * @return an array of encoded n-grams.
+   */
+  private static long[] getGrams(String lowerCase) {
+    int length = lowerCase.length();
+    long[] grams = new long[MAX_GRAM_LENGTH * length];
+    int count = 0;
+    for (int gramLength = 1; gramLength <= MAX_GRAM_LENGTH; gramLength++) {
+      for (int start = 0; start + gramLength <= length; start++) {
+        grams[count++] = encodeGram(lowerCase, start, gramLength);
+      }
+    }
+    /* Drop repeated n-grams, which are next to each other once sorted. */
+    Arrays.sort(grams, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+        grams[distinct++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, distinct);
+  }
+
+  /**
+   * Return the distinct n-grams of lowerCase that are as long as they can be, which are the
+   * n-grams of length MAX_GRAM_LENGTH, or lowerCase itself if it is shorter than that.
+   *
+   * @param lowerCase a non-empty, lower-cased, String.
+   * @return a collection of encoded n-grams.
+   */
+  private static Collection<Long> getLongestGrams(String lowerCase) {
+    int length = Math.min(lowerCase.length(), MAX_GRAM_LENGTH);
+    Set<Long> grams = new HashSet<>();
+    for (int start = 0; start + length <= lowerCase.length(); start++) {
+      grams.add(encodeGram(lowerCase, start, length));
+    }
+    return grams;
+  }
+
+  /**
+   * Return the n-gram of s of length length that starts at index start, encoded as a long: its
+   * length, followed by its characters, sixteen bits each, multiplied by a large odd constant.
+   * Multiplying by an odd number keeps distinct n-grams distinct, and spreads their characters
+   * over all of the bits, which Long.hashCode needs to tell similar n-grams apart.
+   *
+   * @param s a String.
+   * @param start the index of the first character of the n-gram.
+   * @param length the number of characters in the n-gram, at most MAX_GRAM_LENGTH.
+   * @return an encoded n-gram.
+   */
+  private static long encodeGram(String s, int start, int length) {
+    long gram = length;
+    for (int i = start; i < start + length; i++) {
+      gram = (gram << 16) | s.charAt(i);
+    }
+    return gram * 0x9E3779B97F4A7C15L;
+  }
+}
@@ -0,0 +1,132 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A class that is responsible for assigning a small integer id to every tag that has been seen, so
+ * that the tags of an image can be stored and compared as integers, rather than as Strings. Ids are
+ * assigned in the order in which tags are first seen, starting at zero, and are never reused.
+ *
+ * <p>Tags are looked up in an open-addressing hash table of ids, by the same hash code as
+ * String.hashCode, so that a tag can be looked up by the characters of a part of a path, without
+ * first copying them into a String of their own.
+ */
+class TagDictionary {
+
+  /** Store the number of slots in the hash table when the dictionary is created. */
+  private static final int INITIAL_CAPACITY = 64;
+
+  /** Store the tag with each id, where the ids are the indices of this array. */
+  private String[] tagsById = new String[INITIAL_CAPACITY / 2];
+
+  /** Store the number of tags that have been assigned ids. */
+  private int size;
+
+  /**
+   * Store the hash table, in which each slot holds one more than the id of a tag, or zero if it is
+   * empty. The number of slots is a power of two, and at least twice the number of tags.
+   */
+  private int[] slots = new int[INITIAL_CAPACITY];
+
+  /**
+   * Return the id of the tag made up of the characters of s from index start, inclusive, to index
+   * end, exclusive, assigning it a new id if it does not already have one. A new String is only
+   * made for the tag if it has not been seen before.
+   *
+   * @param s a String.
+   * @param start the index of the first character of the tag.
+   * @param end the index after the last character of the tag.
+   * @return the tag's id.
+   */
+  int intern(String s, int start, int end) {
+    int hash = hash(s, start, end);
+    int mask = slots.length - 1;
+    int slot = spread(hash) & mask;
+    while (slots[slot] != 0) {
+      String tag = tagsById[slots[slot] - 1];
+      if (tag.length() == end - start && tag.hashCode() == hash && s.startsWith(tag, start)) {
+        return slots[slot] - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int id = size++;
+    if (id == tagsById.length) {
+      tagsById = Arrays.copyOf(tagsById, id * 2);
+    }
+    tagsById[id] = start == 0 && end == s.length() ? s : s.substring(start, end);
+    slots[slot] = id + 1;
+    if (size * 2 > slots.length) {
+      resize();
+    }
+    return id;
+  }
+
+  /**
+   * Return the id of tag, tag, or -1 if it has not been assigned an id.
+   *
+   * @param tag a tag.
+   * @return the tag's id, or -1.
+   */
+  int getId(String tag) {
+    int mask = slots.length - 1;
+    for (int slot = spread(tag.hashCode()) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (tagsById[slots[slot] - 1].equals(tag)) {
+        return slots[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Return the tag with id, id.
+   *
+   * @param id the id of a tag.
+   * @return a tag.
+   */
+  String getTag(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("Tag id: " + id + ", Size: " + size);
+    }
+    return tagsById[id];
+  }
+
+  /** Double the number of slots in the hash table, and put every id into its new slot. */
+  private void resize() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = spread(tagsById[id].hashCode()) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+  }
+
+  /**
+   * Return the hash code that String.hashCode would return for the String made up of the
+   * characters of s from index start, inclusive, to index end, exclusive.
+   *
+   * @param s a String.
+   * @param start the index of the first character.
+   * @param end the index after the last character.
+   * @return a hash code.
+   */
+  private static int hash(String s, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + s.charAt(i);
+    }
+    return hash;
+  }
+
+  /**
+   * Return hash with its high bits mixed into its low bits, which are the bits that pick a slot.
+   *
+   * @param hash a hash code.
+   * @return a mixed hash code.
+   */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
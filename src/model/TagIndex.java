@@ -0,0 +1,106 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class that is responsible for storing, for each tag, the ids of the images that have that tag,
+ * so that the images with a certain set of tags can be found without examining every image. The
+ * ids of each tag's images are stored in a compressed bitmap, and the bitmaps are looked up by the
+ * ids that a TagDictionary assigns to tags.
+ */
+class TagIndex {
+
+  /** Store an empty bitmap, which is returned for tags that no image has. */
+  private static final RoaringBitmap NO_IMAGES = new RoaringBitmap();
+
+  /** Store the dictionary that assigns ids to tags. */
+  private final TagDictionary tagDictionary;
+
+  /**
+   * Store the ids of the images that have each tag, where the ids of the tags are the indices of
+   * this list. A tag that no indexed image has maps to null.
+   */
+  private final List<RoaringBitmap> imagesByTag = new ArrayList<>();
+
+  /**
+   * Create a new, empty, TagIndex object, for images whose tags were assigned ids by tagDictionary.
+   *
+   * @param tagDictionary the dictionary that assigns ids to tags.
+   */
+  TagIndex(TagDictionary tagDictionary) {
+    this.tagDictionary = tagDictionary;
+  }
+
+  /**
+   * Index the image with id imageId, whose record is image, under each of its tags.
+   *
+   * @param imageId the id of an image.
+   * @param image the image's record.
+   */
+  void addImage(int imageId, ImageRecord image) {
+    image.forEachTagId(
+        tagId -> {
+          while (imagesByTag.size() <= tagId) {
+            imagesByTag.add(null);
+          }
+          RoaringBitmap images = imagesByTag.get(tagId);
+          if (images == null) {
+            images = new RoaringBitmap();
+            imagesByTag.set(tagId, images);
+          }
+          images.add(imageId);
+        });
+  }
+
+  /**
+   * Stop indexing the image with id imageId, whose record is image.
+   *
+   * @param imageId the id of an image.
+   * @param image the image's record.
+   */
+  void removeImage(int imageId, ImageRecord image) {
+    image.forEachTagId(
+        tagId -> {
+          RoaringBitmap images = tagId < imagesByTag.size() ? imagesByTag.get(tagId) : null;
+          if (images != null) {
+            images.remove(imageId);
+            if (images.isEmpty()) {
+              imagesByTag.set(tagId, null);
+            }
+          }
+        });
+  }
+
+  /** Stop indexing all images. */
+  void clear() {
+    imagesByTag.clear();
+  }
+
+  /**
+   * Compress the bitmaps of all tags as far as possible. This is worth calling once all of the
+   * images in a directory have been indexed.
+   */
+  void optimize() {
+    for (RoaringBitmap images : imagesByTag) {
+      if (images != null) {
+        images.runOptimize();
+      }
+    }
+  }
+
+  /**
+   * Return the ids of the indexed images that have tag, tag. Note: the bitmap that is returned must
+   * not be modified.
+   *
+   * @param tag a tag.
+   * @return a bitmap of image ids.
+   */
+  RoaringBitmap getImages(String tag) {
+    int tagId = tagDictionary.getId(tag);
+    if (tagId < 0 || tagId >= imagesByTag.size() || imagesByTag.get(tagId) == null) {
+      return NO_IMAGES;
+    }
+    return imagesByTag.get(tagId);
+  }
+}
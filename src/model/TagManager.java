@@ -2,23 +2,99 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
 
 /** A class responsible for managing a collection of tags. */
 public class TagManager {
 
-  /** Store a list, sorted alphabetically, of all tags being managed by the manager. */
-  private List<String> tags;
+  /**
+   * Store the order of the tags: alphabetical, ignoring case, with tags that differ only in case
+   * ordered by their exact characters, so that they are all kept.
+   */
+  private static final Comparator<String> ORDER =
+      String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+  /**
+   * Store the greatest Damerau-Levenshtein distance of a suggested tag from the text that it is
+   * suggested for, for each length of that text, where the last is for all longer texts. Short
+   * texts allow no mistakes, since almost every short tag is a few edits away from them.
+   */
+  private static final int[] MAX_SUGGESTION_DISTANCES = {0, 0, 0, 1, 1, 1, 2};
+
+  /**
+   * Store the greatest number of tags whose spelling is compared with a text to suggest tags for
+   * it, across all of the distances that are searched, which bounds the time taken on a large
+   * vocabulary.
+   */
+  private static final int MAX_SUGGESTION_COMPARISONS = 3000;
+
+  /** Store a set, sorted alphabetically, of all tags being managed by the manager. */
+  private final NavigableSet<String> tags = new TreeSet<>(ORDER);
+
+  /** Store a set of all tags being managed by the manager, for checking membership quickly. */
+  private final Set<String> tagSet = new HashSet<>();
+
+  /**
+   * Store an index of all tags being managed by the manager, for finding tags by substring, or null
+   * if no tags have been found by substring yet. The index is only built when it is first needed,
+   * so that starting the program does not wait for it.
+   */
+  private SubstringIndex substringIndex;
+
+  /**
+   * Store a tree of all tags being managed by the manager, for finding tags that are spelled like a
+   * given text, or null if no tags have been found that way yet. Like substringIndex, the tree is
+   * only built when it is first needed.
+   */
+  private BkTree bkTree;
+
+  /**
+   * Store an unmodifiable list, sorted alphabetically, of all tags being managed by the manager, or
+   * null if the tags have changed since it was last returned by getTags.
+   */
+  private List<String> snapshot;
+
+  /**
+   * Store a map from each tag to the number of images that have it, among the images whose usage
+   * has been recorded by addUsage and not since removed by removeUsage. Tags that no image has are
+   * left out of the map, and may or may not be under management.
+   */
+  private final Map<String, Integer> usageCounts = new HashMap<>();
 
   /**
-   * Create a new TagManager object given a list of tags.
+   * Create a new TagManager object given a list of tags. Note: the list is copied, so changing it
+   * afterwards does not change the tags being managed.
    *
    * @param tagsList a list of tags.
    */
   public TagManager(List<String> tagsList) {
-    tags = tagsList;
-    /* Ensure tags is sorted. */
-    tags.sort(String::compareToIgnoreCase);
+    addTags(tagsList);
+  }
+
+  /**
+   * Create a new TagManager object given a list of tags, and a map from tags to the number of images
+   * that have them, such as one returned by getUsageCounts. Note: both are copied.
+   *
+   * @param tagsList a list of tags.
+   * @param usageCounts a map from tags to numbers of images.
+   */
+  public TagManager(List<String> tagsList, Map<String, Integer> usageCounts) {
+    this(tagsList);
+    for (Map.Entry<String, Integer> entry : usageCounts.entrySet()) {
+      if (entry.getValue() > 0) {
+        this.usageCounts.put(entry.getKey(), entry.getValue());
+      }
+    }
   }
 
   /**
@@ -27,10 +103,15 @@ public class TagManager {
    * @param tag a tag.
    */
   public void addTags(String tag) {
-    if (!tags.contains(tag)) {
+    if (tagSet.add(tag)) {
       tags.add(tag);
-      /* Ensure tags list is sorted. */
-      tags.sort(String::compareToIgnoreCase);
+      if (substringIndex != null) {
+        substringIndex.add(tag);
+      }
+      if (bkTree != null) {
+        bkTree.add(tag);
+      }
+      snapshot = null;
     }
   }
 
@@ -51,17 +132,142 @@ public class TagManager {
    * @param tag a tag to remove.
    */
   public void removeTag(String tag) {
-    tags.remove(tag);
+    if (tagSet.remove(tag)) {
+      tags.remove(tag);
+      if (substringIndex != null) {
+        substringIndex.remove(tag);
+      }
+      if (bkTree != null) {
+        bkTree.remove(tag);
+      }
+      snapshot = null;
+    }
   }
 
   /**
-   * Return a list, sorted alphabetically, of all tags under management.
+   * Return whether this TagManager is storing tag, tag.
+   *
+   * @param tag a tag.
+   * @return true if and only if tag is being stored.
+   */
+  public boolean hasTag(String tag) {
+    return tagSet.contains(tag);
+  }
+
+  /**
+   * Record that one more image has each of the tags in imagesTags, which are the tags of a single
+   * image. A tag that appears in imagesTags more than once is only counted once.
+   *
+   * @param imagesTags the tags of an image.
+   */
+  public void addUsage(Collection<String> imagesTags) {
+    for (String tag : distinct(imagesTags)) {
+      usageCounts.merge(tag, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Record that one fewer image has each of the tags in imagesTags, which are the tags of a single
+   * image whose usage was recorded by addUsage. A tag that appears in imagesTags more than once is
+   * only counted once.
+   *
+   * @param imagesTags the tags of an image.
+   */
+  public void removeUsage(Collection<String> imagesTags) {
+    for (String tag : distinct(imagesTags)) {
+      /* Returning null from the function removes the tag from the map once no image has it. */
+      usageCounts.computeIfPresent(tag, (key, count) -> count > 1 ? count - 1 : null);
+    }
+  }
+
+  /**
+   * Return the number of images that have tag, tag, among the images whose usage has been
+   * recorded.
+   *
+   * @param tag a tag.
+   * @return a number of images.
+   */
+  public int getUsageCount(String tag) {
+    return usageCounts.getOrDefault(tag, 0);
+  }
+
+  /**
+   * Return a copy of the map from each tag that at least one image has to the number of images that
+   * have it.
+   *
+   * @return a map from tags to numbers of images.
+   */
+  public Map<String, Integer> getUsageCounts() {
+    return new HashMap<>(usageCounts);
+  }
+
+  /**
+   * Return a list of at most limit of the tags under management that at least one image has,
+   * ordered by the number of images that have them, highest first, and then alphabetically.
+   *
+   * @param limit the greatest number of tags to return.
+   * @return a ranked list of tags.
+   */
+  public List<String> getMostUsedTags(int limit) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+    Comparator<String> mostUsedFirst =
+        Comparator.<String>comparingInt(usageCounts::get).reversed().thenComparing(ORDER);
+    /* Keep the limit most used tags seen so far in a heap whose head is the least used of them. */
+    PriorityQueue<String> mostUsed = new PriorityQueue<>(limit + 1, mostUsedFirst.reversed());
+    for (String tag : usageCounts.keySet()) {
+      if (tagSet.contains(tag)) {
+        mostUsed.add(tag);
+        if (mostUsed.size() > limit) {
+          mostUsed.remove();
+        }
+      }
+    }
+    List<String> mostUsedTags = new ArrayList<>(mostUsed);
+    mostUsedTags.sort(mostUsedFirst);
+    return mostUsedTags;
+  }
+
+  /**
+   * Return a list, sorted alphabetically, of the tags under management that no image has.
+   *
+   * @return a sorted list of tags.
+   */
+  public List<String> getUnusedTags() {
+    List<String> unusedTags = new ArrayList<>();
+    for (String tag : getTags()) {
+      if (!usageCounts.containsKey(tag)) {
+        unusedTags.add(tag);
+      }
+    }
+    return unusedTags;
+  }
+
+  /**
+   * Return the tags in imagesTags, without repeats.
+   *
+   * @param imagesTags a collection of tags.
+   * @return a collection of distinct tags.
+   */
+  private static Collection<String> distinct(Collection<String> imagesTags) {
+    return imagesTags.size() > 1 && !(imagesTags instanceof Set)
+        ? new HashSet<>(imagesTags)
+        : imagesTags;
+  }
+
+  /**
+   * Return an unmodifiable list, sorted alphabetically, of all tags under management. The list is
+   * a snapshot: it does not change when tags are added or removed later, and the same list is
+   * returned until they are.
    *
    * @return a sorted list of tags.
    */
   public List<String> getTags() {
-    /* Return a shallow copy of tags. */
-    return new ArrayList<>(tags);
+    if (snapshot == null) {
+      snapshot = Collections.unmodifiableList(new ArrayList<>(tags));
+    }
+    return snapshot;
   }
 
   /**
@@ -73,13 +279,100 @@ public class TagManager {
    * @return a sorted list of tags.
    */
   public List<String> getTags(Collection<String> tagsToExclude, String mustContain) {
-    List<String> filteredTags = new ArrayList<>();
-    for (String tag : tags) {
-      if (tag.toLowerCase().contains(mustContain.toLowerCase()) && !tagsToExclude.contains(tag)) {
-        filteredTags.add(tag);
+    if (mustContain.isEmpty()) {
+      return getTags(tagsToExclude);
+    }
+    return getSubstringIndex().find(mustContain, new HashSet<>(tagsToExclude));
+  }
+
+  /**
+   * Return a list of at most limit tags under management that are not in tagsToExclude, and that
+   * either contain text, or are spelled like it, ignoring case, such as "beach" for "beahc". The
+   * tags are ranked by relevance: first by the number of mistakes in text (where tags that contain
+   * text have none), then with tags that start with text first, then by usage, highest first, and
+   * then alphabetically.
+   *
+   * @param text the text that a user has typed.
+   * @param tagsToExclude a collection of tags to exclude from the list that is returned.
+   * @param limit the greatest number of tags to return.
+   * @param usage a function that returns how often a tag is used, such as by how many images.
+   * @return a ranked list of tags.
+   */
+  public List<String> getSuggestions(
+      String text, Collection<String> tagsToExclude, int limit, ToIntFunction<String> usage) {
+    Set<String> excluded = new HashSet<>(tagsToExclude);
+    String lowerCaseText = text.toLowerCase();
+    Map<String, Integer> distances = new HashMap<>();
+    for (String tag : getSubstringIndex().find(text, excluded)) {
+      distances.put(tag, 0);
+    }
+    /*
+     * Tags that are spelled like text rank below all of the tags that contain it, so they are only
+     * looked for while there is room for them, allowing one more mistake at a time.
+     */
+    int maxDistance =
+        MAX_SUGGESTION_DISTANCES[Math.min(text.length(), MAX_SUGGESTION_DISTANCES.length - 1)];
+    int comparisons = 0;
+    for (int distance = 1;
+        distance <= maxDistance
+            && distances.size() < limit
+            && comparisons < MAX_SUGGESTION_COMPARISONS;
+        distance++) {
+      comparisons +=
+          getBkTree()
+              .find(
+                  text,
+                  distance,
+                  MAX_SUGGESTION_COMPARISONS - comparisons,
+                  (tag, tagDistance) -> {
+                    if (!excluded.contains(tag)) {
+                      distances.merge(tag, tagDistance, Math::min);
+                    }
+                  });
+    }
+    Map<String, Integer> usages = new HashMap<>();
+    List<String> suggestions = new ArrayList<>(distances.keySet());
+    suggestions.sort(
+        Comparator.<String>comparingInt(distances::get)
+            .thenComparing(tag -> !tag.toLowerCase().startsWith(lowerCaseText))
+            .thenComparing(
+                Comparator.<String>comparingInt(
+                        tag -> usages.computeIfAbsent(tag, usage::applyAsInt))
+                    .reversed())
+            .thenComparing(ORDER));
+    return new ArrayList<>(suggestions.subList(0, Math.min(limit, suggestions.size())));
+  }
+
+  /**
+   * Return the index of all tags under management, for finding tags by substring, building it if
+   * it has not been built yet.
+   *
+   * @return a SubstringIndex.
+   */
+  private SubstringIndex getSubstringIndex() {
+    if (substringIndex == null) {
+      substringIndex = new SubstringIndex(ORDER);
+      for (String tag : tags) {
+        substringIndex.add(tag);
       }
     }
-    return filteredTags;
+    return substringIndex;
+  }
+
+  /**
+   * Return the tree of all tags under management, for finding tags by spelling, building it if it
+   * has not been built yet.
+   *
+   * @return a BkTree.
+   */
+  private BkTree getBkTree() {
+    if (bkTree == null) {
+      bkTree = new BkTree();
+      for (String tag : tags) {
+        bkTree.add(tag);
+      }
+    }
+    return bkTree;
   }
 
   /**
@@ -90,9 +383,13 @@ public class TagManager {
    * @return a sorted list of tags.
    */
   public List<String> getTags(Collection<String> tagsToExclude) {
-    List<String> filteredTags = new ArrayList<>();
-    for (String tag : tags) {
-      if (!tagsToExclude.contains(tag)) {
+    if (tagsToExclude.isEmpty()) {
+      return new ArrayList<>(getTags());
+    }
+    Set<String> excluded = new HashSet<>(tagsToExclude);
+    List<String> filteredTags = new ArrayList<>(tags.size());
+    for (String tag : getTags()) {
+      if (!excluded.contains(tag)) {
         filteredTags.add(tag);
       }
     }
@@ -0,0 +1,681 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable query over the tags of images, such as "(beach OR coast) AND 2019 AND NOT rejected".
+ * A query is made up of tags, the operators AND, OR and NOT (in capital letters), and parentheses.
+ * Tags that are written next to each other without an operator must all be present, as if they
+ * were joined by AND. A tag that contains a space or a parenthesis, or is one of the operators, is
+ * written in double quotes. The empty query matches every image.
+ *
+ * <p>When a query is evaluated against a TagIndex, the terms of each AND are evaluated starting
+ * from the one that is expected to match the fewest images, and evaluation stops as soon as the
+ * intermediate result is empty.
+ */
+public class TagQuery {
+
+  /** Store the query that matches every image. */
+  public static final TagQuery EMPTY = new TagQuery(new And(Collections.emptyList()));
+
+  /** Store the root of the query's syntax tree. */
+  private final Node root;
+
+  /**
+   * Create a new TagQuery object with the syntax tree rooted at root.
+   *
+   * @param root a Node.
+   */
+  private TagQuery(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Return the query written in text, query.
+   *
+   * @param query the text of a query.
+   * @return a TagQuery.
+   * @throws IllegalArgumentException if query is not a valid query.
+   */
+  public static TagQuery parse(String query) {
+    Parser parser = new Parser(query);
+    Node root = parser.parseQuery();
+    return new TagQuery(root);
+  }
+
+  /**
+   * Return a new query that matches the images that match this query and also have tag, tag. If
+   * tag is already one of the terms that this query requires, return this query.
+   *
+   * @param tag a tag.
+   * @return a TagQuery.
+   */
+  public TagQuery and(String tag) {
+    List<Node> terms = getTermNodes();
+    Node term = new Tag(tag);
+    if (terms.contains(term)) {
+      return this;
+    }
+    terms.add(term);
+    return new TagQuery(terms.size() == 1 ? term : new And(terms));
+  }
+
+  /**
+   * Return a new query without the term, term, where term is either the text of one of the terms
+   * returned by getTerms, or a tag that is one of these terms. If this query has no such term,
+   * return this query.
+   *
+   * @param term the text of a term.
+   * @return a TagQuery.
+   */
+  public TagQuery without(String term) {
+    List<Node> terms = getTermNodes();
+    Node tag = new Tag(term);
+    if (!terms.removeIf(node -> node.toString().equals(term) || node.equals(tag))) {
+      return this;
+    }
+    return new TagQuery(terms.size() == 1 ? terms.get(0) : new And(terms));
+  }
+
+  /**
+   * Return the text of each of the terms that this query requires, that is, the parts of this
+   * query that are joined by AND at its top level. For example, the terms of "(beach OR coast) AND
+   * NOT rejected" are "beach OR coast" and "NOT rejected".
+   *
+   * @return a list of the texts of terms.
+   */
+  public List<String> getTerms() {
+    List<String> terms = new ArrayList<>();
+    for (Node node : getTermNodes()) {
+      terms.add(node.toString());
+    }
+    return terms;
+  }
+
+  /**
+   * Return true if and only if this query is the empty query, which matches every image.
+   *
+   * @return a boolean value.
+   */
+  public boolean isEmpty() {
+    return root instanceof And && ((And) root).children.isEmpty();
+  }
+
+  /**
+   * Return true if and only if the image whose record is image matches this query, where the ids
+   * of the image's tags were assigned by tagDictionary. Each tag is compared by its id.
+   *
+   * @param image an ImageRecord.
+   * @param tagDictionary the dictionary that assigned ids to the image's tags.
+   * @return a boolean value.
+   */
+  boolean matches(ImageRecord image, TagDictionary tagDictionary) {
+    return root.matches(image, tagDictionary);
+  }
+
+  /**
+   * Return a new bitmap of the ids of the images in allImages that match this query, where index
+   * stores the ids of the images that have each tag.
+   *
+   * @param index a TagIndex.
+   * @param allImages a bitmap of the ids of all images.
+   * @return a new bitmap of image ids.
+   */
+  RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages) {
+    return root.evaluate(index, allImages);
+  }
+
+  /**
+   * Return the text of this query, with only as many parentheses as are needed.
+   *
+   * @return the text of a query.
+   */
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof TagQuery && root.equals(((TagQuery) o).root);
+  }
+
+  @Override
+  public int hashCode() {
+    return root.hashCode();
+  }
+
+  /**
+   * Return a new list of the nodes that are joined by AND at the top level of this query.
+   *
+   * @return a list of Nodes.
+   */
+  private List<Node> getTermNodes() {
+    if (root instanceof And) {
+      return new ArrayList<>(((And) root).children);
+    }
+    List<Node> terms = new ArrayList<>();
+    terms.add(root);
+    return terms;
+  }
+
+  /** A node of the syntax tree of a query. */
+  private abstract static class Node {
+
+    /**
+     * Return true if and only if the image whose record is image matches this node.
+     *
+     * @param image an ImageRecord.
+     * @param tagDictionary the dictionary that assigned ids to the image's tags.
+     * @return a boolean value.
+     */
+    abstract boolean matches(ImageRecord image, TagDictionary tagDictionary);
+
+    /**
+     * Return a new bitmap of the ids of the images in allImages that match this node.
+     *
+     * @param index a TagIndex.
+     * @param allImages a bitmap of the ids of all images.
+     * @return a new bitmap of image ids.
+     */
+    abstract RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages);
+
+    /**
+     * Return an upper bound on the number of images that match this node, which is used to decide
+     * the order in which the terms of an AND are evaluated.
+     *
+     * @param index a TagIndex.
+     * @param allImages a bitmap of the ids of all images.
+     * @return an estimated number of images.
+     */
+    abstract int estimate(TagIndex index, RoaringBitmap allImages);
+
+    /**
+     * Return the text of this node, in parentheses if it is an OR.
+     *
+     * @return the text of a query.
+     */
+    String toOperandString() {
+      return toString();
+    }
+  }
+
+  /** A node that matches the images with a tag. */
+  private static class Tag extends Node {
+
+    /** Store the tag. */
+    private final String tag;
+
+    /**
+     * Create a new Tag node.
+     *
+     * @param tag a tag.
+     */
+    Tag(String tag) {
+      this.tag = tag;
+    }
+
+    @Override
+    boolean matches(ImageRecord image, TagDictionary tagDictionary) {
+      return image.hasTag(tagDictionary.getId(tag));
+    }
+
+    @Override
+    RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages) {
+      return index.getImages(tag).copy();
+    }
+
+    @Override
+    int estimate(TagIndex index, RoaringBitmap allImages) {
+      return index.getImages(tag).getCardinality();
+    }
+
+    @Override
+    public String toString() {
+      if (Parser.needsQuotes(tag)) {
+        return "\"" + tag.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+      }
+      return tag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Tag && tag.equals(((Tag) o).tag);
+    }
+
+    @Override
+    public int hashCode() {
+      return tag.hashCode();
+    }
+  }
+
+  /** A node that matches the images that do not match its child. */
+  private static class Not extends Node {
+
+    /** Store the node whose matches are excluded. */
+    private final Node child;
+
+    /**
+     * Create a new Not node.
+     *
+     * @param child a Node.
+     */
+    Not(Node child) {
+      this.child = child;
+    }
+
+    @Override
+    boolean matches(ImageRecord image, TagDictionary tagDictionary) {
+      return !child.matches(image, tagDictionary);
+    }
+
+    @Override
+    RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages) {
+      return allImages.andNot(child.evaluate(index, allImages));
+    }
+
+    @Override
+    int estimate(TagIndex index, RoaringBitmap allImages) {
+      return allImages.getCardinality();
+    }
+
+    @Override
+    public String toString() {
+      if (child instanceof Tag || child instanceof Not) {
+        return "NOT " + child;
+      }
+      return "NOT (" + child + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Not && child.equals(((Not) o).child);
+    }
+
+    @Override
+    public int hashCode() {
+      return ~child.hashCode();
+    }
+  }
+
+  /** A node that matches the images that match all of its children. */
+  private static class And extends Node {
+
+    /** Store the nodes that must all be matched. */
+    private final List<Node> children;
+
+    /**
+     * Create a new And node.
+     *
+     * @param children a list of Nodes.
+     */
+    And(List<Node> children) {
+      this.children = children;
+    }
+
+    @Override
+    boolean matches(ImageRecord image, TagDictionary tagDictionary) {
+      for (Node child : children) {
+        if (!child.matches(image, tagDictionary)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages) {
+      /*
+       * Intersect the positive terms, rarest first, and then subtract the negated terms, which
+       * only remove images.  Starting with the rarest term keeps every intermediate result small,
+       * and lets an empty intersection end the evaluation early.
+       */
+      List<Node> positive = new ArrayList<>();
+      List<Node> negated = new ArrayList<>();
+      for (Node child : children) {
+        if (child instanceof Not) {
+          negated.add(((Not) child).child);
+        } else {
+          positive.add(child);
+        }
+      }
+      positive.sort(Comparator.comparingInt(node -> node.estimate(index, allImages)));
+      RoaringBitmap result;
+      if (positive.isEmpty()) {
+        result = allImages.copy();
+      } else {
+        result = positive.get(0).evaluate(index, allImages);
+        for (int i = 1; i < positive.size() && !result.isEmpty(); i++) {
+          result = result.and(positive.get(i).evaluate(index, allImages));
+        }
+      }
+      for (int i = 0; i < negated.size() && !result.isEmpty(); i++) {
+        result = result.andNot(negated.get(i).evaluate(index, allImages));
+      }
+      return result;
+    }
+
+    @Override
+    int estimate(TagIndex index, RoaringBitmap allImages) {
+      int estimate = allImages.getCardinality();
+      for (Node child : children) {
+        if (!(child instanceof Not)) {
+          estimate = Math.min(estimate, child.estimate(index, allImages));
+        }
+      }
+      return estimate;
+    }
+
+    @Override
+    public String toString() {
+      List<String> operands = new ArrayList<>();
+      for (Node child : children) {
+        operands.add(child.toOperandString());
+      }
+      return String.join(" AND ", operands);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof And && children.equals(((And) o).children);
+    }
+
+    @Override
+    public int hashCode() {
+      return children.hashCode();
+    }
+  }
+
+  /** A node that matches the images that match at least one of its children. */
+  private static class Or extends Node {
+
+    /** Store the nodes, at least one of which must be matched. */
+    private final List<Node> children;
+
+    /**
+     * Create a new Or node.
+     *
+     * @param children a list of Nodes.
+     */
+    Or(List<Node> children) {
+      this.children = children;
+    }
+
+    @Override
+    boolean matches(ImageRecord image, TagDictionary tagDictionary) {
+      for (Node child : children) {
+        if (child.matches(image, tagDictionary)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    RoaringBitmap evaluate(TagIndex index, RoaringBitmap allImages) {
+      RoaringBitmap result = new RoaringBitmap();
+      for (Node child : children) {
+        result = result.or(child.evaluate(index, allImages));
+      }
+      return result;
+    }
+
+    @Override
+    int estimate(TagIndex index, RoaringBitmap allImages) {
+      long estimate = 0;
+      for (Node child : children) {
+        estimate += child.estimate(index, allImages);
+      }
+      return (int) Math.min(estimate, allImages.getCardinality());
+    }
+
+    @Override
+    String toOperandString() {
+      return "(" + this + ")";
+    }
+
+    @Override
+    public String toString() {
+      List<String> operands = new ArrayList<>();
+      for (Node child : children) {
+        operands.add(child.toString());
+      }
+      return String.join(" OR ", operands);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Or && children.equals(((Or) o).children);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * children.hashCode();
+    }
+  }
+
+  /**
+   * A recursive descent parser for the text of a query, with the grammar:
+   *
+   * <pre>
+   * query   = [or]
+   * or      = and {"OR" and}
+   * and     = unary {["AND"] unary}
+   * unary   = "NOT" unary | "(" or ")" | tag
+   * </pre>
+   */
+  private static class Parser {
+
+    /** Store the text being parsed. */
+    private final String text;
+
+    /** Store the index in text of the next character to be read. */
+    private int position;
+
+    /**
+     * Create a new Parser for the text, text.
+     *
+     * @param text the text of a query.
+     */
+    Parser(String text) {
+      this.text = text;
+    }
+
+    /**
+     * Return true if and only if tag must be written in double quotes.
+     *
+     * @param tag a tag.
+     * @return a boolean value.
+     */
+    static boolean needsQuotes(String tag) {
+      if (tag.isEmpty() || tag.equals("AND") || tag.equals("OR") || tag.equals("NOT")) {
+        return true;
+      }
+      for (int i = 0; i < tag.length(); i++) {
+        char c = tag.charAt(i);
+        if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"') {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Parse the whole of the text.
+     *
+     * @return the root of the syntax tree.
+     */
+    Node parseQuery() {
+      skipWhitespace();
+      if (position == text.length()) {
+        return new And(Collections.emptyList());
+      }
+      Node root = parseOr();
+      if (position < text.length()) {
+        throw error("Unexpected '" + text.charAt(position) + "'");
+      }
+      return root;
+    }
+
+    /**
+     * Parse one or more operands joined by OR.
+     *
+     * @return a Node.
+     */
+    private Node parseOr() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseAnd());
+      while (acceptKeyword("OR")) {
+        operands.add(parseAnd());
+      }
+      return operands.size() == 1 ? operands.get(0) : new Or(operands);
+    }
+
+    /**
+     * Parse one or more operands joined by AND, or written next to each other.
+     *
+     * @return a Node.
+     */
+    private Node parseAnd() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseUnary());
+      while (true) {
+        if (acceptKeyword("AND")) {
+          operands.add(parseUnary());
+        } else if (position < text.length()
+            && text.charAt(position) != ')'
+            && !peekKeyword("OR")) {
+          operands.add(parseUnary());
+        } else {
+          break;
+        }
+      }
+      return operands.size() == 1 ? operands.get(0) : new And(operands);
+    }
+
+    /**
+     * Parse a negation, a parenthesized query, or a tag.
+     *
+     * @return a Node.
+     */
+    private Node parseUnary() {
+      if (position == text.length()) {
+        throw error("Expected a tag");
+      }
+      if (acceptKeyword("NOT")) {
+        return new Not(parseUnary());
+      }
+      char c = text.charAt(position);
+      if (c == '(') {
+        position++;
+        skipWhitespace();
+        Node node = parseOr();
+        if (position == text.length() || text.charAt(position) != ')') {
+          throw error("Expected ')'");
+        }
+        position++;
+        skipWhitespace();
+        return node;
+      }
+      if (c == ')' || peekKeyword("AND") || peekKeyword("OR")) {
+        throw error("Expected a tag");
+      }
+      return new Tag(c == '"' ? readQuoted() : readWord());
+    }
+
+    /**
+     * Read a tag written in double quotes, in which a backslash escapes the next character.
+     *
+     * @return a tag.
+     */
+    private String readQuoted() {
+      StringBuilder tag = new StringBuilder();
+      position++;
+      while (position < text.length() && text.charAt(position) != '"') {
+        if (text.charAt(position) == '\\' && position + 1 < text.length()) {
+          position++;
+        }
+        tag.append(text.charAt(position));
+        position++;
+      }
+      if (position == text.length()) {
+        throw error("Expected '\"'");
+      }
+      position++;
+      skipWhitespace();
+      return tag.toString();
+    }
+
+    /**
+     * Read a tag that is not in quotes, which ends at whitespace or a parenthesis.
+     *
+     * @return a tag.
+     */
+    private String readWord() {
+      int start = position;
+      while (position < text.length() && !isWordEnd(text.charAt(position))) {
+        position++;
+      }
+      String word = text.substring(start, position);
+      skipWhitespace();
+      return word;
+    }
+
+    /**
+     * If the next word is keyword, read it and return true. Otherwise, return false.
+     *
+     * @param keyword an operator.
+     * @return a boolean value.
+     */
+    private boolean acceptKeyword(String keyword) {
+      if (peekKeyword(keyword)) {
+        position += keyword.length();
+        skipWhitespace();
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Return true if and only if the next word is keyword.
+     *
+     * @param keyword an operator.
+     * @return a boolean value.
+     */
+    private boolean peekKeyword(String keyword) {
+      int end = position + keyword.length();
+      return text.startsWith(keyword, position)
+          && (end == text.length() || isWordEnd(text.charAt(end)));
+    }
+
+    /**
+     * Return true if and only if c ends a word that is not in quotes.
+     *
+     * @param c a character.
+     * @return a boolean value.
+     */
+    private static boolean isWordEnd(char c) {
+      return Character.isWhitespace(c) || c == '(' || c == ')';
+    }
+
+    /** Move past any whitespace. */
+    private void skipWhitespace() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+
+    /**
+     * Return an exception describing a syntax error at the current position.
+     *
+     * @param message a description of the error.
+     * @return an IllegalArgumentException.
+     */
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + (position + 1) + ".");
+    }
+  }
+}
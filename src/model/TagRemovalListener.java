@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * An object that is notified of the progress of removing a tag from every image that the program
+ * is tracking.
+ */
+public interface TagRemovalListener {
+
+  /**
+   * Receive the number of images that have been processed so far, out of all of the images that
+   * have the tag. The removal has finished, and the program's data has been updated, once the two
+   * are equal. Note: this method is called using the executor that was passed to
+   * removeTagFromAllImages.
+   *
+   * @param processedImages the number of images processed so far.
+   * @param totalImages the number of images that have the tag.
+   */
+  void imagesProcessed(int processedImages, int totalImages);
+}
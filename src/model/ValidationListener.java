@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * An object that is notified of the progress of checking that the images the program is tracking
+ * still exist, as the images that no longer exist are stopped being tracked.
+ */
+public interface ValidationListener {
+
+  /**
+   * Receive the number of tracked images that have been checked so far, out of all of the images
+   * that are being checked. The validation has finished once the two are equal. Note: this method
+   * is called using the executor that was passed to validateImages.
+   *
+   * @param checkedImages the number of images checked so far.
+   * @param totalImages the number of images being checked.
+   */
+  void imagesValidated(int checkedImages, int totalImages);
+}
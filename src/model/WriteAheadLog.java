@@ -0,0 +1,430 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class that is responsible for appending lines to log files on a dedicated background thread,
+ * so that the thread that logs a change does not wait for it to be written. Lines are written in
+ * groups: the writer thread takes every line that is waiting, and any more that arrive within a
+ * short window, up to a limit, writes them, and then makes the whole group as durable as the
+ * current Durability requires, with a single flush or sync of each file that the group wrote to.
+ * Each line that is appended comes with a future, which completes once its group has been made
+ * durable, so that a caller that logs many changes can wait once, for the last of them. A stream
+ * can be moved to a new file, in order with the lines appended to it, so that a log can be cut at
+ * an exact point without stopping the threads that append to it.
+ */
+class WriteAheadLog {
+
+  /** Store the greatest number of lines that are written in a single group. */
+  private static final int MAXIMUM_GROUP_SIZE = 1024;
+
+  /**
+   * Store the number of milliseconds that the writer thread waits, after taking the first line of
+   * a group, for more lines to join the group.
+   */
+  private static final long GROUP_WINDOW = 2;
+
+  /** Store the lines waiting to be written, along with requests to flush, rotate and close. */
+  private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+
+  /** Store the files that lines have been appended to. */
+  private final List<Stream> streams = new ArrayList<>();
+
+  /** Store the request to close the log, which is the last record that the writer handles. */
+  private final Record closeRecord = new Record(null, null, null);
+
+  /** Store the thread that writes the lines. */
+  private final Thread writerThread;
+
+  /** Store how far each group of lines is pushed towards the storage device. */
+  private volatile Durability durability;
+
+  /** Store true if and only if the log has been closed. Guarded by queue. */
+  private boolean closed;
+
+  /**
+   * Create a new WriteAheadLog object, and start its writer thread.
+   *
+   * @param durability how far each group of lines is pushed towards the storage device.
+   */
+  WriteAheadLog(Durability durability) {
+    this.durability = durability;
+    writerThread = new Thread(this::run, "WriteAheadLog");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Return a new Stream object that appends lines to the file, file. The file is opened by the
+   * writer thread when the first line is written to it.
+   *
+   * @param file a log file.
+   * @return a Stream object.
+   */
+  Stream open(File file) {
+    return new Stream(file);
+  }
+
+  /**
+   * Set how far each group of lines that is written from now on is pushed towards the storage
+   * device.
+   *
+   * @param durability a Durability.
+   */
+  void setDurability(Durability durability) {
+    this.durability = durability;
+  }
+
+  /**
+   * Return how far each group of lines is pushed towards the storage device.
+   *
+   * @return a Durability.
+   */
+  Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Append line, line, to the file of stream, stream, and return a future that completes once the
+   * line has been written, and made as durable as the current Durability requires, or completes
+   * exceptionally if it could not be.
+   *
+   * @param stream a Stream returned by open.
+   * @param line a line, without a line separator.
+   * @return a future.
+   */
+  CompletableFuture<Void> append(Stream stream, String line) {
+    return enqueue(new Record(stream, Collections.singletonList(line), null));
+  }
+
+  /**
+   * Append the lines, lines, to the file of stream, stream, as a single record, which is written
+   * in one piece, and return a future that completes once they have all been written, and made as
+   * durable as the current Durability requires, or completes exceptionally if they could not be.
+   *
+   * @param stream a Stream returned by open.
+   * @param lines a list of lines, without line separators.
+   * @return a future.
+   */
+  CompletableFuture<Void> append(Stream stream, List<String> lines) {
+    return enqueue(new Record(stream, new ArrayList<>(lines), null));
+  }
+
+  /**
+   * Make stream, stream, append to the file, file, from now on, and return a future that completes
+   * once every line that was appended to stream before this method was called has been written to
+   * its previous file, and that file has been closed. Lines appended after this method is called
+   * are written to file.
+   *
+   * @param stream a Stream returned by open.
+   * @param file a log file.
+   * @return a future.
+   */
+  CompletableFuture<Void> rotate(Stream stream, File file) {
+    return enqueue(new Record(stream, null, file));
+  }
+
+  /**
+   * Return a future that completes once every line that was appended before this method was called
+   * has been handed to the operating system, and made as durable as the current Durability
+   * requires, even if that is Durability.NONE.
+   *
+   * @return a future.
+   */
+  CompletableFuture<Void> flush() {
+    return enqueue(new Record(null, null, null));
+  }
+
+  /**
+   * Write every line that has been appended, close the files, and stop the writer thread. Lines
+   * appended after the log has been closed are not written.
+   */
+  void close() {
+    synchronized (queue) {
+      if (!closed) {
+        closed = true;
+        queue.add(closeRecord);
+      }
+    }
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Add record, record, to the queue, unless the log has been closed, and return its future.
+   *
+   * @param record a Record.
+   * @return the record's future.
+   */
+  private CompletableFuture<Void> enqueue(Record record) {
+    synchronized (queue) {
+      if (closed) {
+        record.future.completeExceptionally(new IOException("The log has been closed."));
+      } else {
+        queue.add(record);
+      }
+    }
+    return record.future;
+  }
+
+  /** Write groups of lines until the log is closed. */
+  private void run() {
+    List<Record> group = new ArrayList<>();
+    boolean closing = false;
+    while (!closing) {
+      gatherGroup(group);
+      closing = group.contains(closeRecord);
+      writeGroup(group);
+      group.clear();
+    }
+    synchronized (streams) {
+      for (Stream stream : streams) {
+        stream.close();
+      }
+    }
+  }
+
+  /**
+   * Wait for a record, and add it to group, along with every record that is waiting, or that
+   * arrives within GROUP_WINDOW milliseconds of the first, up to MAXIMUM_GROUP_SIZE records, or up
+   * to the request to close.
+   *
+   * @param group an empty list of Records.
+   */
+  private void gatherGroup(List<Record> group) {
+    try {
+      group.add(queue.take());
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_WINDOW);
+      queue.drainTo(group, MAXIMUM_GROUP_SIZE - group.size());
+      while (group.size() < MAXIMUM_GROUP_SIZE && group.get(group.size() - 1) != closeRecord) {
+        Record record = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (record == null) {
+          return;
+        }
+        group.add(record);
+        queue.drainTo(group, MAXIMUM_GROUP_SIZE - group.size());
+      }
+    } catch (InterruptedException e) {
+      /* Write whatever has been gathered; only the request to close stops the writer thread. */
+    }
+  }
+
+  /**
+   * Write the lines in group, make the files they were written to as durable as required, and
+   * complete the futures of the records in group.
+   *
+   * @param group a list of Records.
+   */
+  private void writeGroup(List<Record> group) {
+    Durability groupDurability = durability;
+    Set<Stream> written = new LinkedHashSet<>();
+    boolean flushAll = false;
+    IOException rotationError = null;
+    for (int i = 0; i < group.size(); i++) {
+      Record record = group.get(i);
+      if (record.file != null) {
+        /* Finish the previous file before the lines that follow the rotation are written. */
+        Stream stream = record.stream;
+        stream.commit(groupDurability);
+        stream.rotate(record.file);
+        if (stream.error != null) {
+          /*
+           * Fail the records that went to the previous file, and report the error once, now, so
+           * that it is not held against the lines written to the next file.
+           */
+          for (Record previous : group.subList(0, i + 1)) {
+            if (previous.stream == stream) {
+              previous.future.completeExceptionally(stream.error);
+            }
+          }
+          stream.error.printStackTrace();
+          rotationError = rotationError != null ? rotationError : stream.error;
+          stream.error = null;
+        }
+      } else if (record.stream != null) {
+        for (String line : record.lines) {
+          record.stream.write(line);
+        }
+        written.add(record.stream);
+      } else if (record != closeRecord) {
+        flushAll = true;
+      }
+    }
+    if (flushAll) {
+      synchronized (streams) {
+        written.addAll(streams);
+      }
+      if (groupDurability == Durability.NONE) {
+        groupDurability = Durability.FLUSH;
+      }
+    }
+    for (Stream stream : written) {
+      stream.commit(groupDurability);
+    }
+    for (Record record : group) {
+      IOException error = record.stream != null ? record.stream.error : rotationError;
+      if (error == null && record.stream == null) {
+        /* A flush succeeds only if every file that was flushed is healthy. */
+        for (Stream stream : written) {
+          error = error != null ? error : stream.error;
+        }
+      }
+      /* A record that a failed rotation has completed already keeps its result. */
+      if (error != null) {
+        record.future.completeExceptionally(error);
+      } else {
+        record.future.complete(null);
+      }
+    }
+    for (Stream stream : written) {
+      /* Report each error once, and try again with the next group. */
+      if (stream.error != null) {
+        stream.error.printStackTrace();
+        stream.error = null;
+      }
+    }
+  }
+
+  /** Lines waiting to be written, or a request to flush, to rotate or to close. */
+  private static class Record {
+
+    /** Store the stream to write the lines to or to rotate, or null to flush or to close. */
+    private final Stream stream;
+
+    /** Store the lines, or null for a request to flush, rotate or close. */
+    private final List<String> lines;
+
+    /** Store the file to rotate the stream to, or null for any other record. */
+    private final File file;
+
+    /** Store the future that completes once the record has been handled. */
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    /**
+     * Create a new Record object.
+     *
+     * @param stream the stream to write the line to, or to rotate, or null.
+     * @param lines the lines, or null.
+     * @param file the file to rotate the stream to, or null.
+     */
+    Record(Stream stream, List<String> lines, File file) {
+      this.stream = stream;
+      this.lines = lines;
+      this.file = file;
+    }
+  }
+
+  /**
+   * A log file that lines are appended to. Only the writer thread uses a Stream's file, and its
+   * state.
+   */
+  class Stream {
+
+    /** Store the file that lines are appended to. */
+    private File file;
+
+    /** Store the stream that writes to the file, which can sync it, or null if not yet open. */
+    private FileOutputStream output;
+
+    /** Store the writer that buffers lines for the file, or null if not yet open. */
+    private BufferedWriter writer;
+
+    /** Store the error met while writing the current group, or null if there was none. */
+    private IOException error;
+
+    /**
+     * Create a new Stream object for the file, file.
+     *
+     * @param file a log file.
+     */
+    private Stream(File file) {
+      this.file = file;
+      synchronized (streams) {
+        streams.add(this);
+      }
+    }
+
+    /**
+     * Append line, line, to the file's buffer, opening the file if it is not open yet.
+     *
+     * @param line a line, without a line separator.
+     */
+    private void write(String line) {
+      try {
+        if (writer == null) {
+          output = new FileOutputStream(file, true);
+          writer = new BufferedWriter(new OutputStreamWriter(output));
+        }
+        writer.write(line);
+        writer.newLine();
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+
+    /**
+     * Make the lines written to the file as durable as durability requires.
+     *
+     * @param durability a Durability.
+     */
+    private void commit(Durability durability) {
+      if (writer == null || durability == Durability.NONE) {
+        return;
+      }
+      try {
+        writer.flush();
+        if (durability == Durability.FSYNC) {
+          output.getChannel().force(false);
+        }
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+
+    /**
+     * Write any buffered lines, close the file, and append the lines written from now on to the
+     * file, file, instead.
+     *
+     * @param file a log file.
+     */
+    private void rotate(File file) {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          error = e;
+        }
+        writer = null;
+        output = null;
+      }
+      this.file = file;
+    }
+
+    /** Write any buffered lines, and close the file. */
+    private void close() {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryWatcherTest {
+  private File root;
+  private File dataDirectory;
+  private File imagesDirectory;
+  private BlockingQueue<Runnable> tasks;
+  private ImageTaggingManager manager;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("DirectoryWatcherTest").toFile();
+    dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+    tasks = new LinkedBlockingQueue<>();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (manager != null) {
+      manager.stopWatching();
+    }
+    delete(root);
+  }
+
+  @Test
+  void applyCreateDeleteAndRename() throws Exception {
+    String image = createImage(imagesDirectory, "a.jpg");
+    File subdirectory = new File(imagesDirectory, "sub");
+    String subdirectoryImage = createImage(subdirectory, "b.jpg");
+    open();
+    String tagged = manager.addTagToImage(image, "sunset");
+    /* Record the identity of the tagged image, so that its history can follow it. */
+    validate();
+    int[] batches = new int[1];
+    manager.watchDirectory(tasks::add, () -> batches[0]++);
+    awaitWatching();
+
+    String created = createImage(imagesDirectory, "c @beach.jpg");
+    runTasksUntil(() -> manager.getImagePaths().contains(created));
+    assertTrue(manager.getAllTagsInMasterCollection().contains("beach"));
+
+    String renamed = new File(imagesDirectory, "z @sunset.jpg").getPath();
+    Files.move(new File(tagged).toPath(), new File(renamed).toPath());
+    runTasksUntil(() -> manager.getImagePaths().contains(renamed));
+    assertFalse(manager.getImagePaths().contains(tagged));
+    assertTrue(manager.getImagesHistory(renamed).contains("a.jpg"));
+    assertTrue(manager.getImagesHistory(tagged).isEmpty());
+
+    new File(created).delete();
+    runTasksUntil(() -> !manager.getImagePaths().contains(created));
+
+    /* Moving a directory out of the current directory takes its images with it. */
+    assertTrue(manager.getImagePaths().contains(subdirectoryImage));
+    Files.move(subdirectory.toPath(), new File(root, "outside").toPath());
+    runTasksUntil(() -> !manager.getImagePaths().contains(subdirectoryImage));
+    assertTrue(manager.getImagePaths().contains(renamed));
+    assertTrue(batches[0] > 0);
+  }
+
+  @Test
+  void deferChangesDuringTagRemoval() throws Exception {
+    createImage(imagesDirectory, "a @sunset.jpg");
+    open();
+    manager.watchDirectory(tasks::add, null);
+    awaitWatching();
+
+    /* The removal's results are run from a queue of their own, so they can be held back. */
+    BlockingQueue<Runnable> removalTasks = new LinkedBlockingQueue<>();
+    boolean[] finished = new boolean[1];
+    manager.removeTagFromAllImages(
+        "sunset", removalTasks::add, (processed, total) -> finished[0] = processed == total);
+    String created = createImage(imagesDirectory, "c.jpg");
+    /* Wait for longer than a batch of changes can be held back by the watcher. */
+    runTasksFor(2000);
+    assertFalse(manager.getImagePaths().contains(created));
+
+    while (!finished[0]) {
+      removalTasks.take().run();
+    }
+    List<String> paths = manager.getImagePaths();
+    assertTrue(paths.contains(created));
+    assertTrue(paths.contains(new File(imagesDirectory, "a.jpg").getPath()));
+    assertFalse(paths.contains(new File(imagesDirectory, "a @sunset.jpg").getPath()));
+  }
+
+  private void open() {
+    manager = ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+    manager.changeDirectory(imagesDirectory.getPath());
+  }
+
+  private void validate() throws InterruptedException {
+    boolean[] finished = new boolean[1];
+    manager.validateImages(tasks::add, (checked, total) -> finished[0] = checked == total);
+    runTasksUntil(() -> finished[0]);
+  }
+
+  private void awaitWatching() throws Exception {
+    /* The directories are registered on the watcher's thread, so wait until it sees a change. */
+    long deadline = System.currentTimeMillis() + 10000;
+    for (int i = 0; System.currentTimeMillis() < deadline; i++) {
+      String probe = createImage(imagesDirectory, "probe" + i + ".jpg");
+      runTasksFor(500);
+      if (manager.getImagePaths().contains(probe)) {
+        return;
+      }
+    }
+    throw new AssertionError("The directory is not being watched");
+  }
+
+  private void runTasksUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      long remaining = deadline - System.currentTimeMillis();
+      Runnable task = tasks.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+      if (task == null) {
+        throw new AssertionError("Timed out waiting for a batch of changes");
+      }
+      task.run();
+    }
+  }
+
+  private void runTasksFor(long milliseconds) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + milliseconds;
+    long remaining;
+    while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+      Runnable task = tasks.poll(remaining, TimeUnit.MILLISECONDS);
+      if (task != null) {
+        task.run();
+      }
+    }
+  }
+
+  private static String createImage(File directory, String name) throws IOException {
+    directory.mkdirs();
+    File image = new File(directory, name);
+    Files.write(image.toPath(), new byte[] {1, 2, 3});
+    return image.getPath();
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -1,6 +1,7 @@
 package tests;
 
 import model.ImageHistoryManager;
+import model.TagManager;
 
 import java.io.File;
 import java.util.*;
@@ -109,4 +110,59 @@ class ImageHistoryManagerTest {
   void getMap() throws Exception {
     assertEquals(manager.getMap(), mapToCompare);
   }
+
+  @Test
+  void getMapCopy() throws Exception {
+    Map<String, List<String>> copy = manager.getMapCopy();
+    assertEquals(copy, mapToCompare);
+    String path = "Documents" + File.separator + "myPic.jpg";
+    String newPath = "Documents" + File.separator + "newPic.jpg";
+    manager.updateImage(path, newPath);
+    manager.updateImage(newPath, path);
+    assertEquals(1, copy.get(path).size());
+    assertEquals(3, manager.getImagesOldNames(path).size());
+  }
+
+  @Test
+  void tagUsageFollowsImages() throws Exception {
+    TagManager tagManager = new TagManager(new ArrayList<>());
+    manager = new ImageHistoryManager(new HashMap<>(), tagManager);
+    String path = "Documents" + File.separator + "pic @beach @sun.jpg";
+    manager.addImage(path);
+    manager.addImage(path);
+    assertEquals(1, tagManager.getUsageCount("beach"));
+
+    String renamed = "Documents" + File.separator + "pic @beach.jpg";
+    manager.updateImage(path, renamed);
+    assertEquals(1, tagManager.getUsageCount("beach"));
+    assertEquals(0, tagManager.getUsageCount("sun"));
+
+    manager.updateImage(
+        "Documents" + File.separator + "other.jpg", "Documents" + File.separator + "o @sun.jpg");
+    assertEquals(1, tagManager.getUsageCount("sun"));
+
+    manager.removeImage(renamed);
+    manager.removeImage(renamed);
+    assertEquals(0, tagManager.getUsageCount("beach"));
+    assertTrue(manager.hasImage("Documents" + File.separator + "o @sun.jpg"));
+  }
+
+  @Test
+  void getImagesWithTag() throws Exception {
+    manager = new ImageHistoryManager(new HashMap<>());
+    String beach = "Documents" + File.separator + "pic @beach @sun.jpg";
+    String sun = "Documents" + File.separator + "other @sun.jpg";
+    manager.addImage(beach);
+    manager.addImage(sun);
+    assertEquals(new HashSet<>(Arrays.asList(beach, sun)), manager.getImagesWithTag("sun"));
+    assertEquals(new HashSet<>(Arrays.asList(beach)), manager.getImagesWithTag("beach"));
+
+    String renamed = "Documents" + File.separator + "pic @beach.jpg";
+    manager.updateImage(beach, renamed);
+    manager.removeImage(sun);
+    manager.addImage("Documents" + File.separator + "new @beach.jpg");
+    assertEquals(new HashSet<String>(), manager.getImagesWithTag("sun"));
+    assertEquals(2, manager.getImagesWithTag("beach").size());
+    assertTrue(manager.getImagesWithTag("beach").contains(renamed));
+  }
 }
@@ -0,0 +1,86 @@
+package tests;
+
+import model.LogReader;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogReaderTest {
+  private Path logFile;
+  private LogReader reader;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    logFile = Files.createTempFile("Log", ".txt");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+    Files.delete(logFile);
+  }
+
+  private void append(String text) throws IOException {
+    Files.write(logFile, text.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+  }
+
+  @Test
+  void emptyLog() throws Exception {
+    reader = LogReader.open(logFile.toFile());
+    assertEquals(0, reader.getLineCount());
+    assertEquals(new ArrayList<String>(), reader.getLines(0, 10));
+    assertThrows(IndexOutOfBoundsException.class, () -> reader.getLine(0));
+  }
+
+  @Test
+  void linesAreNewestFirst() throws Exception {
+    append("first\nsecond\r\nthird\n");
+    reader = LogReader.open(logFile.toFile());
+    assertEquals(3, reader.getLineCount());
+    assertEquals("third", reader.getLine(0));
+    assertEquals("second", reader.getLine(1));
+    assertEquals("first", reader.getLine(2));
+    assertEquals(Arrays.asList("second", "first"), reader.getLines(1, 10));
+  }
+
+  @Test
+  void manyLines() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      text.append("line ").append(i).append('\n');
+    }
+    append(text.toString());
+    reader = LogReader.open(logFile.toFile());
+    assertEquals(1000, reader.getLineCount());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("line " + (999 - i), reader.getLine(i));
+    }
+    List<String> page = reader.getLines(100, 200);
+    assertEquals(200, page.size());
+    assertEquals("line 899", page.get(0));
+    assertEquals("line 700", page.get(199));
+  }
+
+  @Test
+  void refreshReadsAppendedLines() throws Exception {
+    append("first\nsec");
+    reader = LogReader.open(logFile.toFile());
+    assertEquals(1, reader.getLineCount());
+    append("ond\nthird\n");
+    assertEquals(2, reader.refresh());
+    assertEquals(Arrays.asList("third", "second", "first"), reader.getLines(0, 3));
+    assertEquals(0, reader.refresh());
+  }
+}
@@ -0,0 +1,140 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoggingManagerTest {
+  private File root;
+  private File dataDirectory;
+  private File imagesDirectory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("LoggingManagerTest").toFile();
+    dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    /* A comma in the directory's name must not split the logged paths in the wrong place. */
+    imagesDirectory = new File(root, "a,b");
+    imagesDirectory.mkdir();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    delete(root);
+  }
+
+  @Test
+  void recoverAfterCrashWithoutSaving() throws Exception {
+    String imagePath = createImage("pic.jpg");
+    ImageTaggingManager manager = open();
+    manager.changeDirectory(imagesDirectory.getPath());
+    String taggedPath = manager.addTagToImage(imagePath, "sunset");
+    manager.flushLogs().join();
+    /* The manager is abandoned without saving its data, as if the program had crashed. */
+
+    ImageTaggingManager recovered = open();
+    assertTrue(recovered.getImagesHistory(taggedPath).contains("pic.jpg"));
+    assertTrue(recovered.getAllTagsInMasterCollection().contains("sunset"));
+    assertEquals(
+        new HashSet<>(Arrays.asList("TempImagesLog.0.txt", "TempTagsLog.0.txt")), tempLogs());
+  }
+
+  @Test
+  void recoverAfterCheckpointAndSecondCrash() throws Exception {
+    String imagePath = createImage("pic.jpg");
+    ImageTaggingManager manager = open();
+    manager.changeDirectory(imagesDirectory.getPath());
+    String taggedPath = manager.addTagToImage(imagePath, "sunset");
+    manager.flushLogs().join();
+
+    /* Recovered changes make a checkpoint due at once, which the next change starts. */
+    ImageTaggingManager recovered = open();
+    recovered.changeDirectory(imagesDirectory.getPath());
+    awaitCheckpoint();
+    assertTrue(new File(dataDirectory, "Snapshot.dat").exists());
+    String retaggedPath = recovered.addTagToImage(taggedPath, "beach");
+    recovered.flushLogs().join();
+
+    ImageTaggingManager reopened = open();
+    List<String> history = reopened.getImagesHistory(retaggedPath);
+    assertTrue(history.contains("pic.jpg"));
+    assertTrue(history.contains("pic @sunset.jpg"));
+    List<String> tags = reopened.getAllTagsInMasterCollection();
+    assertTrue(tags.contains("sunset"));
+    assertTrue(tags.contains("beach"));
+    /* Only the logs written since the checkpoint are left to recover. */
+    assertEquals(
+        new HashSet<>(Arrays.asList("TempImagesLog.2.txt", "TempTagsLog.2.txt")), tempLogs());
+  }
+
+  @Test
+  void recoverLegacyCommaSeparatedLines() throws Exception {
+    String oldPath = new File(imagesDirectory, "pic.jpg").getAbsolutePath();
+    String newPath = new File(imagesDirectory, "pic @sunset.jpg").getAbsolutePath();
+    String malformedPath = new File(imagesDirectory, "other.jpg").getAbsolutePath();
+    /* Earlier versions of the program logged the old path, a comma and the new path. */
+    List<String> lines =
+        Arrays.asList(oldPath + "," + newPath, "#1000:" + malformedPath + "," + malformedPath);
+    File legacyLog = new File(dataDirectory, "TempImagesLog.txt");
+    Files.write(legacyLog.toPath(), lines, StandardCharsets.UTF_8);
+
+    ImageTaggingManager recovered = open();
+    assertEquals(Collections.singletonList("pic.jpg"), recovered.getImagesHistory(newPath));
+    assertTrue(recovered.getImagesHistory(oldPath).isEmpty());
+    assertTrue(recovered.getImagesHistory(malformedPath).isEmpty());
+    assertFalse(tempLogs().isEmpty());
+  }
+
+  private ImageTaggingManager open() {
+    return ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+  }
+
+  private String createImage(String name) throws IOException {
+    File image = new File(imagesDirectory, name);
+    Files.write(image.toPath(), new byte[] {1, 2, 3});
+    return image.getAbsolutePath();
+  }
+
+  private Set<String> tempLogs() {
+    Set<String> names = new HashSet<>();
+    for (String name : dataDirectory.list()) {
+      if (name.startsWith("Temp")) {
+        names.add(name);
+      }
+    }
+    return names;
+  }
+
+  private void awaitCheckpoint() throws InterruptedException {
+    /* The checkpoint deletes the logs whose changes it contains once the snapshot is written. */
+    long deadline = System.currentTimeMillis() + 10000;
+    while (new File(dataDirectory, "TempImagesLog.0.txt").exists()
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(new File(dataDirectory, "TempImagesLog.0.txt").exists());
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
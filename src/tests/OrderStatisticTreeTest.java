@@ -0,0 +1,71 @@
+package tests;
+
+import model.OrderStatisticTree;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatisticTreeTest {
+
+  /* Check that tree holds exactly the elements of expected, in order, with the right indices. */
+  private static void assertSameList(TreeSet<Integer> expected, OrderStatisticTree<Integer> tree) {
+    List<Integer> expectedList = new ArrayList<>(expected);
+    assertEquals(expectedList.size(), tree.size());
+    assertEquals(expectedList, new ArrayList<>(tree));
+    for (int i = 0; i < expectedList.size(); i++) {
+      assertEquals(expectedList.get(i), tree.get(i));
+      assertEquals(i, tree.indexOf(expectedList.get(i)));
+    }
+  }
+
+  @Test
+  void addKeepsOrderTest() {
+    OrderStatisticTree<String> tree = new OrderStatisticTree<>();
+    assertTrue(tree.add("pear"));
+    assertTrue(tree.add("apple"));
+    assertTrue(tree.add("fig"));
+    assertFalse(tree.add("apple"));
+    assertEquals(Arrays.asList("apple", "fig", "pear"), tree);
+  }
+
+  @Test
+  void constructorSortsAndDropsDuplicatesTest() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Arrays.asList(5, 1, 3, 1, 5));
+    assertEquals(Arrays.asList(1, 3, 5), tree);
+  }
+
+  @Test
+  void removeAndIndexOfTest() {
+    OrderStatisticTree<Integer> tree = OrderStatisticTree.ofSorted(Arrays.asList(1, 2, 3, 4));
+    assertTrue(tree.remove((Integer) 2));
+    assertFalse(tree.remove((Integer) 2));
+    assertEquals(-1, tree.indexOf(2));
+    assertEquals(2, tree.indexOf(4));
+    assertFalse(tree.contains(7));
+  }
+
+  @Test
+  void randomOperationsTest() {
+    Random random = new Random(9);
+    TreeSet<Integer> expected = new TreeSet<>();
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>();
+    for (int i = 0; i < 20000; i++) {
+      int value = random.nextInt(2000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(value), tree.remove((Integer) value));
+      } else {
+        assertEquals(expected.add(value), tree.add(value));
+      }
+    }
+    assertSameList(expected, tree);
+
+    expected.removeIf(value -> value % 3 == 0);
+    assertTrue(tree.removeIf(value -> value % 3 == 0));
+    assertFalse(tree.removeIf(value -> value % 3 == 0));
+    assertSameList(expected, tree);
+  }
+}
@@ -3,9 +3,12 @@ package tests;
 import model.PathFormatter;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -158,4 +161,102 @@ class PathFormatterTest {
     String withTag = "Tags" + File.separator + "friends @tag";
     assertTrue(PathFormatter.containsATag((withTag)));
   }
+
+  @Test
+  void hasTagWithRegexCharactersTest() throws Exception {
+    String imagePath = "Code" + File.separator + "snippet @c++ @a.b.png";
+    assertTrue(PathFormatter.hasTag(imagePath, "c++"));
+    assertTrue(PathFormatter.hasTag(imagePath, "a.b"));
+    assertFalse(PathFormatter.hasTag(imagePath, "a?b"));
+    assertFalse(PathFormatter.hasTag("pic @x.jpg", "."));
+  }
+
+  @Test
+  void removeTagThatAlsoAppearsInExtensionTest() throws Exception {
+    String imagePath = "Letters" + File.separator + "alphabet @p @g.jpg";
+    String expectedPath = "Letters" + File.separator + "alphabet @g.jpg";
+    assertEquals(expectedPath, PathFormatter.removeTag(imagePath, "p"));
+  }
+
+  @Test
+  void tagCountTest() throws Exception {
+    assertEquals(3, PathFormatter.tagCount("Christmas @joy @gifts @family.jpg"));
+    assertEquals(0, PathFormatter.tagCount("cooking.png"));
+  }
+
+  /* The characters that random names are made of, chosen to produce many tag symbols. */
+  private static final String NAME_CHARACTERS = "aB1_ @ @ @..+*\n";
+
+  private static String randomString(Random random, int maxLength) {
+    StringBuilder builder = new StringBuilder();
+    int length = random.nextInt(maxLength + 1);
+    for (int i = 0; i < length; i++) {
+      builder.append(NAME_CHARACTERS.charAt(random.nextInt(NAME_CHARACTERS.length())));
+    }
+    return builder.toString();
+  }
+
+  /* Return a random path, whose name starts with a letter and usually has an image extension. */
+  private static String randomPath(Random random) {
+    String[] extensions = {".jpg", ".JPEG", ".png", ".gif", ""};
+    return "dir.x"
+        + File.separator
+        + "a"
+        + randomString(random, 16)
+        + extensions[random.nextInt(extensions.length)];
+  }
+
+  /* The regular expression implementations that the tokenizer replaced, with tags quoted. */
+  private static boolean regexHasTag(String path, String tag) {
+    return PathFormatter.getFullName(path)
+        .matches("(.)+ @" + Pattern.quote(tag) + "( @|\\.)(.)+");
+  }
+
+  private static boolean regexContainsATag(String path) {
+    return PathFormatter.getFullName(path).matches("(.)+ @[a-zA-Z0-9](.)+");
+  }
+
+  private static boolean regexIsImage(String path) {
+    return path.toLowerCase().matches("(.)+\\.(png|jpg|jpeg)$");
+  }
+
+  private static List<String> regexGetTags(String path) {
+    if (!regexContainsATag(path)) {
+      return Collections.emptyList();
+    }
+    String fullName = PathFormatter.getFullName(path);
+    int extensionIndex = fullName.lastIndexOf(".");
+    String[] split =
+        (extensionIndex < 0 ? fullName : fullName.substring(0, extensionIndex)).split(" @");
+    List<String> tags = new ArrayList<>(Arrays.asList(split).subList(1, split.length));
+    tags.sort(String::compareToIgnoreCase);
+    return tags;
+  }
+
+  @Test
+  void tokenizerMatchesRegexTest() throws Exception {
+    Random random = new Random(207);
+    for (int i = 0; i < 20000; i++) {
+      String path = randomPath(random);
+      assertEquals(regexContainsATag(path), PathFormatter.containsATag(path), path);
+      assertEquals(regexIsImage(path), PathFormatter.isImage(path), path);
+
+      List<String> expectedTags = regexGetTags(path);
+      assertEquals(expectedTags, PathFormatter.getTags(path), path);
+      assertEquals(expectedTags.size(), PathFormatter.tagCount(path), path);
+      List<String> visited = new ArrayList<>();
+      PathFormatter.forEachTag(path, (p, start, end) -> visited.add(p.substring(start, end)));
+      visited.sort(String::compareToIgnoreCase);
+      assertEquals(expectedTags, visited, path);
+
+      String tag = random.nextBoolean() ? randomString(random, 3) : "1";
+      assertEquals(regexHasTag(path, tag), PathFormatter.hasTag(path, tag), path + " " + tag);
+      for (String existingTag : expectedTags) {
+        assertEquals(
+            regexHasTag(path, existingTag),
+            PathFormatter.hasTag(path, existingTag),
+            path + " " + existingTag);
+      }
+    }
+  }
 }
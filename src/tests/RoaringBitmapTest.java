@@ -0,0 +1,120 @@
+package tests;
+
+import model.RoaringBitmap;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoaringBitmapTest {
+
+  private static int[] toArray(Set<Integer> set) {
+    return set.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static RoaringBitmap bitmapOf(Set<Integer> set) {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    for (int value : set) {
+      bitmap.add(value);
+    }
+    return bitmap;
+  }
+
+  /* Return a random set mixing sparse values, dense values and long runs. */
+  private static TreeSet<Integer> randomSet(Random random) {
+    TreeSet<Integer> set = new TreeSet<>();
+    for (int i = 0; i < 2000; i++) {
+      set.add(random.nextInt(300000));
+    }
+    for (int i = 0; i < 10000; i++) {
+      set.add(65536 + random.nextInt(20000));
+    }
+    int start = 131072 + random.nextInt(1000);
+    for (int i = 0; i < 30000; i++) {
+      set.add(start + i);
+    }
+    return set;
+  }
+
+  @Test
+  void addContainsRemoveTest() {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    bitmap.add(3);
+    bitmap.add(70000);
+    bitmap.add(3);
+    assertTrue(bitmap.contains(3));
+    assertTrue(bitmap.contains(70000));
+    assertFalse(bitmap.contains(4));
+    assertEquals(2, bitmap.getCardinality());
+    bitmap.remove(3);
+    bitmap.remove(5);
+    assertArrayEquals(new int[] {70000}, bitmap.toArray());
+    bitmap.remove(70000);
+    assertTrue(bitmap.isEmpty());
+  }
+
+  @Test
+  void denseContainerTest() {
+    Set<Integer> expected = new TreeSet<>();
+    RoaringBitmap bitmap = new RoaringBitmap();
+    for (int i = 0; i < 10000; i++) {
+      bitmap.add(i * 3);
+      expected.add(i * 3);
+    }
+    for (int i = 0; i < 7000; i++) {
+      bitmap.remove(i * 3);
+      expected.remove(i * 3);
+    }
+    assertArrayEquals(toArray(expected), bitmap.toArray());
+  }
+
+  @Test
+  void setOperationsTest() {
+    Random random = new Random(42);
+    for (int trial = 0; trial < 5; trial++) {
+      TreeSet<Integer> a = randomSet(random);
+      TreeSet<Integer> b = randomSet(random);
+      RoaringBitmap bitmapA = bitmapOf(a);
+      RoaringBitmap bitmapB = bitmapOf(b);
+      if (trial % 2 == 0) {
+        bitmapA.runOptimize();
+      }
+
+      Set<Integer> and = new TreeSet<>(a);
+      and.retainAll(b);
+      Set<Integer> or = new TreeSet<>(a);
+      or.addAll(b);
+      Set<Integer> andNot = new TreeSet<>(a);
+      andNot.removeAll(b);
+
+      assertArrayEquals(toArray(and), bitmapA.and(bitmapB).toArray());
+      assertArrayEquals(toArray(and), bitmapB.and(bitmapA).toArray());
+      assertArrayEquals(toArray(or), bitmapA.or(bitmapB).toArray());
+      assertArrayEquals(toArray(andNot), bitmapA.andNot(bitmapB).toArray());
+      assertEquals(a.size(), bitmapA.getCardinality());
+    }
+  }
+
+  @Test
+  void runOptimizeKeepsValuesTest() {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    for (int i = 100; i < 50000; i++) {
+      bitmap.add(i);
+    }
+    RoaringBitmap copy = bitmap.copy();
+    bitmap.runOptimize();
+    assertEquals(copy, bitmap);
+    assertTrue(bitmap.contains(100));
+    assertTrue(bitmap.contains(49999));
+    assertFalse(bitmap.contains(50000));
+    bitmap.remove(200);
+    bitmap.add(60000);
+    assertFalse(bitmap.contains(200));
+    assertTrue(bitmap.contains(60000));
+    assertEquals(copy.getCardinality(), bitmap.getCardinality());
+  }
+}
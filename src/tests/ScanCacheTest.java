@@ -0,0 +1,149 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * A directory whose last modified time is set back to the time at which it was listed is not
+ * listed again, so a change made to it behind the scan cache's back shows whether its listing was
+ * reused.
+ */
+class ScanCacheTest {
+
+  /** Store a last modified time far enough in the past for listings to be stored. */
+  private static final long LONG_AGO = System.currentTimeMillis() / 1000 * 1000 - 60000;
+
+  private File root;
+  private File imagesDirectory;
+  private ImageTaggingManager manager;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("ScanCacheTest").toFile();
+    File dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+    manager = ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    delete(root);
+  }
+
+  @Test
+  void reuseListingOfUnmodifiedDirectory() throws Exception {
+    String a = createImage(imagesDirectory, "a.jpg");
+    setModified(imagesDirectory, LONG_AGO);
+    assertEquals(Collections.singletonList(a), find(imagesDirectory));
+
+    createImage(imagesDirectory, "b.jpg");
+    setModified(imagesDirectory, LONG_AGO);
+    assertEquals(Collections.singletonList(a), find(imagesDirectory));
+  }
+
+  @Test
+  void listAgainAfterAddingOrRemovingFile() throws Exception {
+    String a = createImage(imagesDirectory, "a.jpg");
+    setModified(imagesDirectory, LONG_AGO);
+    assertEquals(Collections.singletonList(a), find(imagesDirectory));
+
+    String b = createImage(imagesDirectory, "b.jpg");
+    setModified(imagesDirectory, LONG_AGO + 1000);
+    assertEquals(Arrays.asList(a, b), find(imagesDirectory));
+
+    new File(a).delete();
+    setModified(imagesDirectory, LONG_AGO + 2000);
+    assertEquals(Collections.singletonList(b), find(imagesDirectory));
+  }
+
+  @Test
+  void forgetDeletedSubdirectory() throws Exception {
+    File subdirectory = new File(imagesDirectory, "sub");
+    createImage(subdirectory, "a.jpg");
+    setModified(subdirectory, LONG_AGO);
+    setModified(imagesDirectory, LONG_AGO);
+    find(imagesDirectory);
+
+    delete(subdirectory);
+    setModified(imagesDirectory, LONG_AGO + 1000);
+    assertEquals(Collections.emptyList(), find(imagesDirectory));
+
+    /* A new directory at the same path, with the same time, must not get the old listing. */
+    String b = createImage(subdirectory, "b.jpg");
+    setModified(subdirectory, LONG_AGO);
+    setModified(imagesDirectory, LONG_AGO + 2000);
+    assertEquals(Collections.singletonList(b), find(imagesDirectory));
+  }
+
+  @Test
+  void keepSubdirectoryAfterCancelledScan() throws Exception {
+    String a = createImage(imagesDirectory, "a.jpg");
+    File subdirectory = new File(imagesDirectory, "sub");
+    String x = createImage(subdirectory, "x.jpg");
+    setModified(subdirectory, LONG_AGO);
+    setModified(imagesDirectory, LONG_AGO);
+    assertEquals(Arrays.asList(a, x), find(imagesDirectory));
+
+    /* The images in the root are found before its subdirectories are listed. */
+    List<String> found =
+        manager.findImages(imagesDirectory.getPath(), batch -> manager.cancelFindImages());
+    assertEquals(Collections.singletonList(a), found);
+
+    /* The subdirectory was not visited, but its listing is still reused. */
+    createImage(subdirectory, "y.jpg");
+    setModified(subdirectory, LONG_AGO);
+    assertEquals(Arrays.asList(a, x), find(imagesDirectory));
+  }
+
+  @Test
+  void keepSiblingWhosePathStartsWithRoot() throws Exception {
+    File sibling = new File(root, "images2");
+    String a = createImage(sibling, "a.jpg");
+    setModified(sibling, LONG_AGO);
+    assertEquals(Collections.singletonList(a), find(sibling));
+
+    /* Scanning images must not drop the listing of images2, which is not below it. */
+    find(imagesDirectory);
+    createImage(sibling, "b.jpg");
+    setModified(sibling, LONG_AGO);
+    assertEquals(Collections.singletonList(a), find(sibling));
+  }
+
+  private List<String> find(File directory) {
+    return manager.findImages(directory.getPath(), null);
+  }
+
+  private static String createImage(File directory, String name) throws Exception {
+    directory.mkdirs();
+    File image = new File(directory, name);
+    Files.write(image.toPath(), new byte[] {1, 2, 3});
+    return image.getPath();
+  }
+
+  private static void setModified(File directory, long time) {
+    if (!directory.setLastModified(time)) {
+      throw new AssertionError("Could not set the last modified time of " + directory);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
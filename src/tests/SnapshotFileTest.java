@@ -0,0 +1,221 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotFileTest {
+  private static final int TAGS = 2;
+
+  private File root;
+  private File dataDirectory;
+  private File imagesDirectory;
+  private File snapshot;
+  private String taggedPath;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("SnapshotFileTest").toFile();
+    dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+    snapshot = new File(dataDirectory, "Snapshot.dat");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    delete(root);
+  }
+
+  @Test
+  void roundTripEverySection() throws Exception {
+    saveSession();
+    ImageTaggingManager manager = open();
+    assertTrue(manager.getImagesHistory(taggedPath).contains("pic.jpg"));
+    assertTrue(manager.getAllTagsInMasterCollection().contains("sunset"));
+    assertTrue(manager.getAllTagsInMasterCollection().contains("unused"));
+    assertEquals(1, manager.getTagUsageCount("sunset"));
+    /* The saved identity lets the history follow a file renamed by another program. */
+    File moved = new File(imagesDirectory, "moved @sunset.jpg");
+    Files.move(new File(taggedPath).toPath(), moved.toPath());
+    validate(manager);
+    assertTrue(manager.getImagesHistory(moved.getAbsolutePath()).contains("pic.jpg"));
+    manager.flushLogs().join();
+    /* The changes made after loading the snapshot go to the generation that it names. */
+    assertTrue(new File(dataDirectory, "TempImagesLog.1.txt").exists());
+    assertFalse(new File(dataDirectory, "TempImagesLog.0.txt").exists());
+  }
+
+  @Test
+  void rejectBadMagicNumber() throws Exception {
+    saveSession();
+    ByteBuffer file = readSnapshot();
+    file.putInt(0, 0x12345678);
+    writeSnapshot(file);
+    assertSnapshotRejected();
+  }
+
+  @Test
+  void rejectUnsupportedVersion() throws Exception {
+    saveSession();
+    ByteBuffer file = readSnapshot();
+    file.putInt(4, 2);
+    sealHeader(file);
+    writeSnapshot(file);
+    assertSnapshotRejected();
+  }
+
+  @Test
+  void detectFlippedByteInSection() throws Exception {
+    saveSession();
+    ByteBuffer file = readSnapshot();
+    int entry = findSection(file, TAGS);
+    int offset = (int) file.getLong(entry + 4);
+    file.put(offset + 4, (byte) (file.get(offset + 4) ^ 1));
+    writeSnapshot(file);
+    assertSectionRejected();
+  }
+
+  @Test
+  void rejectCountLargerThanSection() throws Exception {
+    saveSession();
+    ByteBuffer file = readSnapshot();
+    int entry = findSection(file, TAGS);
+    file.putInt((int) file.getLong(entry + 4), 1000000);
+    sealSection(file, entry);
+    sealHeader(file);
+    writeSnapshot(file);
+    assertSectionRejected();
+  }
+
+  @Test
+  void migrateSerializedFiles() throws Exception {
+    String oldPath = new File(imagesDirectory, "pic.jpg").getAbsolutePath();
+    String newPath = new File(imagesDirectory, "pic @sunset.jpg").getAbsolutePath();
+    HashMap<String, List<String>> histories = new HashMap<>();
+    histories.put(newPath, new ArrayList<>(Collections.singletonList("pic.jpg")));
+    HashMap<String, Integer> usage = new HashMap<>();
+    usage.put("sunset", 1);
+    serialize("ImageHistory.ser", histories);
+    serialize("TagHistory.ser", new ArrayList<>(Arrays.asList("sunset", "unused")));
+    serialize("TagUsage.ser", usage);
+    Files.write(new File(dataDirectory, "ScanCache.ser").toPath(), new byte[] {1, 2, 3});
+
+    ImageTaggingManager manager = open();
+    assertEquals(Collections.singletonList("pic.jpg"), manager.getImagesHistory(newPath));
+    assertTrue(manager.getImagesHistory(oldPath).isEmpty());
+    assertTrue(manager.getAllTagsInMasterCollection().contains("unused"));
+    assertEquals(1, manager.getTagUsageCount("sunset"));
+    assertTrue(snapshot.exists());
+    assertFalse(new File(dataDirectory, "ImageHistory.ser").exists());
+    assertFalse(new File(dataDirectory, "TagHistory.ser").exists());
+    assertFalse(new File(dataDirectory, "TagUsage.ser").exists());
+    /* The file that could not be read is kept, out of the way, rather than deleted. */
+    assertFalse(new File(dataDirectory, "ScanCache.ser").exists());
+    assertTrue(new File(dataDirectory, "ScanCache.ser.bad").exists());
+  }
+
+  private void saveSession() throws Exception {
+    File image = new File(imagesDirectory, "pic.jpg");
+    Files.write(image.toPath(), new byte[] {1, 2, 3});
+    ImageTaggingManager manager = open();
+    manager.changeDirectory(imagesDirectory.getPath());
+    taggedPath = manager.addTagToImage(image.getAbsolutePath(), "sunset");
+    manager.addTagToMasterCollection("unused");
+    validate(manager);
+    manager.saveData();
+    assertTrue(snapshot.exists());
+  }
+
+  private void assertSnapshotRejected() {
+    ImageTaggingManager manager = open();
+    assertTrue(manager.getImagesHistory(taggedPath).isEmpty());
+    assertFalse(manager.getAllTagsInMasterCollection().contains("unused"));
+  }
+
+  private void assertSectionRejected() {
+    /* Only the corrupt section is lost; the others are still read. */
+    ImageTaggingManager manager = open();
+    assertFalse(manager.getAllTagsInMasterCollection().contains("unused"));
+    assertTrue(manager.getImagesHistory(taggedPath).contains("pic.jpg"));
+  }
+
+  private ImageTaggingManager open() {
+    return ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+  }
+
+  private void validate(ImageTaggingManager manager) throws InterruptedException {
+    BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    boolean[] finished = new boolean[1];
+    manager.validateImages(tasks::add, (checked, total) -> finished[0] = checked == total);
+    while (!finished[0]) {
+      tasks.take().run();
+    }
+  }
+
+  private ByteBuffer readSnapshot() throws IOException {
+    return ByteBuffer.wrap(Files.readAllBytes(snapshot.toPath()));
+  }
+
+  private void writeSnapshot(ByteBuffer file) throws IOException {
+    Files.write(snapshot.toPath(), file.array());
+  }
+
+  private static int findSection(ByteBuffer file, int kind) {
+    for (int i = 0; i < file.getInt(8); i++) {
+      int entry = 12 + i * 24;
+      if (file.getInt(entry) == kind) {
+        return entry;
+      }
+    }
+    throw new AssertionError("No section of kind " + kind);
+  }
+
+  private static void sealSection(ByteBuffer file, int entry) {
+    CRC32 crc = new CRC32();
+    crc.update(file.array(), (int) file.getLong(entry + 4), (int) file.getLong(entry + 12));
+    file.putInt(entry + 20, (int) crc.getValue());
+  }
+
+  private static void sealHeader(ByteBuffer file) {
+    int headerEnd = 12 + file.getInt(8) * 24;
+    CRC32 crc = new CRC32();
+    crc.update(file.array(), 0, headerEnd);
+    file.putInt(headerEnd, (int) crc.getValue());
+  }
+
+  private void serialize(String name, Object object) throws IOException {
+    try (ObjectOutputStream output =
+        new ObjectOutputStream(new FileOutputStream(new File(dataDirectory, name)))) {
+      output.writeObject(object);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
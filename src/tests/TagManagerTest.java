@@ -9,6 +9,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TagManagerTest {
   private TagManager tagManager;
@@ -31,30 +34,28 @@ class TagManagerTest {
   @Test
   void addExistingTagTest() {
     tagManager.addTags("storm");
-    assertEquals(tagList, tagManager.getTags());
+    assertEquals(Arrays.asList("rain", "storm", "winter"), tagManager.getTags());
   }
 
   @Test
   void addNewTagTest() {
-    tagList.add("winter");
-    tagManager.addTags("winter");
-    assertEquals(tagList, tagManager.getTags());
+    tagManager.addTags("snow");
+    assertEquals(Arrays.asList("rain", "snow", "storm", "winter"), tagManager.getTags());
   }
 
   @Test
   void addMultipleTagsTest() {
     Collection<String> tags = Arrays.asList("olympics", "chills");
-    tagList.addAll(tags);
     tagManager.addTags(tags);
-    assertEquals(tagList, tagManager.getTags());
+    assertEquals(
+        Arrays.asList("chills", "olympics", "rain", "storm", "winter"), tagManager.getTags());
   }
 
   @Test
   void addTagsWithExistingTagsTest() {
     Collection<String> tags = Arrays.asList("olympics", "storm");
-    tagList.add("olympics");
     tagManager.addTags(tags);
-    assertEquals(tagList, tagManager.getTags());
+    assertEquals(Arrays.asList("olympics", "rain", "storm", "winter"), tagManager.getTags());
   }
 
   @Test
@@ -65,12 +66,38 @@ class TagManagerTest {
 
   @Test
   void getTagsTest() {
-    assertEquals(tagList, tagManager.getTags());
+    assertEquals(Arrays.asList("rain", "storm", "winter"), tagManager.getTags());
+  }
+
+  @Test
+  void constructorCopiesListTest() {
+    tagList.add("snow");
+    assertFalse(tagManager.getTags().contains("snow"));
+  }
+
+  @Test
+  void tagsDifferingInCaseTest() {
+    tagManager.addTags(Arrays.asList("Rain", "RAIN", "Snow"));
+    assertEquals(
+        Arrays.asList("RAIN", "Rain", "rain", "Snow", "storm", "winter"), tagManager.getTags());
+    tagManager.removeTag("Rain");
+    assertTrue(tagManager.hasTag("rain"));
+    assertFalse(tagManager.hasTag("Rain"));
+  }
+
+  @Test
+  void getTagsSnapshotTest() {
+    List<String> snapshot = tagManager.getTags();
+    assertSame(snapshot, tagManager.getTags());
+    tagManager.addTags("snow");
+    assertEquals(Arrays.asList("rain", "storm", "winter"), snapshot);
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.add("hail"));
   }
 
   @Test
   void getFilteredTagsEmptyFilterTest() {
-    assertEquals(tagList, tagManager.getTags(Collections.emptyList(), ""));
+    assertEquals(
+        Arrays.asList("rain", "storm", "winter"), tagManager.getTags(Collections.emptyList(), ""));
   }
 
   @Test
@@ -90,7 +117,7 @@ class TagManagerTest {
   @Test
   void getTagsExcludeAllNonExistingTagsTest() {
     Collection<String> tagsToExclude = Arrays.asList("snow", "freeze");
-    assertEquals(tagList, tagManager.getTags(tagsToExclude));
+    assertEquals(Arrays.asList("rain", "storm", "winter"), tagManager.getTags(tagsToExclude));
   }
 
   @Test
@@ -99,4 +126,136 @@ class TagManagerTest {
     List<String> expectedFilteredTags = Arrays.asList("rain", "storm");
     assertEquals(expectedFilteredTags, tagManager.getTags(tagsToExclude));
   }
+
+  @Test
+  void getFilteredTagsIgnoresCaseTest() {
+    tagManager.addTags(Arrays.asList("Rainbow", "TRAIN", "brain"));
+    assertEquals(
+        Arrays.asList("brain", "rain", "Rainbow", "TRAIN"),
+        tagManager.getTags(Collections.emptyList(), "RAI"));
+    assertEquals(
+        Arrays.asList("brain", "rain", "Rainbow", "storm", "TRAIN", "winter"),
+        tagManager.getTags(Collections.emptyList(), "r"));
+  }
+
+  @Test
+  void getFilteredTagsAfterRemoveTest() {
+    tagManager.removeTag("rain");
+    tagManager.addTags("drain");
+    assertEquals(
+        Collections.singletonList("drain"), tagManager.getTags(Collections.emptyList(), "rain"));
+  }
+
+  @Test
+  void getFilteredTagsMatchesScanTest() {
+    Random random = new Random(7);
+    List<String> tags = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder tag = new StringBuilder();
+      int length = 1 + random.nextInt(8);
+      for (int j = 0; j < length; j++) {
+        tag.append("abcAB".charAt(random.nextInt(5)));
+      }
+      tags.add(tag.toString());
+    }
+    tagManager = new TagManager(tags);
+    for (int i = 0; i < 200; i++) {
+      String removed = tags.get(random.nextInt(tags.size()));
+      tagManager.removeTag(removed);
+      StringBuilder mustContain = new StringBuilder();
+      int length = random.nextInt(5);
+      for (int j = 0; j < length; j++) {
+        mustContain.append("abcAB".charAt(random.nextInt(5)));
+      }
+      List<String> expected = new ArrayList<>();
+      for (String tag : tagManager.getTags()) {
+        if (tag.toLowerCase().contains(mustContain.toString().toLowerCase())) {
+          expected.add(tag);
+        }
+      }
+      assertEquals(expected, tagManager.getTags(Collections.emptyList(), mustContain.toString()));
+    }
+  }
+
+  @Test
+  void getSuggestionsForTypoTest() {
+    tagManager.addTags(Arrays.asList("beach", "bleach", "peach"));
+    assertEquals(
+        Collections.singletonList("beach"),
+        tagManager.getSuggestions("beahc", Collections.emptyList(), 10, tag -> 0));
+    assertEquals(
+        Arrays.asList("beach", "bleach", "peach"),
+        tagManager.getSuggestions("beachh", Collections.emptyList(), 10, tag -> 0));
+  }
+
+  @Test
+  void getSuggestionsRankingTest() {
+    tagManager.addTags(Arrays.asList("train", "brain", "raincoat", "rainy"));
+    Map<String, Integer> usage = new HashMap<>();
+    usage.put("rainy", 5);
+    usage.put("brain", 9);
+    assertEquals(
+        Arrays.asList("rainy", "rain", "raincoat", "brain", "train"),
+        tagManager.getSuggestions(
+            "rain", Collections.emptyList(), 10, tag -> usage.getOrDefault(tag, 0)));
+    assertEquals(
+        Arrays.asList("rainy", "raincoat"),
+        tagManager.getSuggestions(
+            "rain", Collections.singletonList("rain"), 2, tag -> usage.getOrDefault(tag, 0)));
+  }
+
+  @Test
+  void getSuggestionsAfterRemoveTest() {
+    tagManager.addTags("beach");
+    assertEquals(
+        Collections.singletonList("beach"),
+        tagManager.getSuggestions("beahc", Collections.emptyList(), 10, tag -> 0));
+    tagManager.removeTag("beach");
+    assertEquals(
+        Collections.emptyList(),
+        tagManager.getSuggestions("beahc", Collections.emptyList(), 10, tag -> 0));
+  }
+
+  @Test
+  void usageCountsTest() {
+    tagManager.addUsage(Arrays.asList("rain", "storm"));
+    tagManager.addUsage(Arrays.asList("rain", "rain"));
+    assertEquals(2, tagManager.getUsageCount("rain"));
+    assertEquals(1, tagManager.getUsageCount("storm"));
+    assertEquals(0, tagManager.getUsageCount("winter"));
+    tagManager.removeUsage(Collections.singletonList("rain"));
+    tagManager.removeUsage(Collections.singletonList("winter"));
+    assertEquals(1, tagManager.getUsageCount("rain"));
+    assertEquals(0, tagManager.getUsageCount("winter"));
+  }
+
+  @Test
+  void usageCountsConstructorTest() {
+    tagManager.addUsage(Arrays.asList("rain", "storm"));
+    TagManager copy = new TagManager(tagManager.getTags(), tagManager.getUsageCounts());
+    tagManager.addUsage(Collections.singletonList("rain"));
+    assertEquals(1, copy.getUsageCount("rain"));
+    assertEquals(1, copy.getUsageCount("storm"));
+    assertEquals(Collections.singletonList("winter"), copy.getUnusedTags());
+  }
+
+  @Test
+  void getMostUsedTagsTest() {
+    tagManager.addTags("beach");
+    tagManager.addUsage(Arrays.asList("rain", "storm", "winter"));
+    tagManager.addUsage(Arrays.asList("storm", "winter"));
+    tagManager.addUsage(Arrays.asList("storm", "untracked"));
+    tagManager.addUsage(Collections.singletonList("untracked"));
+    assertEquals(Arrays.asList("storm", "winter"), tagManager.getMostUsedTags(2));
+    assertEquals(Arrays.asList("storm", "winter", "rain"), tagManager.getMostUsedTags(10));
+    assertEquals(Collections.emptyList(), tagManager.getMostUsedTags(0));
+  }
+
+  @Test
+  void getUnusedTagsTest() {
+    tagManager.addUsage(Collections.singletonList("storm"));
+    assertEquals(Arrays.asList("rain", "winter"), tagManager.getUnusedTags());
+    tagManager.removeUsage(Collections.singletonList("storm"));
+    assertEquals(Arrays.asList("rain", "storm", "winter"), tagManager.getUnusedTags());
+  }
 }
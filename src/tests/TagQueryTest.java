@@ -0,0 +1,159 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+import model.TagQuery;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagQueryTest {
+  private File root;
+  private File imagesDirectory;
+  private ImageTaggingManager manager;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("TagQueryTest").toFile();
+    File dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+    for (String name :
+        Arrays.asList(
+            "a @coast @2019.jpg",
+            "b @coast @2019 @rejected.jpg",
+            "c @beach @2018.jpg",
+            "d @2019.jpg",
+            "e.jpg",
+            "f @beach @2019.jpg",
+            "g @new york @OR.jpg")) {
+      Files.write(new File(imagesDirectory, name).toPath(), new byte[] {1});
+    }
+    manager = ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+    manager.changeDirectory(imagesDirectory.getPath());
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    for (File directory : new File[] {imagesDirectory, new File(root, "data"), root}) {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+    }
+    root.delete();
+  }
+
+  @Test
+  void emptyQueryMatchesEverythingTest() {
+    TagQuery query = TagQuery.parse("   ");
+    assertTrue(query.isEmpty());
+    assertEquals("", query.toString());
+    assertEquals(set("a", "b", "c", "d", "e", "f", "g"), filter("   "));
+  }
+
+  @Test
+  void andOrNotTest() {
+    assertEquals(set("a", "f"), filter("(beach OR coast) AND 2019 AND NOT rejected"));
+    assertEquals(set("b"), filter("coast AND rejected"));
+    assertEquals(set("a", "b", "c", "f"), filter("beach OR coast"));
+    assertEquals(set("c", "e", "g"), filter("NOT 2019"));
+    assertEquals(set("e", "g"), filter("NOT (beach OR coast OR 2019)"));
+  }
+
+  @Test
+  void andBindsTighterThanOrTest() {
+    assertEquals(set("a", "b", "f"), filter("beach AND 2019 OR coast"));
+  }
+
+  @Test
+  void unknownTagTest() {
+    assertEquals(set(), filter("winter"));
+    assertEquals(set(), filter("beach AND winter"));
+    assertEquals(set("c", "f"), filter("beach OR winter"));
+    assertEquals(set("a", "b", "c", "d", "e", "f", "g"), filter("NOT winter"));
+    assertEquals(set("c"), filter("beach AND NOT (2019 OR winter)"));
+  }
+
+  @Test
+  void emptyOperandTest() {
+    /* An operand that matches no image empties an AND, and drops out of an OR. */
+    assertEquals(set(), filter("2019 AND (rejected AND NOT rejected)"));
+    assertEquals(set("b"), filter("rejected OR (beach AND NOT beach)"));
+    assertEquals(set(), filter("2018 AND 2019"));
+    manager.changeDirectory(new File(root, "data").getPath());
+    assertEquals(set(), filter("NOT beach"));
+  }
+
+  @Test
+  void implicitAndTest() {
+    assertEquals(TagQuery.parse("beach AND 2019"), TagQuery.parse("beach 2019"));
+  }
+
+  @Test
+  void quotedTagTest() {
+    TagQuery query = TagQuery.parse("\"new york\" AND \"OR\"");
+    assertEquals(set("g"), filter("\"new york\" AND \"OR\""));
+    assertEquals("\"new york\" AND \"OR\"", query.toString());
+  }
+
+  @Test
+  void toStringRoundTripTest() {
+    String text = "(beach OR coast) AND 2019 AND NOT (rejected OR blurry)";
+    assertEquals(text, TagQuery.parse(text).toString());
+    assertEquals("beach OR coast", TagQuery.parse("((beach) OR (coast))").toString());
+  }
+
+  @Test
+  void getTermsTest() {
+    TagQuery query = TagQuery.parse("(beach OR coast) AND NOT rejected");
+    assertEquals(Arrays.asList("beach OR coast", "NOT rejected"), query.getTerms());
+    assertEquals(
+        Collections.singletonList("beach OR coast"), TagQuery.parse("beach OR coast").getTerms());
+  }
+
+  @Test
+  void andTest() {
+    TagQuery query = TagQuery.EMPTY.and("beach").and("2019").and("beach");
+    assertEquals("beach AND 2019", query.toString());
+  }
+
+  @Test
+  void withoutTest() {
+    TagQuery query = TagQuery.parse("(beach OR coast) AND \"new york\" AND 2019");
+    assertEquals("\"new york\" AND 2019", query.without("beach OR coast").toString());
+    assertEquals("(beach OR coast) AND 2019", query.without("new york").toString());
+    assertEquals(query, query.without("winter"));
+    assertTrue(TagQuery.parse("beach").without("beach").isEmpty());
+  }
+
+  @Test
+  void invalidQueryTest() {
+    assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("(beach OR coast"));
+    assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("beach AND"));
+    assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("OR beach"));
+    assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("beach)"));
+    assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("\"beach"));
+  }
+
+  private Set<String> filter(String query) {
+    manager.setTagQuery(query);
+    Set<String> names = new HashSet<>();
+    for (String path : manager.getImagePaths()) {
+      names.add(new File(path).getName().split("[ .]")[0]);
+    }
+    return names;
+  }
+
+  private static Set<String> set(String... names) {
+    return new HashSet<>(Arrays.asList(names));
+  }
+}
@@ -0,0 +1,206 @@
+package tests;
+
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagRemovalTest {
+  private File root;
+  private File dataDirectory;
+  private File imagesDirectory;
+  private BlockingQueue<Runnable> tasks;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("TagRemovalTest").toFile();
+    dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+    tasks = new LinkedBlockingQueue<>();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    delete(root);
+  }
+
+  @Test
+  void removeTagAcrossDirectories() throws Exception {
+    String first = createImage("first", "a @sunset @beach.jpg");
+    String second = createImage("second", "b @sunset.jpg");
+    String untagged = createImage("second", "c @beach.jpg");
+    ImageTaggingManager manager = open();
+
+    removeTag(manager, "sunset");
+    String firstRenamed = path("first", "a @beach.jpg");
+    String secondRenamed = path("second", "b.jpg");
+    assertFalse(new File(first).exists());
+    assertFalse(new File(second).exists());
+    assertTrue(new File(firstRenamed).exists());
+    assertTrue(new File(secondRenamed).exists());
+    assertEquals(Arrays.asList(firstRenamed, secondRenamed, untagged), manager.getImagePaths());
+    assertTrue(manager.getImagesHistory(firstRenamed).contains("a @sunset @beach.jpg"));
+    assertTrue(manager.getImagesHistory(secondRenamed).contains("b @sunset.jpg"));
+    assertFalse(manager.getAllTagsInMasterCollection().contains("sunset"));
+    assertTrue(manager.getAllTagsInMasterCollection().contains("beach"));
+  }
+
+  @Test
+  void renameToCopyWhenNameIsTaken() throws Exception {
+    createImage("first", "pic @sunset.jpg");
+    String taken = createImage("first", "pic.jpg");
+    ImageTaggingManager manager = open();
+
+    removeTag(manager, "sunset");
+    String copy = path("first", "pic copy 1.jpg");
+    assertTrue(new File(taken).exists());
+    assertTrue(new File(copy).exists());
+    assertEquals(Arrays.asList(copy, taken), manager.getImagePaths());
+    assertTrue(manager.getImagesHistory(copy).contains("pic @sunset.jpg"));
+  }
+
+  @Test
+  void logEachRename() throws Exception {
+    String first = createImage("first", "a @sunset.jpg");
+    String second = createImage("second", "b @sunset.jpg");
+    ImageTaggingManager manager = open();
+
+    removeTag(manager, "sunset");
+    manager.flushLogs().join();
+    Map<String, String> updates = new HashMap<>();
+    for (String[] update : readUpdates("TempImagesLog.0.txt")) {
+      updates.put(update[0], update[1]);
+    }
+    Map<String, String> expected = new HashMap<>();
+    expected.put(first, path("first", "a.jpg"));
+    expected.put(second, path("second", "b.jpg"));
+    assertEquals(expected, updates);
+  }
+
+  @Test
+  void cancelKeepsTagOnImagesNotRenamed() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 100; j++) {
+        createImage("directory" + i, "pic" + j + " @sunset.jpg");
+      }
+    }
+    ImageTaggingManager manager = open();
+    manager.setCrawlerParallelism(1);
+
+    manager.removeTagFromAllImages("sunset", tasks::add, null);
+    assertTrue(manager.isRemovingTag());
+    int remainingImages = manager.cancelTagRemoval();
+    assertFalse(manager.isRemovingTag());
+    /* The images are renamed one at a time, so the removal is cancelled long before the end. */
+    assertTrue(remainingImages > 0);
+    assertEquals(remainingImages, countTagged(imagesDirectory, " @sunset"));
+    assertTrue(manager.getAllTagsInMasterCollection().contains("sunset"));
+    List<String> paths = manager.getImagePaths();
+    assertEquals(2000, paths.size());
+    for (String path : paths) {
+      assertTrue(new File(path).exists());
+      if (!path.contains(" @sunset")) {
+        String oldName = path.substring(path.lastIndexOf(File.separator) + 1, path.length() - 4);
+        assertTrue(manager.getImagesHistory(path).contains(oldName + " @sunset.jpg"));
+      }
+    }
+    /* The progress of the cancelled removal is ignored. */
+    while (!tasks.isEmpty()) {
+      tasks.take().run();
+    }
+    assertEquals(paths, manager.getImagePaths());
+  }
+
+  @Test
+  void leaveImagesBeingRenamedAlone() throws Exception {
+    String image = createImage("first", "a @sunset.jpg");
+    ImageTaggingManager manager = open();
+
+    boolean[] finished = new boolean[1];
+    manager.removeTagFromAllImages(
+        "sunset", tasks::add, (processed, total) -> finished[0] = processed == total);
+    /* The user cannot edit an image that the tag removal may be moving. */
+    assertEquals(image, manager.addTagToImage(image, "beach"));
+    while (!finished[0]) {
+      tasks.take().run();
+    }
+    String renamed = path("first", "a.jpg");
+    assertTrue(new File(renamed).exists());
+    assertEquals(Collections.singletonList(renamed), manager.getImagePaths());
+  }
+
+  private ImageTaggingManager open() {
+    ImageTaggingManager manager =
+        ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+    manager.changeDirectory(imagesDirectory.getPath());
+    return manager;
+  }
+
+  private void removeTag(ImageTaggingManager manager, String tag) throws InterruptedException {
+    boolean[] finished = new boolean[1];
+    manager.removeTagFromAllImages(
+        tag, tasks::add, (processed, total) -> finished[0] = processed == total);
+    while (!finished[0]) {
+      tasks.take().run();
+    }
+  }
+
+  private String createImage(String directory, String name) throws Exception {
+    File image = new File(path(directory, name));
+    image.getParentFile().mkdirs();
+    Files.write(image.toPath(), new byte[] {1, 2, 3});
+    return image.getAbsolutePath();
+  }
+
+  private String path(String directory, String name) {
+    return new File(new File(imagesDirectory, directory), name).getAbsolutePath();
+  }
+
+  private List<String[]> readUpdates(String fileName) throws Exception {
+    List<String[]> updates = new ArrayList<>();
+    File log = new File(dataDirectory, fileName);
+    for (String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)) {
+      /* Each line is '#', the length of the old path, ':', the old path, ',' and the new path. */
+      int colon = line.indexOf(':');
+      int end = colon + 1 + Integer.parseInt(line.substring(1, colon));
+      updates.add(new String[] {line.substring(colon + 1, end), line.substring(end + 1)});
+    }
+    return updates;
+  }
+
+  private static int countTagged(File file, String tag) {
+    File[] children = file.listFiles();
+    if (children == null) {
+      return file.getName().contains(tag) ? 1 : 0;
+    }
+    int count = 0;
+    for (File child : children) {
+      count += countTagged(child, tag);
+    }
+    return count;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,150 @@
+package tests;
+
+import model.Durability;
+import model.ImageTaggingManager;
+import model.ImageTaggingManagerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+  private File root;
+  private File dataDirectory;
+  private File imagesDirectory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    root = Files.createTempDirectory("WriteAheadLogTest").toFile();
+    dataDirectory = new File(root, "data");
+    dataDirectory.mkdir();
+    imagesDirectory = new File(root, "images");
+    imagesDirectory.mkdir();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    delete(root);
+  }
+
+  @Test
+  void linesKeepTheirOrderAcrossGroups() throws Exception {
+    ImageTaggingManager manager = openWithImage();
+    /* Each rename logs two lines, so these cannot all fit in a single group. */
+    List<String> paths = rename(manager, manager.getImagePaths().get(0), "pic", 1500);
+    manager.flushLogs().join();
+    List<String[]> updates = readUpdates("TempImagesLog.0.txt");
+    assertEquals(paths.size() - 1, updates.size());
+    for (int i = 0; i < updates.size(); i++) {
+      assertEquals(paths.get(i), updates.get(i)[0]);
+      assertEquals(paths.get(i + 1), updates.get(i)[1]);
+    }
+  }
+
+  @Test
+  void rotateCutsExactlyBetweenRecords() throws Exception {
+    ImageTaggingManager manager = openWithImage();
+    String path = manager.addTagToImage(manager.getImagePaths().get(0), "sunset");
+    manager.flushLogs().join();
+
+    /* Recovered changes make a checkpoint due at once, which the next change starts. */
+    ImageTaggingManager recovered = open();
+    String checkpointed = recovered.renameImage(path, "before");
+    List<String> paths = rename(recovered, checkpointed, "after", 50);
+    recovered.flushLogs().join();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (new File(dataDirectory, "TempImagesLog.1.txt").exists()
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(new File(dataDirectory, "TempImagesLog.1.txt").exists());
+    /* Every change made after the checkpoint, and none made before, is in the next generation. */
+    List<String[]> updates = readUpdates("TempImagesLog.2.txt");
+    assertEquals(50, updates.size());
+    for (int i = 0; i < updates.size(); i++) {
+      assertEquals(paths.get(i), updates.get(i)[0]);
+      assertEquals(paths.get(i + 1), updates.get(i)[1]);
+    }
+
+    ImageTaggingManager reopened = open();
+    String lastPath = paths.get(paths.size() - 1);
+    assertTrue(reopened.getImagesHistory(lastPath).contains("pic @sunset.jpg"));
+    assertTrue(reopened.getImagesHistory(lastPath).contains("before @sunset.jpg"));
+  }
+
+  @Test
+  void futuresCompleteExceptionallyAfterClose() throws Exception {
+    ImageTaggingManager manager = openWithImage();
+    manager.addTagToImage(manager.getImagePaths().get(0), "sunset");
+    manager.saveData();
+    CompletableFuture<Void> flushed = manager.flushLogs();
+    assertTrue(flushed.isCompletedExceptionally());
+  }
+
+  @Test
+  void flushWritesLinesWithoutDurability() throws Exception {
+    ImageTaggingManager manager = openWithImage();
+    manager.setLogDurability(Durability.NONE);
+    String path = manager.renameImage(manager.getImagePaths().get(0), "renamed");
+    File log = new File(dataDirectory, "TempImagesLog.0.txt");
+    Thread.sleep(50);
+    /* Without durability, the line stays in the writer's buffer until it is flushed. */
+    assertEquals(0, log.length());
+    manager.flushLogs().join();
+    List<String[]> updates = readUpdates("TempImagesLog.0.txt");
+    assertEquals(1, updates.size());
+    assertEquals(path, updates.get(0)[1]);
+  }
+
+  private ImageTaggingManager openWithImage() throws Exception {
+    Files.write(new File(imagesDirectory, "pic.jpg").toPath(), new byte[] {1, 2, 3});
+    ImageTaggingManager manager = open();
+    manager.changeDirectory(imagesDirectory.getPath());
+    return manager;
+  }
+
+  private ImageTaggingManager open() {
+    return ImageTaggingManagerFactory.getImageTaggingManager(dataDirectory.getPath());
+  }
+
+  private static List<String> rename(ImageTaggingManager manager, String path, String name, int n) {
+    List<String> paths = new ArrayList<>();
+    paths.add(path);
+    for (int i = 0; i < n; i++) {
+      path = manager.renameImage(path, name + i);
+      paths.add(path);
+    }
+    return paths;
+  }
+
+  private List<String[]> readUpdates(String fileName) throws Exception {
+    List<String[]> updates = new ArrayList<>();
+    File log = new File(dataDirectory, fileName);
+    for (String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)) {
+      /* Each line is '#', the length of the old path, ':', the old path, ',' and the new path. */
+      int colon = line.indexOf(':');
+      int end = colon + 1 + Integer.parseInt(line.substring(1, colon));
+      updates.add(new String[] {line.substring(colon + 1, end), line.substring(end + 1)});
+    }
+    return updates;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
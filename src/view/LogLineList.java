@@ -0,0 +1,54 @@
+package view;
+
+import java.io.IOException;
+import javafx.collections.ObservableListBase;
+import model.LogReader;
+
+/**
+ * A read-only list of the lines of a log, newest first, which reads each line from the log only
+ * when it is asked for, so that a ListView displaying it only reads the lines that are visible.
+ */
+public class LogLineList extends ObservableListBase<String> {
+
+  /** Store the reader of the log. */
+  private final LogReader reader;
+
+  /** Store the number of lines in the list. */
+  private int size;
+
+  /**
+   * Create a new LogLineList object that lists the lines read by reader, reader.
+   *
+   * @param reader a LogReader.
+   */
+  public LogLineList(LogReader reader) {
+    this.reader = reader;
+    size = reader.getLineCount();
+  }
+
+  @Override
+  public String get(int index) {
+    return reader.getLine(index);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Add the lines that have been appended to the log since it was read, or last refreshed, to the
+   * start of the list, where the newest lines are.
+   *
+   * @throws IOException if the log could not be read.
+   */
+  public void refresh() throws IOException {
+    int added = reader.refresh();
+    if (added > 0) {
+      beginChange();
+      size += added;
+      nextAdd(0, added);
+      endChange();
+    }
+  }
+}
@@ -23,6 +23,29 @@ public class Tag extends HBox {
    * @param tag a tag.
    */
   public Tag(String tag, boolean displayAddSign) {
+    this(tag, tag, displayAddSign);
+  }
+
+  /**
+   * Create a new Tag object to represent tag, tag, labelled with the number of images that have
+   * it.
+   *
+   * @param tag a tag.
+   * @param usageCount the number of images that have the tag.
+   * @param displayAddSign whether to display a '+' sign, rather than an 'x'.
+   */
+  public Tag(String tag, int usageCount, boolean displayAddSign) {
+    this(tag, tag + " (" + usageCount + ")", displayAddSign);
+  }
+
+  /**
+   * Create a new Tag object to represent tag, tag, with the text, label.
+   *
+   * @param tag a tag.
+   * @param label the text to display.
+   * @param displayAddSign whether to display a '+' sign, rather than an 'x'.
+   */
+  private Tag(String tag, String label, boolean displayAddSign) {
     super();
 
     this.maxHeight(30);
@@ -33,7 +56,7 @@ public class Tag extends HBox {
 
     this.tag = tag;
 
-    Label tagLabel = new Label(tag);
+    Label tagLabel = new Label(label);
     tagLabel.setFont(Font.font(14));
 
     ImageView tagIcon;